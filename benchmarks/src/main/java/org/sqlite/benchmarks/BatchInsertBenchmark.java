@@ -0,0 +1,33 @@
+package org.sqlite.benchmarks;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Inserts rows added with {@link PreparedStatement#addBatch()}, one transaction per batch. The
+ * reported time is per batch; divide it by <code>batchSize</code> for the time per row.
+ */
+public class BatchInsertBenchmark extends InsertBenchmark {
+
+    /** The number of rows per batch. */
+    @Param({"1", "10", "100", "1000"})
+    public int batchSize;
+
+    @Benchmark
+    public int[] batchInsert() throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                bindRow();
+                insert.addBatch();
+            }
+            int[] counts = insert.executeBatch();
+            conn.commit();
+            return counts;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.sqlite.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.openjdk.jmh.annotations.Param;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.mc.CipherAlgorithm;
+import org.sqlite.mc.SQLiteMCConfig;
+
+/**
+ * Base of the benchmark states. Each benchmark runs against a fresh database file, either plain or
+ * encrypted with the cipher selected by the <code>cipher</code> parameter, so that every workload
+ * also measures its encrypted variant.
+ */
+public abstract class DatabaseBenchmark {
+    static final String PLAIN = "none";
+
+    /**
+     * <code>none</code> for a plain database, otherwise the name of an {@link CipherAlgorithm} as
+     * used by the <code>cipher</code> pragma.
+     */
+    @Param({PLAIN, "chacha20", "sqlcipher", "aes256cbc"})
+    public String cipher;
+
+    protected File file;
+    protected Connection conn;
+
+    /** @return A configuration for the selected cipher, to be customized before connecting. */
+    protected SQLiteConfig newConfig() {
+        if (PLAIN.equals(cipher)) {
+            return new SQLiteConfig();
+        }
+        return new SQLiteMCConfig.Builder()
+                .setCipher(cipherAlgorithm(cipher))
+                .withKey("benchmark")
+                .build();
+    }
+
+    private static CipherAlgorithm cipherAlgorithm(String name) {
+        for (CipherAlgorithm algorithm : CipherAlgorithm.values()) {
+            if (algorithm.getValue().equals(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("unknown cipher: " + name);
+    }
+
+    /**
+     * Opens {@link #conn} on a new temporary database file.
+     *
+     * @param config The configuration returned by {@link #newConfig()}.
+     */
+    protected void open(SQLiteConfig config) throws IOException, SQLException {
+        file = File.createTempFile("sqlite-jdbc-bench", ".db");
+        file.deleteOnExit();
+        conn = config.createConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement stat = conn.createStatement()) {
+            stat.execute("pragma journal_mode = wal");
+            stat.execute("pragma synchronous = normal");
+        }
+    }
+
+    protected void close() throws SQLException {
+        if (conn != null) {
+            conn.close();
+            conn = null;
+        }
+        if (file != null) {
+            new File(file.getPath() + "-wal").delete();
+            new File(file.getPath() + "-shm").delete();
+            file.delete();
+            file = null;
+        }
+    }
+
+    /** Executes statements in a single transaction. */
+    protected void execute(String... sql) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stat = conn.createStatement()) {
+            for (String s : sql) {
+                stat.execute(s);
+            }
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
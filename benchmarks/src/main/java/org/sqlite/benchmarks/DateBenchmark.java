@@ -0,0 +1,100 @@
+package org.sqlite.benchmarks;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConfig.DateClass;
+
+/**
+ * Binds and reads timestamps stored in each {@link DateClass}: <code>INTEGER</code> and <code>
+ * REAL</code> are converted arithmetically, while <code>TEXT</code> is formatted and parsed with
+ * the configured date string format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateBenchmark extends DatabaseBenchmark {
+    static final int ROWS = 1_000;
+    static final long START = 1_600_000_000_000L;
+
+    @Param({"INTEGER", "TEXT", "REAL"})
+    public String dateClass;
+
+    private PreparedStatement bind;
+    private PreparedStatement scan;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        SQLiteConfig config = newConfig();
+        config.setDateClass(dateClass);
+        open(config);
+        execute("create table t (ts)", "create table sink (ts)");
+        conn.setAutoCommit(false);
+        try (PreparedStatement insert = conn.prepareStatement("insert into t values (?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                insert.setTimestamp(1, new Timestamp(START + i * 61_001L));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+        bind = conn.prepareStatement("insert into sink values (?)");
+        scan = conn.prepareStatement("select ts from t");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        bind.close();
+        scan.close();
+        close();
+    }
+
+    /** Binds {@value #ROWS} timestamps; the reported time is per batch. */
+    @Benchmark
+    public int[] bindTimestamps() throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                bind.setTimestamp(1, new Timestamp(START + i * 61_001L));
+                bind.addBatch();
+            }
+            int[] counts = bind.executeBatch();
+            conn.rollback();
+            return counts;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /** Reads {@value #ROWS} timestamps; the reported time is per scan. */
+    @Benchmark
+    public void parseTimestamps(Blackhole bh) throws SQLException {
+        try (ResultSet rs = scan.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs.getTimestamp(1));
+            }
+        }
+    }
+}
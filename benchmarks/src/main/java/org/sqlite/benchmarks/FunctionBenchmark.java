@@ -0,0 +1,120 @@
+package org.sqlite.benchmarks;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.Function;
+
+/**
+ * Calls Java functions registered with {@link Function#create(java.sql.Connection, String,
+ * Function, int)} once per row of a table, to measure the cost of crossing from SQLite back into
+ * Java.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FunctionBenchmark extends DatabaseBenchmark {
+    static final int ROWS = 10_000;
+
+    private PreparedStatement scalarInt;
+    private PreparedStatement scalarText;
+    private PreparedStatement aggregate;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        open(newConfig());
+        execute(
+                "create table t (id integer primary key, name text)",
+                "with recursive n(x) as (select 1 union all select x + 1 from n where x < "
+                        + ROWS
+                        + ") insert into t select x, 'row ' || x from n");
+        Function.create(
+                conn,
+                "add_one",
+                new Function() {
+                    @Override
+                    protected void xFunc() throws SQLException {
+                        result(value_long(0) + 1);
+                    }
+                },
+                1,
+                Function.FLAG_DETERMINISTIC);
+        Function.create(
+                conn,
+                "upper_java",
+                new Function() {
+                    @Override
+                    protected void xFunc() throws SQLException {
+                        result(value_text(0).toUpperCase());
+                    }
+                },
+                1,
+                Function.FLAG_DETERMINISTIC);
+        Function.create(
+                conn,
+                "sum_java",
+                new Function.Aggregate() {
+                    private long sum;
+
+                    @Override
+                    protected void xStep() throws SQLException {
+                        sum += value_long(0);
+                    }
+
+                    @Override
+                    protected void xFinal() throws SQLException {
+                        result(sum);
+                    }
+                });
+        scalarInt = conn.prepareStatement("select sum(add_one(id)) from t");
+        scalarText = conn.prepareStatement("select count(upper_java(name)) from t");
+        aggregate = conn.prepareStatement("select sum_java(id) from t");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        scalarInt.close();
+        scalarText.close();
+        aggregate.close();
+        close();
+    }
+
+    private static long single(PreparedStatement prep) throws SQLException {
+        try (ResultSet rs = prep.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Benchmark
+    public long scalarInteger() throws SQLException {
+        return single(scalarInt);
+    }
+
+    @Benchmark
+    public long scalarText() throws SQLException {
+        return single(scalarText);
+    }
+
+    @Benchmark
+    public long aggregate() throws SQLException {
+        return single(aggregate);
+    }
+}
@@ -0,0 +1,51 @@
+package org.sqlite.benchmarks;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Fixture of the benchmarks which insert rows into a small table. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class InsertBenchmark extends DatabaseBenchmark {
+
+    PreparedStatement insert;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        open(newConfig());
+        execute("create table t (id integer primary key, name text, value real, data blob)");
+        insert = conn.prepareStatement("insert into t values (?, ?, ?, ?)");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        insert.close();
+        close();
+    }
+
+    void bindRow() throws SQLException {
+        long id = nextId++;
+        insert.setLong(1, id);
+        insert.setString(2, "row " + id);
+        insert.setDouble(3, id * 0.5);
+        insert.setBytes(4, new byte[] {(byte) id, (byte) (id >> 8), (byte) (id >> 16)});
+    }
+}
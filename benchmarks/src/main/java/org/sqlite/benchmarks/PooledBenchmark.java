@@ -0,0 +1,97 @@
+package org.sqlite.benchmarks;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.sql.PooledConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.javax.SQLiteConnectionPoolDataSource;
+
+/**
+ * Runs a small OLTP transaction, a point select and an update, through the handle of a pooled
+ * connection, and directly on a connection. The difference is the cost of the handle: borrowing
+ * and returning it, and delegating each call to the physical connection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PooledBenchmark extends DatabaseBenchmark {
+    static final int ROWS = 10_000;
+
+    private PooledConnection pooled;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        open(newConfig());
+        execute(
+                "create table account (id integer primary key, balance integer)",
+                "with recursive n(x) as (select 1 union all select x + 1 from n where x < "
+                        + ROWS
+                        + ") insert into account select x, 1000 from n");
+        SQLiteConnectionPoolDataSource ds = new SQLiteConnectionPoolDataSource(newConfig());
+        ds.setUrl("jdbc:sqlite:" + file.getAbsolutePath());
+        pooled = ds.getPooledConnection();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        pooled.close();
+        close();
+    }
+
+    @Benchmark
+    public long pooledTransaction() throws SQLException {
+        try (Connection handle = pooled.getConnection()) {
+            return transaction(handle);
+        }
+    }
+
+    @Benchmark
+    public long directTransaction() throws SQLException {
+        return transaction(conn);
+    }
+
+    private static long transaction(Connection c) throws SQLException {
+        int id = ThreadLocalRandom.current().nextInt(1, ROWS + 1);
+        c.setAutoCommit(false);
+        try {
+            long balance;
+            try (PreparedStatement select =
+                    c.prepareStatement("select balance from account where id = ?")) {
+                select.setInt(1, id);
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    balance = rs.getLong(1);
+                }
+            }
+            try (PreparedStatement update =
+                    c.prepareStatement("update account set balance = ? where id = ?")) {
+                update.setLong(1, balance + 1);
+                update.setInt(2, id);
+                update.executeUpdate();
+            }
+            c.commit();
+            return balance;
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.sqlite.benchmarks;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Scans a table of integers with {@link ResultSet#getInt(int)}, where the per-call cost of the
+ * driver dominates, under each way a connection can read its rows:
+ *
+ * <ul>
+ *   <li><code>default</code>: every call takes the lock of the connection;
+ *   <li><code>prefetch</code>: rows are stepped natively in chunks, see {@link
+ *       SQLiteConfig#setPrefetch(boolean)};
+ *   <li><code>thread_confined</code>: columns are read without locking, see {@link
+ *       SQLiteConfig#setThreadConfined(boolean)}.
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanModeBenchmark extends DatabaseBenchmark {
+    static final int ROWS = 100_000;
+    static final int COLUMNS = 8;
+
+    @Param({"default", "prefetch", "thread_confined"})
+    public String mode;
+
+    private PreparedStatement scan;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        SQLiteConfig config = newConfig();
+        config.setPrefetch("prefetch".equals(mode));
+        config.setThreadConfined("thread_confined".equals(mode));
+        open(config);
+        execute(
+                "create table t (a integer, b integer, c integer, d integer,"
+                        + " e integer, f integer, g integer, h integer)",
+                "with recursive n(x) as (select 1 union all select x + 1 from n where x < "
+                        + ROWS
+                        + ") insert into t select x, x + 1, x + 2, x + 3, x + 4, x + 5, x + 6,"
+                        + " x + 7 from n");
+        scan = conn.prepareStatement("select * from t");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        scan.close();
+        close();
+    }
+
+    @Benchmark
+    public long getIntScan() throws SQLException {
+        long sum = 0;
+        try (ResultSet rs = scan.executeQuery()) {
+            while (rs.next()) {
+                for (int col = 1; col <= COLUMNS; col++) {
+                    sum += rs.getInt(col);
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,126 @@
+package org.sqlite.benchmarks;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reads a single row by primary key, and scans every column of a wide table.
+ *
+ * <p>The wide table has {@value #WIDE_COLUMNS} columns of mixed types, read with the getter
+ * matching their type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectBenchmark extends DatabaseBenchmark {
+    static final int ROWS = 100_000;
+    static final int WIDE_ROWS = 10_000;
+    static final int WIDE_COLUMNS = 20;
+
+    private PreparedStatement point;
+    private PreparedStatement scan;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        open(newConfig());
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < WIDE_COLUMNS; i++) {
+            String sep = i == 0 ? "" : ", ";
+            switch (i % 4) {
+                case 0:
+                    columns.append(sep).append("i").append(i).append(" integer");
+                    values.append(sep).append("x * ").append(i);
+                    break;
+                case 1:
+                    columns.append(sep).append("r").append(i).append(" real");
+                    values.append(sep).append("x / ").append(i).append(".0");
+                    break;
+                case 2:
+                    columns.append(sep).append("t").append(i).append(" text");
+                    values.append(sep).append("'value ' || x");
+                    break;
+                default:
+                    columns.append(sep).append("b").append(i).append(" blob");
+                    values.append(sep).append("randomblob(16)");
+                    break;
+            }
+        }
+        execute(
+                "create table t (id integer primary key, name text, value real)",
+                "with recursive n(x) as (select 1 union all select x + 1 from n where x < "
+                        + ROWS
+                        + ") insert into t select x, 'row ' || x, x * 0.5 from n",
+                "create table wide (" + columns + ")",
+                "with recursive n(x) as (select 1 union all select x + 1 from n where x < "
+                        + WIDE_ROWS
+                        + ") insert into wide select "
+                        + values
+                        + " from n");
+        point = conn.prepareStatement("select name, value from t where id = ?");
+        scan = conn.prepareStatement("select * from wide");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        point.close();
+        scan.close();
+        close();
+    }
+
+    @Benchmark
+    public double pointSelect() throws SQLException {
+        point.setInt(1, ThreadLocalRandom.current().nextInt(1, ROWS + 1));
+        try (ResultSet rs = point.executeQuery()) {
+            rs.next();
+            return rs.getString(1).length() + rs.getDouble(2);
+        }
+    }
+
+    @Benchmark
+    public int wideScan(Blackhole bh) throws SQLException {
+        int rows = 0;
+        try (ResultSet rs = scan.executeQuery()) {
+            while (rs.next()) {
+                for (int col = 1; col <= WIDE_COLUMNS; col++) {
+                    switch ((col - 1) % 4) {
+                        case 0:
+                            bh.consume(rs.getLong(col));
+                            break;
+                        case 1:
+                            bh.consume(rs.getDouble(col));
+                            break;
+                        case 2:
+                            bh.consume(rs.getString(col));
+                            break;
+                        default:
+                            bh.consume(rs.getBytes(col));
+                            break;
+                    }
+                }
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
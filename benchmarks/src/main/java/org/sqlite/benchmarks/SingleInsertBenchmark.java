@@ -0,0 +1,14 @@
+package org.sqlite.benchmarks;
+
+import java.sql.SQLException;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/** Inserts one row per transaction. */
+public class SingleInsertBenchmark extends InsertBenchmark {
+
+    @Benchmark
+    public int singleInsert() throws SQLException {
+        bindRow();
+        return insert.executeUpdate();
+    }
+}
@@ -2,6 +2,7 @@ package org.sqlite;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import org.sqlite.metrics.SQLiteMetrics;
 
 /** https://www.sqlite.org/c3ref/busy_handler.html */
 public abstract class BusyHandler {
@@ -25,6 +26,10 @@ public abstract class BusyHandler {
         }
 
         SQLiteConnection sqliteConnection = (SQLiteConnection) conn;
+        SQLiteMetrics metrics = sqliteConnection.getDatabase().getMetrics();
+        if (busyHandler != null && metrics != null) {
+            busyHandler = new CountingBusyHandler(busyHandler, metrics);
+        }
         sqliteConnection.getDatabase().busy_handler(busyHandler);
     }
 
@@ -61,4 +66,21 @@ public abstract class BusyHandler {
      *     non-zero, then another attempt is made to access the database and the cycle repeats.
      */
     protected abstract int callback(int nbPrevInvok) throws SQLException;
+
+    /** Counts the calls to a busy handler in the metrics of its connection. */
+    private static final class CountingBusyHandler extends BusyHandler {
+        private final BusyHandler handler;
+        private final SQLiteMetrics metrics;
+
+        CountingBusyHandler(BusyHandler handler, SQLiteMetrics metrics) {
+            this.handler = handler;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected int callback(int nbPrevInvok) throws SQLException {
+            metrics.onBusyRetry();
+            return handler.callback(nbPrevInvok);
+        }
+    }
 }
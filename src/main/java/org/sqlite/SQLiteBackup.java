@@ -0,0 +1,258 @@
+package org.sqlite;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.sqlite.core.Codes;
+import org.sqlite.core.DB;
+import org.sqlite.core.NativeHandle;
+
+/**
+ * An online backup of a database to a file, or a restore from a file, copied a few pages at a time
+ * with {@link #step(int)}, or by {@link #run()} at a controlled pace. Opened with {@link
+ * SQLiteConnection#createBackup(String, String)} or {@link SQLiteConnection#createRestore(String,
+ * String)}; finished with its connection.
+ *
+ * <p>The lock of the source database is only held during each step, so that other connections can
+ * write between steps. The more pages per step, the faster the copy, and the longer writers may
+ * wait. If the source is written by another connection, the copy starts over at the next step; if
+ * it is written through the connection of the backup, the copy is updated in place.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/c3ref/backup_finish.html">https://www.sqlite.org/c3ref/backup_finish.html</a>
+ */
+public class SQLiteBackup implements AutoCloseable {
+    public static final int DEFAULT_PAGES_PER_STEP = 100;
+
+    /** A pause of {@link #setPause(long)}: go on with the next step at once. */
+    public static final long NO_PAUSE = -1;
+
+    /** A pause of {@link #setPause(long)}: let other threads run before the next step. */
+    public static final long YIELD = 0;
+
+    private static final int DEFAULT_BUSY_RETRIES = 3;
+    private static final long DEFAULT_BUSY_SLEEP_MILLIS = 100;
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private final DB db;
+    private final NativeHandle handle;
+
+    private int pagesPerStep = DEFAULT_PAGES_PER_STEP;
+    private long pause = NO_PAUSE;
+    private double rateLimit = 0;
+    private int busyRetries = DEFAULT_BUSY_RETRIES;
+    private long busySleepMillis = DEFAULT_BUSY_SLEEP_MILLIS;
+
+    /** The number of pages copied as of the last step. */
+    private int copiedPages;
+
+    private boolean done;
+
+    SQLiteBackup(DB db, NativeHandle handle) {
+        this.db = db;
+        this.handle = handle;
+    }
+
+    /** Must be called while holding the database lock, so that the backup stays open. */
+    private void ensureOpen() throws SQLException {
+        if (!handle.isOpen()) {
+            throw new SQLException("backup is finished");
+        }
+    }
+
+    /**
+     * @param pagesPerStep The number of pages copied by {@link #step()} and each step of {@link
+     *     #run()}, negative to copy all the pages in a single step.
+     */
+    public void setPagesPerStep(int pagesPerStep) throws SQLException {
+        if (pagesPerStep == 0) {
+            throw new SQLException("pages per step must not be 0");
+        }
+        this.pagesPerStep = pagesPerStep;
+    }
+
+    public int getPagesPerStep() {
+        return pagesPerStep;
+    }
+
+    /**
+     * @param millis The time {@link #run()} sleeps between steps; {@link #YIELD} to only yield to
+     *     other threads; {@link #NO_PAUSE} by default.
+     */
+    public void setPause(long millis) throws SQLException {
+        if (millis < NO_PAUSE) {
+            throw new SQLException("invalid pause: " + millis);
+        }
+        this.pause = millis;
+    }
+
+    public long getPause() {
+        return pause;
+    }
+
+    /**
+     * @param megabytesPerSecond The maximum rate of {@link #run()}, in megabytes of 2^20 bytes per
+     *     second; 0 for no limit. The rate is kept by pausing between steps, so that a limit far
+     *     lower than the size of a step makes for long pauses.
+     */
+    public void setRateLimit(double megabytesPerSecond) throws SQLException {
+        if (!(megabytesPerSecond >= 0)) {
+            throw new SQLException("invalid rate limit: " + megabytesPerSecond);
+        }
+        this.rateLimit = megabytesPerSecond;
+    }
+
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @param retries The number of times {@link #run()} retries a step which cannot lock the
+     *     databases, before failing.
+     * @param sleepMillis The time to wait before each retry.
+     */
+    public void setBusyRetries(int retries, long sleepMillis) throws SQLException {
+        if (retries < 0 || sleepMillis < 0) {
+            throw new SQLException("invalid busy retries: " + retries + ", " + sleepMillis);
+        }
+        this.busyRetries = retries;
+        this.busySleepMillis = sleepMillis;
+    }
+
+    /**
+     * Copies the pages of one step.
+     *
+     * @return true once all the pages are copied.
+     * @see #step(int)
+     */
+    public boolean step() throws SQLException {
+        return step(pagesPerStep);
+    }
+
+    /**
+     * Copies up to <code>nPages</code> pages.
+     *
+     * @param nPages The maximum number of pages to copy, negative for all.
+     * @return true once all the pages are copied; false if pages remain, or if the databases are
+     *     locked by other connections, in which case the step can be retried later.
+     * @throws SQLException on errors, after which the backup can only be finished.
+     */
+    public boolean step(int nPages) throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            int rc = db.backup_step(handle.pointer(), nPages);
+            done = rc == Codes.SQLITE_DONE;
+            return done;
+        }
+    }
+
+    /** @return The number of pages left to copy, as of the last step; 0 before the first step. */
+    public int remaining() throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            return db.backup_remaining(handle.pointer());
+        }
+    }
+
+    /** @return The number of pages of the source database, as of the last step. */
+    public int pageCount() throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            return db.backup_pagecount(handle.pointer());
+        }
+    }
+
+    /** @return true once all the pages are copied. */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Copies the remaining pages in steps of {@link #getPagesPerStep()} pages, pausing between
+     * steps as configured by {@link #setPause(long)} and {@link #setRateLimit(double)}.
+     *
+     * @throws SQLException on errors, if the databases stay locked after the configured retries, or
+     *     if the thread is interrupted.
+     */
+    public void run() throws SQLException {
+        long start = System.nanoTime();
+        long copiedBytes = 0;
+        int busy = 0;
+        copiedPages = 0;
+        while (true) {
+            int rc;
+            synchronized (db) {
+                ensureOpen();
+                rc = db.backup_step(handle.pointer(), pagesPerStep);
+                if (rc != Codes.SQLITE_BUSY && rc != Codes.SQLITE_LOCKED) {
+                    copiedBytes += (long) copied() * db.backup_pagesize(handle.pointer());
+                }
+            }
+            if (rc == Codes.SQLITE_BUSY || rc == Codes.SQLITE_LOCKED) {
+                if (busy++ >= busyRetries) {
+                    throw DB.newSQLException(rc, "backup failed: database is locked");
+                }
+                sleep(busySleepMillis);
+                continue;
+            }
+            busy = 0;
+            if (rc == Codes.SQLITE_DONE) {
+                done = true;
+                return;
+            }
+            pause(start, copiedBytes);
+        }
+    }
+
+    /**
+     * @return The number of pages copied by the last step; called while holding the database lock.
+     */
+    private int copied() {
+        int total = db.backup_pagecount(handle.pointer()) - db.backup_remaining(handle.pointer());
+        // the copy starts over when the source is written by another connection
+        int copied = total >= copiedPages ? total - copiedPages : total;
+        copiedPages = total;
+        return copied;
+    }
+
+    private void pause(long start, long copiedBytes) throws SQLException {
+        long millis = pause;
+        if (rateLimit > 0) {
+            long expectedNanos = (long) (copiedBytes / (rateLimit * BYTES_PER_MEGABYTE) * 1e9);
+            long aheadMillis =
+                    TimeUnit.NANOSECONDS.toMillis(expectedNanos - (System.nanoTime() - start));
+            millis = Math.max(millis, aheadMillis);
+        }
+        if (millis > 0) {
+            sleep(millis);
+        } else if (millis == YIELD) {
+            Thread.yield();
+        }
+    }
+
+    private static void sleep(long millis) throws SQLException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("backup interrupted", e);
+        }
+    }
+
+    /**
+     * Releases the backup and closes the file. Finishing a backup twice has no effect.
+     *
+     * @throws SQLException if a step failed.
+     */
+    public void finish() throws SQLException {
+        int rc = db.finishBackup(handle);
+        if (rc != Codes.SQLITE_OK) {
+            throw DB.newSQLException(rc, "backup failed");
+        }
+    }
+
+    /** @see #finish() */
+    @Override
+    public void close() throws SQLException {
+        finish();
+    }
+}
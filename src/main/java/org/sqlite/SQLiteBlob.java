@@ -0,0 +1,286 @@
+package org.sqlite;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.sql.SQLException;
+import org.sqlite.core.DB;
+
+/**
+ * A handle on a single blob for incremental I/O, opened with {@link
+ * SQLiteConnection#openBlob(String, String, String, long, boolean)}. The blob is read and written
+ * in place, so that memory use does not depend on its size.
+ *
+ * <p>A blob cannot change size: writes past its end fail. To store a large value, insert a
+ * placeholder with <code>zeroblob(n)</code> or {@link
+ * org.sqlite.jdbc3.JDBC3PreparedStatement#setZeroBlob(int, long)}, then fill it through this
+ * handle. If the row is modified or deleted by another statement, the handle expires and further
+ * reads and writes fail.
+ *
+ * <p>The streams returned by {@link #getInputStream()} and {@link #getOutputStream()} share the
+ * position of this channel.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/c3ref/blob_open.html">https://www.sqlite.org/c3ref/blob_open.html</a>
+ */
+public class SQLiteBlob implements SeekableByteChannel {
+    private static final int TRANSFER_CHUNK = 64 * 1024;
+
+    private final DB db;
+    private final long handle;
+    private final boolean writable;
+
+    private int size;
+    private long position;
+    private boolean closed;
+
+    SQLiteBlob(DB db, long handle, boolean writable) throws SQLException {
+        this.db = db;
+        this.handle = handle;
+        this.writable = writable;
+        this.size = db.blob_bytes(handle);
+    }
+
+    /**
+     * Moves this handle to the same column of another row, and rewinds it. This is faster than
+     * opening a new handle.
+     *
+     * @param rowid The rowid of the row.
+     * @throws SQLException if the handle is closed or the row does not exist.
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/blob_reopen.html">https://www.sqlite.org/c3ref/blob_reopen.html</a>
+     */
+    public synchronized void reopen(long rowid) throws SQLException {
+        if (!isOpen()) {
+            throw new SQLException("blob is closed");
+        }
+        db.blob_reopen(handle, rowid);
+        size = db.blob_bytes(handle);
+        position = 0;
+    }
+
+    /** @return true if the blob was opened for writing. */
+    public boolean isWritable() {
+        return writable;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        int n = (int) Math.min(dst.remaining(), size - position);
+        if (dst.hasArray()) {
+            read(dst.array(), dst.arrayOffset() + dst.position(), n);
+            dst.position(dst.position() + n);
+        } else {
+            byte[] chunk = new byte[Math.min(n, TRANSFER_CHUNK)];
+            for (int done = 0; done < n; ) {
+                int len = Math.min(chunk.length, n - done);
+                read(chunk, 0, len);
+                dst.put(chunk, 0, len);
+                done += len;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        ensureOpen();
+        ensureWritable(src.remaining());
+        int n = src.remaining();
+        if (src.hasArray()) {
+            write(src.array(), src.arrayOffset() + src.position(), n);
+            src.position(src.position() + n);
+        } else {
+            byte[] chunk = new byte[Math.min(n, TRANSFER_CHUNK)];
+            for (int done = 0; done < n; ) {
+                int len = Math.min(chunk.length, n - done);
+                src.get(chunk, 0, len);
+                write(chunk, 0, len);
+                done += len;
+            }
+        }
+        return n;
+    }
+
+    private void read(byte[] b, int off, int len) throws IOException {
+        try {
+            db.blob_read(handle, (int) position, b, off, len);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        position += len;
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        try {
+            db.blob_write(handle, (int) position, b, off, len);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        position += len;
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    /**
+     * Blobs cannot change size.
+     *
+     * @throws IOException if the given size is smaller than the size of the blob.
+     */
+    @Override
+    public synchronized SeekableByteChannel truncate(long newSize) throws IOException {
+        ensureOpen();
+        if (newSize < size) {
+            throw new IOException("the size of a blob cannot be changed");
+        }
+        if (position > newSize) {
+            position = newSize;
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return !closed && !db.isClosed();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            db.closeBlob(handle);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /** @return A stream reading the blob from the current position of this channel. */
+    public InputStream getInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                synchronized (SQLiteBlob.this) {
+                    ensureOpen();
+                    if (off < 0 || len < 0 || len > b.length - off) {
+                        throw new IndexOutOfBoundsException();
+                    }
+                    if (len == 0) {
+                        return 0;
+                    }
+                    if (position >= size) {
+                        return -1;
+                    }
+                    int n = (int) Math.min(len, size - position);
+                    SQLiteBlob.this.read(b, off, n);
+                    return n;
+                }
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                synchronized (SQLiteBlob.this) {
+                    ensureOpen();
+                    long skipped = Math.max(0, Math.min(n, size - position));
+                    position += skipped;
+                    return skipped;
+                }
+            }
+
+            @Override
+            public int available() throws IOException {
+                synchronized (SQLiteBlob.this) {
+                    ensureOpen();
+                    return (int) Math.max(0, size - position);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                SQLiteBlob.this.close();
+            }
+        };
+    }
+
+    /** @return A stream writing the blob from the current position of this channel. */
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                synchronized (SQLiteBlob.this) {
+                    ensureOpen();
+                    if (off < 0 || len < 0 || len > b.length - off) {
+                        throw new IndexOutOfBoundsException();
+                    }
+                    ensureWritable(len);
+                    SQLiteBlob.this.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                SQLiteBlob.this.close();
+            }
+        };
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void ensureWritable(int len) throws IOException {
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+        if (position + len > size) {
+            throw new IOException(
+                    "cannot write past the end of the blob: size is "
+                            + size
+                            + ", write ends at "
+                            + (position + len));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.sqlite;
+
+import java.sql.SQLException;
+import org.sqlite.core.DB;
+
+/**
+ * A change of a changeset, as reported to a {@link SQLiteConflictHandler}. The column values are
+ * only read when asked for, and only while the handler runs.
+ */
+public final class SQLiteChange {
+    private final DB db;
+    private final long iterator;
+    private final String table;
+    private final SQLiteUpdateListener.Type type;
+    private final int columnCount;
+    private final boolean indirect;
+
+    SQLiteChange(
+            DB db,
+            long iterator,
+            String table,
+            SQLiteUpdateListener.Type type,
+            int columnCount,
+            boolean indirect) {
+        this.db = db;
+        this.iterator = iterator;
+        this.table = table;
+        this.type = type;
+        this.columnCount = columnCount;
+        this.indirect = indirect;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public SQLiteUpdateListener.Type getType() {
+        return type;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /** @return true if the change was recorded while the session was indirect. */
+    public boolean isIndirect() {
+        return indirect;
+    }
+
+    /**
+     * @param column The 0-based column index.
+     * @return The value of the column before an UPDATE or DELETE; null if the column is not part of
+     *     the change, as for the unchanged columns of a patchset.
+     * @throws SQLException for an INSERT.
+     */
+    public Object getOldValue(int column) throws SQLException {
+        return db.changesetValue(iterator, DB.CHANGESET_OLD, column);
+    }
+
+    /**
+     * @param column The 0-based column index.
+     * @return The value of the column after an INSERT or UPDATE; null if the column is not changed
+     *     by an UPDATE.
+     * @throws SQLException for a DELETE.
+     */
+    public Object getNewValue(int column) throws SQLException {
+        return db.changesetValue(iterator, DB.CHANGESET_NEW, column);
+    }
+
+    /**
+     * @param column The 0-based column index.
+     * @return The value of the column in the conflicting row of the database.
+     * @throws SQLException if the conflict is not of type {@link SQLiteConflictHandler.Type#DATA}
+     *     or {@link SQLiteConflictHandler.Type#CONFLICT}.
+     */
+    public Object getConflictingValue(int column) throws SQLException {
+        return db.changesetValue(iterator, DB.CHANGESET_CONFLICT, column);
+    }
+
+    @Override
+    public String toString() {
+        return "SQLiteChange[" + type + " " + table + "]";
+    }
+}
@@ -0,0 +1,28 @@
+package org.sqlite;
+
+/**
+ * The modes of {@link SQLiteConnection#checkpoint(String, SQLiteCheckpointMode)}.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/c3ref/wal_checkpoint_v2.html">https://www.sqlite.org/c3ref/wal_checkpoint_v2.html</a>
+ */
+public enum SQLiteCheckpointMode {
+    /** Checkpoints as many frames as possible without waiting for readers or writers. */
+    PASSIVE(0),
+    /** Waits for writers, then checkpoints all the frames, waiting for readers as needed. */
+    FULL(1),
+    /** Like FULL, then waits for readers so that the next writer restarts the log. */
+    RESTART(2),
+    /** Like RESTART, then truncates the log file to zero bytes. */
+    TRUNCATE(3);
+
+    private final int id;
+
+    private SQLiteCheckpointMode(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,46 @@
+package org.sqlite;
+
+/**
+ * The outcome of {@link SQLiteConnection#checkpoint(String, SQLiteCheckpointMode)}, the same values
+ * as returned by <code>PRAGMA wal_checkpoint</code>.
+ */
+public final class SQLiteCheckpointResult {
+    private final boolean busy;
+    private final int logFrames;
+    private final int checkpointedFrames;
+
+    public SQLiteCheckpointResult(boolean busy, int logFrames, int checkpointedFrames) {
+        this.busy = busy;
+        this.logFrames = logFrames;
+        this.checkpointedFrames = checkpointedFrames;
+    }
+
+    /**
+     * @return true if the checkpoint could not complete, because of another connection or because
+     *     the busy handler gave up waiting for readers or writers.
+     */
+    public boolean isBusy() {
+        return busy;
+    }
+
+    /** @return The number of frames in the write-ahead log, -1 if the database is not in WAL. */
+    public int getLogFrames() {
+        return logFrames;
+    }
+
+    /** @return The number of frames copied into the database, -1 if not in WAL mode. */
+    public int getCheckpointedFrames() {
+        return checkpointedFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "SQLiteCheckpointResult[busy="
+                + busy
+                + ", logFrames="
+                + logFrames
+                + ", checkpointedFrames="
+                + checkpointedFrames
+                + "]";
+    }
+}
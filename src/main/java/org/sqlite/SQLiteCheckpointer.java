@@ -0,0 +1,215 @@
+package org.sqlite;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sqlite.util.Logger;
+import org.sqlite.util.LoggerFactory;
+
+/**
+ * Checkpoints the write-ahead log of a database on a dedicated thread, so that committing threads
+ * do not pay for the auto-checkpoint. The connections it is registered with report the size of the
+ * log after each commit; once it reaches a threshold, the thread runs a checkpoint on its own
+ * connection, in a mode which depends on how large the log has grown:
+ *
+ * <ul>
+ *   <li>PASSIVE from <code>passiveFrames</code>, which never waits for readers or writers;
+ *   <li>RESTART from <code>restartFrames</code>, which waits for readers so that the log is written
+ *       again from its start;
+ *   <li>TRUNCATE from <code>truncateFrames</code>, which also truncates the log file.
+ * </ul>
+ *
+ * Attached databases are checkpointed in PASSIVE mode by the committing connection, like the
+ * auto-checkpoint would do, since the connection of the checkpointer does not attach them. So is
+ * the main database once the checkpointer is closed.
+ *
+ * @see SQLiteDataSource#setBackgroundCheckpoint(int, int, int)
+ */
+public final class SQLiteCheckpointer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SQLiteCheckpointer.class);
+
+    /** The default auto-checkpoint threshold of SQLite. */
+    public static final int DEFAULT_PASSIVE_FRAMES = 1000;
+
+    public static final int DEFAULT_RESTART_FRAMES = 10_000;
+    public static final int DEFAULT_TRUNCATE_FRAMES = 100_000;
+
+    interface ConnectionFactory {
+        SQLiteConnection open() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int passiveFrames;
+    private final int restartFrames;
+    private final int truncateFrames;
+    private final Thread thread;
+    private final AtomicLong checkpoints = new AtomicLong();
+
+    /** Latest size of the log of each database waiting for a checkpoint; guarded by this. */
+    private final Map<String, Integer> pending = new HashMap<>();
+
+    private boolean closed;
+
+    /** The connection of the checkpointer thread, opened on first use. */
+    private SQLiteConnection conn;
+
+    /**
+     * @param factory Opens the connection used to checkpoint.
+     * @param passiveFrames The size of the log, in frames, from which to checkpoint.
+     * @param restartFrames The size from which to checkpoint in RESTART mode, 0 to never use it.
+     * @param truncateFrames The size from which to checkpoint in TRUNCATE mode, 0 to never use it.
+     */
+    SQLiteCheckpointer(
+            ConnectionFactory factory, int passiveFrames, int restartFrames, int truncateFrames) {
+        if (passiveFrames <= 0 || restartFrames < 0 || truncateFrames < 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "invalid checkpoint thresholds: %d, %d, %d",
+                            passiveFrames, restartFrames, truncateFrames));
+        }
+        this.factory = factory;
+        this.passiveFrames = passiveFrames;
+        this.restartFrames = restartFrames;
+        this.truncateFrames = truncateFrames;
+        this.thread = new Thread(this::run, "sqlite-jdbc-checkpointer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Disables the auto-checkpoint of a connection and reports its commits to this checkpointer.
+     *
+     * @param connection A connection to the database of this checkpointer.
+     */
+    public void register(SQLiteConnection connection) throws SQLException {
+        connection.addWalListener(
+                (database, frames) -> {
+                    if (frames < passiveFrames) {
+                        return;
+                    }
+                    if (!"main".equals(database) || !request(database, frames)) {
+                        checkpointInline(connection, database);
+                    }
+                });
+    }
+
+    private synchronized boolean request(String database, int frames) {
+        if (closed) {
+            return false;
+        }
+        pending.put(database, frames);
+        notifyAll();
+        return true;
+    }
+
+    private static void checkpointInline(SQLiteConnection connection, String database) {
+        try {
+            connection.checkpoint(database, SQLiteCheckpointMode.PASSIVE);
+        } catch (SQLException e) {
+            logger.warn(() -> "Checkpoint of " + database + " failed: " + e);
+        }
+    }
+
+    /**
+     * @param frames The size of the log.
+     * @return The checkpoint mode for a log of this size.
+     */
+    SQLiteCheckpointMode modeFor(int frames) {
+        if (truncateFrames > 0 && frames >= truncateFrames) {
+            return SQLiteCheckpointMode.TRUNCATE;
+        }
+        if (restartFrames > 0 && frames >= restartFrames) {
+            return SQLiteCheckpointMode.RESTART;
+        }
+        return SQLiteCheckpointMode.PASSIVE;
+    }
+
+    /** @return The number of checkpoints run by the checkpointer thread. */
+    public long getCheckpointCount() {
+        return checkpoints.get();
+    }
+
+    public int getPassiveFrames() {
+        return passiveFrames;
+    }
+
+    public int getRestartFrames() {
+        return restartFrames;
+    }
+
+    public int getTruncateFrames() {
+        return truncateFrames;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Map<String, Integer> work;
+                synchronized (this) {
+                    while (!closed && pending.isEmpty()) {
+                        wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    work = new HashMap<>(pending);
+                    pending.clear();
+                }
+                for (Map.Entry<String, Integer> entry : work.entrySet()) {
+                    checkpoint(entry.getKey(), modeFor(entry.getValue()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeConnection();
+        }
+    }
+
+    private void checkpoint(String database, SQLiteCheckpointMode mode) {
+        try {
+            if (conn == null) {
+                conn = factory.open();
+            }
+            SQLiteCheckpointResult result = conn.checkpoint(database, mode);
+            checkpoints.incrementAndGet();
+            logger.trace(() -> mode + " checkpoint of " + database + ": " + result);
+        } catch (SQLException e) {
+            logger.warn(() -> mode + " checkpoint of " + database + " failed: " + e);
+            // open a new connection for the next attempt
+            closeConnection();
+        }
+    }
+
+    private void closeConnection() {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                logger.warn(() -> "Failed to close the checkpointer connection: " + e);
+            }
+            conn = null;
+        }
+    }
+
+    /**
+     * Stops the checkpointer thread, after the checkpoint it may be running, and closes its
+     * connection. The registered connections then checkpoint inline, in PASSIVE mode.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            pending.clear();
+            notifyAll();
+        }
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
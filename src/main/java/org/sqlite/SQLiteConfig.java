@@ -52,6 +52,9 @@ public class SQLiteConfig {
     private int openModeFlag = 0x00;
 
     private boolean explicitReadOnly;
+    private boolean threadConfined;
+    private int statementCacheSize;
+    private String metricsName;
 
     private final SQLiteConnectionConfig defaultConnectionConfig;
 
@@ -93,6 +96,13 @@ public class SQLiteConfig {
         this.explicitReadOnly =
                 Boolean.parseBoolean(
                         pragmaTable.getProperty(Pragma.JDBC_EXPLICIT_READONLY.pragmaName, "false"));
+        this.threadConfined =
+                Boolean.parseBoolean(
+                        pragmaTable.getProperty(Pragma.JDBC_THREAD_CONFINED.pragmaName, "false"));
+        this.statementCacheSize =
+                Integer.parseInt(
+                        pragmaTable.getProperty(Pragma.JDBC_STATEMENT_CACHE_SIZE.pragmaName, "0"));
+        this.metricsName = pragmaTable.getProperty(Pragma.JDBC_METRICS_NAME.pragmaName);
     }
 
     public SQLiteConnectionConfig newConnectionConfig() {
@@ -190,6 +200,10 @@ public class SQLiteConfig {
         // exclude this "fake" pragma from execution
         pragmaParams.remove(Pragma.JDBC_EXPLICIT_READONLY.pragmaName);
         pragmaParams.remove(Pragma.JDBC_GET_GENERATED_KEYS.pragmaName);
+        pragmaParams.remove(Pragma.JDBC_PREFETCH.pragmaName);
+        pragmaParams.remove(Pragma.JDBC_THREAD_CONFINED.pragmaName);
+        pragmaParams.remove(Pragma.JDBC_STATEMENT_CACHE_SIZE.pragmaName);
+        pragmaParams.remove(Pragma.JDBC_METRICS_NAME.pragmaName);
 
         setupConnection(conn, pragmaParams, pragmaTable);
         try (Statement stat = conn.createStatement()) {
@@ -373,6 +387,17 @@ public class SQLiteConfig {
         pragmaTable.setProperty(
                 Pragma.JDBC_GET_GENERATED_KEYS.pragmaName,
                 defaultConnectionConfig.isGetGeneratedKeys() ? "true" : "false");
+        pragmaTable.setProperty(
+                Pragma.JDBC_PREFETCH.pragmaName,
+                defaultConnectionConfig.isPrefetch() ? "true" : "false");
+        pragmaTable.setProperty(
+                Pragma.JDBC_THREAD_CONFINED.pragmaName, this.threadConfined ? "true" : "false");
+        pragmaTable.setProperty(
+                Pragma.JDBC_STATEMENT_CACHE_SIZE.pragmaName,
+                Integer.toString(this.statementCacheSize));
+        if (this.metricsName != null) {
+            pragmaTable.setProperty(Pragma.JDBC_METRICS_NAME.pragmaName, this.metricsName);
+        }
         return pragmaTable;
     }
 
@@ -410,6 +435,57 @@ public class SQLiteConfig {
         this.explicitReadOnly = readOnly;
     }
 
+    /** @return true if connections are confined to the thread that uses them */
+    public boolean isThreadConfined() {
+        return this.threadConfined;
+    }
+
+    /**
+     * Confines connections to the thread that opened them. Statements and result sets then check
+     * once, when they are executed or advanced, that they are used from that thread, and read
+     * column values through native calls which do not lock the connection. Ownership can be handed
+     * to another thread with {@link org.sqlite.core.DB#confineTo(Thread)}, as connection pools do
+     * when a connection is borrowed.
+     *
+     * @param threadConfined whether to confine connections to a single thread
+     */
+    public void setThreadConfined(boolean threadConfined) {
+        this.threadConfined = threadConfined;
+    }
+
+    /** @return the number of closed prepared statements kept for reuse by each connection */
+    public int getStatementCacheSize() {
+        return this.statementCacheSize;
+    }
+
+    /**
+     * Sets the size of the per-connection prepared statement cache. When a prepared statement is
+     * closed, its compiled statement is kept by the connection and reused by the next prepare of
+     * the same SQL. The least recently used statement is finalized when the cache is full.
+     *
+     * @param size the maximum number of cached statements, 0 to disable the cache
+     * @see org.sqlite.core.StatementCache
+     */
+    public void setStatementCacheSize(int size) {
+        this.statementCacheSize = size;
+    }
+
+    /** @return the name under which connections record metrics, or null if they record none */
+    public String getMetricsName() {
+        return this.metricsName;
+    }
+
+    /**
+     * Enables metrics for connections, such as statement execution times, rows read, commits and
+     * pool usage. Connections configured with the same name add to the same counters.
+     *
+     * @param name the metrics name, or null to disable metrics
+     * @see org.sqlite.metrics.SQLiteMetrics
+     */
+    public void setMetricsName(String name) {
+        this.metricsName = name;
+    }
+
     public enum Pragma {
 
         // Parameters requiring SQLite3 API invocation
@@ -591,6 +667,22 @@ public class SQLiteConfig {
                 "jdbc.explicit_readonly", "Set explicit read only transactions", null),
         JDBC_GET_GENERATED_KEYS(
                 "jdbc.get_generated_keys", "Enable retrieval of generated keys", OnOff.Values),
+        JDBC_PREFETCH(
+                "jdbc.prefetch",
+                "Step result rows natively in blocks of the fetch size and read them from a buffer",
+                OnOff.Values),
+        JDBC_THREAD_CONFINED(
+                "jdbc.thread_confined",
+                "Confine the connection to one thread at a time and read results without locking",
+                OnOff.Values),
+        JDBC_STATEMENT_CACHE_SIZE(
+                "jdbc.statement_cache_size",
+                "Number of closed prepared statements kept for reuse by the connection, 0 to disable",
+                null),
+        JDBC_METRICS_NAME(
+                "jdbc.metrics_name",
+                "Name of the metrics the connection records, unset to disable metrics",
+                null),
 
         // New pragmas for SQLiteMC improved support
         KEY("key", "Specify at least the encryption key", null),
@@ -1362,4 +1454,20 @@ public class SQLiteConfig {
     public void setGetGeneratedKeys(boolean generatedKeys) {
         this.defaultConnectionConfig.setGetGeneratedKeys(generatedKeys);
     }
+
+    public boolean isPrefetch() {
+        return this.defaultConnectionConfig.isPrefetch();
+    }
+
+    /**
+     * Enables prefetching of result rows. Result sets then step the statement natively for as many
+     * rows as their fetch size and decode the values from a buffer, instead of making a native call
+     * for every row and column.
+     *
+     * @param prefetch true to prefetch result rows
+     * @see java.sql.Statement#setFetchSize(int)
+     */
+    public void setPrefetch(boolean prefetch) {
+        this.defaultConnectionConfig.setPrefetch(prefetch);
+    }
 }
@@ -0,0 +1,83 @@
+package org.sqlite;
+
+import java.sql.SQLException;
+
+/**
+ * Decides what to do with the changes which conflict with the content of a database when applying a
+ * changeset with {@link SQLiteConnection#applyChangeset(byte[], SQLiteConflictHandler)}.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/session/sqlite3changeset_apply.html">https://www.sqlite.org/session/sqlite3changeset_apply.html</a>
+ */
+public interface SQLiteConflictHandler {
+
+    /** The kinds of conflict, see https://www.sqlite.org/session/c_changeset_conflict.html */
+    enum Type {
+        /** The row to update or delete exists, but with other values than expected. */
+        DATA(1),
+        /** The row to update or delete does not exist. */
+        NOT_FOUND(2),
+        /** The row to insert has the primary key of an existing row. */
+        CONFLICT(3),
+        /** The change violates a constraint other than the primary key. */
+        CONSTRAINT(4),
+        /** The changeset, once applied, leaves foreign key violations; reported once. */
+        FOREIGN_KEY(5);
+
+        private final int id;
+
+        private Type(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public static Type fromId(int id) {
+            for (Type type : values()) {
+                if (type.id == id) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown conflict type: " + id);
+        }
+    }
+
+    /** The outcomes of a conflict, see https://www.sqlite.org/session/c_changeset_abort.html */
+    enum Resolution {
+        /** Skip the change. */
+        OMIT(0),
+        /** Apply the change anyway; only for {@link Type#DATA} and {@link Type#CONFLICT}. */
+        REPLACE(1),
+        /** Roll back all the changes applied so far and fail. */
+        ABORT(2);
+
+        private final int id;
+
+        private Resolution(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+
+    /**
+     * @param table The name of a table with changes in the changeset.
+     * @return false to skip the changes of the table.
+     */
+    default boolean include(String table) {
+        return true;
+    }
+
+    /**
+     * @param type The kind of conflict.
+     * @param change The conflicting change, only valid during this call; null for {@link
+     *     Type#FOREIGN_KEY}.
+     * @return What to do with the change.
+     * @throws SQLException to abort, the exception is then rethrown by the apply call.
+     */
+    Resolution onConflict(Type type, SQLiteChange change) throws SQLException;
+}
@@ -2,8 +2,12 @@ package org.sqlite;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Properties;
@@ -15,10 +19,13 @@ import org.sqlite.core.CoreDatabaseMetaData;
 import org.sqlite.core.DB;
 import org.sqlite.core.NativeDB;
 import org.sqlite.jdbc4.JDBC4DatabaseMetaData;
+import org.sqlite.jdbc4.JDBC4PreparedStatement;
 
 /** */
 public abstract class SQLiteConnection implements Connection {
     private static final String RESOURCE_NAME_PREFIX = ":resource:";
+    private static final int DEFAULT_TRACE_THRESHOLD = 256;
+    private static final long DEFAULT_TRACE_INTERVAL_MILLIS = 1000;
     private final DB db;
     private CoreDatabaseMetaData meta = null;
     private final SQLiteConnectionConfig connectionConfig;
@@ -377,6 +384,169 @@ public abstract class SQLiteConnection implements Connection {
         db.busy_timeout(timeoutMillis);
     }
 
+    /**
+     * Creates a prepared statement compiled with <code>sqlite3_prepare_v3</code> flags. Statements
+     * which are kept for a long time, for example by a pool, should be marked {@link
+     * org.sqlite.core.Codes#SQLITE_PREPARE_PERSISTENT} so that they do not use the lookaside memory
+     * meant for short-lived statements.
+     *
+     * @param sql The SQL statement.
+     * @param prepFlags A combination of {@link org.sqlite.core.Codes#SQLITE_PREPARE_PERSISTENT} and
+     *     {@link org.sqlite.core.Codes#SQLITE_PREPARE_NO_VTAB}, or 0.
+     * @return The prepared statement.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/c_prepare_normalize.html">https://www.sqlite.org/c3ref/c_prepare_normalize.html</a>
+     */
+    public PreparedStatement prepareStatementWithFlags(String sql, int prepFlags)
+            throws SQLException {
+        checkOpen();
+        return new JDBC4PreparedStatement(this, sql, prepFlags);
+    }
+
+    /**
+     * Opens a blob of the main database for incremental I/O.
+     *
+     * @param table The table name.
+     * @param column The column name.
+     * @param rowid The rowid of the row holding the blob.
+     * @param writable true to open the blob for reading and writing.
+     * @return The blob handle, to be closed after use.
+     * @throws SQLException if the row, column or table does not exist, or the value is not a blob
+     *     or text.
+     * @see #openBlob(String, String, String, long, boolean)
+     */
+    public SQLiteBlob openBlob(String table, String column, long rowid, boolean writable)
+            throws SQLException {
+        return openBlob("main", table, column, rowid, writable);
+    }
+
+    /**
+     * Opens a blob for incremental I/O. The blob is read and written in place, without
+     * materializing it in memory.
+     *
+     * @param schema The schema of the table, "main", "temp" or the name of an attached database.
+     * @param table The table name.
+     * @param column The column name.
+     * @param rowid The rowid of the row holding the blob.
+     * @param writable true to open the blob for reading and writing.
+     * @return The blob handle, to be closed after use.
+     * @throws SQLException if the row, column or table does not exist, or the value is not a blob
+     *     or text.
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/blob_open.html">https://www.sqlite.org/c3ref/blob_open.html</a>
+     */
+    public SQLiteBlob openBlob(
+            String schema, String table, String column, long rowid, boolean writable)
+            throws SQLException {
+        checkOpen();
+        long handle = db.openBlob(schema, table, column, rowid, writable);
+        try {
+            return new SQLiteBlob(db, handle, writable);
+        } catch (SQLException e) {
+            db.closeBlob(handle);
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an online backup of a database to a file, to be copied by steps. Unlike the <code>
+     * backup</code> command, which copies the whole database at once, the backup lets other
+     * connections write between steps. The backup is finished with the connection.
+     *
+     * @param schema The database to back up, "main" or the name of an attached database.
+     * @param destFileName The file to back up to, overwritten.
+     * @return The backup, to be run and finished.
+     * @see SQLiteBackup
+     */
+    public SQLiteBackup createBackup(String schema, String destFileName) throws SQLException {
+        checkOpen();
+        return new SQLiteBackup(db, db.openBackup(schema, destFileName, false));
+    }
+
+    /**
+     * Opens a restore of a database from a file, to be copied by steps. The database must not be
+     * used through this connection until the restore is finished.
+     *
+     * @param schema The database to overwrite, "main" or the name of an attached database.
+     * @param sourceFileName The file to restore from.
+     * @return The restore, to be run and finished.
+     * @see SQLiteBackup
+     */
+    public SQLiteBackup createRestore(String schema, String sourceFileName) throws SQLException {
+        checkOpen();
+        return new SQLiteBackup(db, db.openBackup(schema, sourceFileName, true));
+    }
+
+    /**
+     * Starts recording the changes made to the main database through this connection.
+     *
+     * @return The session, to be closed after use; no table is recorded until attached.
+     * @see #createSession(String)
+     */
+    public SQLiteSession createSession() throws SQLException {
+        return createSession("main");
+    }
+
+    /**
+     * Starts recording the changes made to a database through this connection, to produce
+     * changesets. The session is closed with the connection.
+     *
+     * @param schema The database to record, "main" or the name of an attached database.
+     * @return The session, to be closed after use; no table is recorded until attached.
+     * @throws SQLException if preupdate listeners are registered, since sessions use the same hook.
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3session_create.html">https://www.sqlite.org/session/sqlite3session_create.html</a>
+     */
+    public SQLiteSession createSession(String schema) throws SQLException {
+        checkOpen();
+        return new SQLiteSession(db, db.openSession(schema));
+    }
+
+    /**
+     * Applies a changeset or patchset produced by a {@link SQLiteSession}, in a single transaction,
+     * or in the current one if any.
+     *
+     * @param changeset The changes to apply.
+     * @param handler The handler of the conflicting changes and filter of the tables, or null to
+     *     abort on the first conflict.
+     * @throws SQLException if the changeset is aborted, or the exception thrown by the handler.
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3changeset_apply.html">https://www.sqlite.org/session/sqlite3changeset_apply.html</a>
+     */
+    public void applyChangeset(byte[] changeset, SQLiteConflictHandler handler)
+            throws SQLException {
+        checkOpen();
+        db.applyChangeset(changeset, handler != null ? changesetHandler(handler) : null);
+    }
+
+    /** @return The handler passing the changes of the conflicts to <code>handler</code>. */
+    private DB.ChangesetHandler changesetHandler(SQLiteConflictHandler handler) {
+        return new DB.ChangesetHandler() {
+            @Override
+            public boolean include(String table) {
+                return handler.include(table);
+            }
+
+            @Override
+            public SQLiteConflictHandler.Resolution onConflict(
+                    SQLiteConflictHandler.Type type,
+                    long iter,
+                    String table,
+                    SQLiteUpdateListener.Type op,
+                    int columnCount,
+                    boolean indirect)
+                    throws SQLException {
+                // a foreign key conflict is about the whole changeset, not a change
+                SQLiteChange change =
+                        iter != 0
+                                ? new SQLiteChange(db, iter, table, op, columnCount, indirect)
+                                : null;
+                return handler.onConflict(type, change);
+            }
+        };
+    }
+
     public void setLimit(SQLiteLimits limit, int value) throws SQLException {
         // Calling sqlite3_limit with a negative number is a no-op:
         // https://www.sqlite.org/c3ref/limit.html
@@ -389,6 +559,70 @@ public abstract class SQLiteConnection implements Connection {
         db.limit(limit.getId(), -1);
     }
 
+    /**
+     * Reads the memory and page cache counters of this connection, without resetting them.
+     *
+     * @return A snapshot of every {@link SQLiteDbStatus} counter.
+     * @throws SQLException
+     * @see #getStatus(boolean)
+     */
+    public SQLiteStatusSnapshot<SQLiteDbStatus> getStatus() throws SQLException {
+        return getStatus(false);
+    }
+
+    /**
+     * Reads the memory and page cache counters of this connection, such as the page cache hits and
+     * misses, in a single call.
+     *
+     * @param reset true to reset the highest values, and the hit, miss, write and spill counts,
+     *     after reading them.
+     * @return A snapshot of every {@link SQLiteDbStatus} counter.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/db_status.html">https://www.sqlite.org/c3ref/db_status.html</a>
+     */
+    public SQLiteStatusSnapshot<SQLiteDbStatus> getStatus(boolean reset) throws SQLException {
+        checkOpen();
+        SQLiteDbStatus[] counters = SQLiteDbStatus.values();
+        int[] ops = new int[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            ops[i] = counters[i].getId();
+        }
+        return new SQLiteStatusSnapshot<>(counters, db.db_status(ops, reset));
+    }
+
+    /**
+     * Reads the process-wide memory counters of SQLite, which cover every connection, without
+     * resetting them.
+     *
+     * @return A snapshot of every {@link SQLiteGlobalStatus} counter.
+     * @throws SQLException
+     * @see #getGlobalStatus(boolean)
+     */
+    public SQLiteStatusSnapshot<SQLiteGlobalStatus> getGlobalStatus() throws SQLException {
+        return getGlobalStatus(false);
+    }
+
+    /**
+     * Reads the process-wide memory counters of SQLite, which cover every connection.
+     *
+     * @param reset true to reset the highest values after reading them.
+     * @return A snapshot of every {@link SQLiteGlobalStatus} counter.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/status.html">https://www.sqlite.org/c3ref/status.html</a>
+     */
+    public SQLiteStatusSnapshot<SQLiteGlobalStatus> getGlobalStatus(boolean reset)
+            throws SQLException {
+        checkOpen();
+        SQLiteGlobalStatus[] counters = SQLiteGlobalStatus.values();
+        int[] ops = new int[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            ops[i] = counters[i].getId();
+        }
+        return new SQLiteStatusSnapshot<>(counters, db.status64(ops, reset));
+    }
+
     @Override
     public boolean isClosed() throws SQLException {
         return db.isClosed();
@@ -464,6 +698,30 @@ public abstract class SQLiteConnection implements Connection {
         db.removeUpdateListener(listener);
     }
 
+    /**
+     * Buffers update events natively and delivers them to the update listeners when the transaction
+     * ends, or when the buffer is full, instead of calling into Java for each changed row. The
+     * listeners are then called after the changes, with interned database and table names.
+     *
+     * @param size The maximum number of buffered rows, 0 to deliver each row as it changes.
+     */
+    public void setUpdateBufferSize(int size) throws SQLException {
+        db.setUpdateBufferSize(size);
+    }
+
+    /**
+     * @return The maximum number of buffered update events, 0 if they are not buffered.
+     * @see #setUpdateBufferSize(int)
+     */
+    public int getUpdateBufferSize() {
+        return db.getUpdateBufferSize();
+    }
+
+    /** Delivers the buffered update events to the listeners now. */
+    public void flushUpdates() {
+        db.flushUpdates();
+    }
+
     /**
      * Add a listener for DB commit/rollback events, see
      * https://www.sqlite.org/c3ref/commit_hook.html
@@ -483,6 +741,106 @@ public abstract class SQLiteConnection implements Connection {
         db.removeCommitListener(listener);
     }
 
+    /**
+     * Add a listener notified after each commit in WAL mode, see
+     * https://www.sqlite.org/c3ref/wal_hook.html. Auto-checkpointing is disabled on this connection
+     * while it has a listener.
+     *
+     * @param listener The listener to receive WAL events
+     * @see SQLiteWalListener
+     */
+    public void addWalListener(SQLiteWalListener listener) throws SQLException {
+        db.addWalListener(listener);
+    }
+
+    /**
+     * Remove a listener registered for WAL events. Removing the last one enables auto-checkpointing
+     * again, with the default threshold of 1000 pages.
+     *
+     * @param listener The listener to no longer receive WAL events
+     */
+    public void removeWalListener(SQLiteWalListener listener) throws SQLException {
+        db.removeWalListener(listener);
+    }
+
+    /**
+     * Add a listener notified before each row is changed, with access to its old and new values,
+     * see https://www.sqlite.org/c3ref/preupdate_blobwrite.html.
+     *
+     * @param listener The listener to receive preupdate events
+     * @throws SQLException if a session is open, since sessions use the same hook.
+     * @see SQLitePreUpdateListener
+     */
+    public void addPreUpdateListener(SQLitePreUpdateListener listener) throws SQLException {
+        db.addPreUpdateListener(
+                listener,
+                (type, database, table, oldRowId, newRowId, columnCount, depth) ->
+                        new SQLitePreUpdate(
+                                db, type, database, table, oldRowId, newRowId, columnCount, depth));
+    }
+
+    /**
+     * Remove a listener registered for preupdate events.
+     *
+     * @param listener The listener to no longer receive preupdate events
+     */
+    public void removePreUpdateListener(SQLitePreUpdateListener listener) throws SQLException {
+        db.removePreUpdateListener(listener);
+    }
+
+    /**
+     * Runs a checkpoint of the write-ahead log, see
+     * https://www.sqlite.org/c3ref/wal_checkpoint_v2.html. The modes other than PASSIVE wait with
+     * the busy handler of the connection.
+     *
+     * @param schema The database to checkpoint, "main" or the name of an attached database; null
+     *     for all the attached databases.
+     * @param mode The checkpoint mode.
+     * @return The state of the log after the checkpoint.
+     */
+    public SQLiteCheckpointResult checkpoint(String schema, SQLiteCheckpointMode mode)
+            throws SQLException {
+        checkOpen();
+        return db.checkpoint(schema, mode);
+    }
+
+    /**
+     * Sets the listener of trace events, see https://www.sqlite.org/c3ref/trace_v2.html. Events are
+     * delivered in batches of up to 256, or after one second.
+     *
+     * @param listener The listener, or null to stop tracing.
+     * @param mask The events to trace, a combination of the <code>TRACE_*</code> constants of
+     *     {@link SQLiteTraceListener}.
+     * @see #setTraceListener(SQLiteTraceListener, int, int, long)
+     */
+    public void setTraceListener(SQLiteTraceListener listener, int mask) throws SQLException {
+        setTraceListener(listener, mask, DEFAULT_TRACE_THRESHOLD, DEFAULT_TRACE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Sets the listener of trace events, see https://www.sqlite.org/c3ref/trace_v2.html. The events
+     * are buffered in native memory and delivered in batches; pending events of a previous listener
+     * are delivered to it first.
+     *
+     * @param listener The listener, or null to stop tracing.
+     * @param mask The events to trace, a combination of the <code>TRACE_*</code> constants of
+     *     {@link SQLiteTraceListener}.
+     * @param threshold The number of buffered events which triggers a delivery.
+     * @param intervalMillis The time after which buffered events are delivered, with the next
+     *     event, when a statement is reset or closed, or by a background thread once the connection
+     *     is idle, unless it is thread confined; 0 to deliver on the threshold only.
+     */
+    public void setTraceListener(
+            SQLiteTraceListener listener, int mask, int threshold, long intervalMillis)
+            throws SQLException {
+        db.setTraceListener(listener, mask, threshold, intervalMillis);
+    }
+
+    /** Delivers the buffered trace events to the listener now. */
+    public void flushTrace() {
+        db.flushTrace();
+    }
+
     /**
      * Extracts PRAGMA values from the filename and sets them into the Properties object which will
      * be used to build the SQLConfig. The sanitized filename is returned.
@@ -589,4 +947,128 @@ public abstract class SQLiteConnection implements Connection {
     public void deserialize(String schema, byte[] buff) throws SQLException {
         db.deserialize(schema, buff);
     }
+
+    /**
+     * Opens a new in-memory connection holding a copy of the main database of this connection.
+     *
+     * @param readOnly true to open the copy read-only.
+     * @return The new connection.
+     * @see #cloneInMemory(String, Properties, boolean)
+     */
+    public SQLiteConnection cloneInMemory(boolean readOnly) throws SQLException {
+        return cloneInMemory("main", new Properties(), readOnly);
+    }
+
+    /**
+     * Opens a new in-memory connection holding a copy of a database of this connection, for
+     * instance to give each worker thread its own read replica of reference data, without
+     * contention on the lock of a shared connection. The copy is a single memory copy of the
+     * database pages, without parsing SQL or running a backup; this connection is only locked while
+     * its database is copied.
+     *
+     * <p>The copy is independent of this connection: later changes of either database are not seen
+     * by the other.
+     *
+     * @param schema The database to copy, "main" or the name of an attached database.
+     * @param info The configuration of the new connection, see {@link SQLiteConfig}. The
+     *     configuration of this connection is not reused: an encryption key, for instance, would
+     *     not apply to the copy, which is not encrypted.
+     * @param readOnly true to open the copy read-only.
+     * @return The new connection, whose main database is the copy.
+     */
+    public SQLiteConnection cloneInMemory(String schema, Properties info, boolean readOnly)
+            throws SQLException {
+        checkOpen();
+        SQLiteConnection clone = JDBC.createConnection(JDBC.PREFIX + ":memory:", info);
+        try {
+            db.copyTo(schema, clone.getDatabase(), "main", readOnly);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                clone.close();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return clone;
+    }
+
+    /**
+     * @param schema The database, "main" or the name of an attached database.
+     * @return The size of the serialized database, in bytes, to size the buffer given to {@link
+     *     #serialize(String, ByteBuffer)}.
+     */
+    public long getSerializedSize(String schema) throws SQLException {
+        checkOpen();
+        return db.getSerializedSize(schema);
+    }
+
+    /**
+     * Writes the content of a database into a buffer, at its position. The content of an in-memory
+     * database is copied directly from the memory of SQLite, without an intermediate copy; that of
+     * a database file is read into native memory first.
+     *
+     * <p>The buffer may be a direct buffer, or a region of a file mapped with {@link
+     * java.nio.channels.FileChannel#map}, so that the content does not go through the Java heap.
+     *
+     * @param schema The database, "main" or the name of an attached database.
+     * @param dst The buffer, with at least {@link #getSerializedSize(String)} bytes remaining.
+     * @return The number of bytes written.
+     * @throws SQLException if the buffer is too small.
+     */
+    public int serialize(String schema, ByteBuffer dst) throws SQLException {
+        checkOpen();
+        return db.serialize(schema, dst);
+    }
+
+    /**
+     * Writes the content of a database to a channel, such as a {@link
+     * java.nio.channels.FileChannel}. Unlike {@link #serialize(String)}, the size of the database
+     * is not limited to 2 GB.
+     *
+     * @param schema The database, "main" or the name of an attached database.
+     * @param out The channel; it is not closed.
+     * @return The number of bytes written.
+     * @see #serialize(String, ByteBuffer)
+     */
+    public long serialize(String schema, WritableByteChannel out) throws SQLException, IOException {
+        checkOpen();
+        return db.serialize(schema, out);
+    }
+
+    /**
+     * Replaces the content of a database with the remaining bytes of a buffer. To make sure there
+     * is an existing schema, first execute ATTACH ':memory:' AS schema_name
+     *
+     * <p>A read-only database deserialized from a direct buffer, such as a file region mapped with
+     * {@link java.nio.channels.FileChannel#map}, reads the buffer in place, without copying it: the
+     * same snapshot can then be shared by several connections. The buffer must not be modified
+     * while in use; it is kept reachable until the database is replaced or the connection closed.
+     * Otherwise, the content is copied once, into native memory.
+     *
+     * @param schema The database to replace, "main" or the name of an attached database.
+     * @param src The new content, from its position to its limit; its position is not changed.
+     * @param readOnly true to open the database read-only.
+     */
+    public void deserialize(String schema, ByteBuffer src, boolean readOnly) throws SQLException {
+        checkOpen();
+        db.deserialize(schema, src, readOnly);
+    }
+
+    /**
+     * Replaces the content of a database with bytes read from a channel, such as a {@link
+     * java.nio.channels.FileChannel}, into native memory. Unlike {@link #deserialize(String,
+     * byte[])}, the size of the database is not limited to 2 GB.
+     *
+     * @param schema The database to replace, "main" or the name of an attached database.
+     * @param in The channel; it is not closed.
+     * @param size The number of bytes to read.
+     * @param readOnly true to open the database read-only.
+     * @throws IOException if the channel fails or ends before <code>size</code> bytes.
+     */
+    public void deserialize(String schema, ReadableByteChannel in, long size, boolean readOnly)
+            throws SQLException, IOException {
+        checkOpen();
+        db.deserialize(schema, in, size, readOnly);
+    }
 }
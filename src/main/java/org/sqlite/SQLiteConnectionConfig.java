@@ -20,29 +20,37 @@ public class SQLiteConnectionConfig implements Cloneable {
     private SQLiteConfig.TransactionMode transactionMode = SQLiteConfig.TransactionMode.DEFERRED;
     private boolean autoCommit = true;
     private boolean getGeneratedKeys = true;
+    private boolean prefetch = false;
 
     public static SQLiteConnectionConfig fromPragmaTable(Properties pragmaTable) {
-        return new SQLiteConnectionConfig(
-                SQLiteConfig.DateClass.getDateClass(
+        SQLiteConnectionConfig config =
+                new SQLiteConnectionConfig(
+                        SQLiteConfig.DateClass.getDateClass(
+                                pragmaTable.getProperty(
+                                        SQLiteConfig.Pragma.DATE_CLASS.pragmaName,
+                                        SQLiteConfig.DateClass.INTEGER.name())),
+                        SQLiteConfig.DatePrecision.getPrecision(
+                                pragmaTable.getProperty(
+                                        SQLiteConfig.Pragma.DATE_PRECISION.pragmaName,
+                                        SQLiteConfig.DatePrecision.MILLISECONDS.name())),
                         pragmaTable.getProperty(
-                                SQLiteConfig.Pragma.DATE_CLASS.pragmaName,
-                                SQLiteConfig.DateClass.INTEGER.name())),
-                SQLiteConfig.DatePrecision.getPrecision(
-                        pragmaTable.getProperty(
-                                SQLiteConfig.Pragma.DATE_PRECISION.pragmaName,
-                                SQLiteConfig.DatePrecision.MILLISECONDS.name())),
-                pragmaTable.getProperty(
-                        SQLiteConfig.Pragma.DATE_STRING_FORMAT.pragmaName,
-                        DEFAULT_DATE_STRING_FORMAT),
-                Connection.TRANSACTION_SERIALIZABLE,
-                SQLiteConfig.TransactionMode.getMode(
-                        pragmaTable.getProperty(
-                                SQLiteConfig.Pragma.TRANSACTION_MODE.pragmaName,
-                                SQLiteConfig.TransactionMode.DEFERRED.name())),
-                true,
+                                SQLiteConfig.Pragma.DATE_STRING_FORMAT.pragmaName,
+                                DEFAULT_DATE_STRING_FORMAT),
+                        Connection.TRANSACTION_SERIALIZABLE,
+                        SQLiteConfig.TransactionMode.getMode(
+                                pragmaTable.getProperty(
+                                        SQLiteConfig.Pragma.TRANSACTION_MODE.pragmaName,
+                                        SQLiteConfig.TransactionMode.DEFERRED.name())),
+                        true,
+                        Boolean.parseBoolean(
+                                pragmaTable.getProperty(
+                                        SQLiteConfig.Pragma.JDBC_GET_GENERATED_KEYS.pragmaName,
+                                        "true")));
+        config.setPrefetch(
                 Boolean.parseBoolean(
                         pragmaTable.getProperty(
-                                SQLiteConfig.Pragma.JDBC_GET_GENERATED_KEYS.pragmaName, "true")));
+                                SQLiteConfig.Pragma.JDBC_PREFETCH.pragmaName, "false")));
+        return config;
     }
 
     public SQLiteConnectionConfig(
@@ -63,14 +71,17 @@ public class SQLiteConnectionConfig implements Cloneable {
     }
 
     public SQLiteConnectionConfig copyConfig() {
-        return new SQLiteConnectionConfig(
-                dateClass,
-                datePrecision,
-                dateStringFormat,
-                transactionIsolation,
-                transactionMode,
-                autoCommit,
-                getGeneratedKeys);
+        SQLiteConnectionConfig copy =
+                new SQLiteConnectionConfig(
+                        dateClass,
+                        datePrecision,
+                        dateStringFormat,
+                        transactionIsolation,
+                        transactionMode,
+                        autoCommit,
+                        getGeneratedKeys);
+        copy.setPrefetch(prefetch);
+        return copy;
     }
 
     public long getDateMultiplier() {
@@ -139,6 +150,14 @@ public class SQLiteConnectionConfig implements Cloneable {
         this.getGeneratedKeys = getGeneratedKeys;
     }
 
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
     private static final Map<SQLiteConfig.TransactionMode, String> beginCommandMap =
             new EnumMap<>(SQLiteConfig.TransactionMode.class);
 
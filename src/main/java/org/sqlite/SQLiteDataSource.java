@@ -28,6 +28,7 @@ import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
 import java.util.Properties;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
@@ -45,6 +46,8 @@ public class SQLiteDataSource implements DataSource {
 
     private String url = JDBC.PREFIX; // use memory database in default
     private String databaseName = ""; // the name of the current database
+    private SQLiteCheckpointer checkpointer;
+    private SQLiteWriteQueue writeQueue;
 
     /** Default constructor. */
     public SQLiteDataSource() {
@@ -458,6 +461,45 @@ public class SQLiteDataSource implements DataSource {
         config.setGetGeneratedKeys(generatedKeys);
     }
 
+    /**
+     * Configure whether result rows are prefetched natively in blocks of the fetch size.
+     *
+     * @param prefetch true to prefetch result rows
+     */
+    public void setPrefetch(boolean prefetch) {
+        config.setPrefetch(prefetch);
+    }
+
+    /**
+     * Configure whether connections are confined to a single thread at a time.
+     *
+     * @param threadConfined true to confine connections to the thread using them
+     * @see SQLiteConfig#setThreadConfined(boolean)
+     */
+    public void setThreadConfined(boolean threadConfined) {
+        config.setThreadConfined(threadConfined);
+    }
+
+    /**
+     * Configure the number of closed prepared statements each connection keeps for reuse.
+     *
+     * @param size the maximum number of cached statements, 0 to disable the cache
+     * @see SQLiteConfig#setStatementCacheSize(int)
+     */
+    public void setStatementCacheSize(int size) {
+        config.setStatementCacheSize(size);
+    }
+
+    /**
+     * Configure the name of the metrics recorded by connections.
+     *
+     * @param name the metrics name, or null to disable metrics
+     * @see SQLiteConfig#setMetricsName(String)
+     */
+    public void setMetricsName(String name) {
+        config.setMetricsName(name);
+    }
+
     /**
      * Sets the value of the user-version. It is a big-endian 32-bit signed integer stored in the
      * database header at offset 60.
@@ -470,6 +512,95 @@ public class SQLiteDataSource implements DataSource {
         config.setUserVersion(version);
     }
 
+    /**
+     * Enables or disables checkpointing on a background thread, with the default thresholds of
+     * {@link SQLiteCheckpointer}.
+     *
+     * @param enable True to enable; false to disable.
+     * @see #setBackgroundCheckpoint(int, int, int)
+     */
+    public void setBackgroundCheckpoint(boolean enable) {
+        setBackgroundCheckpoint(
+                enable ? SQLiteCheckpointer.DEFAULT_PASSIVE_FRAMES : 0,
+                SQLiteCheckpointer.DEFAULT_RESTART_FRAMES,
+                SQLiteCheckpointer.DEFAULT_TRUNCATE_FRAMES);
+    }
+
+    /**
+     * Checkpoints the write-ahead log on a background thread instead of on the committing
+     * connections. The connections opened afterwards by this data source do not auto-checkpoint;
+     * they report the size of the log to a {@link SQLiteCheckpointer}, which checkpoints from its
+     * own connection. Only useful in WAL journal mode.
+     *
+     * @param passiveFrames The size of the log, in frames, from which to checkpoint in PASSIVE
+     *     mode; 0 to stop checkpointing in the background.
+     * @param restartFrames The size from which to checkpoint in RESTART mode, 0 to never use it.
+     * @param truncateFrames The size from which to checkpoint in TRUNCATE mode, 0 to never use it.
+     * @see <a href="https://www.sqlite.org/wal.html#ckpt">https://www.sqlite.org/wal.html#ckpt</a>
+     */
+    public synchronized void setBackgroundCheckpoint(
+            int passiveFrames, int restartFrames, int truncateFrames) {
+        if (checkpointer != null) {
+            checkpointer.close();
+            checkpointer = null;
+        }
+        if (passiveFrames > 0) {
+            checkpointer =
+                    new SQLiteCheckpointer(
+                            () -> openConnection(config, null, null),
+                            passiveFrames,
+                            restartFrames,
+                            truncateFrames);
+        }
+    }
+
+    /** @return The background checkpointer, null if disabled. */
+    public synchronized SQLiteCheckpointer getBackgroundCheckpointer() {
+        return checkpointer;
+    }
+
+    /**
+     * Enables or disables the write queue, with batches of up to {@link
+     * SQLiteWriteQueue#DEFAULT_MAX_BATCH} writes.
+     *
+     * @param enable True to enable; false to disable.
+     * @see #setWriteQueue(int)
+     */
+    public void setWriteQueue(boolean enable) {
+        setWriteQueue(enable ? SQLiteWriteQueue.DEFAULT_MAX_BATCH : 0);
+    }
+
+    /**
+     * Routes the writes to the database through a single writer connection, fed by a {@link
+     * SQLiteWriteQueue}, instead of letting connections contend for the write lock and retry until
+     * the busy timeout. Concurrent writes are committed together, in batches. Writes go through
+     * {@link #getWriteQueue()} and reads through {@link #getReadConnection()}; the connections of
+     * {@link #getConnection()} can still write, contending with the writer. Best used in WAL
+     * journal mode, where readers do not block the writer.
+     *
+     * @param maxBatch The maximum number of writes committed together; 0 to stop the write queue.
+     */
+    public void setWriteQueue(int maxBatch) {
+        SQLiteWriteQueue previous;
+        synchronized (this) {
+            previous = writeQueue;
+            writeQueue =
+                    maxBatch > 0
+                            ? new SQLiteWriteQueue(
+                                    () -> openCheckpointed(config, null, null), maxBatch)
+                            : null;
+        }
+        // closed without holding the lock: its writer thread may need it to open its connection
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /** @return The write queue, null if disabled. */
+    public synchronized SQLiteWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
     // codes for the DataSource interface
 
     /** @see javax.sql.DataSource#getConnection() */
@@ -479,6 +610,73 @@ public class SQLiteDataSource implements DataSource {
 
     /** @see javax.sql.DataSource#getConnection(java.lang.String, java.lang.String) */
     public SQLiteConnection getConnection(String username, String password) throws SQLException {
+        return openCheckpointed(config, username, password);
+    }
+
+    /**
+     * Opens a connection to the database of this data source with another configuration, leaving
+     * the configuration of the data source unchanged.
+     *
+     * @param config The configuration of the connection.
+     * @param username The user name.
+     * @param password The password.
+     * @return The connection.
+     */
+    protected SQLiteConnection getConnection(SQLiteConfig config, String username, String password)
+            throws SQLException {
+        return openCheckpointed(config, username, password);
+    }
+
+    /**
+     * Opens a read-only connection, with <code>query_only</code> set, for use alongside the {@link
+     * #setWriteQueue(int) write queue}.
+     *
+     * @return The connection.
+     * @see #getReadConnection(String, String)
+     */
+    public SQLiteConnection getReadConnection() throws SQLException {
+        return getReadConnection(null, null);
+    }
+
+    /**
+     * Opens a read-only connection, with <code>query_only</code> set, for use alongside the {@link
+     * #setWriteQueue(int) write queue}.
+     *
+     * @param username The user name.
+     * @param password The password.
+     * @return The connection.
+     * @see <a
+     *     href="https://www.sqlite.org/pragma.html#pragma_query_only">https://www.sqlite.org/pragma.html#pragma_query_only</a>
+     */
+    public SQLiteConnection getReadConnection(String username, String password)
+            throws SQLException {
+        SQLiteConnection conn = openCheckpointed(config, username, password);
+        try (Statement stat = conn.createStatement()) {
+            stat.execute("pragma query_only = true");
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    private SQLiteConnection openCheckpointed(SQLiteConfig config, String username, String password)
+            throws SQLException {
+        SQLiteConnection conn = openConnection(config, username, password);
+        SQLiteCheckpointer checkpointer = getBackgroundCheckpointer();
+        if (checkpointer != null) {
+            try {
+                checkpointer.register(conn);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+        }
+        return conn;
+    }
+
+    private SQLiteConnection openConnection(SQLiteConfig config, String username, String password)
+            throws SQLException {
         Properties p = config.toProperties();
         if (username != null) p.put("user", username);
         if (password != null) p.put("pass", password);
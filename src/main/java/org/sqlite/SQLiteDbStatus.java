@@ -0,0 +1,48 @@
+package org.sqlite;
+
+/**
+ * The counters kept by SQLite for each connection, read with {@link
+ * SQLiteConnection#getStatus(boolean)}. Unless noted, a counter reports the current value and the
+ * highest value since the last reset.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/c3ref/c_dbstatus_options.html">https://www.sqlite.org/c3ref/c_dbstatus_options.html</a>
+ */
+public enum SQLiteDbStatus {
+    /** Number of lookaside memory slots in use. */
+    SQLITE_DBSTATUS_LOOKASIDE_USED(0),
+    /** Bytes of heap used by the page caches of the connection. */
+    SQLITE_DBSTATUS_CACHE_USED(1),
+    /** Bytes of heap used to store the schemas of the attached databases. */
+    SQLITE_DBSTATUS_SCHEMA_USED(2),
+    /** Bytes of heap used by the prepared statements of the connection. */
+    SQLITE_DBSTATUS_STMT_USED(3),
+    /** Number of allocations satisfied from lookaside memory; highest value only. */
+    SQLITE_DBSTATUS_LOOKASIDE_HIT(4),
+    /** Number of allocations too large for lookaside memory; highest value only. */
+    SQLITE_DBSTATUS_LOOKASIDE_MISS_SIZE(5),
+    /** Number of allocations which found lookaside memory full; highest value only. */
+    SQLITE_DBSTATUS_LOOKASIDE_MISS_FULL(6),
+    /** Number of page cache hits; current value only. */
+    SQLITE_DBSTATUS_CACHE_HIT(7),
+    /** Number of page cache misses; current value only. */
+    SQLITE_DBSTATUS_CACHE_MISS(8),
+    /** Number of dirty pages written to disk; current value only. */
+    SQLITE_DBSTATUS_CACHE_WRITE(9),
+    /** 1 if there are unresolved deferred foreign key constraints, otherwise 0. */
+    SQLITE_DBSTATUS_DEFERRED_FKS(10),
+    /** Like {@link #SQLITE_DBSTATUS_CACHE_USED}, with shared caches split between connections. */
+    SQLITE_DBSTATUS_CACHE_USED_SHARED(11),
+    /** Number of dirty pages written to disk in the middle of a transaction; current value only. */
+    SQLITE_DBSTATUS_CACHE_SPILL(12);
+
+    private final int id;
+
+    private SQLiteDbStatus(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
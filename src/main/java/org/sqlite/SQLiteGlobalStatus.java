@@ -0,0 +1,36 @@
+package org.sqlite;
+
+/**
+ * The process-wide counters kept by SQLite, shared by all connections and read with {@link
+ * SQLiteConnection#getGlobalStatus(boolean)}. Each counter reports the current value and the
+ * highest value since the last reset.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/c3ref/c_status_malloc_count.html">https://www.sqlite.org/c3ref/c_status_malloc_count.html</a>
+ */
+public enum SQLiteGlobalStatus {
+    /** Bytes of heap allocated by SQLite. */
+    SQLITE_STATUS_MEMORY_USED(0),
+    /** Pages used in the configured page cache memory. */
+    SQLITE_STATUS_PAGECACHE_USED(1),
+    /** Bytes of page cache allocations which did not fit the configured page cache memory. */
+    SQLITE_STATUS_PAGECACHE_OVERFLOW(2),
+    /** Largest single allocation requested, in bytes; highest value only. */
+    SQLITE_STATUS_MALLOC_SIZE(5),
+    /** Deepest parser stack, in frames; highest value only. */
+    SQLITE_STATUS_PARSER_STACK(6),
+    /** Largest page cache allocation requested, in bytes; highest value only. */
+    SQLITE_STATUS_PAGECACHE_SIZE(7),
+    /** Number of separate heap allocations currently outstanding. */
+    SQLITE_STATUS_MALLOC_COUNT(9);
+
+    private final int id;
+
+    private SQLiteGlobalStatus(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,98 @@
+package org.sqlite;
+
+import java.sql.SQLException;
+import org.sqlite.core.DB;
+
+/**
+ * A row about to be changed, as reported to a {@link SQLitePreUpdateListener}. The column values
+ * are only read when asked for, and only while the listener runs.
+ */
+public final class SQLitePreUpdate {
+    private final DB db;
+    private final SQLiteUpdateListener.Type type;
+    private final String database;
+    private final String table;
+    private final long oldRowId;
+    private final long newRowId;
+    private final int columnCount;
+    private final int depth;
+
+    SQLitePreUpdate(
+            DB db,
+            SQLiteUpdateListener.Type type,
+            String database,
+            String table,
+            long oldRowId,
+            long newRowId,
+            int columnCount,
+            int depth) {
+        this.db = db;
+        this.type = type;
+        this.database = database;
+        this.table = table;
+        this.oldRowId = oldRowId;
+        this.newRowId = newRowId;
+        this.columnCount = columnCount;
+        this.depth = depth;
+    }
+
+    public SQLiteUpdateListener.Type getType() {
+        return type;
+    }
+
+    /** @return The name of the database, "main", "temp" or the name of an attached database. */
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /** @return The rowid of the row before an UPDATE or DELETE; undefined for an INSERT. */
+    public long getOldRowId() {
+        return oldRowId;
+    }
+
+    /** @return The rowid of the row after an INSERT or UPDATE; undefined for a DELETE. */
+    public long getNewRowId() {
+        return newRowId;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * @return 0 for a change made by a top-level statement, 1 for a change made by a trigger, 2 for
+     *     a change made by a trigger fired by a trigger, and so on.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param column The 0-based column index.
+     * @return The value of the column before an UPDATE or DELETE: a Long, Double, String, byte[] or
+     *     null.
+     * @throws SQLException for an INSERT, an invalid column, or after the listener returned.
+     */
+    public Object getOldValue(int column) throws SQLException {
+        return db.preUpdateValue(this, DB.CHANGESET_OLD, column);
+    }
+
+    /**
+     * @param column The 0-based column index.
+     * @return The value of the column after an INSERT or UPDATE: a Long, Double, String, byte[] or
+     *     null.
+     * @throws SQLException for a DELETE, an invalid column, or after the listener returned.
+     */
+    public Object getNewValue(int column) throws SQLException {
+        return db.preUpdateValue(this, DB.CHANGESET_NEW, column);
+    }
+
+    @Override
+    public String toString() {
+        return "SQLitePreUpdate[" + type + " " + database + "." + table + "]";
+    }
+}
@@ -0,0 +1,19 @@
+package org.sqlite;
+
+/**
+ * Notified before each row is inserted, updated or deleted, with access to its old and new values,
+ * see https://www.sqlite.org/c3ref/preupdate_blobwrite.html.
+ *
+ * <p>Unlike {@link SQLiteUpdateListener}, the listener can read the content of a deleted row, and
+ * does not need to query the row again. Only the columns it reads are fetched.
+ */
+public interface SQLitePreUpdateListener {
+
+    /**
+     * Called on the writing thread, while it holds the lock of the connection, before the change is
+     * made. The listener must not modify the database.
+     *
+     * @param update The change, whose values can only be read during this call.
+     */
+    void onPreUpdate(SQLitePreUpdate update);
+}
@@ -0,0 +1,190 @@
+package org.sqlite;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import org.sqlite.core.DB;
+import org.sqlite.core.NativeDB;
+import org.sqlite.core.NativeHandle;
+
+/**
+ * Records the changes made to the tables of a database through its connection, to produce
+ * changesets or patchsets which can be applied to another copy of the database with {@link
+ * SQLiteConnection#applyChangeset(byte[], SQLiteConflictHandler)}. Opened with {@link
+ * SQLiteConnection#createSession(String)}; closed with its connection.
+ *
+ * <p>Only the tables with a declared primary key are recorded.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/sessionintro.html">https://www.sqlite.org/sessionintro.html</a>
+ */
+public class SQLiteSession implements AutoCloseable {
+    private final DB db;
+    private final NativeHandle handle;
+
+    SQLiteSession(DB db, NativeHandle handle) {
+        this.db = db;
+        this.handle = handle;
+    }
+
+    /** Must be called while holding the database lock, so that the session stays open. */
+    private void ensureOpen() throws SQLException {
+        if (!handle.isOpen()) {
+            throw new SQLException("session is closed");
+        }
+    }
+
+    /**
+     * Starts recording the changes of a table.
+     *
+     * @param table The name of the table, or null for all the tables, including those created
+     *     later.
+     * @throws SQLException
+     */
+    public void attach(String table) throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            db.session_attach(handle.pointer(), table);
+        }
+    }
+
+    /**
+     * Pauses or resumes the recording of changes.
+     *
+     * @param enabled false to ignore the changes made until enabled again.
+     */
+    public void setEnabled(boolean enabled) throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            db.session_enable(handle.pointer(), enabled ? 1 : 0);
+        }
+    }
+
+    public boolean isEnabled() throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            return db.session_enable(handle.pointer(), -1);
+        }
+    }
+
+    /**
+     * Flags the changes recorded from now on as indirect, for instance when made by triggers or on
+     * behalf of another node.
+     *
+     * @see SQLiteChange#isIndirect()
+     */
+    public void setIndirect(boolean indirect) throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            db.session_indirect(handle.pointer(), indirect ? 1 : 0);
+        }
+    }
+
+    public boolean isIndirect() throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            return db.session_indirect(handle.pointer(), -1);
+        }
+    }
+
+    /** @return true if no change was recorded. */
+    public boolean isEmpty() throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            return db.session_isempty(handle.pointer());
+        }
+    }
+
+    /**
+     * @return The changes recorded so far, with the old and new values of each changed row.
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3session_changeset.html">https://www.sqlite.org/session/sqlite3session_changeset.html</a>
+     */
+    public byte[] getChangeset() throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            return db.session_changeset(handle.pointer(), false);
+        }
+    }
+
+    /**
+     * @return The changes recorded so far, in a more compact form than a changeset: with only the
+     *     primary key of deleted rows and the new values of updated columns. A patchset cannot be
+     *     inverted, and conflicts are detected on fewer values.
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3session_patchset.html">https://www.sqlite.org/session/sqlite3session_patchset.html</a>
+     */
+    public byte[] getPatchset() throws SQLException {
+        synchronized (db) {
+            ensureOpen();
+            return db.session_changeset(handle.pointer(), true);
+        }
+    }
+
+    /**
+     * Writes the changeset in chunks, without building it in memory.
+     *
+     * @param out The stream to write to; it is not closed.
+     * @see #getChangeset()
+     */
+    public void writeChangeset(OutputStream out) throws SQLException, IOException {
+        synchronized (db) {
+            ensureOpen();
+            db.session_changeset_strm(handle.pointer(), false, out);
+        }
+    }
+
+    /**
+     * Writes the patchset in chunks, without building it in memory.
+     *
+     * @param out The stream to write to; it is not closed.
+     * @see #getPatchset()
+     */
+    public void writePatchset(OutputStream out) throws SQLException, IOException {
+        synchronized (db) {
+            ensureOpen();
+            db.session_changeset_strm(handle.pointer(), true, out);
+        }
+    }
+
+    /** Stops recording and frees the session. Closing a session twice has no effect. */
+    @Override
+    public void close() throws SQLException {
+        db.closeSession(handle);
+    }
+
+    /**
+     * @param changeset A changeset.
+     * @return The changeset which reverts it: inserts become deletes, and updates are swapped.
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3changeset_invert.html">https://www.sqlite.org/session/sqlite3changeset_invert.html</a>
+     */
+    public static byte[] invert(byte[] changeset) throws SQLException {
+        loadNative();
+        return NativeDB.changeset_invert(changeset);
+    }
+
+    /**
+     * @param a A changeset or patchset.
+     * @param b A changeset or patchset of the same kind, applied after <code>a</code>.
+     * @return A single changeset with the effect of both, where the changes of a row are combined.
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3changeset_concat.html">https://www.sqlite.org/session/sqlite3changeset_concat.html</a>
+     */
+    public static byte[] concat(byte[] a, byte[] b) throws SQLException {
+        loadNative();
+        return NativeDB.changeset_concat(a, b);
+    }
+
+    private static void loadNative() throws SQLException {
+        try {
+            if (!NativeDB.load()) {
+                throw new SQLException("Failed to load the native library");
+            }
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Failed to load the native library", e);
+        }
+    }
+}
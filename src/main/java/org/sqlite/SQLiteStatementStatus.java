@@ -0,0 +1,39 @@
+package org.sqlite;
+
+/**
+ * The runtime counters kept by SQLite for each prepared statement, read with {@link
+ * org.sqlite.core.CoreStatement#getStatus(SQLiteStatementStatus, boolean)}.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/c3ref/c_stmtstatus_counter.html">https://www.sqlite.org/c3ref/c_stmtstatus_counter.html</a>
+ */
+public enum SQLiteStatementStatus {
+    /** Number of forward steps of a full table scan; large values suggest a missing index. */
+    SQLITE_STMTSTATUS_FULLSCAN_STEP(1),
+    /** Number of sort operations; large values suggest an index could avoid the sort. */
+    SQLITE_STMTSTATUS_SORT(2),
+    /** Number of rows inserted into transient indices created automatically. */
+    SQLITE_STMTSTATUS_AUTOINDEX(3),
+    /** Number of virtual machine operations run. */
+    SQLITE_STMTSTATUS_VM_STEP(4),
+    /** Number of times the statement was prepared again because the schema changed. */
+    SQLITE_STMTSTATUS_REPREPARE(5),
+    /** Number of times the statement has run to completion or been reset. */
+    SQLITE_STMTSTATUS_RUN(6),
+    /** Number of times a bloom filter lookup could not skip a join row. */
+    SQLITE_STMTSTATUS_FILTER_MISS(7),
+    /** Number of join rows skipped by a bloom filter lookup. */
+    SQLITE_STMTSTATUS_FILTER_HIT(8),
+    /** Approximate number of bytes of heap used by the statement; cannot be reset. */
+    SQLITE_STMTSTATUS_MEMUSED(99);
+
+    private final int id;
+
+    private SQLiteStatementStatus(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
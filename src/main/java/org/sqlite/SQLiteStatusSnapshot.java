@@ -0,0 +1,64 @@
+package org.sqlite;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The values of a set of SQLite counters, read together at one point in time.
+ *
+ * @param <T> The kind of counter, {@link SQLiteDbStatus} or {@link SQLiteGlobalStatus}.
+ * @see SQLiteConnection#getStatus(boolean)
+ * @see SQLiteConnection#getGlobalStatus(boolean)
+ */
+public final class SQLiteStatusSnapshot<T extends Enum<T>> {
+    private final Map<T, Long> current;
+    private final Map<T, Long> highwater;
+
+    /**
+     * @param counters The counters which were read.
+     * @param values For each counter, its current value followed by its highest value.
+     */
+    SQLiteStatusSnapshot(T[] counters, long[] values) {
+        Class<T> type = counters[0].getDeclaringClass();
+        current = new EnumMap<>(type);
+        highwater = new EnumMap<>(type);
+        for (int i = 0; i < counters.length; i++) {
+            current.put(counters[i], values[2 * i]);
+            highwater.put(counters[i], values[2 * i + 1]);
+        }
+    }
+
+    /**
+     * @param counter The counter.
+     * @return The value of the counter when the snapshot was taken.
+     */
+    public long getCurrent(T counter) {
+        return current.get(counter);
+    }
+
+    /**
+     * @param counter The counter.
+     * @return The highest value of the counter since it was last reset.
+     */
+    public long getHighwater(T counter) {
+        return highwater.get(counter);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SQLiteStatusSnapshot[");
+        boolean first = true;
+        for (Map.Entry<T, Long> entry : current.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(entry.getKey())
+                    .append('=')
+                    .append(entry.getValue())
+                    .append('/')
+                    .append(highwater.get(entry.getKey()));
+        }
+        return sb.append(']').toString();
+    }
+}
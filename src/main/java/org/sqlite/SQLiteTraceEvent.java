@@ -0,0 +1,91 @@
+package org.sqlite;
+
+/**
+ * An event reported to a {@link SQLiteTraceListener}.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/c3ref/c_trace.html">https://www.sqlite.org/c3ref/c_trace.html</a>
+ */
+public final class SQLiteTraceEvent {
+    public enum Type {
+        /** A statement started running. */
+        STMT(SQLiteTraceListener.TRACE_STMT),
+        /** A statement finished running. */
+        PROFILE(SQLiteTraceListener.TRACE_PROFILE),
+        /** A statement returned a row. */
+        ROW(SQLiteTraceListener.TRACE_ROW),
+        /** The connection closed. */
+        CLOSE(SQLiteTraceListener.TRACE_CLOSE);
+
+        private final int mask;
+
+        private Type(int mask) {
+            this.mask = mask;
+        }
+
+        public int getMask() {
+            return mask;
+        }
+
+        public static Type fromMask(int mask) {
+            for (Type type : values()) {
+                if (type.mask == mask) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown trace event: " + mask);
+        }
+    }
+
+    private final Type type;
+    private final long statement;
+    private final long nanos;
+    private final String sql;
+
+    public SQLiteTraceEvent(Type type, long statement, long nanos, String sql) {
+        this.type = type;
+        this.statement = statement;
+        this.nanos = nanos;
+        this.sql = sql;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return An identifier of the native statement, the same for all the events of one run of a
+     *     statement; 0 for {@link Type#CLOSE}.
+     */
+    public long getStatement() {
+        return statement;
+    }
+
+    /** @return For {@link Type#PROFILE}, the run time of the statement in nanoseconds; else 0. */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return For {@link Type#STMT}, the SQL text of the statement, or the comment of a trigger;
+     *     else null.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SQLiteTraceEvent[").append(type);
+        if (type != Type.CLOSE) {
+            sb.append(", statement=").append(statement);
+        }
+        if (type == Type.PROFILE) {
+            sb.append(", nanos=").append(nanos);
+        }
+        if (sql != null) {
+            sb.append(", sql=").append(sql);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,44 @@
+package org.sqlite;
+
+import java.util.List;
+
+/**
+ * Receives the events of <a href="https://www.sqlite.org/c3ref/trace_v2.html">sqlite3_trace_v2</a>.
+ * The events are buffered in native memory and handed over in batches, either when the threshold
+ * given to {@link SQLiteConnection#setTraceListener(SQLiteTraceListener, int, int, long)} is
+ * reached, when the flush interval has elapsed, on {@link SQLiteConnection#flushTrace()}, or when
+ * the listener is replaced or the connection closed.
+ *
+ * <p>The listener is never called concurrently. On a connection shared between threads, it is
+ * called while the lock of the connection is held, usually on the thread which runs the traced
+ * statement, and on a background thread for the deliveries of the flush interval. On a
+ * thread-confined connection, it is only called on the thread using the connection: there is no
+ * background delivery, and the events buffered once the flush interval has elapsed are delivered
+ * with the next event, or when a statement is reset or closed. It should not use the connection.
+ */
+public interface SQLiteTraceListener {
+    /** Trace the start of a statement, with its SQL text. */
+    int TRACE_STMT = 0x01;
+    /** Trace the end of a statement, with its run time. */
+    int TRACE_PROFILE = 0x02;
+    /** Trace each row returned by a statement. */
+    int TRACE_ROW = 0x04;
+    /** Trace the closing of the connection. */
+    int TRACE_CLOSE = 0x08;
+    /**
+     * With {@link #TRACE_STMT}, report the SQL text with the bound parameters expanded. This is
+     * more expensive, since SQLite builds a new string for each statement.
+     */
+    int TRACE_EXPANDED_SQL = 0x100;
+
+    /** @param events The events, in the order in which they happened. */
+    void onTrace(List<SQLiteTraceEvent> events);
+
+    /**
+     * Called after a delivery when events were dropped since the previous one: the native buffer is
+     * bounded, and events which do not fit while the listener cannot be called are lost.
+     *
+     * @param count The number of events dropped.
+     */
+    default void onEventsDropped(int count) {}
+}
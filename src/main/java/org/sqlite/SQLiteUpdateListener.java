@@ -10,4 +10,13 @@ public interface SQLiteUpdateListener {
     }
 
     void onUpdate(Type type, String database, String table, long rowId);
+
+    /**
+     * Called when updates were dropped since the previous delivery: the rows which change while the
+     * listeners cannot be called, because an exception such as an {@link OutOfMemoryError} is
+     * pending, are not reported.
+     *
+     * @param count The number of updates dropped.
+     */
+    default void onEventsDropped(int count) {}
 }
@@ -0,0 +1,21 @@
+package org.sqlite;
+
+/**
+ * Notified after each commit in WAL mode, see https://www.sqlite.org/c3ref/wal_hook.html.
+ *
+ * <p>While a connection has such a listener, SQLite does not checkpoint automatically when it
+ * commits: the listener is expected to call {@link SQLiteConnection#checkpoint(String,
+ * SQLiteCheckpointMode)}, usually from another connection. Auto-checkpointing resumes, with the
+ * default threshold of 1000 pages, when the last listener is removed.
+ */
+public interface SQLiteWalListener {
+
+    /**
+     * Called on the committing thread, while it holds the lock of the connection.
+     *
+     * @param database The name of the database which was written, "main" or the name of an attached
+     *     database.
+     * @param frames The number of frames in the write-ahead log.
+     */
+    void onWal(String database, int frames);
+}
@@ -0,0 +1,256 @@
+package org.sqlite;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sqlite.util.Logger;
+import org.sqlite.util.LoggerFactory;
+
+/**
+ * Runs the writes to a database on a single dedicated connection, from a queue, so that writing
+ * threads wait in the queue instead of retrying on the write lock of the database. The writer
+ * thread takes the waiting writes in batches of up to <code>maxBatch</code> and group-commits each
+ * batch: its writes run in a single transaction, each within a savepoint, so that a failed write is
+ * rolled back alone while the others are committed together.
+ *
+ * <p>A write completes once its transaction is committed. Writes are given the writer connection
+ * and must neither commit nor roll back; they should be short, since the writes queued behind them
+ * wait.
+ *
+ * <p>Waiting for a write blocks the caller without holding any monitor, which suits virtual
+ * threads. A write must not wait for another write, which would never run.
+ *
+ * @see SQLiteDataSource#setWriteQueue(int)
+ */
+public final class SQLiteWriteQueue implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SQLiteWriteQueue.class);
+
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    /** A write to the database. */
+    @FunctionalInterface
+    public interface Write<T> {
+        /**
+         * @param connection The writer connection, in a transaction.
+         * @return The result of the write.
+         */
+        T run(SQLiteConnection connection) throws SQLException;
+    }
+
+    interface ConnectionFactory {
+        SQLiteConnection open() throws SQLException;
+    }
+
+    private static final class Task<T> {
+        final Write<T> write;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+
+        Task(Write<T> write) {
+            this.write = write;
+        }
+
+        void run(SQLiteConnection connection) throws SQLException {
+            result = write.run(connection);
+        }
+
+        void complete() {
+            future.complete(result);
+        }
+    }
+
+    /** Stops the writer thread once the writes queued before it are done. */
+    private static final Task<Void> STOP = new Task<>(connection -> null);
+
+    private final ConnectionFactory factory;
+    private final int maxBatch;
+    private final LinkedBlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /** The connection of the writer thread, opened on first use. */
+    private SQLiteConnection conn;
+
+    /**
+     * @param factory Opens the writer connection.
+     * @param maxBatch The maximum number of writes committed together.
+     */
+    SQLiteWriteQueue(ConnectionFactory factory, int maxBatch) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("invalid batch size: " + maxBatch);
+        }
+        this.factory = factory;
+        this.maxBatch = maxBatch;
+        this.thread = new Thread(this::run, "sqlite-jdbc-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a write.
+     *
+     * @param write The write.
+     * @return The result of the write, once committed.
+     */
+    public <T> CompletableFuture<T> submit(Write<T> write) {
+        Task<T> task = new Task<>(write);
+        queue.add(task);
+        // the writer thread fails the writes it finds once closed, and this one if it came later
+        if (closed && queue.remove(task)) {
+            task.future.completeExceptionally(new SQLException("write queue is closed"));
+        }
+        return task.future;
+    }
+
+    /**
+     * Queues a write and waits until it is committed.
+     *
+     * @param write The write.
+     * @return The result of the write.
+     * @throws SQLException if the write or its commit failed.
+     */
+    public <T> T execute(Write<T> write) throws SQLException {
+        if (Thread.currentThread() == thread) {
+            throw new SQLException("a write cannot wait for another write");
+        }
+        try {
+            return submit(write).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /** @return The number of transactions committed by the writer thread. */
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    /** @return The number of writes committed by the writer thread. */
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    private void run() {
+        List<Task<?>> batch = new ArrayList<>(maxBatch);
+        try {
+            boolean stop = false;
+            while (!stop) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+                stop = batch.remove(STOP);
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // also when the thread dies, so that no write waits forever
+            closed = true;
+            closeConnection();
+            // fail the writes queued after the queue was closed
+            batch.addAll(queue);
+            queue.clear();
+            for (Task<?> task : batch) {
+                task.future.completeExceptionally(new SQLException("write queue is closed"));
+            }
+        }
+    }
+
+    /** Runs a batch of writes in a single transaction. */
+    private void commit(List<Task<?>> batch) {
+        List<Task<?>> done = new ArrayList<>(batch.size());
+        try {
+            if (conn == null) {
+                conn = factory.open();
+            }
+            conn.setAutoCommit(false);
+            boolean committed = false;
+            try {
+                for (Task<?> task : batch) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        task.run(conn);
+                        done.add(task);
+                    } catch (Throwable e) {
+                        // errors too, so that a write is never committed half done
+                        conn.rollback(savepoint);
+                        task.future.completeExceptionally(e);
+                    }
+                    conn.releaseSavepoint(savepoint);
+                }
+                conn.commit();
+                committed = true;
+            } finally {
+                // if the rollback fails, the connection is closed, which rolls back
+                if (!committed) {
+                    conn.rollback();
+                }
+                conn.setAutoCommit(true);
+            }
+            commits.incrementAndGet();
+            writes.addAndGet(done.size());
+            for (Task<?> task : done) {
+                task.complete();
+            }
+        } catch (Throwable e) {
+            logger.warn(() -> "Group commit of " + batch.size() + " writes failed: " + e);
+            for (Task<?> task : batch) {
+                task.future.completeExceptionally(e);
+            }
+            // open a new connection for the next batch
+            closeConnection();
+        }
+    }
+
+    private void closeConnection() {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                logger.warn(() -> "Failed to close the writer connection: " + e);
+            }
+            conn = null;
+        }
+    }
+
+    /**
+     * Stops the writer thread, after the writes already queued, and closes its connection. Writes
+     * submitted afterwards fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.add(STOP);
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
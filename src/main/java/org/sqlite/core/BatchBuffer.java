@@ -0,0 +1,293 @@
+package org.sqlite.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Columnar storage for the parameters of a prepared statement and its pending batch rows.
+ *
+ * <p>Every parameter slot carries a type tag. Integer and floating point values are kept in
+ * primitive lanes so that setting and binding them does not allocate, while strings and blobs are
+ * kept in a side array. Row 0 holds the parameters bound by a plain execute; each call to {@link
+ * #addRow()} moves to a fresh row which starts as a copy of the previous one, matching the JDBC
+ * semantics of {@link java.sql.PreparedStatement#addBatch()}.
+ *
+ * <p>For batch execution the rows are packed into a direct buffer in native byte order, one value
+ * after the other: the type tag byte, followed by an 8 byte long or double for numeric values, or a
+ * 4 byte length and the UTF-8 or blob bytes for text and blob values. Zero-filled blobs carry their
+ * 8 byte length. NULL values have no payload.
+ */
+public final class BatchBuffer {
+    static final byte NULL = 0;
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte FLOAT = 3;
+    static final byte DOUBLE = 4;
+    static final byte TEXT = 5;
+    static final byte BLOB = 6;
+    static final byte ZEROBLOB = 7;
+
+    /**
+     * Largest packed buffer kept between batches; a larger one, grown for an unusually big batch,
+     * is dropped once it has been handed out so that its native memory can be reclaimed.
+     */
+    static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private final int paramCount;
+    private int row;
+
+    private byte[] types;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+
+    private ByteBuffer packed;
+
+    /** @param paramCount The number of parameters of the prepared statement. */
+    public BatchBuffer(int paramCount) {
+        this.paramCount = paramCount;
+        this.types = new byte[paramCount];
+        this.longs = new long[paramCount];
+        this.doubles = new double[paramCount];
+        this.objects = new Object[paramCount];
+    }
+
+    /** @return The number of parameters held by each row. */
+    public int getParameterCount() {
+        return paramCount;
+    }
+
+    /** @return The index of the row currently being filled. */
+    public int getRow() {
+        return row;
+    }
+
+    public void setNull(int index) {
+        int slot = slot(index);
+        types[slot] = NULL;
+        objects[slot] = null;
+    }
+
+    public void setInt(int index, int value) {
+        int slot = slot(index);
+        types[slot] = INT;
+        longs[slot] = value;
+        objects[slot] = null;
+    }
+
+    public void setLong(int index, long value) {
+        int slot = slot(index);
+        types[slot] = LONG;
+        longs[slot] = value;
+        objects[slot] = null;
+    }
+
+    public void setFloat(int index, float value) {
+        int slot = slot(index);
+        types[slot] = FLOAT;
+        doubles[slot] = value;
+        objects[slot] = null;
+    }
+
+    public void setDouble(int index, double value) {
+        int slot = slot(index);
+        types[slot] = DOUBLE;
+        doubles[slot] = value;
+        objects[slot] = null;
+    }
+
+    public void setText(int index, String value) {
+        setObject(index, value == null ? NULL : TEXT, value);
+    }
+
+    public void setBlob(int index, byte[] value) {
+        setObject(index, value == null ? NULL : BLOB, value);
+    }
+
+    /**
+     * Sets a blob of the given length filled with zeroes, without allocating it.
+     *
+     * @param index The 0-based parameter index.
+     * @param length The length of the blob in bytes.
+     */
+    public void setZeroBlob(int index, long length) {
+        int slot = slot(index);
+        types[slot] = ZEROBLOB;
+        longs[slot] = length;
+        objects[slot] = null;
+    }
+
+    private void setObject(int index, byte type, Object value) {
+        int slot = slot(index);
+        types[slot] = type;
+        objects[slot] = value;
+    }
+
+    /**
+     * Moves to the next row. The new row starts with the values of the previous one, so that
+     * parameters which are not set again are carried forward.
+     */
+    public void addRow() {
+        int from = row * paramCount;
+        row++;
+        int to = row * paramCount;
+        ensureCapacity(to + paramCount);
+        System.arraycopy(types, from, types, to, paramCount);
+        System.arraycopy(longs, from, longs, to, paramCount);
+        System.arraycopy(doubles, from, doubles, to, paramCount);
+        System.arraycopy(objects, from, objects, to, paramCount);
+    }
+
+    /** Sets every parameter of the current row to NULL. */
+    public void clearRow() {
+        int from = row * paramCount;
+        Arrays.fill(types, from, from + paramCount, NULL);
+        Arrays.fill(objects, from, from + paramCount, null);
+    }
+
+    /** Discards all rows and sets every parameter to NULL. */
+    public void clear() {
+        row = 0;
+        Arrays.fill(types, NULL);
+        Arrays.fill(objects, null);
+    }
+
+    /**
+     * Returns a parameter value boxed as it would have been set through {@link
+     * java.sql.PreparedStatement#setObject(int, Object)}.
+     *
+     * @param row The row index.
+     * @param index The 0-based parameter index.
+     * @return The value, or null for NULL parameters. Zero-filled blobs are described by a string
+     *     such as <code>zeroblob(1024)</code>.
+     */
+    public Object getObject(int row, int index) {
+        int slot = row * paramCount + index;
+        switch (types[slot]) {
+            case INT:
+                return (int) longs[slot];
+            case LONG:
+                return longs[slot];
+            case FLOAT:
+                return (float) doubles[slot];
+            case DOUBLE:
+                return doubles[slot];
+            case ZEROBLOB:
+                return "zeroblob(" + longs[slot] + ")";
+            default:
+                return objects[slot];
+        }
+    }
+
+    /**
+     * Packs the first rows of this buffer for native batch execution. The returned buffer is reused
+     * by subsequent calls, unless it grew beyond {@link #MAX_RETAINED_CAPACITY}.
+     *
+     * @param rows The number of rows to pack.
+     * @return A direct buffer positioned at 0 and limited to the packed bytes.
+     */
+    ByteBuffer pack(int rows) {
+        int slots = rows * paramCount;
+        ByteBuffer buf = packed;
+        if (buf == null) {
+            buf = allocate(Math.max(256, slots * 9));
+        }
+        buf.clear();
+        for (int slot = 0; slot < slots; slot++) {
+            byte type = types[slot];
+            switch (type) {
+                case INT:
+                case LONG:
+                case ZEROBLOB:
+                    buf = ensureRemaining(buf, 9);
+                    buf.put(type).putLong(longs[slot]);
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    buf = ensureRemaining(buf, 9);
+                    buf.put(type).putDouble(doubles[slot]);
+                    break;
+                case TEXT:
+                case BLOB:
+                    byte[] bytes =
+                            type == TEXT
+                                    ? ((String) objects[slot]).getBytes(StandardCharsets.UTF_8)
+                                    : (byte[]) objects[slot];
+                    buf = ensureRemaining(buf, 5 + bytes.length);
+                    buf.put(type).putInt(bytes.length).put(bytes);
+                    break;
+                default:
+                    buf = ensureRemaining(buf, 1);
+                    buf.put(NULL);
+            }
+        }
+        packed = buf.capacity() <= MAX_RETAINED_CAPACITY ? buf : null;
+        buf.flip();
+        return buf;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer ensureRemaining(ByteBuffer buf, int bytes) {
+        if (buf.remaining() >= bytes) {
+            return buf;
+        }
+        ByteBuffer grown = allocate(Math.max(buf.capacity() * 2, buf.position() + bytes));
+        buf.flip();
+        grown.put(buf);
+        return grown;
+    }
+
+    /** @return The capacity of the packed buffer kept for the next batch, or 0 if there is none. */
+    int retainedCapacity() {
+        return packed == null ? 0 : packed.capacity();
+    }
+
+    byte type(int slot) {
+        return types[slot];
+    }
+
+    long longAt(int slot) {
+        return longs[slot];
+    }
+
+    double doubleAt(int slot) {
+        return doubles[slot];
+    }
+
+    Object objectAt(int slot) {
+        return objects[slot];
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= paramCount) {
+            throw new IndexOutOfBoundsException(
+                    "parameter index " + (index + 1) + " out of range 1.." + paramCount);
+        }
+        return row * paramCount + index;
+    }
+
+    private void ensureCapacity(int slots) {
+        if (slots <= types.length) {
+            return;
+        }
+        int capacity = Math.max(slots, types.length * 2);
+        types = Arrays.copyOf(types, capacity);
+        longs = Arrays.copyOf(longs, capacity);
+        doubles = Arrays.copyOf(doubles, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+    }
+
+    @Override
+    public String toString() {
+        Object[] values = new Object[paramCount];
+        for (int i = 0; i < paramCount; i++) {
+            values[i] = getObject(0, i);
+        }
+        return Arrays.toString(values);
+    }
+}
@@ -101,4 +101,12 @@ public interface Codes {
     public static final int SQLITE_TEXT = 3;
     public static final int SQLITE_BLOB = 4;
     public static final int SQLITE_NULL = 5;
+
+    // flags of sqlite3_prepare_v3()
+
+    /** The prepared statement will be retained for a long time and probably reused many times */
+    public static final int SQLITE_PREPARE_PERSISTENT = 0x01;
+
+    /** Fail to prepare statements which use virtual tables */
+    public static final int SQLITE_PREPARE_NO_VTAB = 0x04;
 }
@@ -0,0 +1,135 @@
+package org.sqlite.core;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/**
+ * Decodes the text of a column into a caller-supplied {@link CharBuffer} or {@link StringBuilder}
+ * without creating a String. The UTF-8 bytes are copied by {@link DB#column_text_copy(long, int,
+ * ByteBuffer)} into a scratch buffer which is reused for every value; ASCII bytes are then widened
+ * directly and only other text goes through a {@link CharsetDecoder}.
+ *
+ * <p>Malformed UTF-8 is replaced the same way as by {@link String#String(byte[],
+ * java.nio.charset.Charset)}.
+ */
+public final class ColumnTextDecoder {
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final CharsetDecoder decoder =
+            StandardCharsets.UTF_8
+                    .newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private ByteBuffer bytes = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    private CharBuffer chars;
+    private int length;
+
+    /**
+     * Copies the text of a column into the scratch buffer.
+     *
+     * @param pointer The statement, positioned on a row.
+     * @param col The 0-based column index.
+     * @param confined true to read without locking, see {@link DB#isThreadConfined()}.
+     * @return false if the value is NULL.
+     * @throws SQLException
+     */
+    public boolean load(SafeStmtPtr pointer, int col, boolean confined) throws SQLException {
+        while (true) {
+            ByteBuffer buf = bytes;
+            length =
+                    confined
+                            ? pointer.confinedRunInt(
+                                    (db, ptr) -> db.column_text_copy_unlocked(ptr, col, buf))
+                            : pointer.safeRunInt((db, ptr) -> db.column_text_copy(ptr, col, buf));
+            if (length <= bytes.capacity()) {
+                break;
+            }
+            bytes = ByteBuffer.allocateDirect(Math.max(length, bytes.capacity() * 2));
+        }
+        if (length < 0) {
+            length = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the loaded text into a buffer.
+     *
+     * @param dst The buffer to write to, from its position.
+     * @return The number of characters written.
+     * @throws BufferOverflowException if the text does not fit; the position of the buffer is then
+     *     left unchanged.
+     */
+    public int decodeTo(CharBuffer dst) {
+        int start = dst.position();
+        int i = 0;
+        for (; i < length; i++) {
+            byte b = bytes.get(i);
+            if (b < 0) {
+                break;
+            }
+            if (!dst.hasRemaining()) {
+                dst.position(start);
+                throw new BufferOverflowException();
+            }
+            dst.put((char) b);
+        }
+        if (i < length && !decode(i, dst)) {
+            dst.position(start);
+            throw new BufferOverflowException();
+        }
+        return dst.position() - start;
+    }
+
+    /**
+     * Decodes the loaded text at the end of a builder.
+     *
+     * @param dst The builder to append to.
+     * @return The number of characters appended.
+     */
+    public int appendTo(StringBuilder dst) {
+        int start = dst.length();
+        dst.ensureCapacity(start + length);
+        int i = 0;
+        for (; i < length; i++) {
+            byte b = bytes.get(i);
+            if (b < 0) {
+                break;
+            }
+            dst.append((char) b);
+        }
+        if (i < length) {
+            // UTF-8 never decodes to more chars than bytes
+            if (chars == null || chars.capacity() < length - i) {
+                chars = CharBuffer.allocate(Math.max(length - i, INITIAL_CAPACITY));
+            }
+            chars.clear();
+            decode(i, chars);
+            dst.append(chars.array(), 0, chars.position());
+        }
+        return dst.length() - start;
+    }
+
+    private boolean decode(int from, CharBuffer dst) {
+        bytes.limit(length);
+        bytes.position(from);
+        decoder.reset();
+        try {
+            CoderResult result = decoder.decode(bytes, dst, true);
+            if (result.isOverflow()) {
+                return false;
+            }
+            return !decoder.flush(dst).isOverflow();
+        } finally {
+            bytes.clear();
+        }
+    }
+}
@@ -30,6 +30,9 @@ public abstract class CorePreparedStatement extends JDBC4Statement {
     protected int columnCount;
     protected int paramCount;
     protected int batchQueryCount;
+    protected BatchBuffer batchBuffer;
+    /** the flags the statement was compiled with */
+    final int prepFlags;
 
     /**
      * Constructs a prepared statement on a provided connection.
@@ -39,17 +42,32 @@ public abstract class CorePreparedStatement extends JDBC4Statement {
      * @throws SQLException
      */
     protected CorePreparedStatement(SQLiteConnection conn, String sql) throws SQLException {
+        this(conn, sql, 0);
+    }
+
+    /**
+     * Constructs a prepared statement on a provided connection, compiled with <code>
+     * sqlite3_prepare_v3</code> flags.
+     *
+     * @param conn Connection on which to create the prepared statement.
+     * @param sql The SQL script to prepare.
+     * @param prepFlags A combination of {@link Codes#SQLITE_PREPARE_PERSISTENT} and {@link
+     *     Codes#SQLITE_PREPARE_NO_VTAB}, or 0.
+     * @throws SQLException
+     */
+    protected CorePreparedStatement(SQLiteConnection conn, String sql, int prepFlags)
+            throws SQLException {
         super(conn);
 
         this.sql = sql;
+        this.prepFlags = prepFlags;
         DB db = conn.getDatabase();
-        db.prepare(this);
+        db.prepareCached(this, prepFlags);
         rs.colsMeta = pointer.safeRun(DB::column_names);
         columnCount = pointer.safeRunInt(DB::column_count);
         paramCount = pointer.safeRunInt(DB::bind_parameter_count);
         batchQueryCount = 0;
-        batch = null;
-        batchPos = 0;
+        batchBuffer = null;
     }
 
     /** @see org.sqlite.jdbc3.JDBC3Statement#executeBatch() */
@@ -74,7 +92,10 @@ public abstract class CorePreparedStatement extends JDBC4Statement {
                     try {
                         return conn.getDatabase()
                                 .executeBatch(
-                                        pointer, batchQueryCount, batch, conn.getAutoCommit());
+                                        pointer,
+                                        batchQueryCount,
+                                        batchBuffer,
+                                        conn.getAutoCommit());
                     } finally {
                         clearBatch();
                     }
@@ -85,24 +106,46 @@ public abstract class CorePreparedStatement extends JDBC4Statement {
     @Override
     public void clearBatch() throws SQLException {
         super.clearBatch();
+        if (batchBuffer != null) batchBuffer.clear();
         batchQueryCount = 0;
     }
 
+    @Override
+    protected void internalClose() throws SQLException {
+        batchBuffer = null;
+        if (pointer != null && !pointer.isClosed() && !conn.isClosed()) {
+            rs.close();
+            if (conn.getDatabase().release(this)) {
+                return;
+            }
+        }
+        super.internalClose();
+    }
+
+    @Override
+    protected void checkIndex(int index) throws SQLException {
+        if (batchBuffer == null) {
+            throw new SQLException("No parameter has been set yet");
+        }
+        if (index < 1 || index > paramCount) {
+            throw new SQLException("Parameter index is invalid");
+        }
+    }
+
     // PARAMETER FUNCTIONS //////////////////////////////////////////
 
     /**
-     * Assigns the object value to the element at the specific position of array batch.
+     * Returns the parameter buffer, creating it on first use.
      *
-     * @param pos
-     * @param value
+     * @return The buffer holding the current row of parameters.
      * @throws SQLException
      */
-    protected void batch(int pos, Object value) throws SQLException {
+    protected BatchBuffer batch() throws SQLException {
         checkOpen();
-        if (batch == null) {
-            batch = new Object[paramCount];
+        if (batchBuffer == null) {
+            batchBuffer = new BatchBuffer(paramCount);
         }
-        batch[batchPos + pos - 1] = value;
+        return batchBuffer;
     }
 
     /** Store the date in the user's preferred format (text, int, or real) */
@@ -111,20 +154,21 @@ public abstract class CorePreparedStatement extends JDBC4Statement {
         SQLiteConnectionConfig config = conn.getConnectionConfig();
         switch (config.getDateClass()) {
             case TEXT:
-                batch(
-                        pos,
-                        FastDateFormat.getInstance(
-                                        config.getDateStringFormat(), calendar.getTimeZone())
-                                .format(new Date(value)));
+                batch().setText(
+                                pos - 1,
+                                FastDateFormat.getInstance(
+                                                config.getDateStringFormat(),
+                                                calendar.getTimeZone())
+                                        .format(new Date(value)));
                 break;
 
             case REAL:
                 // long to Julian date
-                batch(pos, new Double((value / 86400000.0) + 2440587.5));
+                batch().setDouble(pos - 1, (value / 86400000.0) + 2440587.5);
                 break;
 
             default: // INTEGER:
-                batch(pos, new Long(value / config.getDateMultiplier()));
+                batch().setLong(pos - 1, value / config.getDateMultiplier());
         }
     }
 }
@@ -20,6 +20,7 @@ import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
 import org.sqlite.SQLiteConnectionConfig;
+import org.sqlite.metrics.SQLiteMetrics;
 
 /** Implements a JDBC ResultSet. */
 public abstract class CoreResultSet implements Codes {
@@ -50,6 +51,17 @@ public abstract class CoreResultSet implements Codes {
     public boolean closeStmt;
     protected Map<String, Integer> columnNameToIndex = null;
 
+    /** Number of rows prefetched at once when no fetch size is set */
+    protected static final int DEFAULT_PREFETCH_SIZE = 64;
+    /** if not null, rows are read from this cursor instead of the statement */
+    protected PrefetchCursor prefetch = null;
+    /** kept across executions to reuse its buffer */
+    private PrefetchCursor prefetchCursor = null;
+    /** true once a thread-confined connection has been checked, to read without locking */
+    protected boolean confined = false;
+    /** kept across executions to reuse its scratch buffer */
+    private ColumnTextDecoder textDecoder = null;
+
     /**
      * Default constructor for a given statement.
      *
@@ -115,6 +127,27 @@ public abstract class CoreResultSet implements Codes {
         return --col;
     }
 
+    /** @return The decoder used to read text into caller-supplied buffers. */
+    protected ColumnTextDecoder textDecoder() {
+        if (textDecoder == null) {
+            textDecoder = new ColumnTextDecoder();
+        }
+        return textDecoder;
+    }
+
+    /**
+     * Switches this result set to read its rows through a {@link PrefetchCursor}. Must be called
+     * before the first row is consumed.
+     */
+    protected void startPrefetch() {
+        if (prefetchCursor == null || prefetchCursor.getColumnCount() != cols.length) {
+            prefetchCursor = new PrefetchCursor(cols.length);
+        } else {
+            prefetchCursor.reset();
+        }
+        prefetch = prefetchCursor;
+    }
+
     /** @throws SQLException */
     public void checkMeta() throws SQLException {
         checkCol(1);
@@ -124,6 +157,12 @@ public abstract class CoreResultSet implements Codes {
     }
 
     public void close() throws SQLException {
+        if (row > 0) {
+            SQLiteMetrics metrics = stmt.getDatabase().getMetrics();
+            if (metrics != null) {
+                metrics.onRowsRead(row);
+            }
+        }
         cols = null;
         colsMeta = null;
         meta = null;
@@ -133,6 +172,8 @@ public abstract class CoreResultSet implements Codes {
         lastCol = -1;
         columnNameToIndex = null;
         emptyResultSet = false;
+        prefetch = null;
+        confined = false;
 
         if (stmt.pointer.isClosed() || (!open && !closeStmt)) {
             return;
@@ -21,6 +21,7 @@ import java.sql.Statement;
 import java.util.regex.Pattern;
 import org.sqlite.SQLiteConnection;
 import org.sqlite.SQLiteConnectionConfig;
+import org.sqlite.SQLiteStatementStatus;
 import org.sqlite.jdbc3.JDBC3Connection;
 import org.sqlite.jdbc4.JDBC4ResultSet;
 
@@ -71,6 +72,50 @@ public abstract class CoreStatement implements Codes {
         return !pointer.isClosed();
     }
 
+    /**
+     * Reads a runtime counter of the native statement without resetting it.
+     *
+     * @param status The counter to read.
+     * @return The current value of the counter.
+     * @throws SQLException if the statement is not prepared.
+     * @see #getStatus(SQLiteStatementStatus, boolean)
+     */
+    public int getStatus(SQLiteStatementStatus status) throws SQLException {
+        return getStatus(status, false);
+    }
+
+    /**
+     * Reads a runtime counter of the native statement, such as the number of full scan steps or
+     * sorts it has performed. Counters accumulate for as long as the native statement lives: across
+     * executions of a prepared statement, and across prepared statements sharing a native statement
+     * through the statement cache.
+     *
+     * @param status The counter to read.
+     * @param reset true to reset the counter to zero after reading it.
+     * @return The value of the counter before any reset.
+     * @throws SQLException if the statement is not prepared.
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/stmt_status.html">https://www.sqlite.org/c3ref/stmt_status.html</a>
+     */
+    public int getStatus(SQLiteStatementStatus status, boolean reset) throws SQLException {
+        if (pointer == null || pointer.isClosed()) {
+            throw new SQLException("statement is not prepared");
+        }
+        return pointer.safeRunInt((db, ptr) -> db.stmt_status(ptr, status.getId(), reset));
+    }
+
+    /**
+     * Resets all the runtime counters of the native statement to zero.
+     *
+     * @throws SQLException if the statement is not prepared.
+     * @see #getStatus(SQLiteStatementStatus, boolean)
+     */
+    public void resetStatus() throws SQLException {
+        for (SQLiteStatementStatus status : SQLiteStatementStatus.values()) {
+            getStatus(status, true);
+        }
+    }
+
     /**
      * Calls sqlite3_step() and sets up results. Expects a clean stmt.
      *
@@ -15,22 +15,50 @@
  */
 package org.sqlite.core;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.sql.BatchUpdateException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.sqlite.BusyHandler;
 import org.sqlite.Collation;
 import org.sqlite.Function;
 import org.sqlite.ProgressHandler;
+import org.sqlite.SQLiteCheckpointMode;
+import org.sqlite.SQLiteCheckpointResult;
 import org.sqlite.SQLiteCommitListener;
 import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConflictHandler;
 import org.sqlite.SQLiteErrorCode;
 import org.sqlite.SQLiteException;
+import org.sqlite.SQLitePreUpdate;
+import org.sqlite.SQLitePreUpdateListener;
+import org.sqlite.SQLiteTraceEvent;
+import org.sqlite.SQLiteTraceListener;
 import org.sqlite.SQLiteUpdateListener;
+import org.sqlite.SQLiteWalListener;
+import org.sqlite.metrics.SQLiteMetrics;
 
 /*
  * This class is the interface to SQLite. It provides some helper functions
@@ -50,6 +78,9 @@ public abstract class DB implements Codes {
     private final SQLiteConfig config;
     private final AtomicBoolean closed = new AtomicBoolean(true);
 
+    /** The only thread allowed to use a thread-confined connection; null if not confined. */
+    private volatile Thread confinedThread;
+
     /** The "begin;"and "commit;" statement handles. */
     volatile SafeStmtPtr begin;
 
@@ -58,13 +89,69 @@ public abstract class DB implements Codes {
     /** Tracer for statements to avoid unfinalized statements on db close. */
     private final Set<SafeStmtPtr> stmts = ConcurrentHashMap.newKeySet();
 
-    private final Set<SQLiteUpdateListener> updateListeners = new HashSet<>();
-    private final Set<SQLiteCommitListener> commitListeners = new HashSet<>();
+    /** Open incremental BLOB I/O handles, closed with the database. */
+    private final Set<Long> blobs = ConcurrentHashMap.newKeySet();
+
+    /** Open incremental backup handles, finished with the database. */
+    private final Set<NativeHandle> backups = ConcurrentHashMap.newKeySet();
+
+    /** Buffers used in place by read-only deserialized databases, by schema. */
+    private final Map<String, ByteBuffer> deserializedBuffers = new ConcurrentHashMap<>();
+
+    /** Open session extension handles, deleted with the database. */
+    private final Set<NativeHandle> sessions = ConcurrentHashMap.newKeySet();
+
+    /** Statements of closed prepared statements, kept for reuse. */
+    private final StatementCache statementCache;
+
+    /** Metrics recorded by this connection, null if disabled. */
+    private final SQLiteMetrics metrics;
+
+    // copied on write, so that the hooks can iterate them without locking
+    private final Set<SQLiteUpdateListener> updateListeners = new CopyOnWriteArraySet<>();
+    private final Set<SQLiteCommitListener> commitListeners = new CopyOnWriteArraySet<>();
+    private final Set<SQLiteWalListener> walListeners = new CopyOnWriteArraySet<>();
+    private final Set<SQLitePreUpdateListener> preUpdateListeners = new CopyOnWriteArraySet<>();
+
+    /** Creates the changes passed to the preupdate listeners, given with the listeners. */
+    private PreUpdateFactory preUpdateFactory;
+
+    /** The change being reported to the preupdate listeners, null outside of the hook. */
+    private SQLitePreUpdate currentPreUpdate;
+
+    /**
+     * Number of rows buffered natively before delivering update events, 0 for no buffering. Read by
+     * the commit hook.
+     */
+    private volatile int updateBufferSize = 0;
+
+    /** Whether the commit hook is installed, for commit listeners or buffered updates. */
+    private boolean commitHook = false;
+
+    /** The database and table names of buffered update events, by pairs. */
+    private final List<String> updateNames = new ArrayList<>();
+
+    private volatile SQLiteTraceListener traceListener;
+
+    /**
+     * The periodic delivery of the trace events, null without a flush interval or on a
+     * thread-confined connection.
+     */
+    private TraceFlushTask traceFlush;
+
+    /** The handler of the changeset being applied. */
+    private ChangesetHandler changesetHandler;
+
+    /** The changeset iterator of the conflict being handled, 0 outside of the conflict handler. */
+    private long conflictIterator;
 
     public DB(String url, String fileName, SQLiteConfig config) throws SQLException {
         this.url = url;
         this.fileName = fileName;
         this.config = config;
+        this.statementCache = new StatementCache(config.getStatementCacheSize());
+        this.metrics =
+                config.getMetricsName() == null ? null : SQLiteMetrics.get(config.getMetricsName());
     }
 
     public String getUrl() {
@@ -79,6 +166,56 @@ public abstract class DB implements Codes {
         return config;
     }
 
+    /** @return The cache of prepared statements of this connection. */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * @return The metrics recorded by this connection, or null if it records none.
+     * @see SQLiteConfig#setMetricsName(String)
+     */
+    public SQLiteMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return true if this connection is confined to a single thread, in which case result sets
+     *     read their columns through the unlocked native functions.
+     * @see SQLiteConfig#setThreadConfined(boolean)
+     */
+    public boolean isThreadConfined() {
+        return confinedThread != null;
+    }
+
+    /**
+     * Hands a thread-confined connection over to another thread. Has no effect if the connection is
+     * not thread confined.
+     *
+     * @param thread The thread which will use the connection from now on.
+     */
+    public void confineTo(Thread thread) {
+        if (confinedThread != null) {
+            confinedThread = thread;
+        }
+    }
+
+    /**
+     * Checks that a thread-confined connection is used from the thread it is confined to.
+     *
+     * @throws SQLException if the connection is used from another thread.
+     */
+    public void checkConfinement() throws SQLException {
+        Thread owner = confinedThread;
+        if (owner != null && owner != Thread.currentThread()) {
+            throw new SQLException(
+                    "connection is confined to thread "
+                            + owner.getName()
+                            + " and cannot be used from "
+                            + Thread.currentThread().getName());
+        }
+    }
+
     // WRAPPER FUNCTIONS ////////////////////////////////////////////
 
     /**
@@ -223,6 +360,24 @@ public abstract class DB implements Codes {
         }
         enable_load_extension(config.isEnabledLoadExtension());
         busy_timeout(config.getBusyTimeout());
+        if (config.isThreadConfined()) {
+            confinedThread = Thread.currentThread();
+        }
+        if (metrics != null) {
+            metrics.onConnectionOpened();
+            addCommitListener(
+                    new SQLiteCommitListener() {
+                        @Override
+                        public void onCommit() {
+                            metrics.onCommit();
+                        }
+
+                        @Override
+                        public void onRollback() {
+                            metrics.onRollback();
+                        }
+                    });
+        }
     }
 
     /**
@@ -239,36 +394,136 @@ public abstract class DB implements Codes {
             element.close();
         }
 
+        for (long ptr : statementCache.clear()) {
+            finalize(ptr);
+        }
+        for (long blob : blobs) {
+            closeBlob(blob);
+        }
+        for (NativeHandle session : sessions) {
+            closeSession(session);
+        }
+        for (NativeHandle backup : backups) {
+            finishBackup(backup);
+        }
+
         // clean up commit object
         if (begin != null) begin.close();
         if (commit != null) commit.close();
 
+        scheduleTraceFlush(0);
         closed.set(true);
         _close();
+        deserializedBuffers.clear();
+        if (metrics != null) {
+            metrics.onConnectionClosed();
+        }
+    }
+
+    /**
+     * Compiles an SQL statement.
+     *
+     * @param stmt The SQL statement to compile.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/prepare.html">https://www.sqlite.org/c3ref/prepare.html</a>
+     */
+    public final void prepare(CoreStatement stmt) throws SQLException {
+        prepare(stmt, 0);
     }
 
     /**
-     * Complies the an SQL statement.
+     * Compiles an SQL statement with <code>sqlite3_prepare_v3</code> flags.
      *
      * @param stmt The SQL statement to compile.
+     * @param prepFlags A combination of {@link #SQLITE_PREPARE_PERSISTENT} and {@link
+     *     #SQLITE_PREPARE_NO_VTAB}, or 0.
      * @throws SQLException
      * @see <a
      *     href="https://www.sqlite.org/c3ref/prepare.html">https://www.sqlite.org/c3ref/prepare.html</a>
      */
-    public final synchronized void prepare(CoreStatement stmt) throws SQLException {
+    public final synchronized void prepare(CoreStatement stmt, int prepFlags) throws SQLException {
         if (stmt.sql == null) {
             throw new NullPointerException();
         }
         if (stmt.pointer != null) {
             stmt.pointer.close();
         }
-        stmt.pointer = prepare(stmt.sql);
+        if (metrics == null) {
+            stmt.pointer = prepare(stmt.sql, prepFlags);
+        } else {
+            long start = System.nanoTime();
+            stmt.pointer = prepare(stmt.sql, prepFlags);
+            metrics.onPrepare(System.nanoTime() - start);
+        }
         final boolean added = stmts.add(stmt.pointer);
         if (!added) {
             throw new IllegalStateException("Already added pointer to statements set");
         }
     }
 
+    /**
+     * Compiles the SQL of a prepared statement, taking the native statement from the statement
+     * cache if one is available. Statements compiled while the cache is enabled are marked
+     * persistent, since they are likely to be kept by the cache.
+     *
+     * @param stmt The prepared statement.
+     * @param prepFlags The <code>sqlite3_prepare_v3</code> flags requested for the statement.
+     * @throws SQLException
+     * @see StatementCache
+     */
+    final synchronized void prepareCached(CorePreparedStatement stmt, int prepFlags)
+            throws SQLException {
+        if (stmt.sql == null) {
+            throw new NullPointerException();
+        }
+        if (!isCacheable(prepFlags)) {
+            prepare(stmt, prepFlags);
+            return;
+        }
+        long ptr = statementCache.take(stmt.sql);
+        if (ptr == 0) {
+            prepare(stmt, prepFlags | SQLITE_PREPARE_PERSISTENT);
+            return;
+        }
+        if (stmt.pointer != null) {
+            stmt.pointer.close();
+        }
+        stmt.pointer = new SafeStmtPtr(this, ptr);
+        stmts.add(stmt.pointer);
+    }
+
+    /**
+     * Closes the pointer of a prepared statement and returns its native statement to the statement
+     * cache, after resetting it and clearing its bindings.
+     *
+     * @param stmt The prepared statement.
+     * @return true if the statement was cached; false if the cache is disabled, in which case the
+     *     pointer is left untouched.
+     * @throws SQLException
+     * @see StatementCache
+     */
+    final synchronized boolean release(CorePreparedStatement stmt) throws SQLException {
+        SafeStmtPtr safePtr = stmt.pointer;
+        if (!isCacheable(stmt.prepFlags) || safePtr.isClosed()) {
+            return false;
+        }
+        long ptr = safePtr.detach();
+        stmts.remove(safePtr);
+        reset(ptr);
+        clear_bindings(ptr);
+        long evicted = statementCache.put(stmt.sql, ptr);
+        if (evicted != 0) {
+            finalize(evicted);
+        }
+        return true;
+    }
+
+    /** Only statements compiled without flags which change their meaning can be shared. */
+    private boolean isCacheable(int prepFlags) {
+        return statementCache.isEnabled() && (prepFlags & ~SQLITE_PREPARE_PERSISTENT) == 0;
+    }
+
     /**
      * Destroys a statement.
      *
@@ -328,7 +583,22 @@ public abstract class DB implements Codes {
      * @see <a
      *     href="https://www.sqlite.org/c3ref/prepare.html">https://www.sqlite.org/c3ref/prepare.html</a>
      */
-    protected abstract SafeStmtPtr prepare(String sql) throws SQLException;
+    protected SafeStmtPtr prepare(String sql) throws SQLException {
+        return prepare(sql, 0);
+    }
+
+    /**
+     * Complies an SQL statement with <code>sqlite3_prepare_v3</code> flags.
+     *
+     * @param sql An SQL statement.
+     * @param prepFlags A combination of {@link #SQLITE_PREPARE_PERSISTENT} and {@link
+     *     #SQLITE_PREPARE_NO_VTAB}, or 0.
+     * @return The compiled statement.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/prepare.html">https://www.sqlite.org/c3ref/prepare.html</a>
+     */
+    protected abstract SafeStmtPtr prepare(String sql, int prepFlags) throws SQLException;
 
     /**
      * Destroys a prepared statement.
@@ -341,6 +611,40 @@ public abstract class DB implements Codes {
      */
     protected abstract int finalize(long stmt) throws SQLException;
 
+    /**
+     * Executes a statement once for each row of a packed parameter buffer, binding, stepping and
+     * resetting it natively.
+     *
+     * @param stmt Pointer to the statement.
+     * @param params Direct buffer holding the packed parameter rows.
+     * @param length Number of packed bytes, starting at the beginning of the buffer.
+     * @param paramCount Number of parameters per row.
+     * @param rows Number of rows to execute.
+     * @param changes Receives the number of rows changed by each execution.
+     * @return Number of rows executed; less than rows if an execution returned a result row.
+     * @throws SQLException
+     * @see BatchBuffer
+     */
+    abstract int execute_batch(
+            long stmt, ByteBuffer params, int length, int paramCount, int rows, long[] changes)
+            throws SQLException;
+
+    /**
+     * Steps a statement up to maxRows times and serializes the resulting rows into a buffer.
+     *
+     * @param stmt Pointer to the statement.
+     * @param buffer Direct buffer receiving the header and the rows.
+     * @param maxRows Maximum number of rows to fetch.
+     * @param stepFirst False if the statement is already positioned on a row that has not been
+     *     fetched yet.
+     * @return Number of rows written to the buffer.
+     * @throws SQLException When a step fails; the rows stepped before it are still written to the
+     *     buffer, with its header.
+     * @see PrefetchCursor
+     */
+    abstract int fetch_rows(long stmt, ByteBuffer buffer, int maxRows, boolean stepFirst)
+            throws SQLException;
+
     /**
      * Evaluates a statement.
      *
@@ -392,6 +696,17 @@ public abstract class DB implements Codes {
      */
     public abstract int column_count(long stmt) throws SQLException;
 
+    /**
+     * @param stmt Pointer to the statement.
+     * @param op The counter to read, one of the SQLITE_STMTSTATUS_* codes.
+     * @param reset true to reset the counter to zero after reading it.
+     * @return The current value of the counter.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/stmt_status.html">https://www.sqlite.org/c3ref/stmt_status.html</a>
+     */
+    public abstract int stmt_status(long stmt, int op, boolean reset) throws SQLException;
+
     /**
      * @param stmt Pointer to the statement.
      * @param col Number of column.
@@ -442,6 +757,20 @@ public abstract class DB implements Codes {
      */
     public abstract String column_text(long stmt, int col) throws SQLException;
 
+    /**
+     * Copies the UTF-8 text of a column into a direct buffer, without creating a String.
+     *
+     * @param stmt Pointer to the statement.
+     * @param col Number of column.
+     * @param buffer A direct buffer; as many bytes as fit its capacity are copied from its start.
+     * @return The length of the text in bytes, which may exceed the capacity of the buffer, or -1
+     *     if the value is NULL.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/column_blob.html">https://www.sqlite.org/c3ref/column_blob.html</a>
+     */
+    public abstract int column_text_copy(long stmt, int col, ByteBuffer buffer) throws SQLException;
+
     /**
      * @param stmt Pointer to the statement.
      * @param col Number of column.
@@ -482,6 +811,67 @@ public abstract class DB implements Codes {
      */
     public abstract int column_int(long stmt, int col) throws SQLException;
 
+    // UNLOCKED VARIANTS ////////////////////////////////////////////
+    // Used by thread-confined connections once confinement has been checked. They must never be
+    // called concurrently with any other function of this connection.
+
+    /**
+     * Same as {@link #step(long)}, without locking the connection.
+     *
+     * @see #isThreadConfined()
+     */
+    public abstract int step_unlocked(long stmt) throws SQLException;
+
+    /**
+     * Same as {@link #column_type(long, int)}, without locking the connection.
+     *
+     * @see #isThreadConfined()
+     */
+    public abstract int column_type_unlocked(long stmt, int col) throws SQLException;
+
+    /**
+     * Same as {@link #column_text(long, int)}, without locking the connection.
+     *
+     * @see #isThreadConfined()
+     */
+    public abstract String column_text_unlocked(long stmt, int col) throws SQLException;
+
+    /**
+     * Same as {@link #column_blob(long, int)}, without locking the connection.
+     *
+     * @see #isThreadConfined()
+     */
+    public abstract byte[] column_blob_unlocked(long stmt, int col) throws SQLException;
+
+    /**
+     * Same as {@link #column_double(long, int)}, without locking the connection.
+     *
+     * @see #isThreadConfined()
+     */
+    public abstract double column_double_unlocked(long stmt, int col) throws SQLException;
+
+    /**
+     * Same as {@link #column_long(long, int)}, without locking the connection.
+     *
+     * @see #isThreadConfined()
+     */
+    public abstract long column_long_unlocked(long stmt, int col) throws SQLException;
+
+    /**
+     * Same as {@link #column_int(long, int)}, without locking the connection.
+     *
+     * @see #isThreadConfined()
+     */
+    public abstract int column_int_unlocked(long stmt, int col) throws SQLException;
+
+    /**
+     * Same as {@link #column_text_copy(long, int, ByteBuffer)}, without locking the connection.
+     *
+     * @see #isThreadConfined()
+     */
+    public abstract int column_text_copy_unlocked(long stmt, int col, ByteBuffer buffer)
+            throws SQLException;
+
     /**
      * Binds NULL value to prepared statements with the pointer to the statement object and the
      * index of the SQL parameter to be set to NULL.
@@ -563,6 +953,19 @@ public abstract class DB implements Codes {
      */
     abstract int bind_blob(long stmt, int pos, byte[] v) throws SQLException;
 
+    /**
+     * Binds a blob filled with zeroes, to be written later with incremental BLOB I/O.
+     *
+     * @param stmt Pointer to the statement.
+     * @param pos Index of the SQL parameter to be set.
+     * @param length Length of the blob in bytes.
+     * @return <a href="https://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/bind_blob.html">https://www.sqlite.org/c3ref/bind_blob.html</a>
+     */
+    abstract int bind_zeroblob(long stmt, int pos, long length) throws SQLException;
+
     /**
      * Sets the result of an SQL function as NULL with the pointer to the SQLite database context.
      *
@@ -817,6 +1220,75 @@ public abstract class DB implements Codes {
             int pagesPerStep)
             throws SQLException;
 
+    /**
+     * Opens an incremental backup or restore, to be copied step by step with {@link
+     * #backup_step(long, int)}. The handle is tracked by this database and finished with it.
+     *
+     * @param dbName The database to back up or restore, "main" or the name of an attached database.
+     * @param fileName The file to back up to, or to restore from.
+     * @param restore true to restore the database from the file, false to back it up to the file.
+     * @return The backup handle.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/backup_finish.html">https://www.sqlite.org/c3ref/backup_finish.html</a>
+     */
+    public final synchronized NativeHandle openBackup(
+            String dbName, String fileName, boolean restore) throws SQLException {
+        NativeHandle backup = new NativeHandle(backup_init(dbName, fileName, restore));
+        backups.add(backup);
+        return backup;
+    }
+
+    /**
+     * Finishes a backup opened by {@link #openBackup(String, String, boolean)}, and closes its
+     * file. Finishing a backup twice, or after the database was closed, has no effect.
+     *
+     * @param backup The backup handle.
+     * @return The error code of the last failed step, SQLITE_OK if none.
+     */
+    public final synchronized int finishBackup(NativeHandle backup) {
+        if (backups.remove(backup)) {
+            backup.markClosed();
+            return backup_finish(backup.pointer());
+        }
+        return SQLITE_OK;
+    }
+
+    abstract long backup_init(String dbName, String fileName, boolean restore) throws SQLException;
+
+    /**
+     * Copies pages of a backup.
+     *
+     * @param backup Pointer to the backup handle.
+     * @param nPages The maximum number of pages to copy, negative for all.
+     * @return SQLITE_OK if pages remain to be copied, SQLITE_DONE once complete, SQLITE_BUSY or
+     *     SQLITE_LOCKED if the step can be retried later.
+     * @throws SQLException on other errors.
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/backup_finish.html#sqlite3backupstep">https://www.sqlite.org/c3ref/backup_finish.html#sqlite3backupstep</a>
+     */
+    public abstract int backup_step(long backup, int nPages) throws SQLException;
+
+    /**
+     * @param backup Pointer to the backup handle.
+     * @return The number of pages left to copy, as of the last step.
+     */
+    public abstract int backup_remaining(long backup);
+
+    /**
+     * @param backup Pointer to the backup handle.
+     * @return The number of pages of the source database, as of the last step.
+     */
+    public abstract int backup_pagecount(long backup);
+
+    /**
+     * @param backup Pointer to the backup handle.
+     * @return The page size of the source database, in bytes.
+     */
+    public abstract int backup_pagesize(long backup);
+
+    abstract int backup_finish(long backup);
+
     /**
      * @param id The id of the limit.
      * @param value The new value of the limit.
@@ -827,6 +1299,42 @@ public abstract class DB implements Codes {
      */
     public abstract int limit(int id, int value) throws SQLException;
 
+    /**
+     * Reads connection counters.
+     *
+     * @param ops The counters to read, SQLITE_DBSTATUS_* codes.
+     * @param reset true to reset the counters after reading them.
+     * @return For each counter, its current value followed by its highest value.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/db_status.html">https://www.sqlite.org/c3ref/db_status.html</a>
+     */
+    public abstract long[] db_status(int[] ops, boolean reset) throws SQLException;
+
+    /**
+     * Reads process-wide counters, shared by all the connections.
+     *
+     * @param ops The counters to read, SQLITE_STATUS_* codes.
+     * @param reset true to reset the highest values after reading them.
+     * @return For each counter, its current value followed by its highest value.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/status.html">https://www.sqlite.org/c3ref/status.html</a>
+     */
+    public abstract long[] status64(int[] ops, boolean reset) throws SQLException;
+
+    /**
+     * Reads the schema version of each database of the connection in a single call.
+     *
+     * @return The names and schema versions of the databases, in an unspecified encoding which is
+     *     only meant to be compared with a previous result: it changes when the schema of a
+     *     database changes, or when a database is attached or detached.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/pragma.html#pragma_schema_version">https://www.sqlite.org/pragma.html#pragma_schema_version</a>
+     */
+    public abstract byte[] schema_versions() throws SQLException;
+
     public interface ProgressObserver {
         void progress(int remaining, int pageCount);
     }
@@ -871,33 +1379,35 @@ public abstract class DB implements Codes {
      * Bind values to prepared statements
      *
      * @param stmt Pointer to the statement.
-     * @param pos Index of the SQL parameter to be set to NULL.
-     * @param v Value to bind to the parameter.
+     * @param pos Index of the SQL parameter to be set.
+     * @param vals Parameter values.
+     * @param slot Position of the value within the parameter buffer.
      * @return <a href="https://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
      * @throws SQLException
      * @see <a
      *     href="https://www.sqlite.org/c3ref/bind_blob.html">https://www.sqlite.org/c3ref/bind_blob.html</a>
      */
-    final synchronized int sqlbind(long stmt, int pos, Object v) throws SQLException {
+    final synchronized int sqlbind(long stmt, int pos, BatchBuffer vals, int slot)
+            throws SQLException {
         pos++;
-        if (v == null) {
-            return bind_null(stmt, pos);
-        } else if (v instanceof Integer) {
-            return bind_int(stmt, pos, (Integer) v);
-        } else if (v instanceof Short) {
-            return bind_int(stmt, pos, ((Short) v).intValue());
-        } else if (v instanceof Long) {
-            return bind_long(stmt, pos, (Long) v);
-        } else if (v instanceof Float) {
-            return bind_double(stmt, pos, ((Float) v).doubleValue());
-        } else if (v instanceof Double) {
-            return bind_double(stmt, pos, (Double) v);
-        } else if (v instanceof String) {
-            return bind_text(stmt, pos, (String) v);
-        } else if (v instanceof byte[]) {
-            return bind_blob(stmt, pos, (byte[]) v);
-        } else {
-            throw new SQLException("unexpected param type: " + v.getClass());
+        switch (vals.type(slot)) {
+            case BatchBuffer.NULL:
+                return bind_null(stmt, pos);
+            case BatchBuffer.INT:
+                return bind_int(stmt, pos, (int) vals.longAt(slot));
+            case BatchBuffer.LONG:
+                return bind_long(stmt, pos, vals.longAt(slot));
+            case BatchBuffer.FLOAT:
+            case BatchBuffer.DOUBLE:
+                return bind_double(stmt, pos, vals.doubleAt(slot));
+            case BatchBuffer.TEXT:
+                return bind_text(stmt, pos, (String) vals.objectAt(slot));
+            case BatchBuffer.BLOB:
+                return bind_blob(stmt, pos, (byte[]) vals.objectAt(slot));
+            case BatchBuffer.ZEROBLOB:
+                return bind_zeroblob(stmt, pos, vals.longAt(slot));
+            default:
+                throw new SQLException("unexpected param type: " + vals.type(slot));
         }
     }
 
@@ -907,54 +1417,54 @@ public abstract class DB implements Codes {
      * @see java.sql.Statement#executeBatch()
      * @param stmt Pointer of Stmt object.
      * @param count Number of SQL statements.
-     * @param vals Array of parameter values.
+     * @param vals Parameter values, one row per command.
      * @return Array of the number of rows changed or inserted or deleted for each command if all
      *     commands execute successfully;
      * @throws SQLException if statement is not open or is being used elsewhere
      */
     final synchronized long[] executeBatch(
-            SafeStmtPtr stmt, int count, Object[] vals, boolean autoCommit) throws SQLException {
-        return stmt.safeRun((db, ptr) -> this.executeBatch(ptr, count, vals, autoCommit));
+            SafeStmtPtr stmt, int count, BatchBuffer vals, boolean autoCommit) throws SQLException {
+        checkConfinement();
+        if (metrics == null) {
+            return stmt.safeRun((db, ptr) -> this.executeBatch(ptr, count, vals, autoCommit));
+        }
+        long start = System.nanoTime();
+        long[] changes = stmt.safeRun((db, ptr) -> this.executeBatch(ptr, count, vals, autoCommit));
+        metrics.onBatch(count, System.nanoTime() - start);
+        return changes;
     }
 
     private synchronized long[] executeBatch(
-            long stmt, int count, Object[] vals, boolean autoCommit) throws SQLException {
+            long stmt, int count, BatchBuffer vals, boolean autoCommit) throws SQLException {
         if (count < 1) {
             throw new SQLException("count (" + count + ") < 1");
         }
 
         final int params = bind_parameter_count(stmt);
-
-        int rc;
+        if (params > vals.getParameterCount()) {
+            throw new SQLException(
+                    "assertion failure: param count ("
+                            + params
+                            + ") > value count ("
+                            + vals.getParameterCount()
+                            + ")");
+        }
         long[] changes = new long[count];
 
         try {
-            for (int i = 0; i < count; i++) {
-                reset(stmt);
-                for (int j = 0; j < params; j++) {
-                    rc = sqlbind(stmt, j, vals[(i * params) + j]);
-                    if (rc != SQLITE_OK) {
-                        throwex(rc);
-                    }
-                }
-
-                rc = step(stmt);
-                if (rc != SQLITE_DONE) {
-                    reset(stmt);
-                    if (rc == SQLITE_ROW) {
-                        // don't use the constructor with long because of
-                        // https://github.com/xerial/sqlite-jdbc/issues/1378
-                        throw new BatchUpdateException(
-                                "batch entry " + i + ": query returns results",
-                                null,
-                                0,
-                                Arrays.stream(changes).mapToInt(l -> (int) l).toArray(),
-                                null);
-                    }
-                    throwex(rc);
-                }
-
-                changes[i] = changes();
+            ByteBuffer packed = vals.pack(count);
+            int done =
+                    execute_batch(
+                            stmt, packed, packed.limit(), vals.getParameterCount(), count, changes);
+            if (done < count) {
+                // don't use the constructor with long because of
+                // https://github.com/xerial/sqlite-jdbc/issues/1378
+                throw new BatchUpdateException(
+                        "batch entry " + done + ": query returns results",
+                        null,
+                        0,
+                        Arrays.stream(changes).mapToInt(l -> (int) l).toArray(),
+                        null);
             }
         } finally {
             ensureAutoCommit(autoCommit);
@@ -968,13 +1478,21 @@ public abstract class DB implements Codes {
      * @see <a
      *     href="https://www.sqlite.org/c_interface.html#sqlite_exec">https://www.sqlite.org/c_interface.html#sqlite_exec</a>
      * @param stmt Stmt object.
-     * @param vals Array of parameter values.
+     * @param vals Parameter values; the first row is bound.
      * @return True if a row of ResultSet is ready; false otherwise.
      * @throws SQLException
      */
-    public final synchronized boolean execute(CoreStatement stmt, Object[] vals)
+    public final synchronized boolean execute(CoreStatement stmt, BatchBuffer vals)
             throws SQLException {
-        int statusCode = stmt.pointer.safeRunInt((db, ptr) -> execute(ptr, vals));
+        checkConfinement();
+        int statusCode;
+        if (metrics == null) {
+            statusCode = stmt.pointer.safeRunInt((db, ptr) -> execute(ptr, vals));
+        } else {
+            long start = System.nanoTime();
+            statusCode = stmt.pointer.safeRunInt((db, ptr) -> execute(ptr, vals));
+            metrics.onExecute(System.nanoTime() - start);
+        }
         switch (statusCode & 0xFF) {
             case SQLITE_DONE:
                 ensureAutoCommit(stmt.conn.getAutoCommit());
@@ -992,20 +1510,20 @@ public abstract class DB implements Codes {
         }
     }
 
-    private synchronized int execute(long ptr, Object[] vals) throws SQLException {
+    private synchronized int execute(long ptr, BatchBuffer vals) throws SQLException {
         if (vals != null) {
             final int params = bind_parameter_count(ptr);
-            if (params > vals.length) {
+            if (params > vals.getParameterCount()) {
                 throw new SQLException(
                         "assertion failure: param count ("
                                 + params
                                 + ") > value count ("
-                                + vals.length
+                                + vals.getParameterCount()
                                 + ")");
             }
 
             for (int i = 0; i < params; i++) {
-                int rc = sqlbind(ptr, i, vals[i]);
+                int rc = sqlbind(ptr, i, vals, i);
                 if (rc != SQLITE_OK) {
                     throwex(rc);
                 }
@@ -1027,6 +1545,7 @@ public abstract class DB implements Codes {
      *     href="https://www.sqlite.org/c3ref/exec.html">https://www.sqlite.org/c3ref/exec.html</a>
      */
     final synchronized boolean execute(String sql, boolean autoCommit) throws SQLException {
+        checkConfinement();
         int statusCode = _exec(sql);
         switch (statusCode) {
             case SQLITE_OK:
@@ -1046,12 +1565,12 @@ public abstract class DB implements Codes {
      * parameter values of the SQL statement..
      *
      * @param stmt Stmt object.
-     * @param vals Array of parameter values.
+     * @param vals Parameter values; the first row is bound.
      * @return Number of database rows that were changed or inserted or deleted by the most recently
      *     completed SQL.
      * @throws SQLException
      */
-    public final synchronized long executeUpdate(CoreStatement stmt, Object[] vals)
+    public final synchronized long executeUpdate(CoreStatement stmt, BatchBuffer vals)
             throws SQLException {
         try {
             if (execute(stmt, vals)) {
@@ -1067,70 +1586,478 @@ public abstract class DB implements Codes {
 
     abstract void set_commit_listener(boolean enabled);
 
-    abstract void set_update_listener(boolean enabled);
+    /**
+     * @param enabled true to install the update hook, false to remove it.
+     * @param bufferSize The number of rows to buffer before calling {@link #onUpdateBatch}, 0 to
+     *     call {@link #onUpdate} for each row.
+     */
+    abstract void set_update_listener(boolean enabled, int bufferSize);
+
+    /** Delivers the buffered update events, if any. */
+    abstract void update_flush();
 
     public synchronized void addUpdateListener(SQLiteUpdateListener listener) {
         if (updateListeners.add(listener) && updateListeners.size() == 1) {
-            set_update_listener(true);
+            set_update_listener(true, updateBufferSize);
+            updateCommitHook();
         }
     }
 
     public synchronized void addCommitListener(SQLiteCommitListener listener) {
-        if (commitListeners.add(listener) && commitListeners.size() == 1) {
-            set_commit_listener(true);
+        if (commitListeners.add(listener)) {
+            updateCommitHook();
         }
     }
 
     public synchronized void removeUpdateListener(SQLiteUpdateListener listener) {
-        if (updateListeners.remove(listener) && updateListeners.isEmpty()) {
-            set_update_listener(false);
+        if (!updateListeners.contains(listener)) {
+            return;
+        }
+        // the listener receives the events buffered while it was registered
+        flushUpdates();
+        updateListeners.remove(listener);
+        if (updateListeners.isEmpty()) {
+            set_update_listener(false, 0);
+            updateCommitHook();
         }
     }
 
     public synchronized void removeCommitListener(SQLiteCommitListener listener) {
-        if (commitListeners.remove(listener) && commitListeners.isEmpty()) {
-            set_commit_listener(false);
+        if (commitListeners.remove(listener)) {
+            updateCommitHook();
         }
     }
 
-    void onUpdate(int type, String database, String table, long rowId) {
-        Set<SQLiteUpdateListener> listeners;
-
-        synchronized (this) {
-            listeners = new HashSet<>(updateListeners);
-        }
-
-        for (SQLiteUpdateListener listener : listeners) {
-            SQLiteUpdateListener.Type operationType;
-
-            switch (type) {
-                case 18:
-                    operationType = SQLiteUpdateListener.Type.INSERT;
-                    break;
-                case 9:
-                    operationType = SQLiteUpdateListener.Type.DELETE;
-                    break;
-                case 23:
-                    operationType = SQLiteUpdateListener.Type.UPDATE;
-                    break;
-                default:
-                    throw new AssertionError("Unknown type: " + type);
-            }
-
-            listener.onUpdate(operationType, database, table, rowId);
+    /**
+     * Buffers update events natively and delivers them to the update listeners in a single call per
+     * transaction, or when the buffer is full, instead of calling into Java for each row.
+     *
+     * @param size The maximum number of buffered rows, 0 to deliver each row as it changes.
+     * @see org.sqlite.SQLiteConnection#setUpdateBufferSize(int)
+     */
+    public synchronized void setUpdateBufferSize(int size) throws SQLException {
+        if (size < 0) {
+            throw new SQLException("update buffer size must not be negative: " + size);
+        }
+        if (size == updateBufferSize) {
+            return;
+        }
+        updateBufferSize = size;
+        if (!updateListeners.isEmpty()) {
+            // the previous buffer, if any, is delivered when replaced
+            set_update_listener(true, size);
+            updateCommitHook();
         }
     }
 
-    void onCommit(boolean commit) {
-        Set<SQLiteCommitListener> listeners;
+    public synchronized int getUpdateBufferSize() {
+        return updateBufferSize;
+    }
 
-        synchronized (this) {
-            listeners = new HashSet<>(commitListeners);
+    /** Delivers the buffered update events to the listeners. */
+    public synchronized void flushUpdates() {
+        if (updateBufferSize > 0 && !updateListeners.isEmpty()) {
+            update_flush();
         }
+    }
 
-        for (SQLiteCommitListener listener : listeners) {
-            if (commit) listener.onCommit();
-            else listener.onRollback();
+    private void updateCommitHook() {
+        boolean needed =
+                !commitListeners.isEmpty() || (updateBufferSize > 0 && !updateListeners.isEmpty());
+        if (needed != commitHook) {
+            set_commit_listener(needed);
+            commitHook = needed;
+        }
+    }
+
+    abstract void set_wal_listener(boolean enabled) throws SQLException;
+
+    /**
+     * Runs a checkpoint with sqlite3_wal_checkpoint_v2.
+     *
+     * @param schema The database to checkpoint, or null for all the attached databases.
+     * @param mode The id of a {@link SQLiteCheckpointMode}.
+     * @return 1 if the checkpoint could not complete because of SQLITE_BUSY, else 0; the number of
+     *     frames in the log; the number of frames checkpointed.
+     * @throws SQLException
+     */
+    abstract int[] wal_checkpoint(String schema, int mode) throws SQLException;
+
+    public synchronized void addWalListener(SQLiteWalListener listener) throws SQLException {
+        if (walListeners.add(listener) && walListeners.size() == 1) {
+            set_wal_listener(true);
+        }
+    }
+
+    public synchronized void removeWalListener(SQLiteWalListener listener) throws SQLException {
+        if (walListeners.remove(listener) && walListeners.isEmpty()) {
+            set_wal_listener(false);
+        }
+    }
+
+    /**
+     * @see org.sqlite.SQLiteConnection#checkpoint(String, SQLiteCheckpointMode)
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/wal_checkpoint_v2.html">https://www.sqlite.org/c3ref/wal_checkpoint_v2.html</a>
+     */
+    public synchronized SQLiteCheckpointResult checkpoint(String schema, SQLiteCheckpointMode mode)
+            throws SQLException {
+        int[] result = wal_checkpoint(schema, mode.getId());
+        return new SQLiteCheckpointResult(result[0] != 0, result[1], result[2]);
+    }
+
+    void onWal(String database, int frames) {
+        for (SQLiteWalListener listener : walListeners) {
+            listener.onWal(database, frames);
+        }
+    }
+
+    abstract void set_preupdate_listener(boolean enabled) throws SQLException;
+
+    /**
+     * @param kind {@link #CHANGESET_OLD} or {@link #CHANGESET_NEW}.
+     * @param col The 0-based column index.
+     * @return Pointer to the value of the row being changed.
+     * @throws SQLException if the kind of value is not available for the change.
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/preupdate_blobwrite.html">https://www.sqlite.org/c3ref/preupdate_blobwrite.html</a>
+     */
+    abstract long preupdate_value(int kind, int col) throws SQLException;
+
+    /** Creates the changes passed to the preupdate listeners. */
+    public interface PreUpdateFactory {
+        /**
+         * @param type The operation about to be applied to the row.
+         * @param database The name of the database of the row.
+         * @param table The table of the row.
+         * @param oldRowId The rowid before an UPDATE or DELETE.
+         * @param newRowId The rowid after an INSERT or UPDATE.
+         * @param columnCount The number of columns of the table.
+         * @param depth The trigger depth of the change, 0 for a direct change.
+         * @return The change, reading its values with {@link #preUpdateValue(SQLitePreUpdate, int,
+         *     int)}.
+         */
+        SQLitePreUpdate create(
+                SQLiteUpdateListener.Type type,
+                String database,
+                String table,
+                long oldRowId,
+                long newRowId,
+                int columnCount,
+                int depth);
+    }
+
+    /**
+     * Adds a preupdate listener. The session extension owns the preupdate hook of the database, so
+     * listeners cannot be added while a session is open.
+     *
+     * @param listener The listener.
+     * @param factory Creates the changes passed to the listeners.
+     * @throws SQLException if a session is open.
+     * @see org.sqlite.SQLiteConnection#addPreUpdateListener(SQLitePreUpdateListener)
+     */
+    public synchronized void addPreUpdateListener(
+            SQLitePreUpdateListener listener, PreUpdateFactory factory) throws SQLException {
+        if (!sessions.isEmpty()) {
+            throw new SQLException("preupdate listeners cannot be used while a session is open");
+        }
+        preUpdateFactory = factory;
+        if (preUpdateListeners.add(listener) && preUpdateListeners.size() == 1) {
+            set_preupdate_listener(true);
+        }
+    }
+
+    public synchronized void removePreUpdateListener(SQLitePreUpdateListener listener)
+            throws SQLException {
+        if (preUpdateListeners.remove(listener) && preUpdateListeners.isEmpty()) {
+            set_preupdate_listener(false);
+        }
+    }
+
+    void onPreUpdate(
+            int type,
+            String database,
+            String table,
+            long oldRowId,
+            long newRowId,
+            int columnCount,
+            int depth) {
+        SQLitePreUpdate update =
+                preUpdateFactory.create(
+                        updateType(type), database, table, oldRowId, newRowId, columnCount, depth);
+        currentPreUpdate = update;
+        try {
+            for (SQLitePreUpdateListener listener : preUpdateListeners) {
+                listener.onPreUpdate(update);
+            }
+        } finally {
+            currentPreUpdate = null;
+        }
+    }
+
+    /**
+     * Reads a value of the row being changed, for the preupdate listeners.
+     *
+     * @param update The change passed to the listeners.
+     * @param kind {@link #CHANGESET_OLD} or {@link #CHANGESET_NEW}.
+     * @param col The 0-based column index.
+     * @return The value, null if it is NULL.
+     * @throws SQLException if the change is no longer available, or has no such value.
+     * @see org.sqlite.SQLitePreUpdate
+     */
+    public final synchronized Object preUpdateValue(SQLitePreUpdate update, int kind, int col)
+            throws SQLException {
+        if (update != currentPreUpdate) {
+            throw new SQLException("change is no longer available");
+        }
+        return sqlValue(preupdate_value(kind, col));
+    }
+
+    /**
+     * Subscribes to trace events with sqlite3_trace_v2; events are buffered natively and delivered
+     * by {@link #onTrace(byte[], int)}.
+     *
+     * @param mask The events to trace, a combination of the <code>TRACE_*</code> constants of
+     *     {@link SQLiteTraceListener}; 0 to stop tracing.
+     * @param threshold The number of buffered events which triggers a delivery.
+     * @param intervalMillis The time since the last delivery after which the next event triggers a
+     *     delivery, 0 to deliver only on the threshold.
+     */
+    abstract void set_trace(int mask, int threshold, long intervalMillis) throws SQLException;
+
+    /** Runs the periodic deliveries of trace events of all the databases. */
+    private static final class TraceFlusher {
+        static final ScheduledExecutorService SCHEDULER =
+                Executors.newSingleThreadScheduledExecutor(daemon("sqlite-jdbc-trace-timer"));
+
+        /** Waits for the lock of the databases, so that a busy one does not hold up the others. */
+        static final ExecutorService EXECUTOR =
+                Executors.newCachedThreadPool(daemon("sqlite-jdbc-trace-flusher"));
+
+        private static ThreadFactory daemon(String name) {
+            return runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * Delivers the trace events of a database at a fixed delay. The task only keeps a weak
+     * reference to the database, and cancels itself once the database is unreachable.
+     */
+    private static final class TraceFlushTask implements Runnable {
+        private final WeakReference<DB> db;
+
+        /** true while a delivery waits for the lock of the database. */
+        private final AtomicBoolean pending = new AtomicBoolean();
+
+        private volatile ScheduledFuture<?> future;
+
+        TraceFlushTask(DB db) {
+            this.db = new WeakReference<>(db);
+        }
+
+        void start(long intervalMillis) {
+            future =
+                    TraceFlusher.SCHEDULER.scheduleWithFixedDelay(
+                            this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        void cancel() {
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (db.get() == null) {
+                cancel();
+                return;
+            }
+            if (pending.compareAndSet(false, true)) {
+                TraceFlusher.EXECUTOR.execute(
+                        () -> {
+                            try {
+                                DB target = db.get();
+                                if (target != null) {
+                                    target.flushTrace();
+                                }
+                            } finally {
+                                pending.set(false);
+                            }
+                        });
+            }
+        }
+    }
+
+    /**
+     * Delivers the buffered trace events, if any. The native code also delivers them when a
+     * statement is reset or finalized once the flush interval has elapsed.
+     */
+    abstract void trace_flush();
+
+    /**
+     * Sets the listener of trace events, replacing the previous one after delivering its pending
+     * events.
+     *
+     * @see org.sqlite.SQLiteConnection#setTraceListener(SQLiteTraceListener, int, int, long)
+     */
+    public synchronized void setTraceListener(
+            SQLiteTraceListener listener, int mask, int threshold, long intervalMillis)
+            throws SQLException {
+        if (threshold < 1) {
+            throw new SQLException("threshold must be positive: " + threshold);
+        }
+        if (intervalMillis < 0) {
+            throw new SQLException("interval must not be negative: " + intervalMillis);
+        }
+        if (listener == null || (mask & 0x0f) == 0) {
+            set_trace(0, 0, 0);
+            traceListener = null;
+            scheduleTraceFlush(0);
+        } else {
+            // deliver the events of the previous listener to it before switching
+            trace_flush();
+            traceListener = listener;
+            set_trace(mask, threshold, intervalMillis);
+            scheduleTraceFlush(intervalMillis);
+        }
+    }
+
+    /**
+     * Delivers the buffered trace events every <code>intervalMillis</code>, so that they do not
+     * wait for the next event once the connection is idle. A thread-confined connection steps its
+     * statements without the lock of this database, so a background delivery could call the
+     * listener concurrently: its events are only delivered by the thread using it.
+     *
+     * @param intervalMillis The interval, 0 to stop.
+     */
+    private synchronized void scheduleTraceFlush(long intervalMillis) {
+        if (traceFlush != null) {
+            traceFlush.cancel();
+            traceFlush = null;
+        }
+        if (intervalMillis > 0 && !isThreadConfined()) {
+            traceFlush = new TraceFlushTask(this);
+            traceFlush.start(intervalMillis);
+        }
+    }
+
+    /** Delivers the buffered trace events to the listener. */
+    public synchronized void flushTrace() {
+        if (traceListener != null && !closed.get()) {
+            trace_flush();
+        }
+    }
+
+    /**
+     * Called from native code with a batch of trace events. Each record is made of the event type
+     * (1 byte), the statement pointer (8 bytes), the run time in nanoseconds (8 bytes), and the
+     * length (4 bytes) of the UTF-8 SQL text which follows; in native byte order.
+     *
+     * @param events The records, null if none.
+     * @param count The number of records.
+     * @param dropped The number of events dropped since the last delivery, for lack of memory.
+     */
+    void onTrace(byte[] events, int count, int dropped) {
+        SQLiteTraceListener listener = traceListener;
+        if (listener == null) {
+            return;
+        }
+        if (count > 0) {
+            listener.onTrace(readTraceEvents(events, count));
+        }
+        if (dropped > 0) {
+            listener.onEventsDropped(dropped);
+        }
+    }
+
+    private static List<SQLiteTraceEvent> readTraceEvents(byte[] events, int count) {
+        ByteBuffer buf = ByteBuffer.wrap(events).order(ByteOrder.nativeOrder());
+        List<SQLiteTraceEvent> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SQLiteTraceEvent.Type type = SQLiteTraceEvent.Type.fromMask(buf.get());
+            long statement = buf.getLong();
+            long nanos = buf.getLong();
+            int length = buf.getInt();
+            String sql = null;
+            if (type == SQLiteTraceEvent.Type.STMT) {
+                sql = new String(events, buf.position(), length, StandardCharsets.UTF_8);
+                buf.position(buf.position() + length);
+            }
+            list.add(new SQLiteTraceEvent(type, statement, nanos, sql));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    void onUpdate(int type, String database, String table, long rowId) {
+        SQLiteUpdateListener.Type operationType = updateType(type);
+        for (SQLiteUpdateListener listener : updateListeners) {
+            listener.onUpdate(operationType, database, table, rowId);
+        }
+    }
+
+    /**
+     * Called from native code with the buffered update events.
+     *
+     * @param firstName The id of the first new name; the names from this id on are replaced.
+     * @param newNames The database and table names interned since the previous call, by pairs.
+     * @param ops The operation of each row.
+     * @param names The id of the database and table names of each row.
+     * @param rowids The rowid of each row.
+     * @param count The number of rows.
+     * @param dropped The number of rows dropped since the previous call.
+     */
+    void onUpdateBatch(
+            int firstName,
+            String[] newNames,
+            byte[] ops,
+            int[] names,
+            long[] rowids,
+            int count,
+            int dropped) {
+        updateNames.subList(2 * firstName, updateNames.size()).clear();
+        Collections.addAll(updateNames, newNames);
+        for (int i = 0; i < count; i++) {
+            SQLiteUpdateListener.Type operationType = updateType(ops[i]);
+            String database = updateNames.get(2 * names[i]);
+            String table = updateNames.get(2 * names[i] + 1);
+            for (SQLiteUpdateListener listener : updateListeners) {
+                listener.onUpdate(operationType, database, table, rowids[i]);
+            }
+        }
+        if (dropped > 0) {
+            for (SQLiteUpdateListener listener : updateListeners) {
+                listener.onEventsDropped(dropped);
+            }
+        }
+    }
+
+    private static SQLiteUpdateListener.Type updateType(int type) {
+        switch (type) {
+            case 18:
+                return SQLiteUpdateListener.Type.INSERT;
+            case 9:
+                return SQLiteUpdateListener.Type.DELETE;
+            case 23:
+                return SQLiteUpdateListener.Type.UPDATE;
+            default:
+                throw new AssertionError("Unknown type: " + type);
+        }
+    }
+
+    void onCommit(boolean commit) {
+        // the changes of the transaction are reported before its end
+        if (updateBufferSize > 0 && !updateListeners.isEmpty()) {
+            update_flush();
+        }
+        for (SQLiteCommitListener listener : commitListeners) {
+            if (commit) listener.onCommit();
+            else listener.onRollback();
         }
     }
 
@@ -1190,6 +2117,9 @@ public abstract class DB implements Codes {
      * @throws SQLException Formatted SQLException with error code
      */
     private SQLiteException newSQLException(int errorCode) throws SQLException {
+        if (metrics != null) {
+            metrics.onError(errorCode);
+        }
         return newSQLException(errorCode, errmsg());
     }
 
@@ -1234,14 +2164,14 @@ public abstract class DB implements Codes {
         if (begin == null) {
             synchronized (this) {
                 if (begin == null) {
-                    begin = prepare("begin;");
+                    begin = prepare("begin;", SQLITE_PREPARE_PERSISTENT);
                 }
             }
         }
         if (commit == null) {
             synchronized (this) {
                 if (commit == null) {
-                    commit = prepare("commit;");
+                    commit = prepare("commit;", SQLITE_PREPARE_PERSISTENT);
                 }
             }
         }
@@ -1267,4 +2197,565 @@ public abstract class DB implements Codes {
     public abstract byte[] serialize(String schema) throws SQLException;
 
     public abstract void deserialize(String schema, byte[] buff) throws SQLException;
+
+    /**
+     * Flags of sqlite3_deserialize, see https://www.sqlite.org/c3ref/c_deserialize_freeonclose.html
+     */
+    static final int DESERIALIZE_FREEONCLOSE = 1;
+
+    static final int DESERIALIZE_RESIZEABLE = 2;
+    static final int DESERIALIZE_READONLY = 4;
+
+    /** The largest window on native memory handed to Java at once. */
+    private static final int MEMORY_WINDOW = 1 << 30;
+
+    /**
+     * @param schema The database to serialize.
+     * @return The pointer to the content of the database, its size, and 1 if the memory is a copy
+     *     to release with {@link #memory_free(long)}, else 0 for the memory of an in-memory
+     *     database, valid until it is next written.
+     * @throws SQLException
+     */
+    abstract long[] serialize_ptr(String schema) throws SQLException;
+
+    abstract long serialized_size(String schema) throws SQLException;
+
+    /**
+     * @param schema The database to replace.
+     * @param pointer The new content.
+     * @param size The size of the new content.
+     * @param flags The <code>DESERIALIZE_*</code> flags. With {@link #DESERIALIZE_FREEONCLOSE}, the
+     *     memory comes from {@link #memory_alloc(long)} and is released by SQLite, even on failure;
+     *     without it, the memory is used in place.
+     * @throws SQLException
+     */
+    abstract void deserialize_ptr(String schema, long pointer, long size, int flags)
+            throws SQLException;
+
+    abstract long memory_alloc(long size) throws SQLException;
+
+    abstract void memory_free(long pointer);
+
+    /** @return A direct buffer on native memory, which must not be used once it is released. */
+    abstract ByteBuffer memory_buffer(long pointer, int length);
+
+    abstract long buffer_address(ByteBuffer buffer);
+
+    /**
+     * @param schema The database, "main" or the name of an attached database.
+     * @return The size of the serialized database, in bytes.
+     * @see org.sqlite.SQLiteConnection#getSerializedSize(String)
+     */
+    public final synchronized long getSerializedSize(String schema) throws SQLException {
+        return serialized_size(schema);
+    }
+
+    /**
+     * Writes the content of a database into a buffer.
+     *
+     * @see org.sqlite.SQLiteConnection#serialize(String, ByteBuffer)
+     */
+    public final synchronized int serialize(String schema, ByteBuffer dst) throws SQLException {
+        long[] image = serialize_ptr(schema);
+        try {
+            if (image[1] > dst.remaining()) {
+                throw new SQLException(
+                        "buffer too small to serialize "
+                                + schema
+                                + ": "
+                                + dst.remaining()
+                                + " bytes remaining, "
+                                + image[1]
+                                + " needed");
+            }
+            if (image[1] > 0) {
+                dst.put(memory_buffer(image[0], (int) image[1]));
+            }
+            return (int) image[1];
+        } finally {
+            if (image[2] != 0) {
+                memory_free(image[0]);
+            }
+        }
+    }
+
+    /**
+     * Writes the content of a database to a channel.
+     *
+     * @see org.sqlite.SQLiteConnection#serialize(String, WritableByteChannel)
+     */
+    public final synchronized long serialize(String schema, WritableByteChannel out)
+            throws SQLException, IOException {
+        long[] image = serialize_ptr(schema);
+        try {
+            for (long offset = 0; offset < image[1]; ) {
+                int length = (int) Math.min(MEMORY_WINDOW, image[1] - offset);
+                ByteBuffer window = memory_buffer(image[0] + offset, length);
+                while (window.hasRemaining()) {
+                    out.write(window);
+                }
+                offset += length;
+            }
+            return image[1];
+        } finally {
+            if (image[2] != 0) {
+                memory_free(image[0]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the content of a database with the remaining bytes of a buffer.
+     *
+     * @see org.sqlite.SQLiteConnection#deserialize(String, ByteBuffer, boolean)
+     */
+    public final synchronized void deserialize(String schema, ByteBuffer src, boolean readOnly)
+            throws SQLException {
+        // checked before SQLite uses the buffer, which is only tracked once mapped
+        checkSchema(schema);
+        int size = src.remaining();
+        if (readOnly && src.isDirect()) {
+            // used in place, and kept reachable until replaced or closed
+            long address = buffer_address(src);
+            deserialize_ptr(schema, address + src.position(), size, DESERIALIZE_READONLY);
+            deserializedBuffers.put(schema, src);
+            return;
+        }
+        long pointer = memory_alloc(size);
+        try {
+            memory_buffer(pointer, size).put(src.duplicate());
+        } catch (RuntimeException e) {
+            memory_free(pointer);
+            throw e;
+        }
+        deserialize_ptr(schema, pointer, size, copyFlags(readOnly));
+        deserializedBuffers.remove(schema);
+    }
+
+    /**
+     * Replaces the content of a database with bytes read from a channel.
+     *
+     * @see org.sqlite.SQLiteConnection#deserialize(String, ReadableByteChannel, long, boolean)
+     */
+    public final synchronized void deserialize(
+            String schema, ReadableByteChannel in, long size, boolean readOnly)
+            throws SQLException, IOException {
+        checkSchema(schema);
+        if (size < 0) {
+            throw new SQLException("invalid size: " + size);
+        }
+        long pointer = memory_alloc(size);
+        try {
+            for (long offset = 0; offset < size; ) {
+                int length = (int) Math.min(MEMORY_WINDOW, size - offset);
+                ByteBuffer window = memory_buffer(pointer + offset, length);
+                while (window.hasRemaining()) {
+                    if (in.read(window) < 0) {
+                        throw new EOFException(
+                                "end of channel after " + (offset + window.position()) + " bytes");
+                    }
+                }
+                offset += length;
+            }
+        } catch (IOException | RuntimeException e) {
+            memory_free(pointer);
+            throw e;
+        }
+        deserialize_ptr(schema, pointer, size, copyFlags(readOnly));
+        deserializedBuffers.remove(schema);
+    }
+
+    /**
+     * Replaces the content of a database of another connection with the content of a database of
+     * this connection. The content of an in-memory database is copied once, straight from the
+     * memory of SQLite; that of a database file is read once, and the copy handed over.
+     *
+     * @param schema The database to copy, "main" or the name of an attached database.
+     * @param target The connection to copy to.
+     * @param targetSchema The database to replace in the target connection.
+     * @param readOnly true to open the copy read-only.
+     * @see org.sqlite.SQLiteConnection#cloneInMemory(String, java.util.Properties, boolean)
+     */
+    public final void copyTo(String schema, DB target, String targetSchema, boolean readOnly)
+            throws SQLException {
+        checkSchema(schema);
+        checkSchema(targetSchema);
+        long pointer;
+        long size;
+        synchronized (this) {
+            long[] image = serialize_ptr(schema);
+            size = image[1];
+            if (image[2] != 0) {
+                pointer = image[0];
+            } else {
+                // the memory of an in-memory database, only valid until it is written
+                pointer = memory_alloc(size);
+                try {
+                    for (long offset = 0; offset < size; ) {
+                        int length = (int) Math.min(MEMORY_WINDOW, size - offset);
+                        memory_buffer(pointer + offset, length)
+                                .put(memory_buffer(image[0] + offset, length));
+                        offset += length;
+                    }
+                } catch (RuntimeException e) {
+                    memory_free(pointer);
+                    throw e;
+                }
+            }
+        }
+        synchronized (target) {
+            target.deserialize_ptr(targetSchema, pointer, size, copyFlags(readOnly));
+            target.deserializedBuffers.remove(targetSchema);
+        }
+    }
+
+    private static void checkSchema(String schema) throws SQLException {
+        if (schema == null) {
+            throw new SQLException("schema must not be null");
+        }
+    }
+
+    private static int copyFlags(boolean readOnly) {
+        return DESERIALIZE_FREEONCLOSE | (readOnly ? DESERIALIZE_READONLY : DESERIALIZE_RESIZEABLE);
+    }
+
+    // INCREMENTAL BLOB I/O /////////////////////////////////////////
+
+    /**
+     * Opens a handle on a blob for incremental I/O. The handle is tracked by this database and
+     * closed with it.
+     *
+     * @param schema The schema of the table, "main" or the name of an attached database.
+     * @param table The table name.
+     * @param column The column name.
+     * @param rowid The rowid of the row holding the blob.
+     * @param write true to open the blob for reading and writing.
+     * @return Pointer to the blob handle.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/blob_open.html">https://www.sqlite.org/c3ref/blob_open.html</a>
+     */
+    public final synchronized long openBlob(
+            String schema, String table, String column, long rowid, boolean write)
+            throws SQLException {
+        long blob = blob_open(schema, table, column, rowid, write);
+        blobs.add(blob);
+        return blob;
+    }
+
+    /**
+     * Closes a blob handle opened by {@link #openBlob(String, String, String, long, boolean)}.
+     * Closing a handle twice, or after the database was closed, has no effect.
+     *
+     * @param blob Pointer to the blob handle.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/blob_close.html">https://www.sqlite.org/c3ref/blob_close.html</a>
+     */
+    public final synchronized void closeBlob(long blob) throws SQLException {
+        if (blobs.remove(blob)) {
+            int rc = blob_close(blob);
+            if (rc != SQLITE_OK) {
+                throwex(rc);
+            }
+        }
+    }
+
+    /**
+     * @param blob Pointer to the blob handle.
+     * @return true if the handle is open.
+     */
+    public boolean isBlobOpen(long blob) {
+        return blobs.contains(blob);
+    }
+
+    abstract long blob_open(String schema, String table, String column, long rowid, boolean write)
+            throws SQLException;
+
+    /**
+     * Moves a blob handle to the same column of another row.
+     *
+     * @param blob Pointer to the blob handle.
+     * @param rowid The rowid of the new row.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/blob_reopen.html">https://www.sqlite.org/c3ref/blob_reopen.html</a>
+     */
+    public abstract void blob_reopen(long blob, long rowid) throws SQLException;
+
+    /**
+     * @param blob Pointer to the blob handle.
+     * @return The size of the blob in bytes.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/blob_bytes.html">https://www.sqlite.org/c3ref/blob_bytes.html</a>
+     */
+    public abstract int blob_bytes(long blob) throws SQLException;
+
+    /**
+     * Reads bytes from a blob.
+     *
+     * @param blob Pointer to the blob handle.
+     * @param offset The offset in the blob to read from.
+     * @param b The buffer to read into.
+     * @param off The offset in the buffer.
+     * @param len The number of bytes to read, which must all be within the blob.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/blob_read.html">https://www.sqlite.org/c3ref/blob_read.html</a>
+     */
+    public abstract void blob_read(long blob, int offset, byte[] b, int off, int len)
+            throws SQLException;
+
+    /**
+     * Writes bytes into a blob. The size of a blob cannot be changed.
+     *
+     * @param blob Pointer to the blob handle.
+     * @param offset The offset in the blob to write at.
+     * @param b The bytes to write.
+     * @param off The offset in the buffer.
+     * @param len The number of bytes to write, which must all fit within the blob.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/blob_write.html">https://www.sqlite.org/c3ref/blob_write.html</a>
+     */
+    public abstract void blob_write(long blob, int offset, byte[] b, int off, int len)
+            throws SQLException;
+
+    abstract int blob_close(long blob) throws SQLException;
+
+    // SESSION EXTENSION ////////////////////////////////////////////
+
+    /** Kinds of values of a change, for {@link #changesetValue(long, int, int)}. */
+    public static final int CHANGESET_OLD = 0;
+
+    public static final int CHANGESET_NEW = 1;
+    public static final int CHANGESET_CONFLICT = 2;
+
+    /**
+     * Creates a session recording the changes of a database. The session is tracked by this
+     * database and deleted with it. Sessions share the preupdate hook of the database, so they
+     * cannot be created while preupdate listeners are registered.
+     *
+     * @param schema The database to record, "main" or the name of an attached database.
+     * @return The session.
+     * @throws SQLException if preupdate listeners are registered.
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3session_create.html">https://www.sqlite.org/session/sqlite3session_create.html</a>
+     */
+    public final synchronized NativeHandle openSession(String schema) throws SQLException {
+        if (!preUpdateListeners.isEmpty()) {
+            throw new SQLException(
+                    "sessions cannot be used while preupdate listeners are registered");
+        }
+        NativeHandle session = new NativeHandle(session_create(schema));
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * Deletes a session opened by {@link #openSession(String)}. Closing a session twice, or after
+     * the database was closed, has no effect.
+     *
+     * @param session The session.
+     */
+    public final synchronized void closeSession(NativeHandle session) {
+        if (sessions.remove(session)) {
+            session.markClosed();
+            session_delete(session.pointer());
+        }
+    }
+
+    abstract long session_create(String schema) throws SQLException;
+
+    abstract void session_delete(long session);
+
+    /**
+     * @param session Pointer to the session.
+     * @param table The table to record, null for all the tables.
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3session_attach.html">https://www.sqlite.org/session/sqlite3session_attach.html</a>
+     */
+    public abstract void session_attach(long session, String table) throws SQLException;
+
+    /**
+     * @param session Pointer to the session.
+     * @param enable 1 to enable, 0 to disable, a negative value to only query.
+     * @return true if the session is enabled.
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3session_enable.html">https://www.sqlite.org/session/sqlite3session_enable.html</a>
+     */
+    public abstract boolean session_enable(long session, int enable);
+
+    /**
+     * @param session Pointer to the session.
+     * @param indirect 1 to set, 0 to clear, a negative value to only query.
+     * @return true if the session is indirect.
+     * @see <a
+     *     href="https://www.sqlite.org/session/sqlite3session_indirect.html">https://www.sqlite.org/session/sqlite3session_indirect.html</a>
+     */
+    public abstract boolean session_indirect(long session, int indirect);
+
+    /**
+     * @param session Pointer to the session.
+     * @return true if no change was recorded.
+     */
+    public abstract boolean session_isempty(long session);
+
+    /**
+     * @param session Pointer to the session.
+     * @param patchset true for a patchset, false for a changeset.
+     * @return The recorded changes.
+     * @throws SQLException
+     */
+    public abstract byte[] session_changeset(long session, boolean patchset) throws SQLException;
+
+    /**
+     * @param session Pointer to the session.
+     * @param patchset true for a patchset, false for a changeset.
+     * @param out The stream the recorded changes are written to.
+     * @throws SQLException
+     * @throws IOException when thrown by the stream.
+     */
+    public abstract void session_changeset_strm(long session, boolean patchset, OutputStream out)
+            throws SQLException, IOException;
+
+    /**
+     * @param changeset The changeset to apply.
+     * @param filter true to call {@link #onChangesetFilter(String)} for each table.
+     * @throws SQLException
+     */
+    abstract void changeset_apply(byte[] changeset, boolean filter) throws SQLException;
+
+    /**
+     * @param iter Pointer to the changeset iterator.
+     * @param kind {@link #CHANGESET_OLD}, {@link #CHANGESET_NEW} or {@link #CHANGESET_CONFLICT}.
+     * @param col The 0-based column index.
+     * @return Pointer to the value, 0 if the column is not part of the change.
+     * @throws SQLException if the kind of value is not available for the change.
+     */
+    abstract long changeset_value(long iter, int kind, int col) throws SQLException;
+
+    abstract int sqlvalue_type(long value);
+
+    abstract long sqlvalue_int64(long value);
+
+    abstract double sqlvalue_double(long value);
+
+    abstract byte[] sqlvalue_bytes(long value);
+
+    /** Receives the callbacks of {@link #applyChangeset(byte[], ChangesetHandler)}. */
+    public interface ChangesetHandler {
+        /**
+         * @param table The name of a table of the changeset.
+         * @return true to apply the changes of the table.
+         */
+        boolean include(String table);
+
+        /**
+         * @param type The type of conflict.
+         * @param iter Pointer to the changeset iterator, for {@link #changesetValue(long, int,
+         *     int)}; 0 for a foreign key conflict.
+         * @param table The table of the change, null for a foreign key conflict.
+         * @param op The operation of the change, null for a foreign key conflict.
+         * @param columnCount The number of columns of the table.
+         * @param indirect true if the change was recorded while the session was indirect.
+         * @return How to resolve the conflict.
+         */
+        SQLiteConflictHandler.Resolution onConflict(
+                SQLiteConflictHandler.Type type,
+                long iter,
+                String table,
+                SQLiteUpdateListener.Type op,
+                int columnCount,
+                boolean indirect)
+                throws SQLException;
+    }
+
+    /**
+     * Applies a changeset or patchset to this database, in a single transaction. If a callback of
+     * the handler throws, the changes applied so far are rolled back.
+     *
+     * @param changeset The changes to apply.
+     * @param handler The handler of the conflicting changes, or null to abort on the first
+     *     conflict.
+     * @throws SQLException if the changeset is aborted, or the exception thrown by the handler.
+     * @see org.sqlite.SQLiteConnection#applyChangeset(byte[], SQLiteConflictHandler)
+     */
+    public final synchronized void applyChangeset(byte[] changeset, ChangesetHandler handler)
+            throws SQLException {
+        changesetHandler = handler;
+        try {
+            changeset_apply(changeset, handler != null);
+        } finally {
+            changesetHandler = null;
+        }
+    }
+
+    boolean onChangesetFilter(String table) {
+        return changesetHandler.include(table);
+    }
+
+    int onChangesetConflict(
+            int type, long iter, String table, int op, int columnCount, boolean indirect)
+            throws SQLException {
+        if (changesetHandler == null) {
+            return SQLiteConflictHandler.Resolution.ABORT.getId();
+        }
+        SQLiteConflictHandler.Type conflictType = SQLiteConflictHandler.Type.fromId(type);
+        if (conflictType == SQLiteConflictHandler.Type.FOREIGN_KEY) {
+            return changesetHandler.onConflict(conflictType, 0, null, null, 0, false).getId();
+        }
+        conflictIterator = iter;
+        try {
+            return changesetHandler
+                    .onConflict(conflictType, iter, table, updateType(op), columnCount, indirect)
+                    .getId();
+        } finally {
+            conflictIterator = 0;
+        }
+    }
+
+    /**
+     * Reads a value of the change passed to the conflict handler.
+     *
+     * @param iter Pointer to the changeset iterator.
+     * @param kind {@link #CHANGESET_OLD}, {@link #CHANGESET_NEW} or {@link #CHANGESET_CONFLICT}.
+     * @param col The 0-based column index.
+     * @return The value, null if it is NULL or not part of the change.
+     * @throws SQLException if the change is no longer available, or has no such value.
+     * @see org.sqlite.SQLiteChange
+     */
+    public final synchronized Object changesetValue(long iter, int kind, int col)
+            throws SQLException {
+        if (iter == 0 || iter != conflictIterator) {
+            throw new SQLException("change is no longer available");
+        }
+        return sqlValue(changeset_value(iter, kind, col));
+    }
+
+    /**
+     * Converts a protected <code>sqlite3_value</code> to Java: a Long, Double, String, byte[] or
+     * null.
+     *
+     * @param value Pointer to the value, 0 for null.
+     */
+    final Object sqlValue(long value) {
+        if (value == 0) {
+            return null;
+        }
+        switch (sqlvalue_type(value)) {
+            case SQLITE_INTEGER:
+                return sqlvalue_int64(value);
+            case SQLITE_FLOAT:
+                return sqlvalue_double(value);
+            case SQLITE_TEXT:
+                return new String(sqlvalue_bytes(value), StandardCharsets.UTF_8);
+            case SQLITE_BLOB:
+                return sqlvalue_bytes(value);
+            default:
+                return null;
+        }
+    }
 }
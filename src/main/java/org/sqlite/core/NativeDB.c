@@ -33,8 +33,17 @@ static jfieldID db_busyHandler = 0;
 static jfieldID db_commitListener = 0;
 static jfieldID db_updateListener = 0;
 static jfieldID db_progressHandler = 0;
+static jfieldID db_traceListener = 0;
+static jfieldID db_walListener = 0;
+static jfieldID db_preUpdateListener = 0;
 static jmethodID db_mth_onUpdate = 0;
+static jmethodID db_mth_onUpdateBatch = 0;
 static jmethodID db_mth_onCommit = 0;
+static jmethodID db_mth_onTrace = 0;
+static jmethodID db_mth_onWal = 0;
+static jmethodID db_mth_onPreUpdate = 0;
+static jmethodID db_mth_onChangesetFilter = 0;
+static jmethodID db_mth_onChangesetConflict = 0;
 static jmethodID mth_stringToUtf8ByteArray = 0;
 static jmethodID mth_throwex = 0;
 static jmethodID mth_throwexcode = 0;
@@ -72,6 +81,9 @@ static jmethodID exp_msg = 0;
 
 static jclass bool_array_class = 0;
 
+static jclass ostreamclass = 0;
+static jmethodID ostream_mth_write = 0;
+
 static void * toref(jlong value)
 {
     void * ret;
@@ -460,8 +472,17 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved)
     db_commitListener = (*env)->GetFieldID(env, dbclass, "commitListener", "J");
     db_updateListener = (*env)->GetFieldID(env, dbclass, "updateListener", "J");
     db_progressHandler = (*env)->GetFieldID(env, dbclass, "progressHandler", "J");
+    db_traceListener = (*env)->GetFieldID(env, dbclass, "traceListener", "J");
+    db_walListener = (*env)->GetFieldID(env, dbclass, "walListener", "J");
+    db_preUpdateListener = (*env)->GetFieldID(env, dbclass, "preUpdateListener", "J");
     db_mth_onUpdate = (*env)->GetMethodID(env, dbclass, "onUpdate", "(ILjava/lang/String;Ljava/lang/String;J)V");
+    db_mth_onUpdateBatch = (*env)->GetMethodID(env, dbclass, "onUpdateBatch", "(I[Ljava/lang/String;[B[I[JII)V");
     db_mth_onCommit = (*env)->GetMethodID(env, dbclass, "onCommit", "(Z)V");
+    db_mth_onTrace = (*env)->GetMethodID(env, dbclass, "onTrace", "([BII)V");
+    db_mth_onWal = (*env)->GetMethodID(env, dbclass, "onWal", "(Ljava/lang/String;I)V");
+    db_mth_onPreUpdate = (*env)->GetMethodID(env, dbclass, "onPreUpdate", "(ILjava/lang/String;Ljava/lang/String;JJII)V");
+    db_mth_onChangesetFilter = (*env)->GetMethodID(env, dbclass, "onChangesetFilter", "(Ljava/lang/String;)Z");
+    db_mth_onChangesetConflict = (*env)->GetMethodID(env, dbclass, "onChangesetConflict", "(IJLjava/lang/String;IIZ)I");
     mth_stringToUtf8ByteArray = (*env)->GetStaticMethodID(
             env, dbclass, "stringToUtf8ByteArray", "(Ljava/lang/String;)[B");
     mth_throwex = (*env)->GetMethodID(env, dbclass, "throwex", "()V");
@@ -519,6 +540,11 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved)
     if(!bool_array_class) return JNI_ERR;
     bool_array_class = (*env)->NewWeakGlobalRef(env, bool_array_class);
 
+    ostreamclass = (*env)->FindClass(env, "java/io/OutputStream");
+    if (!ostreamclass) return JNI_ERR;
+    ostreamclass = (*env)->NewWeakGlobalRef(env, ostreamclass);
+    ostream_mth_write = (*env)->GetMethodID(env, ostreamclass, "write", "([BII)V");
+
     return JNI_VERSION_1_2;
 }
 
@@ -549,6 +575,8 @@ JNIEXPORT void JNICALL JNI_OnUnload(JavaVM *vm, void *reserved) {
     if (exclass) (*env)->DeleteWeakGlobalRef(env, exclass);
 
     if (bool_array_class) (*env)->DeleteWeakGlobalRef(env, bool_array_class);
+
+    if (ostreamclass) (*env)->DeleteWeakGlobalRef(env, ostreamclass);
 }
 
 
@@ -685,7 +713,7 @@ JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_busy_1handler(
 }
 
 JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_prepare_1utf8(
-        JNIEnv *env, jobject this, jbyteArray sql)
+        JNIEnv *env, jobject this, jbyteArray sql, jint prepFlags)
 {
     sqlite3* db;
     sqlite3_stmt* stmt;
@@ -703,7 +731,7 @@ JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_prepare_1utf8(
     utf8JavaByteArrayToUtf8Bytes(env, sql, &sql_bytes, &sql_nbytes);
     if (!sql_bytes) return fromref(0);
 
-    status = sqlite3_prepare_v2(db, sql_bytes, sql_nbytes, &stmt, 0);
+    status = sqlite3_prepare_v3(db, sql_bytes, sql_nbytes, (unsigned int) prepFlags, &stmt, 0);
     freeUtf8Bytes(sql_bytes);
 
     if (status != SQLITE_OK) {
@@ -795,16 +823,22 @@ JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_total_1changes(
     return sqlite3_total_changes64(db);
 }
 
+static void trace_flush_if_due(JNIEnv *env, jobject nativeDB);
+
 JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_finalize(
         JNIEnv *env, jobject this, jlong stmt)
 {
+    int rc;
+
     if (!stmt)
     {
         throwex_stmt_finalized(env);
         return SQLITE_MISUSE;
     }
 
-    return sqlite3_finalize(toref(stmt));
+    rc = sqlite3_finalize(toref(stmt));
+    trace_flush_if_due(env, this);
+    return rc;
 }
 
 JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_step(
@@ -822,13 +856,17 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_step(
 JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_reset(
         JNIEnv *env, jobject this, jlong stmt)
 {
+    int rc;
+
     if (!stmt)
     {
         throwex_stmt_finalized(env);
         return SQLITE_MISUSE;
     }
 
-    return sqlite3_reset(toref(stmt));
+    rc = sqlite3_reset(toref(stmt));
+    trace_flush_if_due(env, this);
+    return rc;
 }
 
 JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_clear_1bindings(
@@ -867,6 +905,18 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_column_1count(
     return sqlite3_column_count(toref(stmt));
 }
 
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_stmt_1status(
+        JNIEnv *env, jobject this, jlong stmt, jint op, jboolean reset)
+{
+    if (!stmt)
+    {
+        throwex_stmt_finalized(env);
+        return 0;
+    }
+
+    return sqlite3_stmt_status(toref(stmt), op, reset ? 1 : 0);
+}
+
 JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_column_1type(
         JNIEnv *env, jobject this, jlong stmt, jint col)
 {
@@ -928,12 +978,16 @@ JNIEXPORT jobject JNICALL Java_org_sqlite_core_NativeDB_column_1name_1utf8(
     return utf8BytesToDirectByteBuffer(env, str, strlen(str));
 }
 
-JNIEXPORT jobject JNICALL Java_org_sqlite_core_NativeDB_column_1text_1utf8(
+// Returns the text of a column as a String when it is plain ASCII, which NewStringUTF decodes in
+// one step, and otherwise as a byte[] of UTF-8 to be decoded by Java. NULL values return null.
+JNIEXPORT jobject JNICALL Java_org_sqlite_core_NativeDB_column_1text_1value(
         JNIEnv *env, jobject this, jlong stmt, jint col)
 {
     sqlite3 *db;
     const char *bytes;
     int nbytes;
+    int i;
+    jbyteArray result;
 
     db = gethandle(env, this);
     if (!db)
@@ -951,13 +1005,75 @@ JNIEXPORT jobject JNICALL Java_org_sqlite_core_NativeDB_column_1text_1utf8(
     bytes = (const char*) sqlite3_column_text(toref(stmt), col);
     nbytes = sqlite3_column_bytes(toref(stmt), col);
 
-    if (!bytes && sqlite3_errcode(db) == SQLITE_NOMEM)
+    if (!bytes)
+    {
+        if (sqlite3_errcode(db) == SQLITE_NOMEM) throwex_outofmemory(env);
+        return NULL;
+    }
+
+    // embedded NULs and non-ASCII bytes are not decoded the same way by NewStringUTF
+    for (i = 0; i < nbytes; i++)
+    {
+        if ((unsigned char) (bytes[i] - 1) >= 0x7F) break;
+    }
+    if (i == nbytes)
+    {
+        return (*env)->NewStringUTF(env, bytes);
+    }
+
+    result = (*env)->NewByteArray(env, nbytes);
+    if (!result)
     {
         throwex_outofmemory(env);
         return NULL;
     }
+    (*env)->SetByteArrayRegion(env, result, 0, nbytes, (const jbyte *) bytes);
+    return result;
+}
+
+// Copies the UTF-8 text of a column into a direct buffer, as much as fits. Returns the length of
+// the text, which may exceed the capacity of the buffer, or -1 for NULL values.
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_column_1text_1copy(
+        JNIEnv *env, jobject this, jlong stmt, jint col, jobject buffer)
+{
+    sqlite3 *db;
+    const char *bytes;
+    int nbytes;
+    char *dst;
+    jlong capacity;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return -1;
+    }
 
-    return utf8BytesToDirectByteBuffer(env, bytes, nbytes);
+    if (!stmt)
+    {
+        throwex_stmt_finalized(env);
+        return -1;
+    }
+
+    dst = (*env)->GetDirectBufferAddress(env, buffer);
+    capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (!dst || capacity < 0)
+    {
+        throwex_msg(env, "column_text_copy requires a direct buffer");
+        return -1;
+    }
+
+    bytes = (const char*) sqlite3_column_text(toref(stmt), col);
+    nbytes = sqlite3_column_bytes(toref(stmt), col);
+
+    if (!bytes)
+    {
+        if (sqlite3_errcode(db) == SQLITE_NOMEM) throwex_outofmemory(env);
+        return -1;
+    }
+
+    memcpy(dst, bytes, nbytes <= capacity ? nbytes : (size_t) capacity);
+    return nbytes;
 }
 
 JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_column_1blob(
@@ -1047,6 +1163,198 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_column_1int(
     return sqlite3_column_int(toref(stmt), col);
 }
 
+// Unlocked variants, see org.sqlite.core.DB#isThreadConfined(). The Java declarations are not
+// synchronized; the native work is the same.
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_step_1unlocked(
+        JNIEnv *env, jobject this, jlong stmt)
+{
+    return Java_org_sqlite_core_NativeDB_step(env, this, stmt);
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_column_1type_1unlocked(
+        JNIEnv *env, jobject this, jlong stmt, jint col)
+{
+    return Java_org_sqlite_core_NativeDB_column_1type(env, this, stmt, col);
+}
+
+JNIEXPORT jobject JNICALL Java_org_sqlite_core_NativeDB_column_1text_1value_1unlocked(
+        JNIEnv *env, jobject this, jlong stmt, jint col)
+{
+    return Java_org_sqlite_core_NativeDB_column_1text_1value(env, this, stmt, col);
+}
+
+JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_column_1blob_1unlocked(
+        JNIEnv *env, jobject this, jlong stmt, jint col)
+{
+    return Java_org_sqlite_core_NativeDB_column_1blob(env, this, stmt, col);
+}
+
+JNIEXPORT jdouble JNICALL Java_org_sqlite_core_NativeDB_column_1double_1unlocked(
+        JNIEnv *env, jobject this, jlong stmt, jint col)
+{
+    return Java_org_sqlite_core_NativeDB_column_1double(env, this, stmt, col);
+}
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_column_1long_1unlocked(
+        JNIEnv *env, jobject this, jlong stmt, jint col)
+{
+    return Java_org_sqlite_core_NativeDB_column_1long(env, this, stmt, col);
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_column_1int_1unlocked(
+        JNIEnv *env, jobject this, jlong stmt, jint col)
+{
+    return Java_org_sqlite_core_NativeDB_column_1int(env, this, stmt, col);
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_column_1text_1copy_1unlocked(
+        JNIEnv *env, jobject this, jlong stmt, jint col, jobject buffer)
+{
+    return Java_org_sqlite_core_NativeDB_column_1text_1copy(env, this, stmt, col, buffer);
+}
+
+// Layout of the prefetch buffer, see org.sqlite.core.PrefetchCursor
+#define FETCH_HEADER_SIZE 16
+#define FETCH_MORE    0
+#define FETCH_DONE    1
+#define FETCH_PENDING 2
+
+static void put_int(unsigned char *p, int v) { memcpy(p, &v, 4); }
+
+/*
+ * Serializes the current row of stmt at buf + pos. Every column is written as its
+ * type code followed by an 8 byte integer or double, or a 4 byte length and the
+ * UTF-8 or blob bytes. Returns the size of the row; nothing is written if it does not fit before cap.
+ */
+static int serialize_row(sqlite3_stmt *stmt, int ncols, unsigned char *buf, int pos, int cap)
+{
+    int start = pos;
+    int fits = 1;
+    int i, type, n;
+    sqlite3_int64 l;
+    double d;
+    const void *v;
+
+    for (i = 0; i < ncols; i++)
+    {
+        type = sqlite3_column_type(stmt, i);
+        switch (type)
+        {
+            case SQLITE_INTEGER:
+                if (fits && pos + 9 <= cap)
+                {
+                    l = sqlite3_column_int64(stmt, i);
+                    buf[pos] = (unsigned char) type;
+                    memcpy(buf + pos + 1, &l, 8);
+                }
+                else fits = 0;
+                pos += 9;
+                break;
+            case SQLITE_FLOAT:
+                if (fits && pos + 9 <= cap)
+                {
+                    d = sqlite3_column_double(stmt, i);
+                    buf[pos] = (unsigned char) type;
+                    memcpy(buf + pos + 1, &d, 8);
+                }
+                else fits = 0;
+                pos += 9;
+                break;
+            case SQLITE_TEXT:
+            case SQLITE_BLOB:
+                v = type == SQLITE_TEXT
+                    ? (const void *) sqlite3_column_text(stmt, i)
+                    : sqlite3_column_blob(stmt, i);
+                n = sqlite3_column_bytes(stmt, i);
+                if (fits && pos + 5 + n <= cap)
+                {
+                    buf[pos] = (unsigned char) type;
+                    put_int(buf + pos + 1, n);
+                    if (n) memcpy(buf + pos + 5, v, n);
+                }
+                else fits = 0;
+                pos += 5 + n;
+                break;
+            default:
+                if (fits && pos + 1 <= cap) buf[pos] = SQLITE_NULL;
+                else fits = 0;
+                pos += 1;
+        }
+    }
+
+    return fits ? pos - start : -(pos - start);
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_fetch_1rows(
+        JNIEnv *env, jobject this, jlong stmt, jobject buffer, jint maxRows, jboolean stepFirst)
+{
+    sqlite3_stmt *dbstmt;
+    unsigned char *buf;
+    int cap, ncols, size;
+    int pos = FETCH_HEADER_SIZE;
+    int rows = 0;
+    int state = FETCH_MORE;
+    int needed = 0;
+    int step = stepFirst;
+    int rc;
+
+    if (!stmt)
+    {
+        throwex_stmt_finalized(env);
+        return 0;
+    }
+    dbstmt = toref(stmt);
+
+    buf = (*env)->GetDirectBufferAddress(env, buffer);
+    cap = (int) (*env)->GetDirectBufferCapacity(env, buffer);
+    if (!buf || cap < FETCH_HEADER_SIZE)
+    {
+        throwex_msg(env, "Prefetched rows must be held by a direct buffer");
+        return 0;
+    }
+
+    ncols = sqlite3_column_count(dbstmt);
+    while (rows < maxRows)
+    {
+        if (step)
+        {
+            rc = sqlite3_step(dbstmt);
+            if (rc == SQLITE_DONE)
+            {
+                state = FETCH_DONE;
+                break;
+            }
+            if (rc != SQLITE_ROW)
+            {
+                // the rows already serialized are kept, and read before the error is thrown
+                put_int(buf, rows);
+                put_int(buf + 4, FETCH_DONE);
+                put_int(buf + 8, 0);
+                throwex_errorcode(env, this, rc);
+                return rows;
+            }
+        }
+        step = 1;
+
+        size = serialize_row(dbstmt, ncols, buf, pos, cap);
+        if (size < 0)
+        {
+            // keep the row for the next call, with a larger buffer if it is the only one
+            state = FETCH_PENDING;
+            if (rows == 0) needed = FETCH_HEADER_SIZE - size;
+            break;
+        }
+        pos += size;
+        rows++;
+    }
+
+    put_int(buf, rows);
+    put_int(buf + 4, state);
+    put_int(buf + 8, needed);
+    return rows;
+}
+
 JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_bind_1null(
         JNIEnv *env, jobject this, jlong stmt, jint pos)
 {
@@ -1138,6 +1446,153 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_bind_1blob(
     return rc;
 }
 
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_bind_1zeroblob(
+        JNIEnv *env, jobject this, jlong stmt, jint pos, jlong length)
+{
+    if (!stmt)
+    {
+        throwex_stmt_finalized(env);
+        return SQLITE_MISUSE;
+    }
+
+    return sqlite3_bind_zeroblob64(toref(stmt), pos, (sqlite3_uint64) length);
+}
+
+// Type tags of the packed parameter buffer, see org.sqlite.core.BatchBuffer
+#define BATCH_NULL   0
+#define BATCH_INT    1
+#define BATCH_LONG   2
+#define BATCH_FLOAT  3
+#define BATCH_DOUBLE 4
+#define BATCH_TEXT   5
+#define BATCH_BLOB   6
+#define BATCH_ZEROBLOB 7
+
+static int bind_packed(sqlite3_stmt *stmt, int pos, const unsigned char **cursor, const unsigned char *end)
+{
+    const unsigned char *p = *cursor;
+    unsigned char tag;
+    sqlite3_int64 l;
+    double d;
+    int n;
+
+    if (p >= end) return SQLITE_MISUSE;
+
+    tag = *p++;
+    switch (tag)
+    {
+        case BATCH_NULL:
+            *cursor = p;
+            return sqlite3_bind_null(stmt, pos);
+        case BATCH_INT:
+        case BATCH_LONG:
+            if (end - p < 8) return SQLITE_MISUSE;
+            memcpy(&l, p, 8);
+            *cursor = p + 8;
+            return sqlite3_bind_int64(stmt, pos, l);
+        case BATCH_FLOAT:
+        case BATCH_DOUBLE:
+            if (end - p < 8) return SQLITE_MISUSE;
+            memcpy(&d, p, 8);
+            *cursor = p + 8;
+            return sqlite3_bind_double(stmt, pos, d);
+        case BATCH_TEXT:
+        case BATCH_BLOB:
+            if (end - p < 4) return SQLITE_MISUSE;
+            memcpy(&n, p, 4);
+            p += 4;
+            if (n < 0 || end - p < n) return SQLITE_MISUSE;
+            *cursor = p + n;
+            // the buffer outlives the execution and bindings are cleared afterwards
+            return tag == BATCH_TEXT
+                ? sqlite3_bind_text(stmt, pos, (const char *) p, n, SQLITE_STATIC)
+                : sqlite3_bind_blob(stmt, pos, p, n, SQLITE_STATIC);
+        case BATCH_ZEROBLOB:
+            if (end - p < 8) return SQLITE_MISUSE;
+            memcpy(&l, p, 8);
+            *cursor = p + 8;
+            return sqlite3_bind_zeroblob64(stmt, pos, (sqlite3_uint64) l);
+        default:
+            return SQLITE_MISUSE;
+    }
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_execute_1batch(
+        JNIEnv *env, jobject this, jlong stmt, jobject params, jint length, jint paramCount, jint rows,
+        jlongArray changes)
+{
+    sqlite3 *db;
+    sqlite3_stmt *dbstmt;
+    const unsigned char *cursor;
+    const unsigned char *end;
+    jlong *counts;
+    int rc = SQLITE_OK;
+    int i, j;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return 0;
+    }
+
+    if (!stmt)
+    {
+        throwex_stmt_finalized(env);
+        return 0;
+    }
+    dbstmt = toref(stmt);
+
+    cursor = (*env)->GetDirectBufferAddress(env, params);
+    if (!cursor)
+    {
+        throwex_msg(env, "Batch parameters must be held by a direct buffer");
+        return 0;
+    }
+    if (length < 0 || length > (*env)->GetDirectBufferCapacity(env, params))
+    {
+        throwex_errorcode(env, this, SQLITE_MISUSE);
+        return 0;
+    }
+    end = cursor + length;
+
+    counts = malloc(sizeof(jlong) * (rows > 0 ? rows : 1));
+    if (!counts)
+    {
+        throwex_outofmemory(env);
+        return 0;
+    }
+
+    sqlite3_reset(dbstmt);
+    for (i = 0; i < rows; i++)
+    {
+        for (j = 0; j < paramCount; j++)
+        {
+            rc = bind_packed(dbstmt, j + 1, &cursor, end);
+            if (rc != SQLITE_OK) break;
+        }
+        if (rc != SQLITE_OK) break;
+
+        rc = sqlite3_step(dbstmt);
+        sqlite3_reset(dbstmt);
+        if (rc != SQLITE_DONE) break;
+
+        counts[i] = sqlite3_changes64(db);
+        rc = SQLITE_OK;
+    }
+
+    sqlite3_clear_bindings(dbstmt);
+    if (i > 0) (*env)->SetLongArrayRegion(env, changes, 0, i, counts);
+    free(counts);
+
+    if (rc != SQLITE_OK && rc != SQLITE_ROW)
+    {
+        throwex_errorcode(env, this, rc);
+    }
+
+    return i;
+}
+
 JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_result_1null(
         JNIEnv *env, jobject this, jlong context)
 {
@@ -1432,18 +1887,16 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_limit(JNIEnv *env, jobject
     return sqlite3_limit(db, id, value);
 }
 
-// COMPOUND FUNCTIONS ///////////////////////////////////////////////
-
-JNIEXPORT jobjectArray JNICALL Java_org_sqlite_core_NativeDB_column_1metadata(
-        JNIEnv *env, jobject this, jlong stmt)
+JNIEXPORT jlongArray JNICALL Java_org_sqlite_core_NativeDB_db_1status(
+        JNIEnv *env, jobject this, jintArray ops, jboolean reset)
 {
-    const char *zTableName, *zColumnName;
-    int pNotNull, pPrimaryKey, pAutoinc, i, colCount;
-    jobjectArray array;
-    jbooleanArray colData;
-    jboolean* colDataRaw;
-    sqlite3 *db;
-    sqlite3_stmt *dbstmt;
+    sqlite3* db;
+    jsize count;
+    jint* opsElements;
+    jlong* values;
+    jlongArray result;
+    int current, highwater;
+    int i, rc;
 
     db = gethandle(env, this);
     if (!db)
@@ -1452,42 +1905,209 @@ JNIEXPORT jobjectArray JNICALL Java_org_sqlite_core_NativeDB_column_1metadata(
         return NULL;
     }
 
-    if (!stmt)
+    count = (*env)->GetArrayLength(env, ops);
+    result = (*env)->NewLongArray(env, count * 2);
+    if (!result)
     {
-        throwex_stmt_finalized(env);
+        throwex_outofmemory(env);
+        return NULL;
+    }
+    opsElements = (*env)->GetIntArrayElements(env, ops, NULL);
+    values = (*env)->GetLongArrayElements(env, result, NULL);
+    if (!opsElements || !values)
+    {
+        if (opsElements) (*env)->ReleaseIntArrayElements(env, ops, opsElements, JNI_ABORT);
+        if (values) (*env)->ReleaseLongArrayElements(env, result, values, JNI_ABORT);
+        throwex_outofmemory(env);
         return NULL;
     }
 
-    dbstmt = toref(stmt);
+    rc = SQLITE_OK;
+    for (i = 0; i < count && rc == SQLITE_OK; i++)
+    {
+        current = highwater = 0;
+        rc = sqlite3_db_status(db, opsElements[i], &current, &highwater, reset ? 1 : 0);
+        values[2 * i] = current;
+        values[2 * i + 1] = highwater;
+    }
 
-    colCount = sqlite3_column_count(dbstmt);
-    array = (*env)->NewObjectArray(env, colCount, bool_array_class, NULL);
-    if (!array) { throwex_outofmemory(env); return 0; }
+    (*env)->ReleaseIntArrayElements(env, ops, opsElements, JNI_ABORT);
+    (*env)->ReleaseLongArrayElements(env, result, values, 0);
 
-    colDataRaw = (jboolean*)malloc(3 * sizeof(jboolean));
-    if (!colDataRaw) { throwex_outofmemory(env); return 0; }
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode(env, this, rc);
+        return NULL;
+    }
+    return result;
+}
 
-    for (i = 0; i < colCount; i++) {
-        // load passed column name and table name
-        zColumnName = sqlite3_column_name(dbstmt, i);
-        zTableName  = sqlite3_column_table_name(dbstmt, i);
+/*
+ * Returns the name and schema version of each database of the connection, so that a change to the
+ * schema of any of them, or an attach or detach, can be noticed with a single call.
+ */
+JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_schema_1versions(
+        JNIEnv *env, jobject this)
+{
+    sqlite3 *db;
+    sqlite3_str *str;
+    sqlite3_stmt *stmt;
+    const char *name;
+    char *sql;
+    jbyteArray result;
+    int i, rc, length;
 
-        pNotNull = 0;
-        pPrimaryKey = 0;
-        pAutoinc = 0;
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return NULL;
+    }
 
-        // request metadata for column and load into output variables
-        if (zTableName && zColumnName) {
-            sqlite3_table_column_metadata(
-                db, 0, zTableName, zColumnName,
-                0, 0, &pNotNull, &pPrimaryKey, &pAutoinc
-            );
+    str = sqlite3_str_new(db);
+    rc = SQLITE_OK;
+    for (i = 0; rc == SQLITE_OK && (name = sqlite3_db_name(db, i)) != NULL; i++)
+    {
+        sql = sqlite3_mprintf("pragma \"%w\".schema_version", name);
+        if (!sql)
+        {
+            rc = SQLITE_NOMEM;
+            break;
         }
+        rc = sqlite3_prepare_v2(db, sql, -1, &stmt, NULL);
+        sqlite3_free(sql);
+        if (rc != SQLITE_OK) break;
+        // the length of the name keeps the result unambiguous
+        sqlite3_str_appendf(str, "%d:%s=%d;", (int) strlen(name), name,
+                            sqlite3_step(stmt) == SQLITE_ROW ? sqlite3_column_int(stmt, 0) : 0);
+        rc = sqlite3_finalize(stmt);
+    }
+    if (rc == SQLITE_OK) rc = sqlite3_str_errcode(str);
+    length = sqlite3_str_length(str);
+    sql = sqlite3_str_finish(str);
+    if (rc != SQLITE_OK)
+    {
+        sqlite3_free(sql);
+        throwex_errorcode(env, this, rc);
+        return NULL;
+    }
 
-        // load relevant metadata into 2nd dimension of return results
-        colDataRaw[0] = pNotNull;
-        colDataRaw[1] = pPrimaryKey;
-        colDataRaw[2] = pAutoinc;
+    result = (*env)->NewByteArray(env, length);
+    if (result && length > 0)
+    {
+        (*env)->SetByteArrayRegion(env, result, 0, length, (jbyte *) sql);
+    }
+    sqlite3_free(sql);
+    if (!result)
+    {
+        throwex_outofmemory(env);
+    }
+    return result;
+}
+
+JNIEXPORT jlongArray JNICALL Java_org_sqlite_core_NativeDB_status64(
+        JNIEnv *env, jobject this, jintArray ops, jboolean reset)
+{
+    jsize count;
+    jint* opsElements;
+    jlong* values;
+    jlongArray result;
+    sqlite3_int64 current, highwater;
+    int i, rc;
+
+    count = (*env)->GetArrayLength(env, ops);
+    result = (*env)->NewLongArray(env, count * 2);
+    if (!result)
+    {
+        throwex_outofmemory(env);
+        return NULL;
+    }
+    opsElements = (*env)->GetIntArrayElements(env, ops, NULL);
+    values = (*env)->GetLongArrayElements(env, result, NULL);
+    if (!opsElements || !values)
+    {
+        if (opsElements) (*env)->ReleaseIntArrayElements(env, ops, opsElements, JNI_ABORT);
+        if (values) (*env)->ReleaseLongArrayElements(env, result, values, JNI_ABORT);
+        throwex_outofmemory(env);
+        return NULL;
+    }
+
+    rc = SQLITE_OK;
+    for (i = 0; i < count && rc == SQLITE_OK; i++)
+    {
+        current = highwater = 0;
+        rc = sqlite3_status64(opsElements[i], &current, &highwater, reset ? 1 : 0);
+        values[2 * i] = current;
+        values[2 * i + 1] = highwater;
+    }
+
+    (*env)->ReleaseIntArrayElements(env, ops, opsElements, JNI_ABORT);
+    (*env)->ReleaseLongArrayElements(env, result, values, 0);
+
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode(env, this, rc);
+        return NULL;
+    }
+    return result;
+}
+
+// COMPOUND FUNCTIONS ///////////////////////////////////////////////
+
+JNIEXPORT jobjectArray JNICALL Java_org_sqlite_core_NativeDB_column_1metadata(
+        JNIEnv *env, jobject this, jlong stmt)
+{
+    const char *zTableName, *zColumnName;
+    int pNotNull, pPrimaryKey, pAutoinc, i, colCount;
+    jobjectArray array;
+    jbooleanArray colData;
+    jboolean* colDataRaw;
+    sqlite3 *db;
+    sqlite3_stmt *dbstmt;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return NULL;
+    }
+
+    if (!stmt)
+    {
+        throwex_stmt_finalized(env);
+        return NULL;
+    }
+
+    dbstmt = toref(stmt);
+
+    colCount = sqlite3_column_count(dbstmt);
+    array = (*env)->NewObjectArray(env, colCount, bool_array_class, NULL);
+    if (!array) { throwex_outofmemory(env); return 0; }
+
+    colDataRaw = (jboolean*)malloc(3 * sizeof(jboolean));
+    if (!colDataRaw) { throwex_outofmemory(env); return 0; }
+
+    for (i = 0; i < colCount; i++) {
+        // load passed column name and table name
+        zColumnName = sqlite3_column_name(dbstmt, i);
+        zTableName  = sqlite3_column_table_name(dbstmt, i);
+
+        pNotNull = 0;
+        pPrimaryKey = 0;
+        pAutoinc = 0;
+
+        // request metadata for column and load into output variables
+        if (zTableName && zColumnName) {
+            sqlite3_table_column_metadata(
+                db, 0, zTableName, zColumnName,
+                0, 0, &pNotNull, &pPrimaryKey, &pAutoinc
+            );
+        }
+
+        // load relevant metadata into 2nd dimension of return results
+        colDataRaw[0] = pNotNull;
+        colDataRaw[1] = pPrimaryKey;
+        colDataRaw[2] = pAutoinc;
 
         colData = (*env)->NewBooleanArray(env, 3);
         if (!colData) { throwex_outofmemory(env); return 0; }
@@ -1705,6 +2325,167 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_restore(
 }
 
 
+// Incremental backup handle
+
+struct BackupHandle {
+    sqlite3 *file;              /* Connection opened on the other database file */
+    sqlite3 *dest;              /* Destination connection, holding the error messages */
+    sqlite3_backup *backup;
+    int pageSize;               /* Page size of the source database */
+};
+
+static int source_page_size(sqlite3 *db, const char *schema)
+{
+    sqlite3_stmt *stmt = 0;
+    char *sql;
+    int pageSize = 0;
+
+    sql = sqlite3_mprintf("PRAGMA \"%w\".page_size", schema);
+    if (!sql) return 0;
+    if (sqlite3_prepare_v2(db, sql, -1, &stmt, 0) == SQLITE_OK && sqlite3_step(stmt) == SQLITE_ROW)
+    {
+        pageSize = sqlite3_column_int(stmt, 0);
+    }
+    sqlite3_finalize(stmt);
+    sqlite3_free(sql);
+    return pageSize;
+}
+
+/*
+** Opens a backup of the database dbName to the file fileName, or a restore of
+** the database dbName from the file fileName, to be copied with backup_step.
+*/
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_backup_1init_1utf8(
+        JNIEnv *env, jobject this, jbyteArray zDBName, jbyteArray zFilename, jboolean restore)
+{
+    sqlite3 *pDb;
+    struct BackupHandle *handle;
+    char *dFileName;
+    char *dDBName;
+    int flags;
+    int rc;
+
+    pDb = gethandle(env, this);
+    if (!pDb)
+    {
+        throwex_db_closed(env);
+        return 0;
+    }
+
+    handle = (struct BackupHandle *) calloc(1, sizeof(struct BackupHandle));
+    if (!handle)
+    {
+        throwex_outofmemory(env);
+        return 0;
+    }
+
+    utf8JavaByteArrayToUtf8Bytes(env, zFilename, &dFileName, NULL);
+    if (!dFileName)
+    {
+        free(handle);
+        return 0;
+    }
+    utf8JavaByteArrayToUtf8Bytes(env, zDBName, &dDBName, NULL);
+    if (!dDBName)
+    {
+        freeUtf8Bytes(dFileName);
+        free(handle);
+        return 0;
+    }
+
+    flags = restore ? SQLITE_OPEN_READONLY : SQLITE_OPEN_READWRITE | SQLITE_OPEN_CREATE;
+    if (sqlite3_strnicmp(dFileName, "file:", 5) == 0) {
+        flags |= SQLITE_OPEN_URI;
+    }
+    rc = sqlite3_open_v2(dFileName, &handle->file, flags, NULL);
+    if (rc == SQLITE_OK)
+    {
+        if (restore)
+        {
+            handle->dest = pDb;
+            handle->pageSize = source_page_size(handle->file, "main");
+            handle->backup = sqlite3_backup_init(pDb, dDBName, handle->file, "main");
+        }
+        else
+        {
+            handle->dest = handle->file;
+            handle->pageSize = source_page_size(pDb, dDBName);
+            handle->backup = sqlite3_backup_init(handle->file, "main", pDb, dDBName);
+        }
+        if (!handle->backup) rc = sqlite3_errcode(handle->dest);
+    }
+
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode_msg(env, rc, handle->file ? sqlite3_errmsg(handle->dest ? handle->dest : handle->file) : sqlite3_errstr(rc));
+        sqlite3_close(handle->file);
+        free(handle);
+        handle = 0;
+    }
+
+    freeUtf8Bytes(dDBName);
+    freeUtf8Bytes(dFileName);
+    return fromref(handle);
+}
+
+/*
+** Copies up to nPages pages. Returns SQLITE_OK if pages remain to be copied,
+** SQLITE_DONE once complete, SQLITE_BUSY or SQLITE_LOCKED if the step can be
+** retried later; throws on other errors.
+*/
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_backup_1step(
+        JNIEnv *env, jobject this, jlong backup, jint nPages)
+{
+    struct BackupHandle *handle = (struct BackupHandle *) toref(backup);
+    int rc = sqlite3_backup_step(handle->backup, nPages);
+
+    switch (rc)
+    {
+        case SQLITE_OK:
+        case SQLITE_DONE:
+        case SQLITE_BUSY:
+        case SQLITE_LOCKED:
+            return rc;
+        default:
+            throwex_errorcode_msg(env, rc, sqlite3_errmsg(handle->dest));
+            return rc;
+    }
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_backup_1remaining(
+        JNIEnv *env, jobject this, jlong backup)
+{
+    return sqlite3_backup_remaining(((struct BackupHandle *) toref(backup))->backup);
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_backup_1pagecount(
+        JNIEnv *env, jobject this, jlong backup)
+{
+    return sqlite3_backup_pagecount(((struct BackupHandle *) toref(backup))->backup);
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_backup_1pagesize(
+        JNIEnv *env, jobject this, jlong backup)
+{
+    return ((struct BackupHandle *) toref(backup))->pageSize;
+}
+
+/*
+** Releases the backup and closes the other database file. Returns the error
+** code of the last failed step, SQLITE_OK if none.
+*/
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_backup_1finish(
+        JNIEnv *env, jobject this, jlong backup)
+{
+    struct BackupHandle *handle = (struct BackupHandle *) toref(backup);
+    int rc = sqlite3_backup_finish(handle->backup);
+
+    sqlite3_close(handle->file);
+    free(handle);
+    return rc;
+}
+
+
 // Progress handler
 
 struct ProgressHandlerContext {
@@ -1774,29 +2555,197 @@ JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_clear_1progress_1handler(
 
 // Update hook
 
+// Distinct (database, table) pairs kept by a buffered update listener
+#define UPDATE_MAX_NAMES 256
+
 struct UpdateHandlerContext {
     JavaVM *vm;
     jobject handler;
+    // 0 to call Java for each row, else the number of rows buffered before a delivery
+    int capacity;
+    int count;
+    unsigned char *ops;
+    jint *names;
+    sqlite3_int64 *rowids;
+    // interned database and table names; the first namesSent are already known to Java
+    char *databases[UPDATE_MAX_NAMES];
+    char *tables[UPDATE_MAX_NAMES];
+    int nameCount;
+    int namesSent;
+    int lastName;
+    // the rows dropped since the last delivery, while Java code could not be called
+    int dropped;
 };
 
+static void update_flush(JNIEnv *env, struct UpdateHandlerContext *ctx);
+
+static void update_call(JNIEnv *env, struct UpdateHandlerContext *ctx, int type,
+                        char const *database, char const *table, sqlite3_int64 row)
+{
+    jstring databaseString, tableString;
+
+    if ((*env)->ExceptionCheck(env)) {
+        // reported with the next delivery
+        ctx->dropped++;
+        return;
+    }
+    if (ctx->dropped > 0) {
+        update_flush(env, ctx);
+        if ((*env)->ExceptionCheck(env)) {
+            ctx->dropped++;
+            return;
+        }
+    }
+    databaseString = (*env)->NewStringUTF(env, database);
+    tableString    = (*env)->NewStringUTF(env, table);
+
+    (*env)->CallVoidMethod(env, ctx->handler, db_mth_onUpdate, type, databaseString, tableString, row);
+
+    (*env)->DeleteLocalRef(env, databaseString);
+    (*env)->DeleteLocalRef(env, tableString);
+}
+
+/*
+ * Hands the buffered rows to Java in a single call, with the names interned since the last one
+ * and the number of rows dropped.
+ */
+static void update_flush(JNIEnv *env, struct UpdateHandlerContext *ctx)
+{
+    jclass stringClass;
+    jobjectArray newNames = 0;
+    jbyteArray ops = 0;
+    jintArray names = 0;
+    jlongArray rowids = 0;
+    int nNew, i, dropped;
+
+    if ((ctx->count == 0 && ctx->dropped == 0) || (*env)->ExceptionCheck(env)) {
+        return;
+    }
+
+    nNew = ctx->nameCount - ctx->namesSent;
+    stringClass = (*env)->FindClass(env, "java/lang/String");
+    if (!stringClass) return;
+    newNames = (*env)->NewObjectArray(env, 2 * nNew, stringClass, NULL);
+    (*env)->DeleteLocalRef(env, stringClass);
+    ops = (*env)->NewByteArray(env, ctx->count);
+    names = (*env)->NewIntArray(env, ctx->count);
+    rowids = (*env)->NewLongArray(env, ctx->count);
+    if (!newNames || !ops || !names || !rowids) {
+        // an OutOfMemoryError is pending
+        return;
+    }
+    for (i = 0; i < nNew; i++) {
+        jstring database = (*env)->NewStringUTF(env, ctx->databases[ctx->namesSent + i]);
+        jstring table = (*env)->NewStringUTF(env, ctx->tables[ctx->namesSent + i]);
+        (*env)->SetObjectArrayElement(env, newNames, 2 * i, database);
+        (*env)->SetObjectArrayElement(env, newNames, 2 * i + 1, table);
+        (*env)->DeleteLocalRef(env, database);
+        (*env)->DeleteLocalRef(env, table);
+    }
+    (*env)->SetByteArrayRegion(env, ops, 0, ctx->count, (jbyte *) ctx->ops);
+    (*env)->SetIntArrayRegion(env, names, 0, ctx->count, ctx->names);
+    (*env)->SetLongArrayRegion(env, rowids, 0, ctx->count, (jlong *) ctx->rowids);
+
+    i = ctx->count;
+    dropped = ctx->dropped;
+    ctx->count = 0;
+    ctx->dropped = 0;
+    (*env)->CallVoidMethod(env, ctx->handler, db_mth_onUpdateBatch,
+                           ctx->namesSent, newNames, ops, names, rowids, i, dropped);
+    ctx->namesSent = ctx->nameCount;
+
+    (*env)->DeleteLocalRef(env, newNames);
+    (*env)->DeleteLocalRef(env, ops);
+    (*env)->DeleteLocalRef(env, names);
+    (*env)->DeleteLocalRef(env, rowids);
+}
+
+static void update_clear_names(struct UpdateHandlerContext *ctx)
+{
+    int i;
+    for (i = 0; i < ctx->nameCount; i++) {
+        sqlite3_free(ctx->databases[i]);
+        sqlite3_free(ctx->tables[i]);
+    }
+    ctx->nameCount = 0;
+    ctx->namesSent = 0;
+    ctx->lastName = -1;
+}
+
+/* Returns the id of a (database, table) pair, interning it if needed; -1 if out of memory. */
+static int update_intern(JNIEnv *env, struct UpdateHandlerContext *ctx, char const *database, char const *table)
+{
+    int i;
+    if (ctx->lastName >= 0
+            && !strcmp(ctx->tables[ctx->lastName], table)
+            && !strcmp(ctx->databases[ctx->lastName], database)) {
+        return ctx->lastName;
+    }
+    for (i = 0; i < ctx->nameCount; i++) {
+        if (!strcmp(ctx->tables[i], table) && !strcmp(ctx->databases[i], database)) {
+            ctx->lastName = i;
+            return i;
+        }
+    }
+    if (ctx->nameCount == UPDATE_MAX_NAMES) {
+        // the pending rows refer to the current names
+        update_flush(env, ctx);
+        if (ctx->count > 0) return -1;
+        update_clear_names(ctx);
+    }
+    i = ctx->nameCount;
+    ctx->databases[i] = sqlite3_mprintf("%s", database);
+    ctx->tables[i] = sqlite3_mprintf("%s", table);
+    if (!ctx->databases[i] || !ctx->tables[i]) {
+        sqlite3_free(ctx->databases[i]);
+        sqlite3_free(ctx->tables[i]);
+        return -1;
+    }
+    ctx->nameCount++;
+    ctx->lastName = i;
+    return i;
+}
 
 void update_hook(void *context, int type, char const *database, char const *table, sqlite3_int64 row) {
     JNIEnv *env = 0;
     struct UpdateHandlerContext* update_handler_context = (struct UpdateHandlerContext*) context;
+    int name;
     (*update_handler_context->vm)->AttachCurrentThread(update_handler_context->vm, (void **)&env, 0);
 
-    jstring databaseString = (*env)->NewStringUTF(env, database);
-    jstring tableString    = (*env)->NewStringUTF(env, table);
-
-    (*env)->CallVoidMethod(env, update_handler_context->handler, db_mth_onUpdate, type, databaseString, tableString, row);
+    if (!update_handler_context->capacity) {
+        update_call(env, update_handler_context, type, database, table, row);
+        return;
+    }
 
-    (*env)->DeleteLocalRef(env, databaseString);
-    (*env)->DeleteLocalRef(env, tableString);
+    name = update_intern(env, update_handler_context, database, table);
+    if (name < 0) {
+        // deliver this row on its own, after the buffered ones
+        update_flush(env, update_handler_context);
+        update_call(env, update_handler_context, type, database, table, row);
+        return;
+    }
+    if (update_handler_context->count < update_handler_context->capacity) {
+        int n = update_handler_context->count++;
+        update_handler_context->ops[n] = (unsigned char) type;
+        update_handler_context->names[n] = name;
+        update_handler_context->rowids[n] = row;
+    } else {
+        // the buffer could not be delivered, an exception is pending; reported with the next delivery
+        update_handler_context->dropped++;
+    }
+    if (update_handler_context->count == update_handler_context->capacity) {
+        update_flush(env, update_handler_context);
+    }
 }
 
 static void free_update_handler(JNIEnv *env, void *ctx) {
     struct UpdateHandlerContext* update_handler_context = (struct UpdateHandlerContext*) ctx;
+    update_flush(env, update_handler_context);
     (*env)->DeleteGlobalRef(env, update_handler_context->handler);
+    update_clear_names(update_handler_context);
+    free(update_handler_context->ops);
+    free(update_handler_context->names);
+    free(update_handler_context->rowids);
     free(ctx);
 }
 
@@ -1805,9 +2754,29 @@ static void clear_update_listener(JNIEnv *env, jobject nativeDB){
     set_new_handler(env, nativeDB, db_updateListener, NULL, &free_update_handler);
 }
 
-JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_set_1update_1listener(JNIEnv *env, jobject nativeDB, jboolean enabled) {
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_set_1update_1listener(
+        JNIEnv *env, jobject nativeDB, jboolean enabled, jint capacity) {
     if (enabled) {
-        struct UpdateHandlerContext* update_handler_context = (struct UpdateHandlerContext*) malloc(sizeof(struct UpdateHandlerContext));
+        struct UpdateHandlerContext* update_handler_context = (struct UpdateHandlerContext*) calloc(1, sizeof(struct UpdateHandlerContext));
+        if (!update_handler_context) {
+            throwex_outofmemory(env);
+            return;
+        }
+        if (capacity > 0) {
+            update_handler_context->ops = (unsigned char *) malloc(capacity);
+            update_handler_context->names = (jint *) malloc(capacity * sizeof(jint));
+            update_handler_context->rowids = (sqlite3_int64 *) malloc(capacity * sizeof(sqlite3_int64));
+            if (!update_handler_context->ops || !update_handler_context->names || !update_handler_context->rowids) {
+                free(update_handler_context->ops);
+                free(update_handler_context->names);
+                free(update_handler_context->rowids);
+                free(update_handler_context);
+                throwex_outofmemory(env);
+                return;
+            }
+            update_handler_context->capacity = capacity;
+        }
+        update_handler_context->lastName = -1;
         update_handler_context->handler = (*env)->NewGlobalRef(env, nativeDB);
         (*env)->GetJavaVM(env, &update_handler_context->vm);
         sqlite3_update_hook(gethandle(env, nativeDB), &update_hook, update_handler_context);
@@ -1817,6 +2786,14 @@ JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_set_1update_1listener(JNIEn
     }
 }
 
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_update_1flush(JNIEnv *env, jobject nativeDB)
+{
+    struct UpdateHandlerContext *ctx = (struct UpdateHandlerContext *) toref((*env)->GetLongField(env, nativeDB, db_updateListener));
+    if (ctx) {
+        update_flush(env, ctx);
+    }
+}
+
 // Commit hook
 
 struct CommitHandlerContext {
@@ -1865,49 +2842,525 @@ JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_set_1commit_1listener(JNIEn
     }
 }
 
-JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB__1close(
-        JNIEnv *env, jobject nativeDB)
-{
-    sqlite3 *db = gethandle(env, nativeDB);
-    if (db)
-    {
-        change_progress_handler(env, nativeDB, NULL, 0);
-        change_busy_handler(env, nativeDB, NULL);
-        clear_commit_listener(env, nativeDB, db);
-        clear_update_listener(env, nativeDB);
+// WAL hook
 
-        if (sqlite3_close(db) != SQLITE_OK)
-        {
-            throwex(env, nativeDB);
+// The default of SQLITE_DEFAULT_WAL_AUTOCHECKPOINT, used when the setting cannot be read
+#define WAL_DEFAULT_AUTOCHECKPOINT 1000
+
+struct WalHandlerContext {
+    JavaVM *vm;
+    jobject handler;
+    // the auto-checkpoint replaced by the hook, restored when it is removed
+    int autocheckpoint;
+};
+
+// Reads the auto-checkpoint threshold, 0 if disabled
+static int get_wal_autocheckpoint(sqlite3 *db)
+{
+    sqlite3_stmt *stmt;
+    int autocheckpoint = WAL_DEFAULT_AUTOCHECKPOINT;
+    if (sqlite3_prepare_v2(db, "pragma wal_autocheckpoint", -1, &stmt, NULL) == SQLITE_OK) {
+        if (sqlite3_step(stmt) == SQLITE_ROW) {
+            autocheckpoint = sqlite3_column_int(stmt, 0);
         }
-        sethandle(env, nativeDB, 0);
+        sqlite3_finalize(stmt);
     }
+    return autocheckpoint;
 }
 
-JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_serialize(JNIEnv *env, jobject this, jstring jschema)
+static int wal_hook(void *context, sqlite3 *db, const char *database, int frames)
 {
+    struct WalHandlerContext *wal_handler_context = (struct WalHandlerContext*) context;
+    JNIEnv *env = 0;
+    jstring databaseString;
 
-   sqlite3 *db = gethandle(env, this);
-   if (!db)
-   {
-        throwex_db_closed(env);
-        return NULL;
-   }
+    (*wal_handler_context->vm)->AttachCurrentThread(wal_handler_context->vm, (void **)&env, 0);
+    databaseString = (*env)->NewStringUTF(env, database);
+    (*env)->CallVoidMethod(env, wal_handler_context->handler, db_mth_onWal, databaseString, frames);
+    (*env)->DeleteLocalRef(env, databaseString);
+    return SQLITE_OK;
+}
 
-   const char* schema = (*env)->GetStringUTFChars(env, jschema, 0);
+static void free_wal_handler(JNIEnv *env, void *ctx)
+{
+    struct WalHandlerContext *wal_handler_context = (struct WalHandlerContext*) ctx;
+    (*env)->DeleteGlobalRef(env, wal_handler_context->handler);
+    free(ctx);
+}
 
-   sqlite3_int64 size;
-   int need_free=0;
-   unsigned char *buff = sqlite3_serialize(db, schema, &size, SQLITE_SERIALIZE_NOCOPY);
-   if (buff==NULL)
-   {
-      // This happens if we start without a deserialized database
-      buff = sqlite3_serialize(db, schema, &size, 0);
-      if (buff==NULL)
-      {
-         (*env)->ReleaseStringUTFChars(env, jschema, schema);
-         throwex_msg(env, "Serialization failed, allocation failed");
-	 return NULL;
+static void clear_wal_listener(JNIEnv *env, jobject nativeDB, sqlite3 *db)
+{
+    sqlite3_wal_hook(db, NULL, NULL);
+    set_new_handler(env, nativeDB, db_walListener, NULL, &free_wal_handler);
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_set_1wal_1listener(JNIEnv *env, jobject nativeDB, jboolean enabled)
+{
+    sqlite3 *db = gethandle(env, nativeDB);
+    if (!db) {
+        throwex_db_closed(env);
+        return;
+    }
+    if (enabled) {
+        struct WalHandlerContext *wal_handler_context = (struct WalHandlerContext*) malloc(sizeof(struct WalHandlerContext));
+        if (!wal_handler_context) {
+            throwex_outofmemory(env);
+            return;
+        }
+        wal_handler_context->handler = (*env)->NewGlobalRef(env, nativeDB);
+        (*env)->GetJavaVM(env, &wal_handler_context->vm);
+        wal_handler_context->autocheckpoint = get_wal_autocheckpoint(db);
+        // replaces the auto-checkpoint, which is itself implemented as a WAL hook
+        sqlite3_wal_hook(db, &wal_hook, wal_handler_context);
+        set_new_handler(env, nativeDB, db_walListener, wal_handler_context, &free_wal_handler);
+    } else {
+        struct WalHandlerContext *wal_handler_context =
+                (struct WalHandlerContext *) toref((*env)->GetLongField(env, nativeDB, db_walListener));
+        int autocheckpoint = wal_handler_context ? wal_handler_context->autocheckpoint : WAL_DEFAULT_AUTOCHECKPOINT;
+        clear_wal_listener(env, nativeDB, db);
+        sqlite3_wal_autocheckpoint(db, autocheckpoint);
+    }
+}
+
+JNIEXPORT jintArray JNICALL Java_org_sqlite_core_NativeDB_wal_1checkpoint_1utf8(
+        JNIEnv *env, jobject this, jbyteArray schema, jint mode)
+{
+    sqlite3 *db;
+    char *schema_bytes = 0;
+    int logFrames = -1, checkpointedFrames = -1;
+    jint values[3];
+    jintArray result;
+    int rc;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return NULL;
+    }
+
+    if (schema)
+    {
+        utf8JavaByteArrayToUtf8Bytes(env, schema, &schema_bytes, NULL);
+        if (!schema_bytes) return NULL;
+    }
+
+    rc = sqlite3_wal_checkpoint_v2(db, schema_bytes, mode, &logFrames, &checkpointedFrames);
+    freeUtf8Bytes(schema_bytes);
+
+    // SQLITE_BUSY only means that the checkpoint could not run to completion
+    if (rc != SQLITE_OK && rc != SQLITE_BUSY)
+    {
+        throwex_errorcode(env, this, rc);
+        return NULL;
+    }
+
+    values[0] = rc == SQLITE_BUSY;
+    values[1] = logFrames;
+    values[2] = checkpointedFrames;
+    result = (*env)->NewIntArray(env, 3);
+    if (!result)
+    {
+        throwex_outofmemory(env);
+        return NULL;
+    }
+    (*env)->SetIntArrayRegion(env, result, 0, 3, values);
+    return result;
+}
+
+// Preupdate hook
+
+struct PreUpdateHandlerContext {
+    JavaVM *vm;
+    jobject handler;
+};
+
+static void preupdate_hook(void *context, sqlite3 *db, int type, char const *database,
+                           char const *table, sqlite3_int64 oldRowId, sqlite3_int64 newRowId)
+{
+    struct PreUpdateHandlerContext *preupdate_handler_context = (struct PreUpdateHandlerContext*) context;
+    JNIEnv *env = 0;
+    jstring databaseString;
+    jstring tableString;
+
+    (*preupdate_handler_context->vm)->AttachCurrentThread(preupdate_handler_context->vm, (void **)&env, 0);
+    databaseString = (*env)->NewStringUTF(env, database);
+    tableString = (*env)->NewStringUTF(env, table);
+    // the values themselves are read on demand, with preupdate_value
+    (*env)->CallVoidMethod(env, preupdate_handler_context->handler, db_mth_onPreUpdate,
+                           type, databaseString, tableString, oldRowId, newRowId,
+                           sqlite3_preupdate_count(db), sqlite3_preupdate_depth(db));
+    (*env)->DeleteLocalRef(env, databaseString);
+    (*env)->DeleteLocalRef(env, tableString);
+}
+
+static void free_preupdate_handler(JNIEnv *env, void *ctx)
+{
+    struct PreUpdateHandlerContext *preupdate_handler_context = (struct PreUpdateHandlerContext*) ctx;
+    (*env)->DeleteGlobalRef(env, preupdate_handler_context->handler);
+    free(ctx);
+}
+
+static void clear_preupdate_listener(JNIEnv *env, jobject nativeDB, sqlite3 *db)
+{
+    sqlite3_preupdate_hook(db, NULL, NULL);
+    set_new_handler(env, nativeDB, db_preUpdateListener, NULL, &free_preupdate_handler);
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_set_1preupdate_1listener(JNIEnv *env, jobject nativeDB, jboolean enabled)
+{
+    sqlite3 *db = gethandle(env, nativeDB);
+    if (!db) {
+        throwex_db_closed(env);
+        return;
+    }
+    if (enabled) {
+        struct PreUpdateHandlerContext *preupdate_handler_context = (struct PreUpdateHandlerContext*) malloc(sizeof(struct PreUpdateHandlerContext));
+        if (!preupdate_handler_context) {
+            throwex_outofmemory(env);
+            return;
+        }
+        preupdate_handler_context->handler = (*env)->NewGlobalRef(env, nativeDB);
+        (*env)->GetJavaVM(env, &preupdate_handler_context->vm);
+        sqlite3_preupdate_hook(db, &preupdate_hook, preupdate_handler_context);
+        set_new_handler(env, nativeDB, db_preUpdateListener, preupdate_handler_context, &free_preupdate_handler);
+    } else {
+        clear_preupdate_listener(env, nativeDB, db);
+    }
+}
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_preupdate_1value(
+        JNIEnv *env, jobject this, jint kind, jint col)
+{
+    sqlite3 *db;
+    sqlite3_value *value = 0;
+    int rc;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return 0;
+    }
+
+    rc = kind == 0
+        ? sqlite3_preupdate_old(db, col, &value)
+        : sqlite3_preupdate_new(db, col, &value);
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode_msg(env, rc, "value not available in this change");
+        return 0;
+    }
+    return fromref(value);
+}
+
+// Trace hook
+
+// Extra mask bit, not known to SQLite: report SQLITE_TRACE_STMT with the expanded SQL.
+#define TRACE_EXPANDED_SQL 0x100
+#define TRACE_BUFFER_SIZE 65536
+// the buffer does not grow further while events cannot be delivered; later events are dropped
+#define TRACE_MAX_BUFFER_SIZE (16 * 1024 * 1024)
+// type (1) + statement (8) + value (8) + text length (4)
+#define TRACE_RECORD_HEADER 21
+
+struct TraceContext {
+    JavaVM *vm;
+    jobject handler;
+    sqlite3_mutex *mutex;
+    unsigned int mask;
+    char *buffer;
+    int used;
+    int capacity;
+    int count;
+    // the events dropped since the last delivery, for lack of memory
+    int dropped;
+    int threshold;
+    sqlite3_int64 interval;
+    sqlite3_int64 lastFlush;
+};
+
+static sqlite3_int64 trace_now_ms()
+{
+    sqlite3_vfs *vfs = sqlite3_vfs_find(0);
+    sqlite3_int64 now = 0;
+    if (vfs && vfs->iVersion >= 2 && vfs->xCurrentTimeInt64) {
+        vfs->xCurrentTimeInt64(vfs, &now);
+    }
+    return now;
+}
+
+/* Hands the buffered events to Java in a single call. */
+static void trace_flush(JNIEnv *env, struct TraceContext *ctx)
+{
+    jbyteArray events = 0;
+    jint count;
+    jint dropped;
+
+    if ((*env)->ExceptionCheck(env)) {
+        // keep the events until Java code can be called again, up to TRACE_MAX_BUFFER_SIZE
+        return;
+    }
+
+    sqlite3_mutex_enter(ctx->mutex);
+    count = ctx->count;
+    if (count > 0) {
+        events = (*env)->NewByteArray(env, ctx->used);
+        if (!events) {
+            // OutOfMemoryError pending, the events are kept
+            sqlite3_mutex_leave(ctx->mutex);
+            return;
+        }
+        (*env)->SetByteArrayRegion(env, events, 0, ctx->used, (jbyte *) ctx->buffer);
+        ctx->used = 0;
+        ctx->count = 0;
+    }
+    dropped = ctx->dropped;
+    ctx->dropped = 0;
+    ctx->lastFlush = trace_now_ms();
+    sqlite3_mutex_leave(ctx->mutex);
+
+    if (count > 0 || dropped > 0) {
+        (*env)->CallVoidMethod(env, ctx->handler, db_mth_onTrace, events, count, dropped);
+    }
+    if (events) {
+        (*env)->DeleteLocalRef(env, events);
+    }
+}
+
+static void trace_append(struct TraceContext *ctx, unsigned char type, sqlite3_int64 stmt,
+                         sqlite3_int64 value, const char *text, int textLen)
+{
+    char *p = ctx->buffer + ctx->used;
+    *p = (char) type;
+    memcpy(p + 1, &stmt, 8);
+    memcpy(p + 9, &value, 8);
+    memcpy(p + 17, &textLen, 4);
+    if (textLen > 0) {
+        memcpy(p + TRACE_RECORD_HEADER, text, textLen);
+    }
+    ctx->used += TRACE_RECORD_HEADER + textLen;
+    ctx->count++;
+}
+
+static int trace_callback(unsigned int type, void *context, void *p, void *x)
+{
+    struct TraceContext *ctx = (struct TraceContext *) context;
+    JNIEnv *env = 0;
+    sqlite3_int64 stmt = 0;
+    sqlite3_int64 value = 0;
+    const char *text = 0;
+    char *expanded = 0;
+    int textLen = 0;
+    int needed;
+    int full;
+
+    switch (type) {
+        case SQLITE_TRACE_STMT:
+            stmt = fromref(p);
+            if (ctx->mask & TRACE_EXPANDED_SQL) {
+                expanded = sqlite3_expanded_sql((sqlite3_stmt *) p);
+            }
+            text = expanded ? expanded : (const char *) x;
+            textLen = text ? (int) strlen(text) : 0;
+            break;
+        case SQLITE_TRACE_PROFILE:
+            stmt = fromref(p);
+            value = *(sqlite3_int64 *) x;
+            break;
+        case SQLITE_TRACE_ROW:
+            stmt = fromref(p);
+            break;
+        default:
+            break;
+    }
+
+    (*ctx->vm)->AttachCurrentThread(ctx->vm, (void **)&env, 0);
+
+    if (ctx->used + TRACE_RECORD_HEADER + textLen > ctx->capacity && ctx->count > 0) {
+        trace_flush(env, ctx);
+    }
+
+    sqlite3_mutex_enter(ctx->mutex);
+    needed = ctx->used + TRACE_RECORD_HEADER + textLen;
+    if (needed > ctx->capacity && ctx->capacity < TRACE_MAX_BUFFER_SIZE) {
+        int capacity = ctx->capacity;
+        char *buffer;
+        while (needed > capacity && capacity < TRACE_MAX_BUFFER_SIZE) {
+            capacity *= 2;
+        }
+        if (capacity > TRACE_MAX_BUFFER_SIZE) {
+            capacity = TRACE_MAX_BUFFER_SIZE;
+        }
+        buffer = (char *) realloc(ctx->buffer, capacity);
+        if (buffer) {
+            ctx->buffer = buffer;
+            ctx->capacity = capacity;
+        }
+    }
+    if (needed <= ctx->capacity) {
+        trace_append(ctx, (unsigned char) type, stmt, value, text, textLen);
+    } else {
+        // reported with the next delivery
+        ctx->dropped++;
+    }
+    full = ctx->count >= ctx->threshold
+        || (ctx->interval > 0 && trace_now_ms() - ctx->lastFlush >= ctx->interval);
+    sqlite3_mutex_leave(ctx->mutex);
+
+    if (expanded) {
+        sqlite3_free(expanded);
+    }
+    if (full) {
+        trace_flush(env, ctx);
+    }
+    return 0;
+}
+
+/*
+ * Delivers the buffered events once the flush interval has elapsed, when a statement ends: the
+ * only periodic delivery of thread-confined connections, which have no background one.
+ */
+static void trace_flush_if_due(JNIEnv *env, jobject nativeDB)
+{
+    struct TraceContext *ctx = (struct TraceContext *) toref((*env)->GetLongField(env, nativeDB, db_traceListener));
+    int due;
+
+    if (!ctx || ctx->interval <= 0) {
+        return;
+    }
+    sqlite3_mutex_enter(ctx->mutex);
+    due = (ctx->count > 0 || ctx->dropped > 0) && trace_now_ms() - ctx->lastFlush >= ctx->interval;
+    sqlite3_mutex_leave(ctx->mutex);
+    if (due) {
+        trace_flush(env, ctx);
+    }
+}
+
+static void free_trace_listener(JNIEnv *env, void *toFree)
+{
+    struct TraceContext *ctx = (struct TraceContext *) toFree;
+    trace_flush(env, ctx);
+    (*env)->DeleteGlobalRef(env, ctx->handler);
+    sqlite3_mutex_free(ctx->mutex);
+    free(ctx->buffer);
+    free(ctx);
+}
+
+static void clear_trace_listener(JNIEnv *env, jobject nativeDB, sqlite3 *db)
+{
+    if (db) {
+        sqlite3_trace_v2(db, 0, NULL, NULL);
+    }
+    set_new_handler(env, nativeDB, db_traceListener, NULL, &free_trace_listener);
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_set_1trace(
+        JNIEnv *env, jobject nativeDB, jint mask, jint threshold, jlong intervalMillis)
+{
+    struct TraceContext *ctx;
+    sqlite3 *db = gethandle(env, nativeDB);
+
+    if (!(mask & (SQLITE_TRACE_STMT | SQLITE_TRACE_PROFILE | SQLITE_TRACE_ROW | SQLITE_TRACE_CLOSE))) {
+        clear_trace_listener(env, nativeDB, db);
+        return;
+    }
+    if (!db) {
+        throwex_db_closed(env);
+        return;
+    }
+
+    ctx = (struct TraceContext *) malloc(sizeof(struct TraceContext));
+    if (!ctx) {
+        throwex_outofmemory(env);
+        return;
+    }
+    ctx->buffer = (char *) malloc(TRACE_BUFFER_SIZE);
+    ctx->mutex = sqlite3_mutex_alloc(SQLITE_MUTEX_FAST);
+    if (!ctx->buffer || !ctx->mutex) {
+        free(ctx->buffer);
+        if (ctx->mutex) sqlite3_mutex_free(ctx->mutex);
+        free(ctx);
+        throwex_outofmemory(env);
+        return;
+    }
+    (*env)->GetJavaVM(env, &ctx->vm);
+    ctx->handler = (*env)->NewGlobalRef(env, nativeDB);
+    ctx->mask = (unsigned int) mask;
+    ctx->used = 0;
+    ctx->capacity = TRACE_BUFFER_SIZE;
+    ctx->count = 0;
+    ctx->dropped = 0;
+    ctx->threshold = threshold > 0 ? threshold : 1;
+    ctx->interval = intervalMillis;
+    ctx->lastFlush = trace_now_ms();
+
+    // the previous listener, if any, delivers its pending events before being replaced
+    sqlite3_trace_v2(db, 0, NULL, NULL);
+    set_new_handler(env, nativeDB, db_traceListener, ctx, &free_trace_listener);
+    sqlite3_trace_v2(db, (unsigned int) mask & 0xff, &trace_callback, ctx);
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_trace_1flush(JNIEnv *env, jobject nativeDB)
+{
+    struct TraceContext *ctx = (struct TraceContext *) toref((*env)->GetLongField(env, nativeDB, db_traceListener));
+    if (ctx) {
+        trace_flush(env, ctx);
+    }
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB__1close(
+        JNIEnv *env, jobject nativeDB)
+{
+    sqlite3 *db = gethandle(env, nativeDB);
+    if (db)
+    {
+        change_progress_handler(env, nativeDB, NULL, 0);
+        change_busy_handler(env, nativeDB, NULL);
+        clear_commit_listener(env, nativeDB, db);
+        clear_update_listener(env, nativeDB);
+        clear_wal_listener(env, nativeDB, db);
+        clear_preupdate_listener(env, nativeDB, db);
+
+        if (sqlite3_close(db) != SQLITE_OK)
+        {
+            // delivers the pending events, before an exception is pending
+            clear_trace_listener(env, nativeDB, db);
+            throwex(env, nativeDB);
+        }
+        else
+        {
+            // after closing, so that the listener receives SQLITE_TRACE_CLOSE
+            clear_trace_listener(env, nativeDB, NULL);
+        }
+        sethandle(env, nativeDB, 0);
+    }
+}
+
+JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_serialize(JNIEnv *env, jobject this, jstring jschema)
+{
+
+   sqlite3 *db = gethandle(env, this);
+   if (!db)
+   {
+        throwex_db_closed(env);
+        return NULL;
+   }
+
+   const char* schema = (*env)->GetStringUTFChars(env, jschema, 0);
+
+   sqlite3_int64 size;
+   int need_free=0;
+   unsigned char *buff = sqlite3_serialize(db, schema, &size, SQLITE_SERIALIZE_NOCOPY);
+   if (buff==NULL)
+   {
+      // This happens if we start without a deserialized database
+      buff = sqlite3_serialize(db, schema, &size, 0);
+      if (buff==NULL)
+      {
+         (*env)->ReleaseStringUTFChars(env, jschema, schema);
+         throwex_msg(env, "Serialization failed, allocation failed");
+	 return NULL;
       }
       need_free = 1;
    }
@@ -1920,7 +3373,7 @@ JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_serialize(JNIEnv *env
       if (jbuff_pointer!=NULL)
       {
          memcpy(jbuff_pointer, buff, size);
-         (*env)->ReleasePrimitiveArrayCritical(env, jbuff, buff, 0);
+         (*env)->ReleasePrimitiveArrayCritical(env, jbuff, jbuff_pointer, 0);
       }
       else
       {
@@ -1982,3 +3435,698 @@ JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_deserialize(JNIEnv *env, jo
    }
    (*env)->ReleaseStringUTFChars(env, jschema, schema);
 }
+
+// Serialization through native memory, handed to Java as direct ByteBuffers
+
+// ~2gb, bigger values will result in sqlite malloc error
+#define DESERIALIZE_SIZE_LIMIT (1024L * 1024L * 1000L * 2L)
+
+/*
+** Returns {pointer, size, owned} for the content of a database: the memory of
+** an in-memory database, which stays valid until it is next written, or else
+** a copy to release with memory_free.
+*/
+JNIEXPORT jlongArray JNICALL Java_org_sqlite_core_NativeDB_serialize_1ptr_1utf8(
+        JNIEnv *env, jobject this, jbyteArray schema)
+{
+    sqlite3 *db;
+    char *schema_bytes;
+    sqlite3_int64 size = 0;
+    unsigned char *data;
+    jlong values[3];
+    jlongArray result;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return NULL;
+    }
+
+    utf8JavaByteArrayToUtf8Bytes(env, schema, &schema_bytes, NULL);
+    if (!schema_bytes) return NULL;
+
+    values[2] = 0;
+    data = sqlite3_serialize(db, schema_bytes, &size, SQLITE_SERIALIZE_NOCOPY);
+    if (!data && size > 0)
+    {
+        // not an in-memory database
+        data = sqlite3_serialize(db, schema_bytes, &size, 0);
+        if (!data)
+        {
+            freeUtf8Bytes(schema_bytes);
+            throwex_msg(env, "Serialization failed, allocation failed");
+            return NULL;
+        }
+        values[2] = 1;
+    }
+    freeUtf8Bytes(schema_bytes);
+
+    values[0] = fromref(data);
+    values[1] = size;
+    result = (*env)->NewLongArray(env, 3);
+    if (!result)
+    {
+        if (values[2]) sqlite3_free(data);
+        throwex_outofmemory(env);
+        return NULL;
+    }
+    (*env)->SetLongArrayRegion(env, result, 0, 3, values);
+    return result;
+}
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_serialized_1size_1utf8(
+        JNIEnv *env, jobject this, jbyteArray schema)
+{
+    sqlite3 *db;
+    char *schema_bytes;
+    sqlite3_int64 size = 0;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return 0;
+    }
+
+    utf8JavaByteArrayToUtf8Bytes(env, schema, &schema_bytes, NULL);
+    if (!schema_bytes) return 0;
+
+    // without copying: the size is set even when no memory can be returned
+    sqlite3_serialize(db, schema_bytes, &size, SQLITE_SERIALIZE_NOCOPY);
+    freeUtf8Bytes(schema_bytes);
+    return size;
+}
+
+/*
+** Replaces the content of a database with size bytes at pointer, with the
+** SQLITE_DESERIALIZE_* flags. Without FREEONCLOSE, the memory is used in place
+** and must outlive the database; with it, the memory must come from
+** memory_alloc, and is owned by the database from now on, even if this call
+** fails.
+*/
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_deserialize_1ptr_1utf8(
+        JNIEnv *env, jobject this, jbyteArray schema, jlong pointer, jlong size, jint flags)
+{
+    sqlite3 *db;
+    char *schema_bytes;
+    sqlite3_int64 limit;
+    int rc;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        if (flags & SQLITE_DESERIALIZE_FREEONCLOSE) sqlite3_free(toref(pointer));
+        throwex_db_closed(env);
+        return;
+    }
+
+    utf8JavaByteArrayToUtf8Bytes(env, schema, &schema_bytes, NULL);
+    if (!schema_bytes)
+    {
+        if (flags & SQLITE_DESERIALIZE_FREEONCLOSE) sqlite3_free(toref(pointer));
+        return;
+    }
+
+    rc = sqlite3_deserialize(db, schema_bytes, toref(pointer), size, size, (unsigned) flags);
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode(env, this, rc);
+    }
+    else if (flags & SQLITE_DESERIALIZE_RESIZEABLE)
+    {
+        limit = size > DESERIALIZE_SIZE_LIMIT ? size : DESERIALIZE_SIZE_LIMIT;
+        sqlite3_file_control(db, schema_bytes, SQLITE_FCNTL_SIZE_LIMIT, &limit);
+    }
+    freeUtf8Bytes(schema_bytes);
+}
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_memory_1alloc(
+        JNIEnv *env, jobject this, jlong size)
+{
+    void *pointer = sqlite3_malloc64(size > 0 ? size : 1);
+    if (!pointer)
+    {
+        throwex_msg(env, "Failed to allocate native memory for database");
+        return 0;
+    }
+    return fromref(pointer);
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_memory_1free(
+        JNIEnv *env, jobject this, jlong pointer)
+{
+    sqlite3_free(toref(pointer));
+}
+
+JNIEXPORT jobject JNICALL Java_org_sqlite_core_NativeDB_memory_1buffer(
+        JNIEnv *env, jobject this, jlong pointer, jint length)
+{
+    return (*env)->NewDirectByteBuffer(env, toref(pointer), length);
+}
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_buffer_1address(
+        JNIEnv *env, jobject this, jobject buffer)
+{
+    return fromref((*env)->GetDirectBufferAddress(env, buffer));
+}
+
+// INCREMENTAL BLOB I/O /////////////////////////////////////////////
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_blob_1open_1utf8(
+        JNIEnv *env, jobject this, jbyteArray schema, jbyteArray table, jbyteArray column,
+        jlong rowid, jboolean write)
+{
+    sqlite3 *db;
+    sqlite3_blob *blob = 0;
+    char *schema_bytes, *table_bytes, *column_bytes;
+    int rc;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return 0;
+    }
+
+    utf8JavaByteArrayToUtf8Bytes(env, schema, &schema_bytes, NULL);
+    if (!schema_bytes) return 0;
+    utf8JavaByteArrayToUtf8Bytes(env, table, &table_bytes, NULL);
+    if (!table_bytes)
+    {
+        freeUtf8Bytes(schema_bytes);
+        return 0;
+    }
+    utf8JavaByteArrayToUtf8Bytes(env, column, &column_bytes, NULL);
+    if (!column_bytes)
+    {
+        freeUtf8Bytes(schema_bytes);
+        freeUtf8Bytes(table_bytes);
+        return 0;
+    }
+
+    rc = sqlite3_blob_open(db, schema_bytes, table_bytes, column_bytes, rowid, write ? 1 : 0, &blob);
+    freeUtf8Bytes(schema_bytes);
+    freeUtf8Bytes(table_bytes);
+    freeUtf8Bytes(column_bytes);
+
+    if (rc != SQLITE_OK)
+    {
+        // SQLite sets the handle to NULL on failure, there is nothing to close
+        throwex_errorcode(env, this, rc);
+        return 0;
+    }
+    return fromref(blob);
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_blob_1reopen(
+        JNIEnv *env, jobject this, jlong blob, jlong rowid)
+{
+    int rc;
+
+    if (!blob)
+    {
+        throwex_msg(env, "blob is closed");
+        return;
+    }
+
+    rc = sqlite3_blob_reopen(toref(blob), rowid);
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode(env, this, rc);
+    }
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_blob_1bytes(
+        JNIEnv *env, jobject this, jlong blob)
+{
+    if (!blob)
+    {
+        throwex_msg(env, "blob is closed");
+        return 0;
+    }
+
+    return sqlite3_blob_bytes(toref(blob));
+}
+
+// blobs are copied through a buffer of at most this size, whatever the length of the transfer
+#define BLOB_CHUNK_SIZE (64 * 1024)
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_blob_1read(
+        JNIEnv *env, jobject this, jlong blob, jint offset, jbyteArray bytes, jint off, jint len)
+{
+    void *buf;
+    int rc = SQLITE_OK;
+    int done, n;
+
+    if (!blob)
+    {
+        throwex_msg(env, "blob is closed");
+        return;
+    }
+    if (len <= 0) return;
+
+    // not read in place, the read may block on I/O
+    buf = malloc(len < BLOB_CHUNK_SIZE ? len : BLOB_CHUNK_SIZE);
+    if (!buf)
+    {
+        throwex_outofmemory(env);
+        return;
+    }
+
+    for (done = 0; done < len; done += n)
+    {
+        n = len - done < BLOB_CHUNK_SIZE ? len - done : BLOB_CHUNK_SIZE;
+        rc = sqlite3_blob_read(toref(blob), buf, n, offset + done);
+        if (rc != SQLITE_OK) break;
+        (*env)->SetByteArrayRegion(env, bytes, off + done, n, (jbyte *) buf);
+        if ((*env)->ExceptionCheck(env)) break;
+    }
+    free(buf);
+
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode(env, this, rc);
+    }
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_blob_1write(
+        JNIEnv *env, jobject this, jlong blob, jint offset, jbyteArray bytes, jint off, jint len)
+{
+    void *buf;
+    int rc = SQLITE_OK;
+    int done, n;
+
+    if (!blob)
+    {
+        throwex_msg(env, "blob is closed");
+        return;
+    }
+    if (len <= 0) return;
+
+    buf = malloc(len < BLOB_CHUNK_SIZE ? len : BLOB_CHUNK_SIZE);
+    if (!buf)
+    {
+        throwex_outofmemory(env);
+        return;
+    }
+
+    for (done = 0; done < len; done += n)
+    {
+        n = len - done < BLOB_CHUNK_SIZE ? len - done : BLOB_CHUNK_SIZE;
+        (*env)->GetByteArrayRegion(env, bytes, off + done, n, (jbyte *) buf);
+        if ((*env)->ExceptionCheck(env)) break;
+        rc = sqlite3_blob_write(toref(blob), buf, n, offset + done);
+        if (rc != SQLITE_OK) break;
+    }
+    free(buf);
+
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode(env, this, rc);
+    }
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_blob_1close(
+        JNIEnv *env, jobject this, jlong blob)
+{
+    return sqlite3_blob_close(toref(blob));
+}
+
+// SESSION EXTENSION //////////////////////////////////////////////
+
+static jbyteArray to_byte_array(JNIEnv *env, const void *data, int n)
+{
+    jbyteArray result = (*env)->NewByteArray(env, n);
+    if (!result)
+    {
+        throwex_outofmemory(env);
+        return NULL;
+    }
+    (*env)->SetByteArrayRegion(env, result, 0, n, (const jbyte *) data);
+    return result;
+}
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_session_1create_1utf8(
+        JNIEnv *env, jobject this, jbyteArray schema)
+{
+    sqlite3 *db;
+    sqlite3_session *session = 0;
+    char *schema_bytes;
+    int rc;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return 0;
+    }
+
+    utf8JavaByteArrayToUtf8Bytes(env, schema, &schema_bytes, NULL);
+    if (!schema_bytes) return 0;
+
+    rc = sqlite3session_create(db, schema_bytes, &session);
+    freeUtf8Bytes(schema_bytes);
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode(env, this, rc);
+        return 0;
+    }
+    return fromref(session);
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_session_1delete(
+        JNIEnv *env, jobject this, jlong session)
+{
+    sqlite3session_delete(toref(session));
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_session_1attach_1utf8(
+        JNIEnv *env, jobject this, jlong session, jbyteArray table)
+{
+    char *table_bytes = 0;
+    int rc;
+
+    if (table)
+    {
+        utf8JavaByteArrayToUtf8Bytes(env, table, &table_bytes, NULL);
+        if (!table_bytes) return;
+    }
+
+    rc = sqlite3session_attach(toref(session), table_bytes);
+    freeUtf8Bytes(table_bytes);
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode(env, this, rc);
+    }
+}
+
+JNIEXPORT jboolean JNICALL Java_org_sqlite_core_NativeDB_session_1enable(
+        JNIEnv *env, jobject this, jlong session, jint enable)
+{
+    return sqlite3session_enable(toref(session), enable) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jboolean JNICALL Java_org_sqlite_core_NativeDB_session_1indirect(
+        JNIEnv *env, jobject this, jlong session, jint indirect)
+{
+    return sqlite3session_indirect(toref(session), indirect) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jboolean JNICALL Java_org_sqlite_core_NativeDB_session_1isempty(
+        JNIEnv *env, jobject this, jlong session)
+{
+    return sqlite3session_isempty(toref(session)) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_session_1changeset(
+        JNIEnv *env, jobject this, jlong session, jboolean patchset)
+{
+    void *data = 0;
+    int n = 0;
+    int rc;
+    jbyteArray result;
+
+    rc = patchset
+        ? sqlite3session_patchset(toref(session), &n, &data)
+        : sqlite3session_changeset(toref(session), &n, &data);
+    if (rc != SQLITE_OK)
+    {
+        sqlite3_free(data);
+        throwex_errorcode(env, this, rc);
+        return NULL;
+    }
+
+    result = to_byte_array(env, data, n);
+    sqlite3_free(data);
+    return result;
+}
+
+struct StreamContext {
+    JNIEnv *env;
+    jobject out;
+    jbyteArray chunk;
+    int capacity;
+};
+
+static int stream_output(void *context, const void *data, int n)
+{
+    struct StreamContext *ctx = (struct StreamContext *) context;
+    JNIEnv *env = ctx->env;
+
+    if (n > ctx->capacity)
+    {
+        if (ctx->chunk) (*env)->DeleteLocalRef(env, ctx->chunk);
+        ctx->chunk = (*env)->NewByteArray(env, n);
+        if (!ctx->chunk) return SQLITE_NOMEM;
+        ctx->capacity = n;
+    }
+    (*env)->SetByteArrayRegion(env, ctx->chunk, 0, n, (const jbyte *) data);
+    (*env)->CallVoidMethod(env, ctx->out, ostream_mth_write, ctx->chunk, 0, n);
+    // the IOException is left pending and rethrown by the caller
+    return (*env)->ExceptionCheck(env) ? SQLITE_IOERR : SQLITE_OK;
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_session_1changeset_1strm(
+        JNIEnv *env, jobject this, jlong session, jboolean patchset, jobject out)
+{
+    struct StreamContext ctx;
+    int rc;
+
+    ctx.env = env;
+    ctx.out = out;
+    ctx.chunk = 0;
+    ctx.capacity = 0;
+
+    rc = patchset
+        ? sqlite3session_patchset_strm(toref(session), &stream_output, &ctx)
+        : sqlite3session_changeset_strm(toref(session), &stream_output, &ctx);
+    if (ctx.chunk) (*env)->DeleteLocalRef(env, ctx.chunk);
+
+    if (rc != SQLITE_OK && !(*env)->ExceptionCheck(env))
+    {
+        throwex_errorcode(env, this, rc);
+    }
+}
+
+JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_changeset_1invert(
+        JNIEnv *env, jclass cls, jbyteArray changeset)
+{
+    jsize n = (*env)->GetArrayLength(env, changeset);
+    jbyte *in;
+    void *out = 0;
+    int nOut = 0;
+    int rc;
+    jbyteArray result;
+
+    in = (*env)->GetPrimitiveArrayCritical(env, changeset, 0);
+    if (!in)
+    {
+        throwex_outofmemory(env);
+        return NULL;
+    }
+    rc = sqlite3changeset_invert(n, in, &nOut, &out);
+    (*env)->ReleasePrimitiveArrayCritical(env, changeset, in, JNI_ABORT);
+
+    if (rc != SQLITE_OK)
+    {
+        sqlite3_free(out);
+        throwex_errorcode_msg(env, rc, "cannot invert changeset");
+        return NULL;
+    }
+    result = to_byte_array(env, out, nOut);
+    sqlite3_free(out);
+    return result;
+}
+
+JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_changeset_1concat(
+        JNIEnv *env, jclass cls, jbyteArray a, jbyteArray b)
+{
+    jsize nA = (*env)->GetArrayLength(env, a);
+    jsize nB = (*env)->GetArrayLength(env, b);
+    void *bufA, *bufB;
+    void *out = 0;
+    int nOut = 0;
+    int rc;
+    jbyteArray result;
+
+    // copied, sqlite3changeset_concat takes non-const buffers
+    bufA = malloc(nA > 0 ? nA : 1);
+    bufB = malloc(nB > 0 ? nB : 1);
+    if (!bufA || !bufB)
+    {
+        free(bufA);
+        free(bufB);
+        throwex_outofmemory(env);
+        return NULL;
+    }
+    (*env)->GetByteArrayRegion(env, a, 0, nA, (jbyte *) bufA);
+    (*env)->GetByteArrayRegion(env, b, 0, nB, (jbyte *) bufB);
+    rc = sqlite3changeset_concat(nA, bufA, nB, bufB, &nOut, &out);
+    free(bufA);
+    free(bufB);
+
+    if (rc != SQLITE_OK)
+    {
+        sqlite3_free(out);
+        throwex_errorcode_msg(env, rc, "cannot concatenate changesets");
+        return NULL;
+    }
+    result = to_byte_array(env, out, nOut);
+    sqlite3_free(out);
+    return result;
+}
+
+struct ApplyContext {
+    JNIEnv *env;
+    jobject db;
+};
+
+static int changeset_filter(void *context, const char *table)
+{
+    struct ApplyContext *ctx = (struct ApplyContext *) context;
+    JNIEnv *env = ctx->env;
+    jstring tableString;
+    jboolean include;
+
+    if ((*env)->ExceptionCheck(env)) return 0;
+    tableString = (*env)->NewStringUTF(env, table);
+    include = (*env)->CallBooleanMethod(env, ctx->db, db_mth_onChangesetFilter, tableString);
+    (*env)->DeleteLocalRef(env, tableString);
+    return !(*env)->ExceptionCheck(env) && include;
+}
+
+static int changeset_conflict(void *context, int type, sqlite3_changeset_iter *iter)
+{
+    struct ApplyContext *ctx = (struct ApplyContext *) context;
+    JNIEnv *env = ctx->env;
+    const char *table = 0;
+    int nCol = 0, op = 0, indirect = 0;
+    jstring tableString;
+    jint resolution;
+
+    if ((*env)->ExceptionCheck(env)) return SQLITE_CHANGESET_ABORT;
+    // a foreign key conflict is about the whole changeset, not a change
+    if (type != SQLITE_CHANGESET_FOREIGN_KEY) {
+        sqlite3changeset_op(iter, &table, &nCol, &op, &indirect);
+    }
+    tableString = table ? (*env)->NewStringUTF(env, table) : NULL;
+    resolution = (*env)->CallIntMethod(env, ctx->db, db_mth_onChangesetConflict,
+                                       type, fromref(iter), tableString, op, nCol, indirect ? JNI_TRUE : JNI_FALSE);
+    if (tableString) (*env)->DeleteLocalRef(env, tableString);
+    return (*env)->ExceptionCheck(env) ? SQLITE_CHANGESET_ABORT : resolution;
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_changeset_1apply(
+        JNIEnv *env, jobject this, jbyteArray changeset, jboolean filter)
+{
+    sqlite3 *db;
+    struct ApplyContext ctx;
+    jsize n;
+    void *buf;
+    int rc;
+
+    db = gethandle(env, this);
+    if (!db)
+    {
+        throwex_db_closed(env);
+        return;
+    }
+    n = (*env)->GetArrayLength(env, changeset);
+    // not read in place, the callbacks call into Java
+    buf = malloc(n > 0 ? n : 1);
+    if (!buf)
+    {
+        throwex_outofmemory(env);
+        return;
+    }
+    (*env)->GetByteArrayRegion(env, changeset, 0, n, (jbyte *) buf);
+
+    ctx.env = env;
+    ctx.db = this;
+    // the apply commits the changes of the tables included before a filter throws, so it runs
+    // within a savepoint rolled back if a callback throws
+    rc = sqlite3_exec(db, "SAVEPOINT jdbc_changeset_apply", NULL, NULL, NULL);
+    if (rc != SQLITE_OK)
+    {
+        free(buf);
+        throwex_errorcode(env, this, rc);
+        return;
+    }
+    rc = sqlite3changeset_apply(db, n, buf, filter ? &changeset_filter : NULL, &changeset_conflict, &ctx);
+    free(buf);
+
+    if (rc != SQLITE_OK && !(*env)->ExceptionCheck(env))
+    {
+        throwex_errorcode(env, this, rc);
+    }
+    if ((*env)->ExceptionCheck(env))
+    {
+        sqlite3_exec(db, "ROLLBACK TO jdbc_changeset_apply", NULL, NULL, NULL);
+    }
+    sqlite3_exec(db, "RELEASE jdbc_changeset_apply", NULL, NULL, NULL);
+}
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_changeset_1value(
+        JNIEnv *env, jobject this, jlong iter, jint kind, jint col)
+{
+    sqlite3_value *value = 0;
+    int rc;
+
+    switch (kind)
+    {
+        case 0:
+            rc = sqlite3changeset_old(toref(iter), col, &value);
+            break;
+        case 1:
+            rc = sqlite3changeset_new(toref(iter), col, &value);
+            break;
+        default:
+            rc = sqlite3changeset_conflict(toref(iter), col, &value);
+            break;
+    }
+    if (rc != SQLITE_OK)
+    {
+        throwex_errorcode_msg(env, rc, "value not available in this change");
+        return 0;
+    }
+    return fromref(value);
+}
+
+// sqlite3_value accessors, for values handed out by pointer
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_sqlvalue_1type(
+        JNIEnv *env, jobject this, jlong value)
+{
+    return sqlite3_value_type(toref(value));
+}
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_sqlvalue_1int64(
+        JNIEnv *env, jobject this, jlong value)
+{
+    return sqlite3_value_int64(toref(value));
+}
+
+JNIEXPORT jdouble JNICALL Java_org_sqlite_core_NativeDB_sqlvalue_1double(
+        JNIEnv *env, jobject this, jlong value)
+{
+    return sqlite3_value_double(toref(value));
+}
+
+JNIEXPORT jbyteArray JNICALL Java_org_sqlite_core_NativeDB_sqlvalue_1bytes(
+        JNIEnv *env, jobject this, jlong value)
+{
+    sqlite3_value *v = toref(value);
+    const void *data;
+    int n;
+
+    // the text, as UTF-8, or the blob
+    data = sqlite3_value_type(v) == SQLITE_TEXT ? (const void *) sqlite3_value_text(v) : sqlite3_value_blob(v);
+    n = sqlite3_value_bytes(v);
+    if (!data && n > 0)
+    {
+        throwex_outofmemory(env);
+        return NULL;
+    }
+    return to_byte_array(env, data, n);
+}
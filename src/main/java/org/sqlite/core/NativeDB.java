@@ -16,6 +16,8 @@
 
 package org.sqlite.core;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
@@ -26,6 +28,7 @@ import org.sqlite.Function;
 import org.sqlite.ProgressHandler;
 import org.sqlite.SQLiteConfig;
 import org.sqlite.SQLiteJDBCLoader;
+import org.sqlite.metrics.SQLiteMetrics;
 import org.sqlite.util.Logger;
 import org.sqlite.util.LoggerFactory;
 
@@ -96,7 +99,14 @@ public final class NativeDB extends DB {
                         MessageFormat.format(
                                 "DriverManager [{0}] [SQLite EXEC] {1}",
                                 Thread.currentThread().getName(), sql));
-        return _exec_utf8(stringToUtf8ByteArray(sql));
+        SQLiteMetrics metrics = getMetrics();
+        if (metrics == null) {
+            return _exec_utf8(stringToUtf8ByteArray(sql));
+        }
+        long start = System.nanoTime();
+        int statusCode = _exec_utf8(stringToUtf8ByteArray(sql));
+        metrics.onExecute(System.nanoTime() - start);
+        return statusCode;
     }
 
     synchronized native int _exec_utf8(byte[] sqlUtf8) throws SQLException;
@@ -124,18 +134,18 @@ public final class NativeDB extends DB {
     @Override
     public synchronized native void busy_handler(BusyHandler busyHandler);
 
-    /** @see org.sqlite.core.DB#prepare(java.lang.String) */
+    /** @see org.sqlite.core.DB#prepare(java.lang.String, int) */
     @Override
-    protected synchronized SafeStmtPtr prepare(String sql) throws SQLException {
+    protected synchronized SafeStmtPtr prepare(String sql, int prepFlags) throws SQLException {
         logger.trace(
                 () ->
                         MessageFormat.format(
                                 "DriverManager [{0}] [SQLite EXEC] {1}",
                                 Thread.currentThread().getName(), sql));
-        return new SafeStmtPtr(this, prepare_utf8(stringToUtf8ByteArray(sql)));
+        return new SafeStmtPtr(this, prepare_utf8(stringToUtf8ByteArray(sql), prepFlags));
     }
 
-    synchronized native long prepare_utf8(byte[] sqlUtf8) throws SQLException;
+    synchronized native long prepare_utf8(byte[] sqlUtf8, int prepFlags) throws SQLException;
 
     /** @see org.sqlite.core.DB#errmsg() */
     @Override
@@ -185,6 +195,10 @@ public final class NativeDB extends DB {
     @Override
     public synchronized native int column_count(long stmt);
 
+    /** @see org.sqlite.core.DB#stmt_status(long, int, boolean) */
+    @Override
+    public synchronized native int stmt_status(long stmt, int op, boolean reset);
+
     /** @see org.sqlite.core.DB#column_type(long, int) */
     @Override
     public synchronized native int column_type(long stmt, int col);
@@ -216,10 +230,15 @@ public final class NativeDB extends DB {
     /** @see org.sqlite.core.DB#column_text(long, int) */
     @Override
     public synchronized String column_text(long stmt, int col) {
-        return utf8ByteBufferToString(column_text_utf8(stmt, col));
+        return textValueToString(column_text_value(stmt, col));
     }
 
-    synchronized native ByteBuffer column_text_utf8(long stmt, int col);
+    /** @return the text as a String if it is ASCII, or else as a byte[] of UTF-8; null if NULL */
+    synchronized native Object column_text_value(long stmt, int col);
+
+    /** @see org.sqlite.core.DB#column_text_copy(long, int, ByteBuffer) */
+    @Override
+    public synchronized native int column_text_copy(long stmt, int col, ByteBuffer buffer);
 
     /** @see org.sqlite.core.DB#column_blob(long, int) */
     @Override
@@ -237,6 +256,47 @@ public final class NativeDB extends DB {
     @Override
     public synchronized native int column_int(long stmt, int col);
 
+    /** @see org.sqlite.core.DB#step_unlocked(long) */
+    @Override
+    public native int step_unlocked(long stmt);
+
+    /** @see org.sqlite.core.DB#column_type_unlocked(long, int) */
+    @Override
+    public native int column_type_unlocked(long stmt, int col);
+
+    /** @see org.sqlite.core.DB#column_text_unlocked(long, int) */
+    @Override
+    public String column_text_unlocked(long stmt, int col) {
+        return textValueToString(column_text_value_unlocked(stmt, col));
+    }
+
+    native Object column_text_value_unlocked(long stmt, int col);
+
+    /** @see org.sqlite.core.DB#column_blob_unlocked(long, int) */
+    @Override
+    public native byte[] column_blob_unlocked(long stmt, int col);
+
+    /** @see org.sqlite.core.DB#column_double_unlocked(long, int) */
+    @Override
+    public native double column_double_unlocked(long stmt, int col);
+
+    /** @see org.sqlite.core.DB#column_long_unlocked(long, int) */
+    @Override
+    public native long column_long_unlocked(long stmt, int col);
+
+    /** @see org.sqlite.core.DB#column_int_unlocked(long, int) */
+    @Override
+    public native int column_int_unlocked(long stmt, int col);
+
+    /** @see org.sqlite.core.DB#column_text_copy_unlocked(long, int, ByteBuffer) */
+    @Override
+    public native int column_text_copy_unlocked(long stmt, int col, ByteBuffer buffer);
+
+    /** @see org.sqlite.core.DB#fetch_rows(long, ByteBuffer, int, boolean) */
+    @Override
+    synchronized native int fetch_rows(
+            long stmt, ByteBuffer buffer, int maxRows, boolean stepFirst);
+
     /** @see org.sqlite.core.DB#bind_null(long, int) */
     @Override
     synchronized native int bind_null(long stmt, int pos);
@@ -265,6 +325,15 @@ public final class NativeDB extends DB {
     @Override
     synchronized native int bind_blob(long stmt, int pos, byte[] v);
 
+    /** @see org.sqlite.core.DB#bind_zeroblob(long, int, long) */
+    @Override
+    synchronized native int bind_zeroblob(long stmt, int pos, long length);
+
+    /** @see org.sqlite.core.DB#execute_batch(long, ByteBuffer, int, int, int, long[]) */
+    @Override
+    synchronized native int execute_batch(
+            long stmt, ByteBuffer params, int length, int paramCount, int rows, long[] changes);
+
     /** @see org.sqlite.core.DB#result_null(long) */
     @Override
     public synchronized native void result_null(long context);
@@ -366,6 +435,18 @@ public final class NativeDB extends DB {
     @Override
     public synchronized native int limit(int id, int value) throws SQLException;
 
+    /** @see org.sqlite.core.DB#db_status(int[], boolean) */
+    @Override
+    public synchronized native long[] db_status(int[] ops, boolean reset) throws SQLException;
+
+    /** @see org.sqlite.core.DB#schema_versions() */
+    @Override
+    public synchronized native byte[] schema_versions() throws SQLException;
+
+    /** @see org.sqlite.core.DB#status64(int[], boolean) */
+    @Override
+    public native long[] status64(int[] ops, boolean reset) throws SQLException;
+
     private byte[] nameToUtf8ByteArray(String nameType, String name) throws SQLException {
         final byte[] nameUtf8 = stringToUtf8ByteArray(name);
         if (name == null || "".equals(name) || nameUtf8.length > 255) {
@@ -467,6 +548,36 @@ public final class NativeDB extends DB {
             int pagesPerStep)
             throws SQLException;
 
+    /** @see org.sqlite.core.DB#backup_init(String, String, boolean) */
+    @Override
+    synchronized long backup_init(String dbName, String fileName, boolean restore)
+            throws SQLException {
+        return backup_init_utf8(
+                stringToUtf8ByteArray(dbName), stringToUtf8ByteArray(fileName), restore);
+    }
+
+    synchronized native long backup_init_utf8(
+            byte[] dbNameUtf8, byte[] fileNameUtf8, boolean restore) throws SQLException;
+
+    /** @see org.sqlite.core.DB#backup_step(long, int) */
+    @Override
+    public synchronized native int backup_step(long backup, int nPages) throws SQLException;
+
+    /** @see org.sqlite.core.DB#backup_remaining(long) */
+    @Override
+    public synchronized native int backup_remaining(long backup);
+
+    /** @see org.sqlite.core.DB#backup_pagecount(long) */
+    @Override
+    public synchronized native int backup_pagecount(long backup);
+
+    /** @see org.sqlite.core.DB#backup_pagesize(long) */
+    @Override
+    public synchronized native int backup_pagesize(long backup);
+
+    @Override
+    synchronized native int backup_finish(long backup);
+
     // COMPOUND FUNCTIONS (for optimisation) /////////////////////////
 
     /**
@@ -491,7 +602,43 @@ public final class NativeDB extends DB {
     private long updateListener = 0;
 
     @Override
-    synchronized native void set_update_listener(boolean enabled);
+    synchronized native void set_update_listener(boolean enabled, int bufferSize);
+
+    @Override
+    synchronized native void update_flush();
+
+    // pointer to trace listener structure, if enabled.
+    private long traceListener = 0;
+
+    @Override
+    synchronized native void set_trace(int mask, int threshold, long intervalMillis)
+            throws SQLException;
+
+    @Override
+    synchronized native void trace_flush();
+
+    // pointer to WAL listener structure, if enabled.
+    private long walListener = 0;
+
+    @Override
+    synchronized native void set_wal_listener(boolean enabled) throws SQLException;
+
+    // pointer to preupdate listener structure, if enabled.
+    private long preUpdateListener = 0;
+
+    @Override
+    synchronized native void set_preupdate_listener(boolean enabled) throws SQLException;
+
+    @Override
+    synchronized native long preupdate_value(int kind, int col) throws SQLException;
+
+    /** @see org.sqlite.core.DB#wal_checkpoint(String, int) */
+    @Override
+    synchronized int[] wal_checkpoint(String schema, int mode) throws SQLException {
+        return wal_checkpoint_utf8(stringToUtf8ByteArray(schema), mode);
+    }
+
+    synchronized native int[] wal_checkpoint_utf8(byte[] schema, int mode) throws SQLException;
 
     /**
      * Throws an SQLException. Called from native code
@@ -510,6 +657,13 @@ public final class NativeDB extends DB {
         return str.getBytes(StandardCharsets.UTF_8);
     }
 
+    private static String textValueToString(Object value) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        }
+        return (String) value;
+    }
+
     static String utf8ByteBufferToString(ByteBuffer buffer) {
         if (buffer == null) {
             return null;
@@ -563,9 +717,187 @@ public final class NativeDB extends DB {
         return progressHandler;
     }
 
+    /**
+     * Getter for native pointer to validate memory is properly cleaned up in unit tests
+     *
+     * @return a native pointer to validate memory is properly cleaned up in unit tests
+     */
+    long getTraceListener() {
+        return traceListener;
+    }
+
+    /**
+     * Getter for native pointer to validate memory is properly cleaned up in unit tests
+     *
+     * @return a native pointer to validate memory is properly cleaned up in unit tests
+     */
+    long getWalListener() {
+        return walListener;
+    }
+
+    /**
+     * Getter for native pointer to validate memory is properly cleaned up in unit tests
+     *
+     * @return a native pointer to validate memory is properly cleaned up in unit tests
+     */
+    long getPreUpdateListener() {
+        return preUpdateListener;
+    }
+
     @Override
     public synchronized native byte[] serialize(String schema) throws SQLException;
 
     @Override
     public synchronized native void deserialize(String schema, byte[] buff) throws SQLException;
+
+    /** @see org.sqlite.core.DB#serialize_ptr(String) */
+    @Override
+    synchronized long[] serialize_ptr(String schema) throws SQLException {
+        return serialize_ptr_utf8(stringToUtf8ByteArray(schema));
+    }
+
+    synchronized native long[] serialize_ptr_utf8(byte[] schema) throws SQLException;
+
+    /** @see org.sqlite.core.DB#serialized_size(String) */
+    @Override
+    synchronized long serialized_size(String schema) throws SQLException {
+        return serialized_size_utf8(stringToUtf8ByteArray(schema));
+    }
+
+    synchronized native long serialized_size_utf8(byte[] schema) throws SQLException;
+
+    /** @see org.sqlite.core.DB#deserialize_ptr(String, long, long, int) */
+    @Override
+    synchronized void deserialize_ptr(String schema, long pointer, long size, int flags)
+            throws SQLException {
+        deserialize_ptr_utf8(stringToUtf8ByteArray(schema), pointer, size, flags);
+    }
+
+    synchronized native void deserialize_ptr_utf8(byte[] schema, long pointer, long size, int flags)
+            throws SQLException;
+
+    @Override
+    native long memory_alloc(long size) throws SQLException;
+
+    @Override
+    native void memory_free(long pointer);
+
+    @Override
+    native ByteBuffer memory_buffer(long pointer, int length);
+
+    @Override
+    native long buffer_address(ByteBuffer buffer);
+
+    /** @see org.sqlite.core.DB#blob_open(String, String, String, long, boolean) */
+    @Override
+    synchronized long blob_open(
+            String schema, String table, String column, long rowid, boolean write)
+            throws SQLException {
+        return blob_open_utf8(
+                stringToUtf8ByteArray(schema),
+                stringToUtf8ByteArray(table),
+                stringToUtf8ByteArray(column),
+                rowid,
+                write);
+    }
+
+    synchronized native long blob_open_utf8(
+            byte[] schema, byte[] table, byte[] column, long rowid, boolean write)
+            throws SQLException;
+
+    /** @see org.sqlite.core.DB#blob_reopen(long, long) */
+    @Override
+    public synchronized native void blob_reopen(long blob, long rowid) throws SQLException;
+
+    /** @see org.sqlite.core.DB#blob_bytes(long) */
+    @Override
+    public synchronized native int blob_bytes(long blob) throws SQLException;
+
+    /** @see org.sqlite.core.DB#blob_read(long, int, byte[], int, int) */
+    @Override
+    public synchronized native void blob_read(long blob, int offset, byte[] b, int off, int len)
+            throws SQLException;
+
+    /** @see org.sqlite.core.DB#blob_write(long, int, byte[], int, int) */
+    @Override
+    public synchronized native void blob_write(long blob, int offset, byte[] b, int off, int len)
+            throws SQLException;
+
+    /** @see org.sqlite.core.DB#blob_close(long) */
+    @Override
+    synchronized native int blob_close(long blob);
+
+    /** @see org.sqlite.core.DB#session_create(String) */
+    @Override
+    synchronized long session_create(String schema) throws SQLException {
+        return session_create_utf8(stringToUtf8ByteArray(schema));
+    }
+
+    synchronized native long session_create_utf8(byte[] schema) throws SQLException;
+
+    @Override
+    synchronized native void session_delete(long session);
+
+    /** @see org.sqlite.core.DB#session_attach(long, String) */
+    @Override
+    public synchronized void session_attach(long session, String table) throws SQLException {
+        session_attach_utf8(session, stringToUtf8ByteArray(table));
+    }
+
+    synchronized native void session_attach_utf8(long session, byte[] table) throws SQLException;
+
+    /** @see org.sqlite.core.DB#session_enable(long, int) */
+    @Override
+    public synchronized native boolean session_enable(long session, int enable);
+
+    /** @see org.sqlite.core.DB#session_indirect(long, int) */
+    @Override
+    public synchronized native boolean session_indirect(long session, int indirect);
+
+    /** @see org.sqlite.core.DB#session_isempty(long) */
+    @Override
+    public synchronized native boolean session_isempty(long session);
+
+    /** @see org.sqlite.core.DB#session_changeset(long, boolean) */
+    @Override
+    public synchronized native byte[] session_changeset(long session, boolean patchset)
+            throws SQLException;
+
+    /** @see org.sqlite.core.DB#session_changeset_strm(long, boolean, OutputStream) */
+    @Override
+    public synchronized native void session_changeset_strm(
+            long session, boolean patchset, OutputStream out) throws SQLException, IOException;
+
+    /**
+     * @param changeset A changeset.
+     * @return The inverse of the changeset.
+     * @see org.sqlite.SQLiteSession#invert(byte[])
+     */
+    public static native byte[] changeset_invert(byte[] changeset) throws SQLException;
+
+    /**
+     * @param a A changeset.
+     * @param b A changeset.
+     * @return The concatenation of both changesets.
+     * @see org.sqlite.SQLiteSession#concat(byte[], byte[])
+     */
+    public static native byte[] changeset_concat(byte[] a, byte[] b) throws SQLException;
+
+    @Override
+    synchronized native void changeset_apply(byte[] changeset, boolean filter) throws SQLException;
+
+    @Override
+    synchronized native long changeset_value(long iter, int kind, int col) throws SQLException;
+
+    @Override
+    synchronized native int sqlvalue_type(long value);
+
+    @Override
+    synchronized native long sqlvalue_int64(long value);
+
+    @Override
+    synchronized native double sqlvalue_double(long value);
+
+    @Override
+    synchronized native byte[] sqlvalue_bytes(long value);
 }
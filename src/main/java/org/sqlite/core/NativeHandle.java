@@ -0,0 +1,34 @@
+package org.sqlite.core;
+
+/**
+ * A native object owned by a {@link DB}, such as a session or a backup. The database tracks these
+ * wrappers rather than raw addresses, since the address of a freed object can be handed out again
+ * by the allocator: a wrapper, once closed, stays closed.
+ */
+public final class NativeHandle {
+    private final long ptr;
+
+    private volatile boolean closed = false;
+
+    NativeHandle(long ptr) {
+        this.ptr = ptr;
+    }
+
+    /** @return The raw pointer, only valid while the handle is open. */
+    public long pointer() {
+        return ptr;
+    }
+
+    /**
+     * @return true until the handle is closed, by its owner or with its database. To keep it open
+     *     while using the pointer, check it while holding the database lock.
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /** Must be called while holding the database lock, before the native object is freed. */
+    void markClosed() {
+        closed = true;
+    }
+}
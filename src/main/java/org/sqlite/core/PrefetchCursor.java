@@ -0,0 +1,353 @@
+package org.sqlite.core;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/**
+ * Reads the rows of a statement in blocks. Each block is stepped and serialized natively into a
+ * reusable direct buffer by {@link DB#fetch_rows(long, ByteBuffer, int, boolean)}, and the column
+ * values of the current row are then decoded from Java memory.
+ *
+ * <p>The getters follow the type conversions SQLite applies in the <code>sqlite3_column_*</code>
+ * functions, so that a prefetched row reads the same as a row accessed through the statement.
+ *
+ * @see <a
+ *     href="https://www.sqlite.org/c3ref/column_blob.html">https://www.sqlite.org/c3ref/column_blob.html</a>
+ */
+public final class PrefetchCursor implements Codes {
+    static final int HEADER_SIZE = 16;
+    static final int FETCH_MORE = 0;
+    static final int FETCH_DONE = 1;
+    static final int FETCH_PENDING = 2;
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private ByteBuffer buffer;
+    private final int[] offsets;
+    private final byte[] types;
+
+    private int rows;
+    private int state;
+    private int rowIndex;
+    private int nextRowOffset;
+
+    /** The failure of a step which followed the rows of the current block, thrown after them. */
+    private SQLException pendingError;
+
+    /** @param columnCount The number of columns of the statement. */
+    public PrefetchCursor(int columnCount) {
+        this.offsets = new int[columnCount];
+        this.types = new byte[columnCount];
+        reset();
+    }
+
+    /** @return The number of columns of each row. */
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    /**
+     * Forgets the rows held by this cursor. The statement is expected to be positioned on its first
+     * row, as left by an execute.
+     */
+    public void reset() {
+        rows = 0;
+        rowIndex = 0;
+        state = FETCH_PENDING;
+        pendingError = null;
+        clearRow();
+    }
+
+    /**
+     * Moves to the next row, fetching a new block from the statement when the current one is
+     * consumed.
+     *
+     * @param pointer The statement.
+     * @param fetchSize The maximum number of rows to fetch natively at once.
+     * @return True if the cursor is positioned on a row; false when all rows have been read.
+     * @throws SQLException
+     */
+    public boolean next(SafeStmtPtr pointer, int fetchSize) throws SQLException {
+        if (rowIndex >= rows) {
+            if (pendingError != null) {
+                SQLException e = pendingError;
+                pendingError = null;
+                clearRow();
+                throw e;
+            }
+            if (state == FETCH_DONE || !fetch(pointer, Math.max(1, fetchSize))) {
+                clearRow();
+                return false;
+            }
+        }
+        decodeRow();
+        rowIndex++;
+        return true;
+    }
+
+    private boolean fetch(SafeStmtPtr pointer, int fetchSize) throws SQLException {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY).order(ByteOrder.nativeOrder());
+        }
+        while (true) {
+            boolean stepFirst = state != FETCH_PENDING;
+            ByteBuffer buf = buffer;
+            buf.putInt(0, 0);
+            try {
+                pointer.safeRunInt((db, ptr) -> db.fetch_rows(ptr, buf, fetchSize, stepFirst));
+            } catch (SQLException e) {
+                // the rows stepped before the failure are read first
+                if (buf.getInt(0) == 0) {
+                    throw e;
+                }
+                pendingError = e;
+            }
+            rows = buffer.getInt(0);
+            state = buffer.getInt(4);
+            if (rows == 0 && state == FETCH_PENDING) {
+                // the current row does not fit
+                int needed = buffer.getInt(8);
+                buffer =
+                        ByteBuffer.allocateDirect(Math.max(needed, buffer.capacity() * 2))
+                                .order(ByteOrder.nativeOrder());
+                continue;
+            }
+            rowIndex = 0;
+            nextRowOffset = HEADER_SIZE;
+            return rows > 0;
+        }
+    }
+
+    private void decodeRow() {
+        int pos = nextRowOffset;
+        for (int i = 0; i < types.length; i++) {
+            byte type = buffer.get(pos);
+            types[i] = type;
+            offsets[i] = pos + 1;
+            switch (type) {
+                case SQLITE_INTEGER:
+                case SQLITE_FLOAT:
+                    pos += 9;
+                    break;
+                case SQLITE_TEXT:
+                case SQLITE_BLOB:
+                    pos += 5 + buffer.getInt(pos + 1);
+                    break;
+                default:
+                    pos += 1;
+            }
+        }
+        nextRowOffset = pos;
+    }
+
+    private void clearRow() {
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SQLITE_NULL;
+        }
+    }
+
+    /**
+     * @param col The 0-based column index.
+     * @return The <a href="https://www.sqlite.org/c3ref/c_blob.html">datatype code</a> of the
+     *     column.
+     */
+    public int type(int col) {
+        return types[col];
+    }
+
+    /**
+     * @param col The 0-based column index.
+     * @return The value as an int, truncated like <code>sqlite3_column_int</code>.
+     */
+    public int getInt(int col) {
+        return (int) getLong(col);
+    }
+
+    /**
+     * @param col The 0-based column index.
+     * @return The value as a long.
+     */
+    public long getLong(int col) {
+        int offset = offsets[col];
+        switch (types[col]) {
+            case SQLITE_INTEGER:
+                return buffer.getLong(offset);
+            case SQLITE_FLOAT:
+                return (long) buffer.getDouble(offset);
+            case SQLITE_TEXT:
+            case SQLITE_BLOB:
+                return parseLong(bytes(offset + 4, buffer.getInt(offset)));
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @param col The 0-based column index.
+     * @return The value as a double.
+     */
+    public double getDouble(int col) {
+        int offset = offsets[col];
+        switch (types[col]) {
+            case SQLITE_INTEGER:
+                return buffer.getLong(offset);
+            case SQLITE_FLOAT:
+                return buffer.getDouble(offset);
+            case SQLITE_TEXT:
+            case SQLITE_BLOB:
+                return parseDouble(bytes(offset + 4, buffer.getInt(offset)));
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @param col The 0-based column index.
+     * @return The value as a string, or null for NULL values.
+     */
+    public String getText(int col) {
+        if (types[col] == SQLITE_FLOAT) {
+            return formatDouble(buffer.getDouble(offsets[col]));
+        }
+        byte[] bytes = getBlob(col);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param col The 0-based column index.
+     * @return The value as bytes, or null for NULL values.
+     */
+    public byte[] getBlob(int col) {
+        int offset = offsets[col];
+        switch (types[col]) {
+            case SQLITE_INTEGER:
+                return Long.toString(buffer.getLong(offset)).getBytes(StandardCharsets.US_ASCII);
+            case SQLITE_FLOAT:
+                return formatDouble(buffer.getDouble(offset)).getBytes(StandardCharsets.US_ASCII);
+            case SQLITE_TEXT:
+            case SQLITE_BLOB:
+                return bytes(offset + 4, buffer.getInt(offset));
+            default:
+                return null;
+        }
+    }
+
+    private byte[] bytes(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.position(offset);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Renders a REAL value the way SQLite converts it to text, with the <code>%!.15g</code> format
+     * of <code>sqlite3_mprintf</code>: 15 significant digits, no trailing zeros but at least one
+     * digit after the decimal point, and an exponent of at least two digits.
+     */
+    static String formatDouble(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "Inf" : "-Inf";
+        }
+        if (value == 0) {
+            return "0.0";
+        }
+        BigDecimal rounded =
+                new BigDecimal(value)
+                        .round(new MathContext(15, RoundingMode.HALF_UP))
+                        .stripTrailingZeros();
+        String digits = rounded.unscaledValue().abs().toString();
+        int exponent = rounded.precision() - rounded.scale() - 1;
+
+        StringBuilder text = new StringBuilder(24);
+        if (rounded.signum() < 0) {
+            text.append('-');
+        }
+        if (exponent < -4 || exponent >= 15) {
+            text.append(digits.charAt(0)).append('.');
+            text.append(digits.length() > 1 ? digits.substring(1) : "0");
+            text.append(exponent < 0 ? "e-" : "e+");
+            int abs = Math.abs(exponent);
+            if (abs < 10) text.append('0');
+            text.append(abs);
+        } else if (exponent < 0) {
+            text.append("0.");
+            for (int i = -1; i > exponent; i--) text.append('0');
+            text.append(digits);
+        } else if (digits.length() <= exponent + 1) {
+            text.append(digits);
+            for (int i = digits.length(); i <= exponent; i++) text.append('0');
+            text.append(".0");
+        } else {
+            text.append(digits, 0, exponent + 1)
+                    .append('.')
+                    .append(digits, exponent + 1, digits.length());
+        }
+        return text.toString();
+    }
+
+    /** Parses the leading integer of a text value, saturating like <code>sqlite3Atoi64</code>. */
+    static long parseLong(byte[] text) {
+        int i = 0;
+        while (i < text.length && isSpace(text[i])) i++;
+        boolean negative = false;
+        if (i < text.length && (text[i] == '-' || text[i] == '+')) {
+            negative = text[i] == '-';
+            i++;
+        }
+        long value = 0;
+        for (; i < text.length && text[i] >= '0' && text[i] <= '9'; i++) {
+            int digit = text[i] - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                return negative ? Long.MIN_VALUE : Long.MAX_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /** Parses the leading number of a text value, ignoring any trailing characters. */
+    static double parseDouble(byte[] text) {
+        int i = 0;
+        while (i < text.length && isSpace(text[i])) i++;
+        int start = i;
+        boolean negative = false;
+        if (i < text.length && (text[i] == '-' || text[i] == '+')) {
+            negative = text[i] == '-';
+            i++;
+        }
+        int digits = 0;
+        while (i < text.length && text[i] >= '0' && text[i] <= '9') {
+            i++;
+            digits++;
+        }
+        if (i < text.length && text[i] == '.') {
+            i++;
+            while (i < text.length && text[i] >= '0' && text[i] <= '9') {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        int end = i;
+        if (i < text.length && (text[i] == 'e' || text[i] == 'E')) {
+            i++;
+            if (i < text.length && (text[i] == '-' || text[i] == '+')) i++;
+            if (i < text.length && text[i] >= '0' && text[i] <= '9') {
+                while (i < text.length && text[i] >= '0' && text[i] <= '9') i++;
+                end = i;
+            }
+        }
+        return Double.parseDouble(new String(text, start, end - start, StandardCharsets.US_ASCII));
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\f' || b == '\r';
+    }
+}
@@ -54,6 +54,18 @@ public class SafeStmtPtr {
         }
     }
 
+    /**
+     * Mark this pointer as closed without finalizing the statement, so that the raw pointer can be
+     * handed to a new wrapper. Must be called while holding the database lock.
+     *
+     * @return the raw pointer
+     */
+    long detach() {
+        closed = true;
+        closedRC = Codes.SQLITE_OK;
+        return ptr;
+    }
+
     private int internalClose() throws SQLException {
         try {
             // if this is already closed, return or throw the previous result
@@ -143,6 +155,66 @@ public class SafeStmtPtr {
         }
     }
 
+    /**
+     * Run a callback with the wrapped pointer without locking the database. Only valid on a
+     * thread-confined connection, once {@link DB#checkConfinement()} has passed.
+     *
+     * @param run the function to run
+     * @return the return of the passed in function
+     * @throws SQLException if the pointer is closed
+     * @see DB#isThreadConfined()
+     */
+    public <E extends Throwable> int confinedRunInt(SafePtrIntFunction<E> run)
+            throws SQLException, E {
+        this.ensureOpen();
+        return run.run(db, ptr);
+    }
+
+    /**
+     * Run a callback with the wrapped pointer without locking the database. Only valid on a
+     * thread-confined connection, once {@link DB#checkConfinement()} has passed.
+     *
+     * @param run the function to run
+     * @return the return of the passed in function
+     * @throws SQLException if the pointer is closed
+     * @see DB#isThreadConfined()
+     */
+    public <E extends Throwable> long confinedRunLong(SafePtrLongFunction<E> run)
+            throws SQLException, E {
+        this.ensureOpen();
+        return run.run(db, ptr);
+    }
+
+    /**
+     * Run a callback with the wrapped pointer without locking the database. Only valid on a
+     * thread-confined connection, once {@link DB#checkConfinement()} has passed.
+     *
+     * @param run the function to run
+     * @return the return of the passed in function
+     * @throws SQLException if the pointer is closed
+     * @see DB#isThreadConfined()
+     */
+    public <E extends Throwable> double confinedRunDouble(SafePtrDoubleFunction<E> run)
+            throws SQLException, E {
+        this.ensureOpen();
+        return run.run(db, ptr);
+    }
+
+    /**
+     * Run a callback with the wrapped pointer without locking the database. Only valid on a
+     * thread-confined connection, once {@link DB#checkConfinement()} has passed.
+     *
+     * @param run the function to run
+     * @return the return of the passed in function
+     * @throws SQLException if the pointer is closed
+     * @see DB#isThreadConfined()
+     */
+    public <T, E extends Throwable> T confinedRun(SafePtrFunction<T, E> run)
+            throws SQLException, E {
+        this.ensureOpen();
+        return run.run(db, ptr);
+    }
+
     private void ensureOpen() throws SQLException {
         if (this.closed) {
             throw new SQLException("stmt pointer is closed");
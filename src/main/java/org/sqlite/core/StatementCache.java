@@ -0,0 +1,136 @@
+package org.sqlite.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the native statements of closed prepared statements, keyed by their SQL, so that preparing
+ * the same SQL again on the connection skips parsing and planning. The least recently used
+ * statement is evicted when the cache is full.
+ *
+ * <p>Statements are reset and their bindings cleared before they enter the cache. The methods which
+ * change the cache must be called while holding the lock of the owning {@link DB}; the size and
+ * counters can be read from any thread.
+ *
+ * @see org.sqlite.SQLiteConfig#setStatementCacheSize(int)
+ */
+public final class StatementCache {
+    private final int maxSize;
+    private final LinkedHashMap<String, Long> statements;
+
+    // read without the lock of the connection
+    private volatile int size;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** @param maxSize The maximum number of cached statements; 0 disables the cache. */
+    public StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** @return true if statements are cached. */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /** @return The maximum number of cached statements. */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** @return The number of statements currently cached. */
+    public int size() {
+        return size;
+    }
+
+    /** @return The number of prepares served from the cache. */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** @return The number of prepares which had to compile their SQL. */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** @return The number of statements finalized because the cache was full. */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Removes a statement from the cache.
+     *
+     * @param sql The SQL of the statement.
+     * @return The raw statement pointer, or 0 if none is cached for the SQL.
+     */
+    long take(String sql) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        Long ptr = statements.remove(sql);
+        if (ptr == null) {
+            misses.increment();
+            return 0;
+        }
+        hits.increment();
+        size = statements.size();
+        return ptr;
+    }
+
+    /**
+     * Adds a statement to the cache.
+     *
+     * @param sql The SQL of the statement.
+     * @param ptr The raw statement pointer, already reset.
+     * @return A raw statement pointer which no longer fits the cache and must be finalized, or 0.
+     */
+    long put(String sql, long ptr) {
+        Long previous = statements.put(sql, ptr);
+        size = statements.size();
+        if (previous != null) {
+            // an equal statement was closed first
+            return previous;
+        }
+        if (statements.size() > maxSize) {
+            Iterator<Map.Entry<String, Long>> eldest = statements.entrySet().iterator();
+            long evicted = eldest.next().getValue();
+            eldest.remove();
+            size = statements.size();
+            evictions.increment();
+            return evicted;
+        }
+        return 0;
+    }
+
+    /**
+     * Empties the cache.
+     *
+     * @return The raw pointers of the statements which were cached, to be finalized.
+     */
+    long[] clear() {
+        long[] ptrs = statements.values().stream().mapToLong(Long::longValue).toArray();
+        statements.clear();
+        size = 0;
+        return ptrs;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCache[size="
+                + size
+                + ", maxSize="
+                + maxSize
+                + ", hits="
+                + getHits()
+                + ", misses="
+                + getMisses()
+                + ", evictions="
+                + getEvictions()
+                + "]";
+    }
+}
@@ -0,0 +1,508 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.javax;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.DataSource;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.util.Logger;
+import org.sqlite.util.LoggerFactory;
+
+/**
+ * A connection pool for a single database, built on the {@link SQLitePooledConnection}s of a {@link
+ * SQLiteConnectionPoolDataSource}. It follows the concurrency model of SQLite in WAL mode, where
+ * readers run alongside a single writer: {@link #getConnection()} borrows from a small set of
+ * writer connections, one by default, and {@link #getReadConnection()} from a separate set of
+ * reader connections, which are opened with <code>query_only</code> set.
+ *
+ * <p>Borrowing does not lock the pool: idle connections are kept in a lock-free deque, most
+ * recently returned first, and each thread gets the connection it returned last when it is still
+ * idle, with its prepared statement cache still warm. A semaphore bounds the number of connections
+ * of each set; a borrower waits for a permit when all of them are in use.
+ *
+ * <p>Connections go back to the pool when the handle given to the application is closed, through
+ * the {@link ConnectionEventListener} of their pooled connection; a connection reported as broken
+ * is closed instead. Connections idle for longer than the idle timeout are closed, down to the
+ * minimum number of idle connections, as connections are returned and periodically on a shared
+ * background thread until the pool is closed.
+ *
+ * <p>The SQLite configuration of the data source, its pragmas in particular, is applied once when
+ * each connection is opened. Unless the data source configures a statement cache, connections of
+ * the pool cache {@value #DEFAULT_STATEMENT_CACHE_SIZE} prepared statements.
+ */
+public class SQLiteConnectionPool implements DataSource, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SQLiteConnectionPool.class);
+
+    public static final int DEFAULT_MAX_WRITERS = 1;
+    public static final int DEFAULT_MAX_READERS = 4;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** The shortest interval between two sweeps of the idle connections. */
+    static final long MIN_SWEEP_INTERVAL_MILLIS = 100;
+
+    private final SQLiteConnectionPoolDataSource dataSource;
+    private final ConnectionSet writers;
+    private final ConnectionSet readers;
+
+    private volatile int minIdle;
+    private volatile long idleTimeoutNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_IDLE_TIMEOUT_MILLIS);
+    private volatile long borrowTimeoutMillis = DEFAULT_BORROW_TIMEOUT_MILLIS;
+    private volatile boolean closed;
+
+    /** The periodic sweep of the idle connections, guarded by this pool. */
+    private ScheduledFuture<?> sweep;
+
+    /**
+     * Creates a pool with {@value #DEFAULT_MAX_WRITERS} writer and {@value #DEFAULT_MAX_READERS}
+     * reader connections at most.
+     *
+     * @param dataSource Opens the connections of the pool.
+     */
+    public SQLiteConnectionPool(SQLiteConnectionPoolDataSource dataSource) {
+        this(dataSource, DEFAULT_MAX_WRITERS, DEFAULT_MAX_READERS);
+    }
+
+    /**
+     * @param dataSource Opens the connections of the pool.
+     * @param maxWriters The maximum number of writer connections; more than one only makes the
+     *     writers wait on the write lock of the database instead of on the pool.
+     * @param maxReaders The maximum number of reader connections, 0 to borrow writer connections
+     *     for reading.
+     */
+    public SQLiteConnectionPool(
+            SQLiteConnectionPoolDataSource dataSource, int maxWriters, int maxReaders) {
+        if (maxWriters <= 0 || maxReaders < 0) {
+            throw new IllegalArgumentException(
+                    String.format("invalid pool sizes: %d, %d", maxWriters, maxReaders));
+        }
+        this.dataSource = dataSource;
+        this.writers = new ConnectionSet(false, maxWriters);
+        this.readers = maxReaders > 0 ? new ConnectionSet(true, maxReaders) : writers;
+        scheduleSweep();
+    }
+
+    /**
+     * @param minIdle The number of connections of each set kept open while idle, and opened by
+     *     {@link #warmUp()}.
+     */
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /** @param millis How long a connection stays idle before it is closed. */
+    public void setIdleTimeout(long millis) {
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        scheduleSweep();
+    }
+
+    public long getIdleTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos);
+    }
+
+    /** @param millis How long to wait for a connection when all of them are in use. */
+    public void setBorrowTimeout(long millis) {
+        this.borrowTimeoutMillis = millis;
+    }
+
+    public long getBorrowTimeout() {
+        return borrowTimeoutMillis;
+    }
+
+    /**
+     * Opens the minimum number of idle connections of each set, so that the first borrowers do not
+     * pay for opening them.
+     *
+     * @see #setMinIdle(int)
+     */
+    public void warmUp() throws SQLException {
+        checkOpen();
+        warmUp(writers);
+        if (readers != writers) {
+            warmUp(readers);
+        }
+    }
+
+    private void warmUp(ConnectionSet set) throws SQLException {
+        // like a borrower, each opening holds a permit, so that the set never exceeds its maximum
+        while (set.permits.tryAcquire()) {
+            try {
+                int size = set.size.get();
+                if (size >= Math.min(minIdle, set.max)) {
+                    return;
+                }
+                if (set.size.compareAndSet(size, size + 1)) {
+                    set.idle.offerLast(open(set));
+                }
+            } finally {
+                set.permits.release();
+            }
+        }
+    }
+
+    /**
+     * Borrows a writer connection, to give back by closing it.
+     *
+     * @see javax.sql.DataSource#getConnection()
+     */
+    public Connection getConnection() throws SQLException {
+        return borrow(writers);
+    }
+
+    /**
+     * Borrows a reader connection, to give back by closing it. Reader connections reject writes.
+     *
+     * @return The connection.
+     */
+    public Connection getReadConnection() throws SQLException {
+        return borrow(readers);
+    }
+
+    /**
+     * Not supported: the connections of the pool are opened with the credentials of the data
+     * source.
+     *
+     * @see javax.sql.DataSource#getConnection(java.lang.String, java.lang.String)
+     */
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("getConnection(username, password)");
+    }
+
+    private Connection borrow(ConnectionSet set) throws SQLException {
+        checkOpen();
+        try {
+            if (!set.permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException(
+                        "no connection available after " + borrowTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a connection", e);
+        }
+
+        PoolEntry entry = null;
+        try {
+            entry = set.take();
+            if (entry == null) {
+                set.size.incrementAndGet();
+                entry = open(set);
+            }
+            entry.retired.set(false);
+            return entry.pooled.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            if (entry != null) {
+                discard(entry);
+            }
+            set.permits.release();
+            throw e;
+        }
+    }
+
+    /** Opens a connection in a slot of the set already reserved by the caller. */
+    private PoolEntry open(ConnectionSet set) throws SQLException {
+        SQLitePooledConnection pooled;
+        try {
+            pooled = dataSource.getPooledConnection(connectionConfig());
+        } catch (SQLException | RuntimeException e) {
+            set.size.decrementAndGet();
+            throw e;
+        }
+        PoolEntry entry = new PoolEntry(set, pooled);
+        try {
+            if (set.readOnly) {
+                try (Statement stat = pooled.getPhysicalConn().createStatement()) {
+                    stat.execute("pragma query_only = true");
+                }
+            }
+        } catch (SQLException e) {
+            discard(entry);
+            throw e;
+        }
+        pooled.addConnectionEventListener(entry);
+        return entry;
+    }
+
+    /**
+     * @return The configuration of the data source, with the default statement cache if it has
+     *     none; a copy then, so that the data source is left unchanged.
+     */
+    private SQLiteConfig connectionConfig() {
+        SQLiteConfig config = dataSource.getConfig();
+        if (config.getStatementCacheSize() == 0) {
+            config = new SQLiteConfig(config.toProperties());
+            config.setStatementCacheSize(DEFAULT_STATEMENT_CACHE_SIZE);
+        }
+        return config;
+    }
+
+    /** Takes back a connection whose handle was closed. */
+    private void release(PoolEntry entry) {
+        ConnectionSet set = entry.set;
+        if (!entry.retired.compareAndSet(false, true)) {
+            return;
+        }
+        if (closed) {
+            discard(entry);
+        } else {
+            entry.returnedAt = System.nanoTime();
+            set.lastReturned.set(entry.self);
+            set.idle.offerFirst(entry);
+            // the pool may have been closed, and its idle connections drained, meanwhile
+            if (closed && set.idle.remove(entry)) {
+                discard(entry);
+            }
+        }
+        set.permits.release();
+        evictIdle(set);
+    }
+
+    /** Closes a connection reported as broken while borrowed. */
+    private void fail(PoolEntry entry, SQLException e) {
+        if (entry.retired.compareAndSet(false, true)) {
+            logger.warn(() -> "Closing a broken pooled connection: " + e);
+            discard(entry);
+            entry.set.permits.release();
+        }
+    }
+
+    /** Closes the connections idle for longer than the idle timeout, oldest first. */
+    private void evictIdle(ConnectionSet set) {
+        long now = System.nanoTime();
+        PoolEntry oldest;
+        while ((oldest = set.idle.peekLast()) != null
+                && now - oldest.returnedAt > idleTimeoutNanos) {
+            // reserve the eviction first, so that concurrent evictions stop at the minimum
+            int size = set.size.get();
+            if (size <= minIdle) {
+                return;
+            }
+            if (!set.size.compareAndSet(size, size - 1)) {
+                continue;
+            }
+            if (set.idle.removeLastOccurrence(oldest)) {
+                closeEntry(oldest);
+            } else {
+                // borrowed or evicted meanwhile
+                set.size.incrementAndGet();
+            }
+        }
+    }
+
+    private void sweepIdle() {
+        evictIdle(writers);
+        if (readers != writers) {
+            evictIdle(readers);
+        }
+    }
+
+    /** (Re)schedules the sweep of the idle connections, at half the idle timeout. */
+    private synchronized void scheduleSweep() {
+        if (sweep != null) {
+            sweep.cancel(false);
+        }
+        if (!closed) {
+            long interval =
+                    Math.max(
+                            TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) / 2,
+                            MIN_SWEEP_INTERVAL_MILLIS);
+            sweep =
+                    Sweeper.EXECUTOR.scheduleWithFixedDelay(
+                            this::sweepIdle, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void discard(PoolEntry entry) {
+        entry.set.size.decrementAndGet();
+        closeEntry(entry);
+    }
+
+    private void closeEntry(PoolEntry entry) {
+        entry.self.clear();
+        try {
+            entry.pooled.close();
+        } catch (SQLException e) {
+            logger.warn(() -> "Failed to close a pooled connection: " + e);
+        }
+    }
+
+    /** @return The number of connections open, borrowed or idle. */
+    public int getOpenConnections() {
+        return writers.size.get() + (readers != writers ? readers.size.get() : 0);
+    }
+
+    /** @return The number of idle connections. */
+    public int getIdleConnections() {
+        return writers.idle.size() + (readers != writers ? readers.idle.size() : 0);
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("connection pool is closed");
+        }
+    }
+
+    /**
+     * Closes the idle connections, and the borrowed ones once given back. Borrowing from a closed
+     * pool fails.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduleSweep();
+        for (ConnectionSet set : new ConnectionSet[] {writers, readers}) {
+            PoolEntry entry;
+            while ((entry = set.idle.pollFirst()) != null) {
+                discard(entry);
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** @see javax.sql.DataSource#getLogWriter() */
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    /** @see javax.sql.DataSource#setLogWriter(java.io.PrintWriter) */
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    /** @see javax.sql.DataSource#getLoginTimeout() */
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    /** @see javax.sql.DataSource#setLoginTimeout(int) */
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("getParentLogger");
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (!iface.isInstance(this)) {
+            throw new SQLException("not a wrapper for " + iface.getName());
+        }
+        return iface.cast(this);
+    }
+
+    /** Runs the sweeps of all the pools, on a daemon thread. */
+    private static final class Sweeper {
+        static final ScheduledExecutorService EXECUTOR =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "sqlite-jdbc-pool-sweeper");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /** The writer or the reader connections of the pool. */
+    private static final class ConnectionSet {
+        final boolean readOnly;
+        final int max;
+        final Semaphore permits;
+        final AtomicInteger size = new AtomicInteger();
+
+        /** The idle connections, most recently returned first. */
+        final ConcurrentLinkedDeque<PoolEntry> idle = new ConcurrentLinkedDeque<>();
+
+        /**
+         * The connection each thread returned last, to borrow it again while still idle; cleared
+         * when the connection is closed.
+         */
+        final ThreadLocal<WeakReference<PoolEntry>> lastReturned = new ThreadLocal<>();
+
+        ConnectionSet(boolean readOnly, int max) {
+            this.readOnly = readOnly;
+            this.max = max;
+            this.permits = new Semaphore(max);
+        }
+
+        /** @return An idle connection, preferably the last one of this thread; null if none. */
+        PoolEntry take() {
+            WeakReference<PoolEntry> last = lastReturned.get();
+            PoolEntry entry = last != null ? last.get() : null;
+            if (entry != null && idle.removeFirstOccurrence(entry)) {
+                return entry;
+            }
+            return idle.pollFirst();
+        }
+    }
+
+    /** A connection of the pool, which listens to the handles handed out for it. */
+    private final class PoolEntry implements ConnectionEventListener {
+        final ConnectionSet set;
+        final SQLitePooledConnection pooled;
+
+        /**
+         * The reference kept by {@link ConnectionSet#lastReturned}, weak so that the thread locals
+         * of other threads do not retain closed connections.
+         */
+        final WeakReference<PoolEntry> self = new WeakReference<>(this);
+
+        /** false while borrowed, so that the connection is given back or discarded once. */
+        final AtomicBoolean retired = new AtomicBoolean(true);
+
+        volatile long returnedAt;
+
+        PoolEntry(ConnectionSet set, SQLitePooledConnection pooled) {
+            this.set = set;
+            this.pooled = pooled;
+            this.returnedAt = System.nanoTime();
+        }
+
+        @Override
+        public void connectionClosed(ConnectionEvent event) {
+            release(this);
+        }
+
+        @Override
+        public void connectionErrorOccurred(ConnectionEvent event) {
+            fail(this, event.getSQLException());
+        }
+    }
+}
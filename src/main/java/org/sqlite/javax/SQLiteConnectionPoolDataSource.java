@@ -47,4 +47,14 @@ public class SQLiteConnectionPoolDataSource extends SQLiteDataSource
     public PooledConnection getPooledConnection(String user, String password) throws SQLException {
         return new SQLitePooledConnection(getConnection(user, password));
     }
+
+    /**
+     * Opens a pooled connection with another configuration than the one of this data source.
+     *
+     * @param config The configuration of the connection.
+     * @return The pooled connection.
+     */
+    SQLitePooledConnection getPooledConnection(SQLiteConfig config) throws SQLException {
+        return new SQLitePooledConnection(getConnection(config, null, null));
+    }
 }
@@ -13,10 +13,6 @@
  *--------------------------------------------------------------------------*/
 package org.sqlite.javax;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.CallableStatement;
@@ -37,14 +33,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicBoolean;
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
 import org.sqlite.SQLiteConnection;
-import org.sqlite.core.DB;
 import org.sqlite.jdbc4.JDBC4PooledConnection;
-import org.sqlite.jdbc4.JDBC4PreparedStatement;
-import org.sqlite.jdbc4.JDBC4Statement;
+import org.sqlite.metrics.SQLiteMetrics;
 
 public class SQLitePooledConnection extends JDBC4PooledConnection {
 
@@ -53,6 +46,11 @@ public class SQLitePooledConnection extends JDBC4PooledConnection {
 
     protected List<ConnectionEventListener> listeners = new ArrayList<ConnectionEventListener>();
 
+    /** when the current handle was handed out, and the metrics to report its return to */
+    private long borrowedAt;
+
+    private SQLiteMetrics borrowMetrics;
+
     /**
      * Constructor.
      *
@@ -83,87 +81,52 @@ public class SQLitePooledConnection extends JDBC4PooledConnection {
 
     /** @see javax.sql.PooledConnection#getConnection() */
     public Connection getConnection() throws SQLException {
+        // a thread-confined connection belongs to whoever borrows it
+        physicalConn.getDatabase().confineTo(Thread.currentThread());
         if (handleConn != null) handleConn.close();
 
-        handleConn =
-                (Connection)
-                        Proxy.newProxyInstance(
-                                getClass().getClassLoader(),
-                                new Class[] {Connection.class},
-                                new InvocationHandler() {
-                                    volatile boolean isClosed;
-
-                                    public Object invoke(Object proxy, Method method, Object[] args)
-                                            throws Throwable {
-                                        try {
-                                            String name = method.getName();
-                                            if ("close".equals(name)) {
-                                                // a handle may be closed twice: once by the
-                                                // client and again by getConnection() when the
-                                                // pooled connection is reused. only reset the
-                                                // physical connection once.
-                                                if (isClosed) {
-                                                    return null;
-                                                }
-
-                                                // reset the physical connection and mark this
-                                                // handle closed before notifying listeners, so the
-                                                // pool cannot hand the connection to another thread
-                                                // while the rollback/setAutoCommit is still running
-                                                if (!physicalConn.getAutoCommit()) {
-                                                    physicalConn.rollback();
-                                                }
-                                                physicalConn.setAutoCommit(true);
-                                                isClosed = true;
-
-                                                ConnectionEvent event =
-                                                        new ConnectionEvent(
-                                                                SQLitePooledConnection.this);
-
-                                                for (int i = listeners.size() - 1; i >= 0; i--) {
-                                                    listeners.get(i).connectionClosed(event);
-                                                }
-
-                                                return null; // don't close physical connection
-                                            } else if ("isClosed".equals(name)) {
-                                                if (!isClosed)
-                                                    isClosed =
-                                                            ((Boolean)
-                                                                            method.invoke(
-                                                                                    physicalConn,
-                                                                                    args))
-                                                                    .booleanValue();
-
-                                                return isClosed;
-                                            }
-
-                                            if (isClosed) {
-                                                throw new SQLException("Connection is closed");
-                                            }
-
-                                            return method.invoke(physicalConn, args);
-                                        } catch (SQLException e) {
-                                            if ("database connection closed"
-                                                    .equals(e.getMessage())) {
-                                                ConnectionEvent event =
-                                                        new ConnectionEvent(
-                                                                SQLitePooledConnection.this, e);
-
-                                                for (int i = listeners.size() - 1; i >= 0; i--) {
-                                                    listeners.get(i).connectionErrorOccurred(event);
-                                                }
-                                            }
-
-                                            throw e;
-                                        } catch (InvocationTargetException ex) {
-                                            throw ex.getCause();
-                                        }
-                                    }
-                                });
+        borrowMetrics = physicalConn.getDatabase().getMetrics();
+        if (borrowMetrics != null) {
+            borrowMetrics.onPoolBorrow();
+            borrowedAt = System.nanoTime();
+        }
 
+        handleConn = new SQLitePooledConnectionHandle(this);
         return handleConn;
     }
 
+    /**
+     * Called by the current handle once closed, after the physical connection is reset, to give the
+     * physical connection back to the pool.
+     */
+    void handleClosed() {
+        if (borrowMetrics != null) {
+            borrowMetrics.onPoolReturn(System.nanoTime() - borrowedAt);
+        }
+
+        ConnectionEvent event = new ConnectionEvent(this);
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).connectionClosed(event);
+        }
+    }
+
+    /**
+     * Notifies the listeners if an error thrown through a handle is fatal to the physical
+     * connection.
+     *
+     * @param e The error.
+     * @return The error, to rethrow.
+     */
+    <E extends SQLException> E connectionError(E e) {
+        if ("database connection closed".equals(e.getMessage())) {
+            ConnectionEvent event = new ConnectionEvent(this, e);
+            for (int i = listeners.size() - 1; i >= 0; i--) {
+                listeners.get(i).connectionErrorOccurred(event);
+            }
+        }
+        return e;
+    }
+
     /**
      * @see javax.sql.PooledConnection#addConnectionEventListener(javax.sql.ConnectionEventListener)
      */
@@ -184,285 +147,548 @@ public class SQLitePooledConnection extends JDBC4PooledConnection {
     }
 }
 
-class SQLitePooledConnectionHandle extends SQLiteConnection {
+/**
+ * The logical connection handed out by {@link SQLitePooledConnection#getConnection()}: delegates to
+ * the physical connection until closed, and then gives it back to the pool instead of closing it.
+ */
+class SQLitePooledConnectionHandle implements Connection {
     private final SQLitePooledConnection parent;
-    private final AtomicBoolean isClosed = new AtomicBoolean(false);
+    private volatile boolean isClosed;
 
-    public SQLitePooledConnectionHandle(SQLitePooledConnection parent) {
-        super(parent.getPhysicalConn().getDatabase());
+    SQLitePooledConnectionHandle(SQLitePooledConnection parent) {
         this.parent = parent;
     }
 
+    /** @return The physical connection, unless this handle is closed. */
+    private SQLiteConnection physical() throws SQLException {
+        if (isClosed) {
+            throw new SQLException("Connection is closed");
+        }
+        return parent.getPhysicalConn();
+    }
+
     @Override
     public Statement createStatement() throws SQLException {
-        return new JDBC4Statement(this);
+        try {
+            return physical().createStatement();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
-        return new JDBC4PreparedStatement(this, sql);
+        try {
+            return physical().prepareStatement(sql);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public CallableStatement prepareCall(String sql) throws SQLException {
-        return null;
+        try {
+            return physical().prepareCall(sql);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public String nativeSQL(String sql) throws SQLException {
-        return null;
+        try {
+            return physical().nativeSQL(sql);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void setAutoCommit(boolean autoCommit) throws SQLException {}
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        try {
+            physical().setAutoCommit(autoCommit);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public boolean getAutoCommit() throws SQLException {
-        return false;
+        try {
+            return physical().getAutoCommit();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void commit() throws SQLException {}
+    public void commit() throws SQLException {
+        try {
+            physical().commit();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
-    public void rollback() throws SQLException {}
+    public void rollback() throws SQLException {
+        try {
+            physical().rollback();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public void close() throws SQLException {
-        ConnectionEvent event = new ConnectionEvent(parent);
-
-        List<ConnectionEventListener> listeners = parent.getListeners();
-        for (int i = listeners.size() - 1; i >= 0; i--) {
-            listeners.get(i).connectionClosed(event);
+        // a handle may be closed twice: once by the client and again by getConnection() when the
+        // pooled connection is reused. only reset the physical connection once.
+        if (isClosed) {
+            return;
         }
 
-        if (!parent.getPhysicalConn().getAutoCommit()) {
-            parent.getPhysicalConn().rollback();
+        // reset the physical connection and mark this handle closed before notifying listeners,
+        // so the pool cannot hand the connection to another thread while the
+        // rollback/setAutoCommit is still running
+        try {
+            SQLiteConnection conn = parent.getPhysicalConn();
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+            }
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
         }
-        parent.getPhysicalConn().setAutoCommit(true);
-        isClosed.set(true);
+        isClosed = true;
+        parent.handleClosed();
     }
 
     @Override
-    public boolean isClosed() {
-        return isClosed.get();
+    public boolean isClosed() throws SQLException {
+        if (!isClosed) {
+            try {
+                isClosed = parent.getPhysicalConn().isClosed();
+            } catch (SQLException e) {
+                throw parent.connectionError(e);
+            }
+        }
+        return isClosed;
     }
 
     @Override
     public DatabaseMetaData getMetaData() throws SQLException {
-        return null;
+        try {
+            return physical().getMetaData();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void setReadOnly(boolean readOnly) throws SQLException {}
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        try {
+            physical().setReadOnly(readOnly);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public boolean isReadOnly() throws SQLException {
-        return false;
+        try {
+            return physical().isReadOnly();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void setCatalog(String catalog) throws SQLException {}
+    public void setCatalog(String catalog) throws SQLException {
+        try {
+            physical().setCatalog(catalog);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public String getCatalog() throws SQLException {
-        return null;
+        try {
+            return physical().getCatalog();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void setTransactionIsolation(int level) throws SQLException {}
+    public void setTransactionIsolation(int level) throws SQLException {
+        try {
+            physical().setTransactionIsolation(level);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
-    public int getTransactionIsolation() {
-        return 0;
+    public int getTransactionIsolation() throws SQLException {
+        try {
+            return physical().getTransactionIsolation();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public SQLWarning getWarnings() throws SQLException {
-        return null;
+        try {
+            return physical().getWarnings();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void clearWarnings() throws SQLException {}
+    public void clearWarnings() throws SQLException {
+        try {
+            physical().clearWarnings();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public Statement createStatement(int resultSetType, int resultSetConcurrency)
             throws SQLException {
-        return null;
+        try {
+            return physical().createStatement(resultSetType, resultSetConcurrency);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public PreparedStatement prepareStatement(
             String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
-        return null;
+        try {
+            return physical().prepareStatement(sql, resultSetType, resultSetConcurrency);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
             throws SQLException {
-        return null;
+        try {
+            return physical().prepareCall(sql, resultSetType, resultSetConcurrency);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public Map<String, Class<?>> getTypeMap() throws SQLException {
-        return null;
+        try {
+            return physical().getTypeMap();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {}
+    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+        try {
+            physical().setTypeMap(map);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
-    public void setHoldability(int holdability) throws SQLException {}
+    public void setHoldability(int holdability) throws SQLException {
+        try {
+            physical().setHoldability(holdability);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public int getHoldability() throws SQLException {
-        return 0;
+        try {
+            return physical().getHoldability();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public Savepoint setSavepoint() throws SQLException {
-        return null;
+        try {
+            return physical().setSavepoint();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public Savepoint setSavepoint(String name) throws SQLException {
-        return null;
+        try {
+            return physical().setSavepoint(name);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void rollback(Savepoint savepoint) throws SQLException {}
+    public void rollback(Savepoint savepoint) throws SQLException {
+        try {
+            physical().rollback(savepoint);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
-    public void releaseSavepoint(Savepoint savepoint) throws SQLException {}
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        try {
+            physical().releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public Statement createStatement(
             int resultSetType, int resultSetConcurrency, int resultSetHoldability)
             throws SQLException {
-        return null;
+        try {
+            return physical()
+                    .createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public PreparedStatement prepareStatement(
             String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
             throws SQLException {
-        return null;
+        try {
+            return physical()
+                    .prepareStatement(
+                            sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public CallableStatement prepareCall(
             String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
             throws SQLException {
-        return null;
+        try {
+            return physical()
+                    .prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys)
             throws SQLException {
-        return null;
+        try {
+            return physical().prepareStatement(sql, autoGeneratedKeys);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
-        return null;
+        try {
+            return physical().prepareStatement(sql, columnIndexes);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, String[] columnNames)
             throws SQLException {
-        return null;
+        try {
+            return physical().prepareStatement(sql, columnNames);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public Clob createClob() throws SQLException {
-        return null;
+        try {
+            return physical().createClob();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public Blob createBlob() throws SQLException {
-        return null;
+        try {
+            return physical().createBlob();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public NClob createNClob() throws SQLException {
-        return null;
+        try {
+            return physical().createNClob();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public SQLXML createSQLXML() throws SQLException {
-        return null;
+        try {
+            return physical().createSQLXML();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public boolean isValid(int timeout) throws SQLException {
-        return false;
+        try {
+            return physical().isValid(timeout);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void setClientInfo(String name, String value) throws SQLClientInfoException {}
+    public void setClientInfo(String name, String value) throws SQLClientInfoException {
+        if (isClosed) {
+            throw new SQLClientInfoException("Connection is closed", null);
+        }
+        try {
+            parent.getPhysicalConn().setClientInfo(name, value);
+        } catch (SQLClientInfoException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
-    public void setClientInfo(Properties properties) throws SQLClientInfoException {}
+    public void setClientInfo(Properties properties) throws SQLClientInfoException {
+        if (isClosed) {
+            throw new SQLClientInfoException("Connection is closed", null);
+        }
+        try {
+            parent.getPhysicalConn().setClientInfo(properties);
+        } catch (SQLClientInfoException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public String getClientInfo(String name) throws SQLException {
-        return null;
+        try {
+            return physical().getClientInfo(name);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public Properties getClientInfo() throws SQLException {
-        return null;
+        try {
+            return physical().getClientInfo();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
-        return null;
+        try {
+            return physical().createArrayOf(typeName, elements);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
-        return null;
+        try {
+            return physical().createStruct(typeName, attributes);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void setSchema(String schema) throws SQLException {}
+    public void setSchema(String schema) throws SQLException {
+        try {
+            physical().setSchema(schema);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public String getSchema() throws SQLException {
-        return null;
+        try {
+            return physical().getSchema();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
-    public void abort(Executor executor) throws SQLException {}
+    public void abort(Executor executor) throws SQLException {
+        try {
+            physical().abort(executor);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
-    public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {}
+    public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+        try {
+            physical().setNetworkTimeout(executor, milliseconds);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
+    }
 
     @Override
     public int getNetworkTimeout() throws SQLException {
-        return 0;
+        try {
+            return physical().getNetworkTimeout();
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public <T> T unwrap(Class<T> iface) throws SQLException {
-        return null;
+        try {
+            return physical().unwrap(iface);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 
     @Override
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        return false;
-    }
-
-    @Override
-    public int getBusyTimeout() {
-        return 0;
-    }
-
-    @Override
-    public void setBusyTimeout(int timeoutMillis) {}
-
-    @Override
-    public DB getDatabase() {
-        return null;
+        try {
+            return physical().isWrapperFor(iface);
+        } catch (SQLException e) {
+            throw parent.connectionError(e);
+        }
     }
 }
@@ -14,7 +14,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -54,6 +54,29 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
         }
     }
 
+    /** The maximum number of entries of {@link #schemaCache}. */
+    private static final int SCHEMA_CACHE_SIZE = 256;
+
+    /**
+     * Queries and keys built from the schema, see {@link #cachedQuery(List, SchemaLoader)}; guarded
+     * by this. The least recently used entries are dropped, since the keys include the patterns
+     * given by the caller.
+     *
+     * <p>The cache belongs to this connection and is not shared with other connections to the same
+     * database file: the temp schema and in-memory databases are private to a connection, and so
+     * may be the databases attached to it, so equal schema versions do not imply an equal schema.
+     */
+    private final Map<List<Object>, Object> schemaCache =
+            new LinkedHashMap<List<Object>, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+                    return size() > SCHEMA_CACHE_SIZE;
+                }
+            };
+
+    /** The schema versions the content of {@link #schemaCache} was built from. */
+    private byte[] schemaCacheVersions;
+
     protected JDBC3DatabaseMetaData(SQLiteConnection conn) {
         super(conn);
     }
@@ -852,7 +875,16 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
      */
     public ResultSet getColumns(String c, String s, String tblNamePattern, String colNamePattern)
             throws SQLException {
+        checkOpen();
+        String sql =
+                cachedQuery(
+                        Arrays.asList("getColumns", c, s, tblNamePattern, colNamePattern),
+                        () -> columnsQuery(c, s, tblNamePattern, colNamePattern));
+        return ((CoreStatement) conn.createStatement()).executeQuery(sql, true);
+    }
 
+    private String columnsQuery(String c, String s, String tblNamePattern, String colNamePattern)
+            throws SQLException {
         // get the list of tables matching the pattern (getTables)
         // create a Matrix Cursor for each of the tables
         // create a merge cursor from all the Matrix Cursors
@@ -916,8 +948,6 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
         //        NO --- if the column is not generated
         //        empty string --- if it cannot be determined whether the column is auto incremented
         // parameter is unknown
-        checkOpen();
-
         StringBuilder sql = new StringBuilder(700);
         sql.append("select null as TABLE_CAT, null as TABLE_SCHEM, tblname as TABLE_NAME, ")
                 .append(
@@ -938,194 +968,154 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
 
         boolean colFound = false;
 
-        ResultSet rs = null;
-        try {
-            // Get all tables implied by the input
-            rs = getTables(c, s, tblNamePattern, null);
-            while (rs.next()) {
-                String tableName = rs.getString(3);
-
-                boolean isAutoIncrement;
-
-                Statement statColAutoinc = conn.createStatement();
-                ResultSet rsColAutoinc = null;
-                try {
-                    statColAutoinc = conn.createStatement();
-                    rsColAutoinc =
-                            statColAutoinc.executeQuery(
-                                    "SELECT LIKE('%autoincrement%', LOWER(sql)) FROM sqlite_schema "
-                                            + "WHERE LOWER(name) = LOWER('"
-                                            + escape(tableName)
-                                            + "') AND TYPE IN ('table', 'view')");
-                    rsColAutoinc.next();
-                    isAutoIncrement = rsColAutoinc.getInt(1) == 1;
-                } finally {
-                    if (rsColAutoinc != null) {
-                        try {
-                            rsColAutoinc.close();
-                        } catch (Exception e) {
-                            LogHolder.logger.error(() -> "Could not close ResultSet", e);
-                        }
-                    }
-                    if (statColAutoinc != null) {
-                        try {
-                            statColAutoinc.close();
-                        } catch (Exception e) {
-                            LogHolder.logger.error(() -> "Could not close statement", e);
-                        }
-                    }
+        // Get the columns of all tables implied by the input, in a single query
+        String columnsQuery =
+                "select t.TABLE_NAME, coalesce((select like('%autoincrement%', lower(m.sql))"
+                        + " from sqlite_schema m where lower(m.name) = lower(t.TABLE_NAME)"
+                        + " and m.type in ('table', 'view')), 0),"
+                        + " p.name, p.type, p.\"notnull\", p.dflt_value, p.pk, p.hidden"
+                        + " from ("
+                        + tablesQuery(tblNamePattern, null)
+                        + ") t join pragma_table_xinfo(t.TABLE_NAME) p"
+                        + " order by t.TABLE_TYPE, t.TABLE_NAME, p.cid";
+        try (Statement colstat = conn.createStatement();
+                ResultSet rscol = colstat.executeQuery(columnsQuery)) {
+            String tableName = null;
+            for (int i = 0; rscol.next(); i++) {
+                if (!rscol.getString(1).equals(tableName)) {
+                    tableName = rscol.getString(1);
+                    i = 0;
+                }
+                boolean isAutoIncrement = rscol.getInt(2) == 1;
+                String colName = rscol.getString(3);
+                String colType = rscol.getString(4);
+                String colNotNull = rscol.getString(5);
+                String colDefault = rscol.getString(6);
+                boolean isPk = "1".equals(rscol.getString(7));
+                String colHidden = rscol.getString(8);
+
+                int colNullable = 2;
+                if (colNotNull != null) {
+                    colNullable = colNotNull.equals("0") ? 1 : 0;
                 }
 
-                // For each table, get the column info and build into overall SQL
-                String pragmaStatement = "PRAGMA table_xinfo('" + escape(tableName) + "')";
-                try (Statement colstat = conn.createStatement();
-                        ResultSet rscol = colstat.executeQuery(pragmaStatement)) {
-
-                    for (int i = 0; rscol.next(); i++) {
-                        String colName = rscol.getString(2);
-                        String colType = rscol.getString(3);
-                        String colNotNull = rscol.getString(4);
-                        String colDefault = rscol.getString(5);
-                        boolean isPk = "1".equals(rscol.getString(6));
-                        String colHidden = rscol.getString(7);
-
-                        int colNullable = 2;
-                        if (colNotNull != null) {
-                            colNullable = colNotNull.equals("0") ? 1 : 0;
-                        }
-
-                        if (colFound) {
-                            sql.append(" union all ");
-                        }
-                        colFound = true;
-
-                        // default values
-                        int iColumnSize = 2000000000;
-                        int iDecimalDigits = 10;
-
-                        /*
-                         * improved column types
-                         * ref https://www.sqlite.org/datatype3.html - 2.1 Determination Of Column Affinity
-                         * plus some degree of artistic-license applied
-                         */
-                        colType = colType == null ? "TEXT" : colType.toUpperCase();
-
-                        int colAutoIncrement = 0;
-                        if (isPk && isAutoIncrement) {
-                            colAutoIncrement = 1;
+                if (colFound) {
+                    sql.append(" union all ");
+                }
+                colFound = true;
+
+                // default values
+                int iColumnSize = 2000000000;
+                int iDecimalDigits = 10;
+
+                /*
+                 * improved column types
+                 * ref https://www.sqlite.org/datatype3.html - 2.1 Determination Of Column Affinity
+                 * plus some degree of artistic-license applied
+                 */
+                colType = colType == null ? "TEXT" : colType.toUpperCase();
+
+                int colAutoIncrement = 0;
+                if (isPk && isAutoIncrement) {
+                    colAutoIncrement = 1;
+                }
+                int colJavaType;
+                // rule #1 + boolean
+                if (TYPE_INTEGER.matcher(colType).find()) {
+                    colJavaType = Types.INTEGER;
+                    // there are no decimal digits
+                    iDecimalDigits = 0;
+                } else if (TYPE_VARCHAR.matcher(colType).find()) {
+                    colJavaType = Types.VARCHAR;
+                    // there are no decimal digits
+                    iDecimalDigits = 0;
+                } else if (TYPE_FLOAT.matcher(colType).find()) {
+                    colJavaType = Types.FLOAT;
+                } else {
+                    // catch-all
+                    colJavaType = Types.VARCHAR;
+                }
+                // try to find an (optional) length/dimension of the column
+                int iStartOfDimension = colType.indexOf('(');
+                if (iStartOfDimension > 0) {
+                    // find end of dimension
+                    int iEndOfDimension = colType.indexOf(')', iStartOfDimension);
+                    if (iEndOfDimension > 0) {
+                        String sInteger, sDecimal;
+                        // check for two values (integer part, fraction) divided by
+                        // comma
+                        int iDimensionSeparator = colType.indexOf(',', iStartOfDimension);
+                        if (iDimensionSeparator > 0) {
+                            sInteger =
+                                    colType.substring(iStartOfDimension + 1, iDimensionSeparator);
+                            sDecimal = colType.substring(iDimensionSeparator + 1, iEndOfDimension);
                         }
-                        int colJavaType;
-                        // rule #1 + boolean
-                        if (TYPE_INTEGER.matcher(colType).find()) {
-                            colJavaType = Types.INTEGER;
-                            // there are no decimal digits
-                            iDecimalDigits = 0;
-                        } else if (TYPE_VARCHAR.matcher(colType).find()) {
-                            colJavaType = Types.VARCHAR;
-                            // there are no decimal digits
-                            iDecimalDigits = 0;
-                        } else if (TYPE_FLOAT.matcher(colType).find()) {
-                            colJavaType = Types.FLOAT;
-                        } else {
-                            // catch-all
-                            colJavaType = Types.VARCHAR;
+                        // only a single dimension
+                        else {
+                            sInteger = colType.substring(iStartOfDimension + 1, iEndOfDimension);
+                            sDecimal = null;
                         }
-                        // try to find an (optional) length/dimension of the column
-                        int iStartOfDimension = colType.indexOf('(');
-                        if (iStartOfDimension > 0) {
-                            // find end of dimension
-                            int iEndOfDimension = colType.indexOf(')', iStartOfDimension);
-                            if (iEndOfDimension > 0) {
-                                String sInteger, sDecimal;
-                                // check for two values (integer part, fraction) divided by
-                                // comma
-                                int iDimensionSeparator = colType.indexOf(',', iStartOfDimension);
-                                if (iDimensionSeparator > 0) {
-                                    sInteger =
-                                            colType.substring(
-                                                    iStartOfDimension + 1, iDimensionSeparator);
-                                    sDecimal =
-                                            colType.substring(
-                                                    iDimensionSeparator + 1, iEndOfDimension);
-                                }
-                                // only a single dimension
-                                else {
-                                    sInteger =
-                                            colType.substring(
-                                                    iStartOfDimension + 1, iEndOfDimension);
-                                    sDecimal = null;
-                                }
-                                // try to parse the values
-                                try {
-                                    int iInteger = Integer.parseUnsignedInt(sInteger.trim());
-                                    // parse decimals?
-                                    if (sDecimal != null) {
-                                        iDecimalDigits = Integer.parseUnsignedInt(sDecimal.trim());
-                                        // columns size equals sum of integer and decimal part
-                                        // of dimension
-                                        iColumnSize = iInteger + iDecimalDigits;
-                                    } else {
-                                        // no decimals
-                                        iDecimalDigits = 0;
-                                        // columns size equals dimension
-                                        iColumnSize = iInteger;
-                                    }
-                                } catch (NumberFormatException ex) {
-                                    // just ignore invalid dimension formats here
-                                }
+                        // try to parse the values
+                        try {
+                            int iInteger = Integer.parseUnsignedInt(sInteger.trim());
+                            // parse decimals?
+                            if (sDecimal != null) {
+                                iDecimalDigits = Integer.parseUnsignedInt(sDecimal.trim());
+                                // columns size equals sum of integer and decimal part
+                                // of dimension
+                                iColumnSize = iInteger + iDecimalDigits;
+                            } else {
+                                // no decimals
+                                iDecimalDigits = 0;
+                                // columns size equals dimension
+                                iColumnSize = iInteger;
                             }
-                            // "TYPE_NAME" (colType) is without the length/ dimension
-                            colType = colType.substring(0, iStartOfDimension).trim();
-                        }
-
-                        int colGenerated = 0;
-                        if ("2".equals(colHidden) || "3".equals(colHidden)) {
-                            colGenerated = 1;
-                        }
-
-                        sql.append("select ")
-                                .append(i + 1)
-                                .append(" as ordpos, ")
-                                .append(colNullable)
-                                .append(" as colnullable,")
-                                .append(colJavaType)
-                                .append(" as ct, ")
-                                .append(iColumnSize)
-                                .append(" as colSize, ")
-                                .append(iDecimalDigits)
-                                .append(" as colDecimalDigits, ")
-                                .append("'")
-                                .append(escape(tableName))
-                                .append("' as tblname, ")
-                                .append("'")
-                                .append(escape(colName))
-                                .append("' as cn, ")
-                                .append("'")
-                                .append(escape(colType))
-                                .append("' as tn, ")
-                                .append(quote(colDefault == null ? null : escape(colDefault)))
-                                .append(" as colDefault,")
-                                .append(colAutoIncrement)
-                                .append(" as colautoincrement,")
-                                .append(colGenerated)
-                                .append(" as colgenerated");
-
-                        if (colNamePattern != null) {
-                            sql.append(" where upper(cn) like upper('")
-                                    .append(escape(colNamePattern))
-                                    .append("') ESCAPE '")
-                                    .append(getSearchStringEscape())
-                                    .append("'");
+                        } catch (NumberFormatException ex) {
+                            // just ignore invalid dimension formats here
                         }
                     }
+                    // "TYPE_NAME" (colType) is without the length/ dimension
+                    colType = colType.substring(0, iStartOfDimension).trim();
                 }
-            }
-        } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (Exception e) {
-                    LogHolder.logger.error(() -> "Could not close ResultSet", e);
+
+                int colGenerated = 0;
+                if ("2".equals(colHidden) || "3".equals(colHidden)) {
+                    colGenerated = 1;
+                }
+
+                sql.append("select ")
+                        .append(i + 1)
+                        .append(" as ordpos, ")
+                        .append(colNullable)
+                        .append(" as colnullable,")
+                        .append(colJavaType)
+                        .append(" as ct, ")
+                        .append(iColumnSize)
+                        .append(" as colSize, ")
+                        .append(iDecimalDigits)
+                        .append(" as colDecimalDigits, ")
+                        .append("'")
+                        .append(escape(tableName))
+                        .append("' as tblname, ")
+                        .append("'")
+                        .append(escape(colName))
+                        .append("' as cn, ")
+                        .append("'")
+                        .append(escape(colType))
+                        .append("' as tn, ")
+                        .append(quote(colDefault == null ? null : escape(colDefault)))
+                        .append(" as colDefault,")
+                        .append(colAutoIncrement)
+                        .append(" as colautoincrement,")
+                        .append(colGenerated)
+                        .append(" as colgenerated");
+
+                if (colNamePattern != null) {
+                    sql.append(" where upper(cn) like upper('")
+                            .append(escape(colNamePattern))
+                            .append("') ESCAPE '")
+                            .append(getSearchStringEscape())
+                            .append("'");
                 }
             }
         }
@@ -1137,8 +1127,7 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
                     "select null as ordpos, null as colnullable, null as ct, null as colsize, null as colDecimalDigits, null as tblname, null as cn, null as tn, null as colDefault, null as colautoincrement, null as colgenerated) limit 0;");
         }
 
-        Statement stat = conn.createStatement();
-        return ((CoreStatement) stat).executeQuery(sql.toString(), true);
+        return sql.toString();
     }
 
     /**
@@ -1202,19 +1191,22 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
      *     java.lang.String)
      */
     public ResultSet getPrimaryKeys(String c, String s, String table) throws SQLException {
-        PrimaryKeyFinder pkFinder = new PrimaryKeyFinder(table);
+        String sql =
+                cachedQuery(Arrays.asList("getPrimaryKeys", table), () -> primaryKeysQuery(table));
+        return ((CoreStatement) conn.createStatement()).executeQuery(sql, true);
+    }
+
+    private String primaryKeysQuery(String table) throws SQLException {
+        PrimaryKeyFinder pkFinder = primaryKeyFinder(table);
         String[] columns = pkFinder.getColumns();
 
-        Statement stat = conn.createStatement();
         StringBuilder sql = new StringBuilder(512);
         sql.append("select null as TABLE_CAT, null as TABLE_SCHEM, '")
                 .append(escape(table))
                 .append("' as TABLE_NAME, cn as COLUMN_NAME, ks as KEY_SEQ, pk as PK_NAME from (");
 
         if (columns == null) {
-            sql.append("select null as cn, null as pk, 0 as ks) limit 0;");
-
-            return ((CoreStatement) stat).executeQuery(sql.toString(), true);
+            return sql.append("select null as cn, null as pk, 0 as ks) limit 0;").toString();
         }
 
         String pkName = pkFinder.getName();
@@ -1233,7 +1225,7 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
                     .append(" as ks");
         }
 
-        return ((CoreStatement) stat).executeQuery(sql.append(") order by cn;").toString(), true);
+        return sql.append(") order by cn;").toString();
     }
 
     private static final Map<String, Integer> RULE_MAP = new HashMap<>();
@@ -1252,9 +1244,17 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
      */
     public ResultSet getExportedKeys(String catalog, String schema, String table)
             throws SQLException {
-        PrimaryKeyFinder pkFinder = new PrimaryKeyFinder(table);
+        String sql =
+                cachedQuery(
+                        Arrays.asList("getExportedKeys", catalog, schema, table),
+                        () -> exportedKeysQuery(catalog, schema, table));
+        return ((CoreStatement) conn.createStatement()).executeQuery(sql, true);
+    }
+
+    private String exportedKeysQuery(String catalog, String schema, String table)
+            throws SQLException {
+        PrimaryKeyFinder pkFinder = primaryKeyFinder(table);
         String[] pkColumns = pkFinder.getColumns();
-        Statement stat = conn.createStatement();
 
         catalog = (catalog != null) ? quote(escape(catalog)) : null;
         schema = (schema != null) ? quote(escape(schema)) : null;
@@ -1265,25 +1265,18 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
         int count = 0;
         if (pkColumns != null) {
             // retrieve table list
-            ArrayList<String> tableList;
-            try (ResultSet rs =
-                    stat.executeQuery("select name from sqlite_schema where type = 'table'")) {
-                tableList = new ArrayList<>();
-
-                while (rs.next()) {
-                    String tblname = rs.getString(1);
-                    tableList.add(tblname);
-                    if (tblname.equalsIgnoreCase(table)) {
-                        // get the correct case as in the database
-                        // (not uppercase nor lowercase)
-                        target = tblname;
-                    }
+            List<String> tableList = tableNames();
+            for (String tblname : tableList) {
+                if (tblname.equalsIgnoreCase(table)) {
+                    // get the correct case as in the database
+                    // (not uppercase nor lowercase)
+                    target = tblname;
                 }
             }
 
             // find imported keys for each table
-            for (String tbl : tableList) {
-                final ImportedKeyFinder impFkFinder = new ImportedKeyFinder(tbl);
+            for (ImportedKeyFinder impFkFinder : importedKeyFinders()) {
+                String tbl = impFkFinder.getFkTableName();
                 List<ForeignKey> fkNames = impFkFinder.getFkList();
 
                 for (ForeignKey foreignKey : fkNames) {
@@ -1383,7 +1376,7 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
             sql.append("limit 0");
         }
 
-        return ((CoreStatement) stat).executeQuery(sql.toString(), true);
+        return sql.toString();
     }
 
     private StringBuilder appendDummyForeignKeyList(StringBuilder sql) {
@@ -1404,8 +1397,16 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
      */
     public ResultSet getImportedKeys(String catalog, String schema, String table)
             throws SQLException {
+        String sql =
+                cachedQuery(
+                        Arrays.asList("getImportedKeys", catalog, schema, table),
+                        () -> importedKeysQuery(catalog, schema, table));
+        return ((CoreStatement) conn.createStatement()).executeQuery(sql, true);
+    }
+
+    private String importedKeysQuery(String catalog, String schema, String table)
+            throws SQLException {
         ResultSet rs;
-        Statement stat = conn.createStatement();
         StringBuilder sql = new StringBuilder(700);
 
         sql.append("select ")
@@ -1425,15 +1426,20 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
                 .append(DatabaseMetaData.importedKeyInitiallyDeferred)
                 .append(" as DEFERRABILITY from (");
 
-        // Use a try catch block to avoid "query does not return ResultSet" error
-        try {
-            rs = stat.executeQuery("pragma foreign_key_list('" + escape(table) + "');");
-        } catch (SQLException e) {
-            sql = appendDummyForeignKeyList(sql);
-            return ((CoreStatement) stat).executeQuery(sql.toString(), true);
+        try (Statement stat = conn.createStatement()) {
+            // Use a try catch block to avoid "query does not return ResultSet" error
+            try {
+                rs = stat.executeQuery("pragma foreign_key_list('" + escape(table) + "');");
+            } catch (SQLException e) {
+                return appendDummyForeignKeyList(sql).toString();
+            }
+            return appendImportedKeys(sql, table, rs);
         }
+    }
 
-        final ImportedKeyFinder impFkFinder = new ImportedKeyFinder(table);
+    private String appendImportedKeys(StringBuilder sql, String table, ResultSet rs)
+            throws SQLException {
+        final ImportedKeyFinder impFkFinder = importedKeyFinder(table);
         List<ForeignKey> fkNames = impFkFinder.getFkList();
 
         int i = 0;
@@ -1446,7 +1452,7 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
 
             String pkName = null;
             try {
-                PrimaryKeyFinder pkFinder = new PrimaryKeyFinder(PKTabName);
+                PrimaryKeyFinder pkFinder = primaryKeyFinder(PKTabName);
                 pkName = pkFinder.getName();
                 if (PKColName == null) {
                     PKColName = pkFinder.getColumns()[0];
@@ -1515,7 +1521,7 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
             sql.append(") ORDER BY PKTABLE_CAT, PKTABLE_SCHEM, PKTABLE_NAME, KEY_SEQ;");
         }
 
-        return ((CoreStatement) stat).executeQuery(sql.toString(), true);
+        return sql.toString();
     }
 
     /**
@@ -1524,8 +1530,11 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
      */
     public ResultSet getIndexInfo(String c, String s, String table, boolean u, boolean approximate)
             throws SQLException {
-        ResultSet rs;
-        Statement stat = conn.createStatement();
+        String sql = cachedQuery(Arrays.asList("getIndexInfo", table), () -> indexInfoQuery(table));
+        return ((CoreStatement) conn.createStatement()).executeQuery(sql, true);
+    }
+
+    private String indexInfoQuery(String table) throws SQLException {
         StringBuilder sql = new StringBuilder(500);
 
         // define the column header
@@ -1539,63 +1548,44 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
                 .append(
                         "cn as COLUMN_NAME, null as ASC_OR_DESC, 0 as CARDINALITY, 0 as PAGES, null as FILTER_CONDITION from (");
 
-        // this always returns a result set now, previously threw exception
-        rs = stat.executeQuery("pragma index_list('" + escape(table) + "');");
-
-        ArrayList<ArrayList<Object>> indexList = new ArrayList<>();
-        while (rs.next()) {
-            indexList.add(new ArrayList<>());
-            indexList.get(indexList.size() - 1).add(rs.getString(2));
-            indexList.get(indexList.size() - 1).add(rs.getInt(3));
-        }
-        rs.close();
-        if (indexList.size() == 0) {
-            // if pragma index_list() returns no information, use this null block
-            sql.append("select null as un, null as n, null as op, null as cn) limit 0;");
-            return ((CoreStatement) stat).executeQuery(sql.toString(), true);
-        } else {
-            // loop over results from pragma call, getting specific info for each index
-
-            Iterator<ArrayList<Object>> indexIterator = indexList.iterator();
-            ArrayList<Object> currentIndex;
-
-            ArrayList<String> unionAll = new ArrayList<>();
-
-            while (indexIterator.hasNext()) {
-                currentIndex = indexIterator.next();
-                String indexName = currentIndex.get(0).toString();
-                rs = stat.executeQuery("pragma index_info('" + escape(indexName) + "');");
-
-                while (rs.next()) {
-
-                    StringBuilder sqlRow = new StringBuilder();
-
-                    String colName = rs.getString(3);
-                    sqlRow.append("select ")
-                            .append(1 - (Integer) currentIndex.get(1))
-                            .append(" as un,'")
-                            .append(escape(indexName))
-                            .append("' as n,")
-                            .append(rs.getInt(1) + 1)
-                            .append(" as op,");
-                    if (colName == null) { // expression index
-                        sqlRow.append("null");
-                    } else {
-                        sqlRow.append("'").append(escape(colName)).append("'");
-                    }
-                    sqlRow.append(" as cn");
-
-                    unionAll.add(sqlRow.toString());
+        // the key columns of all indexes of the table, in a single query
+        ArrayList<String> unionAll = new ArrayList<>();
+        try (Statement stat = conn.createStatement();
+                ResultSet rs =
+                        stat.executeQuery(
+                                "select il.name, il.\"unique\", ix.seqno, ix.name"
+                                        + " from pragma_index_list('"
+                                        + escape(table)
+                                        + "') il join pragma_index_xinfo(il.name) ix"
+                                        + " where ix.key order by il.seq, ix.seqno;")) {
+            while (rs.next()) {
+                StringBuilder sqlRow = new StringBuilder();
+
+                String colName = rs.getString(4);
+                sqlRow.append("select ")
+                        .append(1 - rs.getInt(2))
+                        .append(" as un,'")
+                        .append(escape(rs.getString(1)))
+                        .append("' as n,")
+                        .append(rs.getInt(3) + 1)
+                        .append(" as op,");
+                if (colName == null) { // expression index
+                    sqlRow.append("null");
+                } else {
+                    sqlRow.append("'").append(escape(colName)).append("'");
                 }
+                sqlRow.append(" as cn");
 
-                rs.close();
+                unionAll.add(sqlRow.toString());
             }
+        }
 
-            String sqlBlock = StringUtils.join(unionAll, " union all ");
-
-            return ((CoreStatement) stat)
-                    .executeQuery(sql.append(sqlBlock).append(");").toString(), true);
+        if (unionAll.isEmpty()) {
+            // if the table has no index, use this null block
+            return sql.append("select null as un, null as n, null as op, null as cn) limit 0;")
+                    .toString();
         }
+        return sql.append(StringUtils.join(unionAll, " union all ")).append(");").toString();
     }
 
     /**
@@ -1684,6 +1674,12 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
 
         checkOpen();
 
+        return ((CoreStatement) conn.createStatement())
+                .executeQuery(tablesQuery(tblNamePattern, types), true);
+    }
+
+    /** @return The query of {@link #getTables(String, String, String, String[])}. */
+    private String tablesQuery(String tblNamePattern, String[] types) {
         tblNamePattern =
                 (tblNamePattern == null || "".equals(tblNamePattern))
                         ? "%"
@@ -1745,9 +1741,9 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
             sql.append(")");
         }
 
-        sql.append(" ORDER BY TABLE_TYPE, TABLE_NAME;");
+        sql.append(" ORDER BY TABLE_TYPE, TABLE_NAME");
 
-        return ((CoreStatement) conn.createStatement()).executeQuery(sql.toString(), true);
+        return sql.toString();
     }
 
     /** @see java.sql.DatabaseMetaData#getTableTypes() */
@@ -1951,6 +1947,118 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
         throw new SQLFeatureNotSupportedException("Not yet implemented by SQLite JDBC driver");
     }
 
+    /** Builds a value from the schema of the database. */
+    interface SchemaLoader<T> {
+        T load() throws SQLException;
+    }
+
+    /**
+     * Returns a query built by a metadata method. The queries, like the keys parsed from the schema
+     * to build them, are kept until the schema of a database of the connection changes, since tools
+     * which read the metadata of every table at startup would otherwise parse the whole schema
+     * again on each call. Each connection keeps its own queries, so another connection to the same
+     * file parses the schema once more.
+     *
+     * @param key The method and its parameters.
+     * @param loader Builds the query.
+     * @return The query.
+     */
+    private synchronized String cachedQuery(List<Object> key, SchemaLoader<String> loader)
+            throws SQLException {
+        checkOpen();
+        byte[] versions = conn.getDatabase().schema_versions();
+        if (!Arrays.equals(versions, schemaCacheVersions)) {
+            schemaCache.clear();
+            schemaCacheVersions = versions;
+        }
+        return cached(key, loader);
+    }
+
+    /** Only called while building a query, by {@link #cachedQuery(List, SchemaLoader)}. */
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T cached(List<Object> key, SchemaLoader<T> loader)
+            throws SQLException {
+        T value = (T) schemaCache.get(key);
+        if (value == null) {
+            value = loader.load();
+            schemaCache.put(key, value);
+        }
+        return value;
+    }
+
+    private PrimaryKeyFinder primaryKeyFinder(String table) throws SQLException {
+        return cached(
+                Arrays.asList(PrimaryKeyFinder.class, table), () -> new PrimaryKeyFinder(table));
+    }
+
+    private ImportedKeyFinder importedKeyFinder(String table) throws SQLException {
+        return cached(
+                Arrays.asList(ImportedKeyFinder.class, table), () -> new ImportedKeyFinder(table));
+    }
+
+    /**
+     * @return The foreign keys of the tables of the main database which have some, read in a single
+     *     query.
+     */
+    private List<ImportedKeyFinder> importedKeyFinders() throws SQLException {
+        return cached(
+                Collections.singletonList(ImportedKeyFinder.class),
+                () -> {
+                    List<ImportedKeyFinder> finders = new ArrayList<>();
+                    try (Statement stat = conn.createStatement();
+                            ResultSet rs =
+                                    stat.executeQuery(
+                                            "select m.name, m.sql, f.id, f.\"table\", f.\"from\","
+                                                    + " f.\"to\", f.on_update, f.on_delete, f.\"match\""
+                                                    + " from sqlite_schema m"
+                                                    + " join pragma_foreign_key_list(m.name) f"
+                                                    + " where m.type = 'table'")) {
+                        ImportedKeyFinder finder = null;
+                        while (rs.next()) {
+                            String table = rs.getString(1);
+                            if (finder == null || !finder.getFkTableName().equals(table)) {
+                                finder = new ImportedKeyFinder(table, rs.getString(2));
+                                finders.add(finder);
+                            }
+                            finder.addColumnMapping(
+                                    rs.getInt(3),
+                                    rs.getString(4),
+                                    rs.getString(5),
+                                    rs.getString(6),
+                                    rs.getString(7),
+                                    rs.getString(8),
+                                    rs.getString(9));
+                        }
+                    }
+                    return finders;
+                });
+    }
+
+    /** @return The names of the tables of the main database. */
+    private List<String> tableNames() throws SQLException {
+        return cached(
+                Collections.singletonList("tableNames"),
+                () -> {
+                    List<String> names = new ArrayList<>();
+                    try (Statement stat = conn.createStatement();
+                            ResultSet rs =
+                                    stat.executeQuery(
+                                            "select name from sqlite_schema where type = 'table'")) {
+                        while (rs.next()) {
+                            names.add(rs.getString(1));
+                        }
+                    }
+                    return names;
+                });
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        schemaCache.clear();
+        schemaCacheVersions = null;
+        super.close();
+    }
+
     // inner classes
 
     /** Pattern used to extract column order for an unnamed primary key. */
@@ -2053,6 +2161,8 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
 
         private final String fkTableName;
         private final List<ForeignKey> fkList = new ArrayList<>();
+        private final List<String> fkNames;
+        private int prevFkId = -1;
 
         public ImportedKeyFinder(String table) throws SQLException {
 
@@ -2062,7 +2172,7 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
 
             this.fkTableName = table;
 
-            List<String> fkNames = getForeignKeyNames(this.fkTableName);
+            this.fkNames = getForeignKeyNames(this.fkTableName);
 
             try (Statement stat = conn.createStatement();
                     ResultSet rs =
@@ -2071,45 +2181,54 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
                                             + escape(this.fkTableName.toLowerCase())
                                             + "')")) {
 
-                int prevFkId = -1;
-                int count = 0;
-                ForeignKey fk = null;
                 while (rs.next()) {
-                    int fkId = rs.getInt(1);
-                    String pkTableName = rs.getString(3);
-                    String fkColName = rs.getString(4);
-                    String pkColName = rs.getString(5);
-                    String onUpdate = rs.getString(6);
-                    String onDelete = rs.getString(7);
-                    String match = rs.getString(8);
-
-                    String fkName = null;
-                    if (fkNames.size() > count) fkName = fkNames.get(count);
-
-                    if (fkId != prevFkId) {
-                        fk =
-                                new ForeignKey(
-                                        fkName,
-                                        pkTableName,
-                                        fkTableName,
-                                        onUpdate,
-                                        onDelete,
-                                        match);
-                        fkList.add(fk);
-                        prevFkId = fkId;
-                        count++;
-                    }
-                    if (fk != null) {
-                        fk.addColumnMapping(fkColName, pkColName);
-                    }
+                    addColumnMapping(
+                            rs.getInt(1),
+                            rs.getString(3),
+                            rs.getString(4),
+                            rs.getString(5),
+                            rs.getString(6),
+                            rs.getString(7),
+                            rs.getString(8));
                 }
             }
         }
 
+        /**
+         * Constructor for the foreign keys read in bulk by {@link #importedKeyFinders()}.
+         *
+         * @param table The table name.
+         * @param sql The create SQL script of the table.
+         */
+        ImportedKeyFinder(String table, String sql) {
+            this.fkTableName = table;
+            this.fkNames = parseForeignKeyNames(sql);
+        }
+
+        /** Adds a row of <code>pragma foreign_key_list</code>. */
+        void addColumnMapping(
+                int fkId,
+                String pkTableName,
+                String fkColName,
+                String pkColName,
+                String onUpdate,
+                String onDelete,
+                String match) {
+            if (fkId != prevFkId) {
+                String fkName = null;
+                if (fkNames.size() > fkList.size()) fkName = fkNames.get(fkList.size());
+
+                fkList.add(
+                        new ForeignKey(
+                                fkName, pkTableName, fkTableName, onUpdate, onDelete, match));
+                prevFkId = fkId;
+            }
+            fkList.get(fkList.size() - 1).addColumnMapping(fkColName, pkColName);
+        }
+
         private List<String> getForeignKeyNames(String tbl) throws SQLException {
-            List<String> fkNames = new ArrayList<>();
             if (tbl == null) {
-                return fkNames;
+                return new ArrayList<>();
             }
             try (Statement stat2 = conn.createStatement();
                     ResultSet rs =
@@ -2119,12 +2238,17 @@ public abstract class JDBC3DatabaseMetaData extends CoreDatabaseMetaData {
                                             + escape(tbl)
                                             + "')")) {
 
-                if (rs.next()) {
-                    Matcher matcher = FK_NAMED_PATTERN.matcher(rs.getString(1));
+                return parseForeignKeyNames(rs.next() ? rs.getString(1) : null);
+            }
+        }
 
-                    while (matcher.find()) {
-                        fkNames.add(matcher.group(1));
-                    }
+        private List<String> parseForeignKeyNames(String sql) {
+            List<String> fkNames = new ArrayList<>();
+            if (sql != null) {
+                Matcher matcher = FK_NAMED_PATTERN.matcher(sql);
+
+                while (matcher.find()) {
+                    fkNames.add(matcher.group(1));
                 }
             }
             Collections.reverse(fkNames);
@@ -33,11 +33,16 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
         super(conn, sql);
     }
 
+    protected JDBC3PreparedStatement(SQLiteConnection conn, String sql, int prepFlags)
+            throws SQLException {
+        super(conn, sql, prepFlags);
+    }
+
     /** @see java.sql.PreparedStatement#clearParameters() */
     public void clearParameters() throws SQLException {
         checkOpen();
         pointer.safeRunConsume(DB::clear_bindings);
-        if (batch != null) for (int i = batchPos; i < batchPos + paramCount; i++) batch[i] = null;
+        if (batchBuffer != null) batchBuffer.clearRow();
     }
 
     /** @see java.sql.PreparedStatement#execute() */
@@ -57,7 +62,8 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
                     try {
                         synchronized (conn) {
                             resultsWaiting =
-                                    conn.getDatabase().execute(JDBC3PreparedStatement.this, batch);
+                                    conn.getDatabase()
+                                            .execute(JDBC3PreparedStatement.this, batchBuffer);
                             updateGeneratedKeys();
                             success = true;
                             updateCount = getDatabase().changes();
@@ -90,7 +96,8 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
                     boolean success = false;
                     try {
                         resultsWaiting =
-                                conn.getDatabase().execute(JDBC3PreparedStatement.this, batch);
+                                conn.getDatabase()
+                                        .execute(JDBC3PreparedStatement.this, batchBuffer);
                         success = true;
                     } finally {
                         if (!success && !pointer.isClosed()) {
@@ -127,7 +134,7 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
                     synchronized (conn) {
                         long rc =
                                 conn.getDatabase()
-                                        .executeUpdate(JDBC3PreparedStatement.this, batch);
+                                        .executeUpdate(JDBC3PreparedStatement.this, batchBuffer);
                         updateGeneratedKeys();
                         return rc;
                     }
@@ -136,18 +143,8 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
 
     /** @see java.sql.PreparedStatement#addBatch() */
     public void addBatch() throws SQLException {
-        checkOpen();
-        batchPos += paramCount;
+        batch().addRow();
         batchQueryCount++;
-        if (batch == null) {
-            batch = new Object[paramCount];
-        }
-        if (batchPos + paramCount > batch.length) {
-            Object[] nb = new Object[batch.length * 2];
-            System.arraycopy(batch, 0, nb, 0, batch.length);
-            batch = nb;
-        }
-        System.arraycopy(batch, batchPos - paramCount, batch, batchPos, paramCount);
     }
 
     // ParameterMetaData FUNCTIONS //////////////////////////////////
@@ -179,7 +176,7 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
     /** @see java.sql.ParameterMetaData#getParameterType(int) */
     public int getParameterType(int pos) throws SQLException {
         checkIndex(pos);
-        Object paramValue = batch[pos - 1];
+        Object paramValue = batchBuffer.getObject(0, pos - 1);
 
         if (paramValue == null) {
             return Types.NULL;
@@ -228,7 +225,7 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
 
     /** @see java.sql.PreparedStatement#setBigDecimal(int, java.math.BigDecimal) */
     public void setBigDecimal(int pos, BigDecimal value) throws SQLException {
-        batch(pos, value == null ? null : value.toString());
+        batch().setText(pos - 1, value == null ? null : value.toString());
     }
 
     /**
@@ -309,27 +306,42 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
 
     /** @see java.sql.PreparedStatement#setBytes(int, byte[]) */
     public void setBytes(int pos, byte[] value) throws SQLException {
-        batch(pos, value);
+        batch().setBlob(pos - 1, value);
+    }
+
+    /**
+     * Sets the designated parameter to a blob of the given length filled with zeroes. The blob is
+     * not allocated in Java; its content can be written afterwards with {@link
+     * org.sqlite.SQLiteConnection#openBlob(String, String, long, boolean)}.
+     *
+     * @param pos the first parameter is 1, the second is 2, ...
+     * @param length the length of the blob in bytes
+     * @throws SQLException
+     * @see <a
+     *     href="https://www.sqlite.org/c3ref/bind_blob.html">https://www.sqlite.org/c3ref/bind_blob.html</a>
+     */
+    public void setZeroBlob(int pos, long length) throws SQLException {
+        batch().setZeroBlob(pos - 1, length);
     }
 
     /** @see java.sql.PreparedStatement#setDouble(int, double) */
     public void setDouble(int pos, double value) throws SQLException {
-        batch(pos, new Double(value));
+        batch().setDouble(pos - 1, value);
     }
 
     /** @see java.sql.PreparedStatement#setFloat(int, float) */
     public void setFloat(int pos, float value) throws SQLException {
-        batch(pos, new Float(value));
+        batch().setFloat(pos - 1, value);
     }
 
     /** @see java.sql.PreparedStatement#setInt(int, int) */
     public void setInt(int pos, int value) throws SQLException {
-        batch(pos, new Integer(value));
+        batch().setInt(pos - 1, value);
     }
 
     /** @see java.sql.PreparedStatement#setLong(int, long) */
     public void setLong(int pos, long value) throws SQLException {
-        batch(pos, new Long(value));
+        batch().setLong(pos - 1, value);
     }
 
     /** @see java.sql.PreparedStatement#setNull(int, int) */
@@ -339,33 +351,33 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
 
     /** @see java.sql.PreparedStatement#setNull(int, int, java.lang.String) */
     public void setNull(int pos, int u1, String u2) throws SQLException {
-        batch(pos, null);
+        batch().setNull(pos - 1);
     }
 
     /** @see java.sql.PreparedStatement#setObject(int, java.lang.Object) */
     public void setObject(int pos, Object value) throws SQLException {
         if (value == null) {
-            batch(pos, null);
+            batch().setNull(pos - 1);
         } else if (value instanceof java.util.Date) {
             setDateByMilliseconds(pos, ((java.util.Date) value).getTime(), Calendar.getInstance());
         } else if (value instanceof Long) {
-            batch(pos, value);
+            batch().setLong(pos - 1, (Long) value);
         } else if (value instanceof Integer) {
-            batch(pos, value);
+            batch().setInt(pos - 1, (Integer) value);
         } else if (value instanceof Short) {
-            batch(pos, new Integer(((Short) value).intValue()));
+            batch().setInt(pos - 1, ((Short) value).intValue());
         } else if (value instanceof Float) {
-            batch(pos, value);
+            batch().setFloat(pos - 1, (Float) value);
         } else if (value instanceof Double) {
-            batch(pos, value);
+            batch().setDouble(pos - 1, (Double) value);
         } else if (value instanceof Boolean) {
             setBoolean(pos, ((Boolean) value).booleanValue());
         } else if (value instanceof byte[]) {
-            batch(pos, value);
+            batch().setBlob(pos - 1, (byte[]) value);
         } else if (value instanceof BigDecimal) {
             setBigDecimal(pos, (BigDecimal) value);
         } else {
-            batch(pos, value.toString());
+            batch().setText(pos - 1, value.toString());
         }
     }
 
@@ -386,7 +398,7 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
 
     /** @see java.sql.PreparedStatement#setString(int, java.lang.String) */
     public void setString(int pos, String value) throws SQLException {
-        batch(pos, value);
+        batch().setText(pos - 1, value);
     }
 
     /** @see java.sql.PreparedStatement#setCharacterStream(int, java.io.Reader, int) */
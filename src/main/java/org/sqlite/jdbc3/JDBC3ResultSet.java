@@ -5,6 +5,8 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
 import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -20,6 +22,7 @@ import java.util.GregorianCalendar;
 import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.sqlite.core.ColumnTextDecoder;
 import org.sqlite.core.CoreResultSet;
 import org.sqlite.core.CoreStatement;
 import org.sqlite.core.DB;
@@ -58,10 +61,22 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
         }
         lastCol = -1;
 
+        // confinement is checked once per row, so that the getters can skip locking
+        if (row == 0) {
+            confined = getDatabase().isThreadConfined();
+        }
+        if (confined) {
+            getDatabase().checkConfinement();
+        }
+
         // first row is loaded by execute(), so do not step() again
         if (row == 0) {
-            row++;
-            return true;
+            if (getConnectionConfig().isPrefetch()) {
+                startPrefetch();
+            } else {
+                row++;
+                return true;
+            }
         }
 
         // check if we are row limited by the statement or the ResultSet
@@ -69,8 +84,24 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
             return false;
         }
 
+        if (prefetch != null) {
+            int fetchSize = limitRows > 0 ? limitRows : DEFAULT_PREFETCH_SIZE;
+            if (maxRows != 0) {
+                fetchSize = (int) Math.min(fetchSize, maxRows - row);
+            }
+            if (!prefetch.next(stmt.pointer, fetchSize)) {
+                pastLastRow = true;
+                return false;
+            }
+            row++;
+            return true;
+        }
+
         // do the real work
-        int statusCode = stmt.pointer.safeRunInt(DB::step);
+        int statusCode =
+                confined
+                        ? stmt.pointer.confinedRunInt(DB::step_unlocked)
+                        : stmt.pointer.safeRunInt(DB::step);
         switch (statusCode) {
             case SQLITE_DONE:
                 pastLastRow = true;
@@ -213,6 +244,13 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
 
     /** @see java.sql.ResultSet#getBytes(int) */
     public byte[] getBytes(int col) throws SQLException {
+        if (prefetch != null) {
+            return prefetch.getBlob(markCol(col));
+        }
+        if (confined) {
+            return stmt.pointer.confinedRun(
+                    (db, ptr) -> db.column_blob_unlocked(ptr, markCol(col)));
+        }
         return stmt.pointer.safeRun((db, ptr) -> db.column_blob(ptr, markCol(col)));
     }
 
@@ -328,6 +366,13 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
 
     /** @see java.sql.ResultSet#getInt(int) */
     public int getInt(int col) throws SQLException {
+        if (prefetch != null) {
+            return prefetch.getInt(markCol(col));
+        }
+        if (confined) {
+            return stmt.pointer.confinedRunInt(
+                    (db, ptr) -> db.column_int_unlocked(ptr, markCol(col)));
+        }
         return stmt.pointer.safeRunInt((db, ptr) -> db.column_int(ptr, markCol(col)));
     }
 
@@ -366,6 +411,63 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
         return getString(findColumn(col));
     }
 
+    /**
+     * Appends the text of a column to a builder, without creating a String. Use {@link #wasNull()}
+     * to tell NULL values from empty text.
+     *
+     * @param col the first column is 1, the second is 2, ...
+     * @param dst the builder to append to
+     * @return the number of characters appended
+     * @throws SQLException
+     * @see #getString(int)
+     */
+    public int getString(int col, StringBuilder dst) throws SQLException {
+        if (prefetch != null) {
+            String text = prefetch.getText(markCol(col));
+            if (text == null) {
+                return 0;
+            }
+            dst.append(text);
+            return text.length();
+        }
+        ColumnTextDecoder decoder = textDecoder();
+        if (!decoder.load(stmt.pointer, markCol(col), confined)) {
+            return 0;
+        }
+        return decoder.appendTo(dst);
+    }
+
+    /**
+     * Writes the text of a column into a buffer, without creating a String. Use {@link #wasNull()}
+     * to tell NULL values from empty text.
+     *
+     * @param col the first column is 1, the second is 2, ...
+     * @param dst the buffer to write to, from its position
+     * @return the number of characters written
+     * @throws SQLException
+     * @throws java.nio.BufferOverflowException if the text does not fit in the buffer, whose
+     *     position is then left unchanged
+     * @see #getString(int)
+     */
+    public int getString(int col, CharBuffer dst) throws SQLException {
+        if (prefetch != null) {
+            String text = prefetch.getText(markCol(col));
+            if (text == null) {
+                return 0;
+            }
+            if (dst.remaining() < text.length()) {
+                throw new BufferOverflowException();
+            }
+            dst.put(text);
+            return text.length();
+        }
+        ColumnTextDecoder decoder = textDecoder();
+        if (!decoder.load(stmt.pointer, markCol(col), confined)) {
+            return 0;
+        }
+        return decoder.decodeTo(dst);
+    }
+
     /** @see java.sql.ResultSet#getTime(int) */
     public Time getTime(int col) throws SQLException {
         switch (safeGetColumnType(markCol(col))) {
@@ -963,18 +1065,45 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
     }
 
     protected int safeGetColumnType(int col) throws SQLException {
+        if (prefetch != null) {
+            return prefetch.type(col);
+        }
+        if (confined) {
+            return stmt.pointer.confinedRunInt((db, ptr) -> db.column_type_unlocked(ptr, col));
+        }
         return stmt.pointer.safeRunInt((db, ptr) -> db.column_type(ptr, col));
     }
 
     private long safeGetLongCol(int col) throws SQLException {
+        if (prefetch != null) {
+            return prefetch.getLong(markCol(col));
+        }
+        if (confined) {
+            return stmt.pointer.confinedRunLong(
+                    (db, ptr) -> db.column_long_unlocked(ptr, markCol(col)));
+        }
         return stmt.pointer.safeRunLong((db, ptr) -> db.column_long(ptr, markCol(col)));
     }
 
     private double safeGetDoubleCol(int col) throws SQLException {
+        if (prefetch != null) {
+            return prefetch.getDouble(markCol(col));
+        }
+        if (confined) {
+            return stmt.pointer.confinedRunDouble(
+                    (db, ptr) -> db.column_double_unlocked(ptr, markCol(col)));
+        }
         return stmt.pointer.safeRunDouble((db, ptr) -> db.column_double(ptr, markCol(col)));
     }
 
     private String safeGetColumnText(int col) throws SQLException {
+        if (prefetch != null) {
+            return prefetch.getText(markCol(col));
+        }
+        if (confined) {
+            return stmt.pointer.confinedRun(
+                    (db, ptr) -> db.column_text_unlocked(ptr, markCol(col)));
+        }
         return stmt.pointer.safeRun((db, ptr) -> db.column_text(ptr, markCol(col)));
     }
 
@@ -23,6 +23,7 @@ public abstract class JDBC3Statement extends CoreStatement {
     private int queryTimeout; // in seconds, as per the JDBC spec
     protected long updateCount;
     protected boolean exhaustedResults = false;
+    private int fetchSize = 0;
 
     // PUBLIC INTERFACE /////////////////////////////////////////////
 
@@ -137,8 +138,12 @@ public abstract class JDBC3Statement extends CoreStatement {
                                 changes = db.total_changes();
                                 // directly invokes the exec API to support multiple SQL statements
                                 int statusCode = db._exec(sql);
-                                if (statusCode != SQLITE_OK)
+                                if (statusCode != SQLITE_OK) {
+                                    if (db.getMetrics() != null) {
+                                        db.getMetrics().onError(statusCode);
+                                    }
                                     throw DB.newSQLException(statusCode, "");
+                                }
                                 updateGeneratedKeys();
                                 changes = db.total_changes() - changes;
                             }
@@ -178,6 +183,9 @@ public abstract class JDBC3Statement extends CoreStatement {
         rs.emptyResultSet = !resultsWaiting;
         rs.open = true;
         resultsWaiting = false;
+        if (fetchSize != 0 && (rs.maxRows == 0 || fetchSize <= rs.maxRows)) {
+            ((ResultSet) rs).setFetchSize(fetchSize);
+        }
 
         return (ResultSet) rs;
     }
@@ -336,12 +344,13 @@ public abstract class JDBC3Statement extends CoreStatement {
 
     /** @see java.sql.Statement#getFetchSize() */
     public int getFetchSize() throws SQLException {
-        return ((ResultSet) rs).getFetchSize();
+        return fetchSize;
     }
 
     /** @see java.sql.Statement#setFetchSize(int) */
     public void setFetchSize(int r) throws SQLException {
         ((ResultSet) rs).setFetchSize(r);
+        fetchSize = r;
     }
 
     /** @see java.sql.Statement#getFetchDirection() */
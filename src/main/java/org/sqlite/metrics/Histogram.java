@@ -0,0 +1,88 @@
+package org.sqlite.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of recorded values in fixed buckets. Every bucket is a {@link LongAdder}, so that
+ * concurrent recording does not contend on a lock or a single counter.
+ *
+ * <p>Bucket <code>i</code> counts the values greater than bound <code>i - 1</code> and lower than
+ * or equal to bound <code>i</code>; a last bucket counts the values above the highest bound.
+ */
+public final class Histogram {
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /** @param bounds The upper bounds of the buckets, in increasing order. */
+    public Histogram(long[] bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param first The upper bound of the first bucket.
+     * @param count The number of bounded buckets, each twice as wide as the previous one.
+     * @return A histogram with exponentially growing buckets.
+     */
+    public static Histogram exponential(long first, int count) {
+        long[] bounds = new long[count];
+        for (int i = 0; i < count; i++) {
+            bounds[i] = first << i;
+        }
+        return new Histogram(bounds);
+    }
+
+    /** @param value The value to record. */
+    public void record(long value) {
+        int i = Arrays.binarySearch(bounds, value);
+        buckets[i >= 0 ? i : -i - 1].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /** @return The number of recorded values. */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** @return The sum of the recorded values. */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /** @return The highest recorded value, or 0 if none was recorded. */
+    public long getMax() {
+        return max.get();
+    }
+
+    /** @return The upper bounds of the buckets. */
+    public long[] getBucketBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * @return The number of values in each bucket, with one more element than {@link
+     *     #getBucketBounds()} for the values above the highest bound.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram[count=" + getCount() + ", sum=" + getSum() + ", max=" + getMax() + "]";
+    }
+}
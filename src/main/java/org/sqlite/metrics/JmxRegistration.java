@@ -0,0 +1,24 @@
+package org.sqlite.metrics;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.sqlite.util.AndroidSignatureIgnore;
+
+/** Registers metrics with the platform MBean server. Kept apart as JMX is missing on Android. */
+@AndroidSignatureIgnore(explanation = "JMX is not available on Android")
+final class JmxRegistration {
+    private JmxRegistration() {}
+
+    static void register(SQLiteMetrics metrics) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name =
+                new ObjectName(
+                        "org.sqlite:type=SQLiteMetrics,name="
+                                + ObjectName.quote(metrics.getName()));
+        if (!server.isRegistered(name)) {
+            server.registerMBean(metrics, name);
+        }
+    }
+}
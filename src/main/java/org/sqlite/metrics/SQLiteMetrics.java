@@ -0,0 +1,313 @@
+package org.sqlite.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.sqlite.util.Logger;
+import org.sqlite.util.LoggerFactory;
+
+/**
+ * Counters and histograms aggregated over all the connections configured with the same metrics
+ * name, see {@link org.sqlite.SQLiteConfig#setMetricsName(String)}. Connections without a metrics
+ * name record nothing.
+ *
+ * <p>Recording only adds to {@link LongAdder}s, so it takes no lock. Each set of metrics is
+ * registered as an MBean, see {@link SQLiteMetricsMXBean}, and passed to every {@link
+ * SQLiteMetricsBinder} service when it is created. Times are in nanoseconds.
+ *
+ * <p>The <code>on*</code> methods are called by the driver.
+ */
+public final class SQLiteMetrics implements SQLiteMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(SQLiteMetrics.class);
+    private static final ConcurrentMap<String, SQLiteMetrics> registry = new ConcurrentHashMap<>();
+
+    private final String name;
+
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder busyErrors = new LongAdder();
+    private final LongAdder busyRetries = new LongAdder();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final LongAdder poolBorrows = new LongAdder();
+
+    // 1 microsecond to about 17 seconds
+    private final Histogram executeTime = Histogram.exponential(1_000, 25);
+    private final Histogram prepareTime = Histogram.exponential(1_000, 25);
+    private final Histogram poolHoldTime = Histogram.exponential(1_000, 25);
+    // 1 to 65536 rows
+    private final Histogram batchRows = Histogram.exponential(1, 17);
+
+    private SQLiteMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the metrics of a name, creating them on first use.
+     *
+     * @param name The metrics name.
+     * @return The metrics shared by all connections configured with the name.
+     */
+    public static SQLiteMetrics get(String name) {
+        SQLiteMetrics metrics = registry.get(name);
+        if (metrics != null) {
+            return metrics;
+        }
+        metrics = new SQLiteMetrics(name);
+        SQLiteMetrics existing = registry.putIfAbsent(name, metrics);
+        if (existing != null) {
+            return existing;
+        }
+        publish(metrics);
+        return metrics;
+    }
+
+    /** @return The metrics created so far. */
+    public static Collection<SQLiteMetrics> getAll() {
+        return Collections.unmodifiableCollection(registry.values());
+    }
+
+    private static void publish(SQLiteMetrics metrics) {
+        try {
+            JmxRegistration.register(metrics);
+        } catch (Exception | LinkageError e) {
+            logger.warn(
+                    () -> "Could not register the metrics '" + metrics.name + "' with JMX: " + e);
+        }
+        try {
+            for (SQLiteMetricsBinder binder :
+                    ServiceLoader.load(
+                            SQLiteMetricsBinder.class, SQLiteMetrics.class.getClassLoader())) {
+                binder.bindTo(metrics);
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.warn(() -> "Could not bind the metrics '" + metrics.name + "': " + e);
+        }
+    }
+
+    public void onConnectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    public void onConnectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    /** @param nanos The time the statement took to execute, up to its first row. */
+    public void onExecute(long nanos) {
+        executeTime.record(nanos);
+    }
+
+    /** @param resultCode The result code of a failed call. */
+    public void onError(int resultCode) {
+        errors.increment();
+        // SQLITE_BUSY, including extended codes
+        if ((resultCode & 0xFF) == 5) {
+            busyErrors.increment();
+        }
+    }
+
+    /** Counts a call to a busy handler, before it retries or gives up. */
+    public void onBusyRetry() {
+        busyRetries.increment();
+    }
+
+    /** @param rows The number of rows read by a result set. */
+    public void onRowsRead(long rows) {
+        rowsRead.add(rows);
+    }
+
+    /**
+     * @param rows The number of rows in the batch.
+     * @param nanos The time the batch took to execute.
+     */
+    public void onBatch(int rows, long nanos) {
+        batchRows.record(rows);
+        executeTime.record(nanos);
+    }
+
+    /** @param nanos The time the statement took to compile. */
+    public void onPrepare(long nanos) {
+        prepareTime.record(nanos);
+    }
+
+    public void onCommit() {
+        commits.increment();
+    }
+
+    public void onRollback() {
+        rollbacks.increment();
+    }
+
+    public void onPoolBorrow() {
+        poolBorrows.increment();
+    }
+
+    /** @param nanos The time the connection was borrowed for. */
+    public void onPoolReturn(long nanos) {
+        poolHoldTime.record(nanos);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public long getConnectionsClosed() {
+        return connectionsClosed.sum();
+    }
+
+    /** @return The number of statement and batch executions. */
+    @Override
+    public long getExecutions() {
+        return executeTime.getCount();
+    }
+
+    @Override
+    public long getExecuteTimeTotal() {
+        return executeTime.getSum();
+    }
+
+    @Override
+    public long getExecuteTimeMax() {
+        return executeTime.getMax();
+    }
+
+    /** @return The distribution of execution times of statements and batches. */
+    public Histogram getExecuteTime() {
+        return executeTime;
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /** @return The number of calls which failed because the database was locked. */
+    @Override
+    public long getBusyErrors() {
+        return busyErrors.sum();
+    }
+
+    /** @return The number of calls to busy handlers set with {@link org.sqlite.BusyHandler}. */
+    @Override
+    public long getBusyRetries() {
+        return busyRetries.sum();
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead.sum();
+    }
+
+    @Override
+    public long getBatches() {
+        return batchRows.getCount();
+    }
+
+    @Override
+    public long getBatchRows() {
+        return batchRows.getSum();
+    }
+
+    @Override
+    public long getBatchRowsMax() {
+        return batchRows.getMax();
+    }
+
+    /** @return The distribution of batch sizes. */
+    public Histogram getBatchSize() {
+        return batchRows;
+    }
+
+    /** @return The number of statements compiled, not counting statement cache hits. */
+    @Override
+    public long getPrepares() {
+        return prepareTime.getCount();
+    }
+
+    @Override
+    public long getPrepareTimeTotal() {
+        return prepareTime.getSum();
+    }
+
+    @Override
+    public long getPrepareTimeMax() {
+        return prepareTime.getMax();
+    }
+
+    /** @return The distribution of statement compilation times. */
+    public Histogram getPrepareTime() {
+        return prepareTime;
+    }
+
+    /** @return The number of transactions committed, including implicit ones. */
+    @Override
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    /** @return The number of transactions rolled back, including implicit ones. */
+    @Override
+    public long getRollbacks() {
+        return rollbacks.sum();
+    }
+
+    @Override
+    public long getPoolBorrows() {
+        return poolBorrows.sum();
+    }
+
+    @Override
+    public long getPoolReturns() {
+        return poolHoldTime.getCount();
+    }
+
+    @Override
+    public long getPoolHoldTimeTotal() {
+        return poolHoldTime.getSum();
+    }
+
+    @Override
+    public long getPoolHoldTimeMax() {
+        return poolHoldTime.getMax();
+    }
+
+    /** @return The distribution of the times pooled connections were borrowed for. */
+    public Histogram getPoolHoldTime() {
+        return poolHoldTime;
+    }
+
+    @Override
+    public String toString() {
+        return "SQLiteMetrics[name="
+                + name
+                + ", executions="
+                + getExecutions()
+                + ", rowsRead="
+                + getRowsRead()
+                + ", batches="
+                + getBatches()
+                + ", prepares="
+                + getPrepares()
+                + ", commits="
+                + getCommits()
+                + ", rollbacks="
+                + getRollbacks()
+                + ", errors="
+                + getErrors()
+                + "]";
+    }
+}
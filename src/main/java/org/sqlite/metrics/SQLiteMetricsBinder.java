@@ -0,0 +1,18 @@
+package org.sqlite.metrics;
+
+/**
+ * Service provider interface to publish {@link SQLiteMetrics} to a monitoring system, such as a
+ * Micrometer <code>MeterRegistry</code>. Implementations are found with {@link
+ * java.util.ServiceLoader}, by listing them in <code>
+ * META-INF/services/org.sqlite.metrics.SQLiteMetricsBinder</code>, and are called once for each
+ * named set of metrics when it is created.
+ *
+ * <p>Binders should register function counters and gauges reading the getters of {@link
+ * SQLiteMetrics} and its histograms, rather than copying values, so that recording stays free of
+ * any work done by the monitoring system.
+ */
+public interface SQLiteMetricsBinder {
+
+    /** @param metrics A newly created set of metrics. */
+    void bindTo(SQLiteMetrics metrics);
+}
@@ -0,0 +1,51 @@
+package org.sqlite.metrics;
+
+/**
+ * The management interface of {@link SQLiteMetrics}, registered with the platform MBean server as
+ * <code>org.sqlite:type=SQLiteMetrics,name=&lt;name&gt;</code>. Times are in nanoseconds.
+ */
+public interface SQLiteMetricsMXBean {
+    String getName();
+
+    long getConnectionsOpened();
+
+    long getConnectionsClosed();
+
+    long getExecutions();
+
+    long getExecuteTimeTotal();
+
+    long getExecuteTimeMax();
+
+    long getErrors();
+
+    long getBusyErrors();
+
+    long getBusyRetries();
+
+    long getRowsRead();
+
+    long getBatches();
+
+    long getBatchRows();
+
+    long getBatchRowsMax();
+
+    long getPrepares();
+
+    long getPrepareTimeTotal();
+
+    long getPrepareTimeMax();
+
+    long getCommits();
+
+    long getRollbacks();
+
+    long getPoolBorrows();
+
+    long getPoolReturns();
+
+    long getPoolHoldTimeTotal();
+
+    long getPoolHoldTimeMax();
+}
@@ -4,6 +4,7 @@ module io.github.willena.sqlitejdbc {
     requires transitive java.sql;
     requires transitive java.sql.rowset;
     requires static org.graalvm.nativeimage;
+    requires static java.management;
 
     exports org.sqlite;
     exports org.sqlite.core;
@@ -13,6 +14,9 @@ module io.github.willena.sqlitejdbc {
     exports org.sqlite.jdbc4;
     exports org.sqlite.util;
     exports org.sqlite.mc;
+    exports org.sqlite.metrics;
+
+    uses org.sqlite.metrics.SQLiteMetricsBinder;
 
     provides java.sql.Driver with org.sqlite.JDBC;
 
@@ -19,6 +19,7 @@ import org.sqlite.util.ProcessRunner;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.nio.file.Files;
@@ -84,15 +85,57 @@ public class SqliteJdbcFeature implements Feature {
                         "busyHandler",
                         "commitListener",
                         "updateListener",
-                        "progressHandler"));
+                        "progressHandler",
+                        "traceListener",
+                        "walListener",
+                        "preUpdateListener"));
         RuntimeJNIAccess.register(
                 method(DB.class, "onUpdate", int.class, String.class, String.class, long.class));
+        RuntimeJNIAccess.register(
+                method(
+                        DB.class,
+                        "onUpdateBatch",
+                        int.class,
+                        String[].class,
+                        byte[].class,
+                        int[].class,
+                        long[].class,
+                        int.class));
         RuntimeJNIAccess.register(method(DB.class, "onCommit", boolean.class));
+        RuntimeJNIAccess.register(method(DB.class, "onTrace", byte[].class, int.class));
+        RuntimeJNIAccess.register(method(DB.class, "onWal", String.class, int.class));
+        RuntimeJNIAccess.register(
+                method(
+                        DB.class,
+                        "onPreUpdate",
+                        int.class,
+                        String.class,
+                        String.class,
+                        long.class,
+                        long.class,
+                        int.class,
+                        int.class));
+        RuntimeJNIAccess.register(method(DB.class, "onChangesetFilter", String.class));
+        RuntimeJNIAccess.register(
+                method(
+                        DB.class,
+                        "onChangesetConflict",
+                        int.class,
+                        long.class,
+                        String.class,
+                        int.class,
+                        int.class,
+                        boolean.class));
         RuntimeJNIAccess.register(method(NativeDB.class, "stringToUtf8ByteArray", String.class));
         RuntimeJNIAccess.register(method(DB.class, "throwex"));
         RuntimeJNIAccess.register(method(DB.class, "throwex", int.class));
         RuntimeJNIAccess.register(method(NativeDB.class, "throwex", String.class));
 
+        // OutputStream JNI calls, for streamed changesets
+        RuntimeJNIAccess.register(OutputStream.class);
+        RuntimeJNIAccess.register(
+                method(OutputStream.class, "write", byte[].class, int.class, int.class));
+
         // Function JNI calls
         RuntimeJNIAccess.register(Function.class);
         RuntimeJNIAccess.register(fields(Function.class, "context", "value", "args"));
@@ -11,12 +11,14 @@ package org.sqlite;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.io.File;
 import java.io.IOException;
 import java.sql.*;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.sqlite.core.DB;
@@ -131,4 +133,214 @@ public class BackupTest {
             assertThat(pageCountStore.get()).isGreaterThan(0);
         }
     }
+
+    private static void fill(Statement stmt, int rows) throws SQLException {
+        stmt.executeUpdate("create table big(id integer primary key, data blob)");
+        stmt.executeUpdate(
+                "with recursive n(i) as (select 1 union all select i + 1 from n where i < "
+                        + rows
+                        + ") insert into big select i, randomblob(1000) from n");
+    }
+
+    private static int count(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("select count(*) from " + table)) {
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void steppedBackupAndRestore() throws Exception {
+        File tmpFile = File.createTempFile("backup-test", ".sqlite", tempDir);
+
+        try (SQLiteConnection conn = JDBC.createConnection("jdbc:sqlite:", new Properties())) {
+            try (Statement stmt = conn.createStatement()) {
+                fill(stmt, 500);
+            }
+
+            try (SQLiteBackup backup = conn.createBackup("main", tmpFile.getAbsolutePath())) {
+                assertThat(backup.remaining()).isEqualTo(0);
+                assertThat(backup.step(10)).isFalse();
+                int pageCount = backup.pageCount();
+                assertThat(pageCount).isGreaterThan(100);
+                assertThat(backup.remaining()).isEqualTo(pageCount - 10);
+
+                int steps = 0;
+                boolean done = false;
+                while (!done) {
+                    done = backup.step();
+                    steps++;
+                }
+                assertThat(steps).isEqualTo((pageCount - 10 + 99) / 100);
+                assertThat(backup.remaining()).isEqualTo(0);
+                assertThat(backup.isDone()).isTrue();
+            }
+        }
+
+        try (SQLiteConnection conn = JDBC.createConnection("jdbc:sqlite:", new Properties())) {
+            try (SQLiteBackup restore = conn.createRestore("main", tmpFile.getAbsolutePath())) {
+                restore.setPagesPerStep(50);
+                restore.setPause(SQLiteBackup.YIELD);
+                restore.run();
+                assertThat(restore.isDone()).isTrue();
+            }
+            assertThat(count(conn, "big")).isEqualTo(500);
+        }
+    }
+
+    @Test
+    public void rateLimitedBackup() throws Exception {
+        File tmpFile = File.createTempFile("backup-test", ".sqlite", tempDir);
+
+        try (SQLiteConnection conn = JDBC.createConnection("jdbc:sqlite:", new Properties())) {
+            try (Statement stmt = conn.createStatement()) {
+                fill(stmt, 1000);
+            }
+            try (SQLiteBackup backup = conn.createBackup("main", tmpFile.getAbsolutePath())) {
+                backup.setPagesPerStep(25);
+                // about 1 MB to copy at 4 MB/s
+                backup.setRateLimit(4);
+                long start = System.nanoTime();
+                backup.run();
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                assertThat(millis).isGreaterThanOrEqualTo(150);
+            }
+        }
+
+        try (Connection conn =
+                DriverManager.getConnection("jdbc:sqlite:" + tmpFile.getAbsolutePath())) {
+            assertThat(count(conn, "big")).isEqualTo(1000);
+        }
+    }
+
+    @Test
+    public void backupWritesBetweenSteps() throws Exception {
+        File source = File.createTempFile("backup-source", ".sqlite", tempDir);
+        File dest = File.createTempFile("backup-dest", ".sqlite", tempDir);
+
+        try (SQLiteConnection conn =
+                        JDBC.createConnection(
+                                "jdbc:sqlite:" + source.getAbsolutePath(), new Properties());
+                Connection writer =
+                        DriverManager.getConnection("jdbc:sqlite:" + source.getAbsolutePath())) {
+            try (Statement stmt = conn.createStatement()) {
+                fill(stmt, 200);
+            }
+            try (SQLiteBackup backup = conn.createBackup("main", dest.getAbsolutePath())) {
+                assertThat(backup.step(5)).isFalse();
+                // the source is not locked between steps
+                try (Statement stmt = writer.createStatement()) {
+                    stmt.executeUpdate("insert into big values (1000, x'00')");
+                }
+                backup.run();
+            }
+        }
+
+        try (Connection conn =
+                DriverManager.getConnection("jdbc:sqlite:" + dest.getAbsolutePath())) {
+            assertThat(count(conn, "big")).isEqualTo(201);
+        }
+    }
+
+    @Test
+    public void backupErrorsAndClose() throws Exception {
+        SQLiteConnection conn = JDBC.createConnection("jdbc:sqlite:", new Properties());
+        try {
+            assertThatThrownBy(
+                            () ->
+                                    conn.createRestore(
+                                            "main",
+                                            new File(tempDir, "doesnotexist.sqlite")
+                                                    .getAbsolutePath()))
+                    .isInstanceOf(SQLException.class);
+            assertThatThrownBy(
+                            () ->
+                                    conn.createBackup(
+                                            "unknown",
+                                            File.createTempFile("backup-test", ".sqlite", tempDir)
+                                                    .getAbsolutePath()))
+                    .isInstanceOf(SQLException.class);
+
+            SQLiteBackup backup =
+                    conn.createBackup(
+                            "main",
+                            File.createTempFile("backup-test", ".sqlite", tempDir)
+                                    .getAbsolutePath());
+            assertThatThrownBy(() -> backup.setPagesPerStep(0)).isInstanceOf(SQLException.class);
+            assertThatThrownBy(() -> backup.setRateLimit(-1)).isInstanceOf(SQLException.class);
+            conn.close();
+            assertThatThrownBy(backup::step)
+                    .isInstanceOf(SQLException.class)
+                    .hasMessage("backup is finished");
+            backup.finish();
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void finishWhileStepping() throws Exception {
+        try (SQLiteConnection conn = JDBC.createConnection("jdbc:sqlite:", new Properties())) {
+            try (Statement stmt = conn.createStatement()) {
+                fill(stmt, 500);
+            }
+            for (int i = 0; i < 20; i++) {
+                SQLiteBackup backup =
+                        conn.createBackup(
+                                "main",
+                                File.createTempFile("backup-test", ".sqlite", tempDir)
+                                        .getAbsolutePath());
+                backup.setPagesPerStep(1);
+                AtomicReference<SQLException> failure = new AtomicReference<>();
+                Thread stepper =
+                        new Thread(
+                                () -> {
+                                    try {
+                                        backup.run();
+                                    } catch (SQLException e) {
+                                        failure.set(e);
+                                    }
+                                });
+                stepper.start();
+                Thread.sleep(1);
+                // the handle is never freed in the middle of a step
+                backup.finish();
+                stepper.join();
+                if (failure.get() != null) {
+                    assertThat(failure.get().getMessage()).isEqualTo("backup is finished");
+                } else {
+                    assertThat(backup.isDone()).isTrue();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void finishedBackupStaysFinished() throws Exception {
+        try (SQLiteConnection conn = JDBC.createConnection("jdbc:sqlite:", new Properties())) {
+            try (Statement stmt = conn.createStatement()) {
+                fill(stmt, 10);
+            }
+            for (int i = 0; i < 20; i++) {
+                SQLiteBackup finished =
+                        conn.createBackup(
+                                "main",
+                                File.createTempFile("backup-test", ".sqlite", tempDir)
+                                        .getAbsolutePath());
+                finished.finish();
+                // the new backup may get the address of the finished one
+                try (SQLiteBackup backup =
+                        conn.createBackup(
+                                "main",
+                                File.createTempFile("backup-test", ".sqlite", tempDir)
+                                        .getAbsolutePath())) {
+                    assertThatThrownBy(() -> finished.step(1))
+                            .isInstanceOf(SQLException.class)
+                            .hasMessage("backup is finished");
+                    finished.finish();
+                    assertThat(backup.step(-1)).isTrue();
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,217 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.jdbc3.JDBC3PreparedStatement;
+
+public class BlobIOTest {
+
+    private Connection conn;
+    private SQLiteConnection sqlite;
+    private Statement stat;
+
+    @BeforeEach
+    public void connect() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite:");
+        sqlite = conn.unwrap(SQLiteConnection.class);
+        stat = conn.createStatement();
+        stat.executeUpdate("create table t (id integer primary key, data blob)");
+    }
+
+    @AfterEach
+    public void close() throws SQLException {
+        stat.close();
+        conn.close();
+    }
+
+    private static byte[] pattern(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void fillZeroBlobWithStreams() throws Exception {
+        int length = 300_000;
+        try (JDBC3PreparedStatement prep =
+                conn.prepareStatement("insert into t values (?, ?)")
+                        .unwrap(JDBC3PreparedStatement.class)) {
+            prep.setInt(1, 1);
+            prep.setZeroBlob(2, length);
+            prep.executeUpdate();
+        }
+
+        byte[] expected = pattern(length);
+        try (SQLiteBlob blob = sqlite.openBlob("t", "data", 1, true);
+                OutputStream out = blob.getOutputStream()) {
+            assertThat(blob.size()).isEqualTo(length);
+            for (int off = 0; off < length; off += 7000) {
+                out.write(expected, off, Math.min(7000, length - off));
+            }
+        }
+
+        byte[] actual = new byte[length];
+        try (SQLiteBlob blob = sqlite.openBlob("main", "t", "data", 1, false);
+                InputStream in = blob.getInputStream()) {
+            int off = 0;
+            int n;
+            while ((n = in.read(actual, off, Math.min(5000, length - off))) > 0) {
+                off += n;
+            }
+            assertThat(off).isEqualTo(length);
+            assertThat(in.read()).isEqualTo(-1);
+        }
+        assertThat(actual).isEqualTo(expected);
+
+        try (ResultSet rs = stat.executeQuery("select data from t where id = 1")) {
+            assertThat(rs.getBytes(1)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void transfersLargerThanAChunk() throws Exception {
+        int length = 200_000;
+        stat.executeUpdate("insert into t values (1, zeroblob(" + length + "))");
+        byte[] expected = pattern(length);
+        try (SQLiteBlob blob = sqlite.openBlob("t", "data", 1, true)) {
+            // one heap buffer spanning several native chunks, from an unaligned position
+            blob.position(3);
+            ByteBuffer src = ByteBuffer.wrap(expected, 5, length - 8);
+            assertThat(blob.write(src)).isEqualTo(length - 8);
+
+            blob.position(3);
+            ByteBuffer dst = ByteBuffer.allocate(length);
+            dst.position(5);
+            assertThat(blob.read(dst)).isEqualTo(length - 5);
+            assertThat(Arrays.copyOfRange(dst.array(), 5, length - 3))
+                    .isEqualTo(Arrays.copyOfRange(expected, 5, length - 3));
+        }
+    }
+
+    @Test
+    public void seekableChannel() throws Exception {
+        stat.executeUpdate("insert into t values (1, x'00010203040506070809')");
+        try (SQLiteBlob blob = sqlite.openBlob("t", "data", 1, true)) {
+            blob.position(4);
+            assertThat(blob.write(ByteBuffer.wrap(new byte[] {40, 50}))).isEqualTo(2);
+            assertThat(blob.position()).isEqualTo(6);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(3);
+            blob.position(3);
+            assertThat(blob.read(direct)).isEqualTo(3);
+            direct.flip();
+            assertThat(direct.get()).isEqualTo((byte) 3);
+            assertThat(direct.get()).isEqualTo((byte) 40);
+            assertThat(direct.get()).isEqualTo((byte) 50);
+
+            ByteBuffer heap = ByteBuffer.allocate(20);
+            blob.position(8);
+            assertThat(blob.read(heap)).isEqualTo(2);
+            assertThat(blob.read(heap)).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void sizeIsFixed() throws Exception {
+        stat.executeUpdate("insert into t values (1, zeroblob(4))");
+        try (SQLiteBlob blob = sqlite.openBlob("t", "data", 1, true)) {
+            blob.position(2);
+            assertThatThrownBy(() -> blob.write(ByteBuffer.wrap(new byte[3])))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("past the end");
+            assertThatThrownBy(() -> blob.truncate(2)).isInstanceOf(IOException.class);
+            assertThat(blob.size()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void readOnly() throws Exception {
+        stat.executeUpdate("insert into t values (1, zeroblob(4))");
+        try (SQLiteBlob blob = sqlite.openBlob("t", "data", 1, false)) {
+            assertThat(blob.isWritable()).isFalse();
+            assertThatThrownBy(() -> blob.write(ByteBuffer.wrap(new byte[1])))
+                    .isInstanceOf(NonWritableChannelException.class);
+        }
+    }
+
+    @Test
+    public void reopenOtherRow() throws Exception {
+        stat.executeUpdate("insert into t values (1, x'01'), (2, x'0202')");
+        try (SQLiteBlob blob = sqlite.openBlob("t", "data", 1, false)) {
+            assertThat(blob.size()).isEqualTo(1);
+            blob.reopen(2);
+            assertThat(blob.size()).isEqualTo(2);
+            assertThat(blob.position()).isEqualTo(0);
+            assertThat(blob.getInputStream().read()).isEqualTo(2);
+            assertThatThrownBy(() -> blob.reopen(3)).isInstanceOf(SQLException.class);
+        }
+    }
+
+    @Test
+    public void expiresWhenRowChanges() throws Exception {
+        stat.executeUpdate("insert into t values (1, x'0102')");
+        try (SQLiteBlob blob = sqlite.openBlob("t", "data", 1, false)) {
+            stat.executeUpdate("update t set data = x'0304' where id = 1");
+            assertThatThrownBy(() -> blob.getInputStream().read()).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    public void missingRow() {
+        assertThatThrownBy(() -> sqlite.openBlob("t", "data", 42, false))
+                .isInstanceOf(SQLException.class);
+    }
+
+    @Test
+    public void closedWithConnection() throws Exception {
+        Connection other = DriverManager.getConnection("jdbc:sqlite:");
+        try (Statement s = other.createStatement()) {
+            s.executeUpdate("create table b (data blob)");
+            s.executeUpdate("insert into b values (x'01')");
+        }
+        SQLiteBlob blob = other.unwrap(SQLiteConnection.class).openBlob("b", "data", 1, false);
+        other.close();
+        assertThat(blob.isOpen()).isFalse();
+        assertThatThrownBy(() -> blob.read(ByteBuffer.allocate(1)))
+                .isInstanceOf(ClosedChannelException.class);
+        blob.close();
+    }
+
+    @Test
+    public void zeroBlobInBatch() throws Exception {
+        try (JDBC3PreparedStatement prep =
+                conn.prepareStatement("insert into t values (?, ?)")
+                        .unwrap(JDBC3PreparedStatement.class)) {
+            for (int i = 1; i <= 3; i++) {
+                prep.setInt(1, i);
+                prep.setZeroBlob(2, i * 10);
+                prep.addBatch();
+            }
+            prep.executeBatch();
+        }
+        try (ResultSet rs = stat.executeQuery("select length(data) from t order by id")) {
+            for (int i = 1; i <= 3; i++) {
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getInt(1)).isEqualTo(i * 10);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.core.NativeDBHelper;
+
+public class CheckpointTest {
+
+    @TempDir File tempDir;
+
+    private SQLiteConnection openWal() throws Exception {
+        File file = File.createTempFile("checkpoint-test", ".db", tempDir);
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        return (SQLiteConnection) config.createConnection("jdbc:sqlite:" + file.getAbsolutePath());
+    }
+
+    private static void insertRows(Connection conn, int commits) throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            for (int i = 0; i < commits; i++) {
+                stat.executeUpdate("insert into t values (randomblob(2000))");
+            }
+        }
+    }
+
+    @Test
+    public void walListenerReplacesAutoCheckpoint() throws Exception {
+        try (SQLiteConnection conn = openWal();
+                Statement stat = conn.createStatement()) {
+            stat.executeUpdate("create table t (data blob)");
+            stat.execute("pragma wal_autocheckpoint = 2");
+
+            List<Integer> frames = new ArrayList<>();
+            SQLiteWalListener listener =
+                    (database, n) -> {
+                        assertThat(database).isEqualTo("main");
+                        frames.add(n);
+                    };
+            conn.addWalListener(listener);
+            assertThat(NativeDBHelper.getWalListener(conn.getDatabase())).isNotEqualTo(0);
+
+            insertRows(conn, 5);
+            assertThat(frames).hasSize(5).isSorted();
+            int logged = frames.get(4);
+            assertThat(logged).isGreaterThan(2);
+
+            SQLiteCheckpointResult result = conn.checkpoint("main", SQLiteCheckpointMode.TRUNCATE);
+            assertThat(result.isBusy()).isFalse();
+            assertThat(result.getLogFrames()).isEqualTo(0);
+            assertThat(result.getCheckpointedFrames()).isEqualTo(0);
+
+            insertRows(conn, 1);
+            assertThat(frames.get(5)).isLessThan(logged);
+
+            conn.removeWalListener(listener);
+            assertThat(NativeDBHelper.getWalListener(conn.getDatabase())).isEqualTo(0);
+            // the configured auto-checkpoint is back
+            assertThat(walAutocheckpoint(stat)).isEqualTo(2);
+
+            stat.execute("pragma wal_autocheckpoint = 0");
+            conn.addWalListener(listener);
+            conn.removeWalListener(listener);
+            assertThat(walAutocheckpoint(stat)).isEqualTo(0);
+        }
+    }
+
+    private static int walAutocheckpoint(Statement stat) throws SQLException {
+        try (ResultSet rs = stat.executeQuery("pragma wal_autocheckpoint")) {
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void passiveCheckpoint() throws Exception {
+        try (SQLiteConnection conn = openWal();
+                Statement stat = conn.createStatement()) {
+            stat.executeUpdate("create table t (data blob)");
+            conn.addWalListener((database, frames) -> {});
+            insertRows(conn, 3);
+
+            SQLiteCheckpointResult result = conn.checkpoint(null, SQLiteCheckpointMode.PASSIVE);
+            assertThat(result.isBusy()).isFalse();
+            assertThat(result.getLogFrames()).isPositive();
+            assertThat(result.getCheckpointedFrames()).isEqualTo(result.getLogFrames());
+        }
+    }
+
+    @Test
+    public void notInWalMode() throws Exception {
+        try (SQLiteConnection conn =
+                (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:")) {
+            SQLiteCheckpointResult result = conn.checkpoint("main", SQLiteCheckpointMode.FULL);
+            assertThat(result.isBusy()).isFalse();
+            assertThat(result.getLogFrames()).isEqualTo(-1);
+            assertThat(result.getCheckpointedFrames()).isEqualTo(-1);
+
+            assertThatThrownBy(() -> conn.checkpoint("unknown", SQLiteCheckpointMode.PASSIVE))
+                    .isInstanceOf(SQLException.class);
+        }
+    }
+
+    @Test
+    public void listenerClearedOnClose() throws Exception {
+        SQLiteConnection conn = openWal();
+        conn.addWalListener((database, frames) -> {});
+        conn.close();
+        assertThat(NativeDBHelper.getWalListener(conn.getDatabase())).isEqualTo(0);
+    }
+
+    @Test
+    public void checkpointModes() {
+        SQLiteCheckpointer checkpointer = new SQLiteCheckpointer(() -> null, 10, 100, 1000);
+        try {
+            assertThat(checkpointer.modeFor(10)).isEqualTo(SQLiteCheckpointMode.PASSIVE);
+            assertThat(checkpointer.modeFor(100)).isEqualTo(SQLiteCheckpointMode.RESTART);
+            assertThat(checkpointer.modeFor(5000)).isEqualTo(SQLiteCheckpointMode.TRUNCATE);
+        } finally {
+            checkpointer.close();
+        }
+
+        checkpointer = new SQLiteCheckpointer(() -> null, 10, 0, 0);
+        try {
+            assertThat(checkpointer.modeFor(5000)).isEqualTo(SQLiteCheckpointMode.PASSIVE);
+        } finally {
+            checkpointer.close();
+        }
+
+        assertThatThrownBy(() -> new SQLiteCheckpointer(() -> null, 0, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void backgroundCheckpoint() throws Exception {
+        File file = File.createTempFile("checkpoint-test", ".db", tempDir);
+        SQLiteDataSource ds = new SQLiteDataSource();
+        ds.setUrl("jdbc:sqlite:" + file.getAbsolutePath());
+        ds.setJournalMode("WAL");
+        ds.setBackgroundCheckpoint(4, 0, 8);
+        SQLiteCheckpointer checkpointer = ds.getBackgroundCheckpointer();
+        assertThat(checkpointer.getPassiveFrames()).isEqualTo(4);
+
+        try (SQLiteConnection conn = ds.getConnection(null, null);
+                Statement stat = conn.createStatement()) {
+            stat.executeUpdate("create table t (data blob)");
+            assertThat(NativeDBHelper.getWalListener(conn.getDatabase())).isNotEqualTo(0);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (checkpointer.getCheckpointCount() == 0
+                    && System.currentTimeMillis() < deadline) {
+                insertRows(conn, 5);
+                Thread.sleep(10);
+            }
+            assertThat(checkpointer.getCheckpointCount()).isPositive();
+
+            // once the checkpointer is closed, the connection checkpoints inline
+            ds.setBackgroundCheckpoint(false);
+            assertThat(ds.getBackgroundCheckpointer()).isNull();
+            long checkpoints = checkpointer.getCheckpointCount();
+            insertRows(conn, 20);
+            assertThat(checkpointer.getCheckpointCount()).isEqualTo(checkpoints);
+            SQLiteCheckpointResult result = conn.checkpoint("main", SQLiteCheckpointMode.PASSIVE);
+            assertThat(result.getLogFrames()).isLessThan(20);
+        }
+    }
+}
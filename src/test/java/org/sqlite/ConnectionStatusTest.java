@@ -0,0 +1,100 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionStatusTest {
+
+    private Connection conn;
+    private SQLiteConnection sqlite;
+
+    @BeforeEach
+    public void connect() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite:");
+        sqlite = conn.unwrap(SQLiteConnection.class);
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate("create table t (id integer primary key, v text)");
+            stat.executeUpdate(
+                    "with recursive n(x) as (select 1 union all select x + 1 from n where x < 1000)"
+                            + " insert into t select x, hex(randomblob(32)) from n");
+        }
+    }
+
+    @AfterEach
+    public void close() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void cacheCounters() throws SQLException {
+        sqlite.getStatus(true);
+        try (Statement stat = conn.createStatement();
+                ResultSet rs = stat.executeQuery("select count(v) from t")) {
+            assertThat(rs.getInt(1)).isEqualTo(1000);
+        }
+        SQLiteStatusSnapshot<SQLiteDbStatus> status = sqlite.getStatus(true);
+        assertThat(status.getCurrent(SQLiteDbStatus.SQLITE_DBSTATUS_CACHE_HIT)).isGreaterThan(0);
+        assertThat(status.getCurrent(SQLiteDbStatus.SQLITE_DBSTATUS_CACHE_USED)).isGreaterThan(0);
+        assertThat(status.getCurrent(SQLiteDbStatus.SQLITE_DBSTATUS_SCHEMA_USED)).isGreaterThan(0);
+
+        assertThat(sqlite.getStatus().getCurrent(SQLiteDbStatus.SQLITE_DBSTATUS_CACHE_HIT))
+                .isEqualTo(0);
+        assertThat(status.toString()).contains("SQLITE_DBSTATUS_CACHE_HIT=");
+    }
+
+    @Test
+    public void statementMemory() throws SQLException {
+        long before = sqlite.getStatus().getCurrent(SQLiteDbStatus.SQLITE_DBSTATUS_STMT_USED);
+        try (PreparedStatement prep =
+                conn.prepareStatement("select v from t where id in (?, ?, ?) order by v")) {
+            assertThat(sqlite.getStatus().getCurrent(SQLiteDbStatus.SQLITE_DBSTATUS_STMT_USED))
+                    .isGreaterThan(before);
+        }
+    }
+
+    @Test
+    public void deferredForeignKeys() throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            stat.execute("pragma foreign_keys = on");
+            stat.executeUpdate(
+                    "create table child (parent integer references t (id)"
+                            + " deferrable initially deferred)");
+            conn.setAutoCommit(false);
+            stat.executeUpdate("insert into child values (5000)");
+            assertThat(sqlite.getStatus().getCurrent(SQLiteDbStatus.SQLITE_DBSTATUS_DEFERRED_FKS))
+                    .isEqualTo(1);
+            conn.rollback();
+        }
+        assertThat(sqlite.getStatus().getCurrent(SQLiteDbStatus.SQLITE_DBSTATUS_DEFERRED_FKS))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void globalStatus() throws SQLException {
+        SQLiteStatusSnapshot<SQLiteGlobalStatus> status = sqlite.getGlobalStatus();
+        assertThat(status.getCurrent(SQLiteGlobalStatus.SQLITE_STATUS_MEMORY_USED))
+                .isGreaterThan(0);
+        assertThat(status.getHighwater(SQLiteGlobalStatus.SQLITE_STATUS_MEMORY_USED))
+                .isGreaterThanOrEqualTo(
+                        status.getCurrent(SQLiteGlobalStatus.SQLITE_STATUS_MEMORY_USED));
+        assertThat(status.getCurrent(SQLiteGlobalStatus.SQLITE_STATUS_MALLOC_COUNT))
+                .isGreaterThan(0);
+    }
+
+    @Test
+    public void closedConnection() throws SQLException {
+        conn.close();
+        assertThatThrownBy(() -> sqlite.getStatus()).isInstanceOf(SQLException.class);
+        assertThatThrownBy(() -> sqlite.getGlobalStatus()).isInstanceOf(SQLException.class);
+    }
+}
@@ -3,6 +3,7 @@ package org.sqlite;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assumptions.assumeThat;
 
+import java.io.File;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -22,6 +23,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
@@ -1758,6 +1760,136 @@ public class DBMetaDataTest {
         assertThat(meta.getUserName()).as("user name").isNull();
     }
 
+    @Test
+    public void schemaChangesInvalidateCachedMetadata() throws SQLException {
+        stat.executeUpdate("create table parent (id integer primary key, name text)");
+        stat.executeUpdate("create table child (id integer, parent_id integer)");
+        assertThat(countRows(meta.getColumns(null, null, "child", null))).isEqualTo(2);
+        assertThat(countRows(meta.getImportedKeys(null, null, "child"))).isEqualTo(0);
+        assertThat(countRows(meta.getExportedKeys(null, null, "parent"))).isEqualTo(0);
+        assertThat(countRows(meta.getIndexInfo(null, null, "child", false, false))).isEqualTo(0);
+        // served again from the cache
+        assertThat(countRows(meta.getColumns(null, null, "child", null))).isEqualTo(2);
+
+        stat.executeUpdate("drop table child");
+        stat.executeUpdate(
+                "create table child (id integer primary key, parent_id integer references parent(id), note text)");
+        stat.executeUpdate("create index child_parent on child (parent_id)");
+        assertThat(countRows(meta.getColumns(null, null, "child", null))).isEqualTo(3);
+        assertThat(countRows(meta.getImportedKeys(null, null, "child"))).isEqualTo(1);
+        assertThat(countRows(meta.getExportedKeys(null, null, "parent"))).isEqualTo(1);
+        assertThat(countRows(meta.getIndexInfo(null, null, "child", false, false))).isEqualTo(1);
+        assertThat(countRows(meta.getPrimaryKeys(null, null, "child"))).isEqualTo(1);
+    }
+
+    @Test
+    public void schemaChangesOfOtherConnectionsInvalidateCachedMetadata(@TempDir File dir)
+            throws SQLException {
+        String url = "jdbc:sqlite:" + new File(dir, "meta.db").getAbsolutePath();
+        try (Connection conn1 = DriverManager.getConnection(url);
+                Connection conn2 = DriverManager.getConnection(url);
+                Statement stat1 = conn1.createStatement();
+                Statement stat2 = conn2.createStatement()) {
+            stat1.executeUpdate("create table t (a, b)");
+            DatabaseMetaData meta1 = conn1.getMetaData();
+            assertThat(countRows(meta1.getColumns(null, null, "t", null))).isEqualTo(2);
+
+            stat2.executeUpdate("alter table t add column c");
+            assertThat(countRows(meta1.getColumns(null, null, "t", null))).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void bulkIntrospectionOfSeveralTables() throws SQLException {
+        stat.executeUpdate("create table p (a integer, b integer, primary key (a, b))");
+        stat.executeUpdate(
+                "create table c1 (x, y, z, constraint fk1 foreign key (x, y) references p (a, b))");
+        stat.executeUpdate("create table c2 (u references p (a), v)");
+        stat.executeUpdate("create unique index c1_zx on c1 (z desc, x)");
+
+        try (ResultSet rs = meta.getColumns(null, null, "c%", null)) {
+            String[] expected = {"c1.x.1", "c1.y.2", "c1.z.3", "c2.u.1", "c2.v.2"};
+            for (String column : expected) {
+                assertThat(rs.next()).isTrue();
+                assertThat(
+                                rs.getString("TABLE_NAME")
+                                        + "."
+                                        + rs.getString("COLUMN_NAME")
+                                        + "."
+                                        + rs.getInt("ORDINAL_POSITION"))
+                        .isEqualTo(column);
+            }
+            assertThat(rs.next()).isFalse();
+        }
+
+        try (ResultSet rs = meta.getExportedKeys(null, null, "p")) {
+            String[] expected = {"c1.x.a.1.fk1", "c1.y.b.2.fk1", "c2.u.a.1."};
+            for (String key : expected) {
+                assertThat(rs.next()).isTrue();
+                assertThat(
+                                rs.getString("FKTABLE_NAME")
+                                        + "."
+                                        + rs.getString("FKCOLUMN_NAME")
+                                        + "."
+                                        + rs.getString("PKCOLUMN_NAME")
+                                        + "."
+                                        + rs.getInt("KEY_SEQ")
+                                        + "."
+                                        + rs.getString("FK_NAME"))
+                        .isEqualTo(key);
+            }
+            assertThat(rs.next()).isFalse();
+        }
+
+        try (ResultSet rs = meta.getIndexInfo(null, null, "c1", false, false)) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString("INDEX_NAME")).isEqualTo("c1_zx");
+            assertThat(rs.getBoolean("NON_UNIQUE")).isFalse();
+            assertThat(rs.getString("COLUMN_NAME")).isEqualTo("z");
+            assertThat(rs.getInt("ORDINAL_POSITION")).isEqualTo(1);
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString("COLUMN_NAME")).isEqualTo("x");
+            assertThat(rs.getInt("ORDINAL_POSITION")).isEqualTo(2);
+            assertThat(rs.next()).isFalse();
+        }
+    }
+
+    @Test
+    public void schemaChangesInvalidateCachedMetadataWithAttachedDatabases(@TempDir File dir)
+            throws SQLException {
+        String other = new File(dir, "other.db").getAbsolutePath();
+        stat.executeUpdate("attach database '" + other + "' as \"o\"\"ther\"");
+        stat.executeUpdate("create table t (a, b)");
+        assertThat(countRows(meta.getColumns(null, null, "t", null))).isEqualTo(2);
+
+        stat.executeUpdate("create table \"o\"\"ther\".u (a)");
+        stat.executeUpdate("alter table t add column c");
+        assertThat(countRows(meta.getColumns(null, null, "t", null))).isEqualTo(3);
+        stat.executeUpdate("detach database \"o\"\"ther\"");
+        assertThat(countRows(meta.getColumns(null, null, "t", null))).isEqualTo(3);
+    }
+
+    @Test
+    public void manyPatternsDoNotBreakCachedMetadata() throws SQLException {
+        stat.executeUpdate("create table t (a, b)");
+        for (int i = 0; i < 1000; i++) {
+            assertThat(countRows(meta.getColumns(null, null, "t", "%" + i))).isEqualTo(0);
+        }
+        assertThat(countRows(meta.getColumns(null, null, "t", null))).isEqualTo(2);
+    }
+
+    private static int countRows(ResultSet rs) throws SQLException {
+        try {
+            int count = 0;
+            while (rs.next()) {
+                count++;
+            }
+            return count;
+        } finally {
+            rs.close();
+        }
+    }
+
     @Nested
     class SqliteSchema {
         @ParameterizedTest
@@ -1,12 +1,19 @@
 package org.sqlite;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -55,4 +62,173 @@ public class FetchSizeTest {
         assertThat(rs.next()).isTrue();
         assertThat(rs.next()).isFalse();
     }
+
+    @Test
+    public void prefetchMatchesStepping() throws SQLException {
+        String query =
+                "select 1, 2.5, 'text', x'0102', null, '42abc', ' 1.5e2x', 1e20, 0.1, -7"
+                        + " union all select 9223372036854775807, -1.0, '', x'', 3, '-x', 'é', 2, 3.0, '12'";
+        try (Connection prefetchConn =
+                DriverManager.getConnection("jdbc:sqlite::memory:?jdbc.prefetch=true")) {
+            for (int fetchSize : new int[] {0, 1, 2, 3}) {
+                assertThat(readAll(prefetchConn, query, fetchSize))
+                        .isEqualTo(readAll(conn, query, fetchSize));
+            }
+        }
+    }
+
+    @Test
+    public void prefetchRendersRealsLikeSQLite() throws SQLException {
+        List<Double> values =
+                new ArrayList<>(
+                        Arrays.asList(
+                                0.0,
+                                -0.0,
+                                1.0,
+                                -1.5,
+                                0.1 + 0.2,
+                                1e-4,
+                                1e-5,
+                                123456789012345.0,
+                                999999999999999.0,
+                                1e15,
+                                1000000000000005.0,
+                                9.999999999999999e22,
+                                1e100,
+                                -1e-100,
+                                Double.MAX_VALUE,
+                                Double.MIN_VALUE,
+                                Double.POSITIVE_INFINITY,
+                                Double.NEGATIVE_INFINITY));
+        Random random = new Random(42);
+        while (values.size() < 2000) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+            // older SQLite versions round exact ties with long double arithmetic
+            if (new BigDecimal(value).stripTrailingZeros().precision() > 16) {
+                values.add(value);
+            }
+        }
+        try (Connection prefetchConn =
+                        DriverManager.getConnection("jdbc:sqlite::memory:?jdbc.prefetch=true");
+                PreparedStatement prefetched = prefetchConn.prepareStatement("select ?");
+                PreparedStatement stepped = conn.prepareStatement("select ?")) {
+            for (double value : values) {
+                prefetched.setDouble(1, value);
+                stepped.setDouble(1, value);
+                try (ResultSet expected = stepped.executeQuery();
+                        ResultSet actual = prefetched.executeQuery()) {
+                    assertThat(expected.next()).isTrue();
+                    assertThat(actual.next()).isTrue();
+                    assertThat(actual.getString(1))
+                            .as("%s", value)
+                            .isEqualTo(expected.getString(1));
+                    assertThat(actual.getBytes(1)).as("%s", value).isEqualTo(expected.getBytes(1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void prefetchLargeRows() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setPrefetch(true);
+        try (Connection prefetchConn = config.createConnection("jdbc:sqlite::memory:");
+                Statement stat = prefetchConn.createStatement()) {
+            stat.executeUpdate("create table t (id integer, b blob)");
+            stat.executeUpdate(
+                    "insert into t with recursive c(x) as (select 1 union all select x + 1 from c"
+                            + " where x < 10) select x, zeroblob(x * 50000) from c");
+            stat.setFetchSize(4);
+            ResultSet rs = stat.executeQuery("select id, b from t order by id");
+            assertThat(rs.getFetchSize()).isEqualTo(4);
+            for (int i = 1; i <= 10; i++) {
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getInt(1)).isEqualTo(i);
+                assertThat(rs.getBytes(2)).hasSize(i * 50000);
+            }
+            assertThat(rs.next()).isFalse();
+            rs.close();
+        }
+    }
+
+    @Test
+    public void prefetchHonorsMaxRows() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setPrefetch(true);
+        try (Connection prefetchConn = config.createConnection("jdbc:sqlite::memory:");
+                Statement stat = prefetchConn.createStatement()) {
+            stat.setMaxRows(3);
+            ResultSet rs =
+                    stat.executeQuery(
+                            "with recursive c(x) as (select 1 union all select x + 1 from c"
+                                    + " where x < 100) select x from c");
+            for (int i = 1; i <= 3; i++) {
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getInt(1)).isEqualTo(i);
+            }
+            assertThat(rs.next()).isFalse();
+            rs.close();
+
+            // the statement can be executed again after an early close
+            rs = stat.executeQuery("select 1 union all select 2");
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getInt(1)).isEqualTo(1);
+            rs.close();
+            rs = stat.executeQuery("select 'a' union all select 'b'");
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("b");
+            assertThat(rs.next()).isFalse();
+        }
+    }
+
+    @Test
+    public void prefetchReturnsRowsBeforeAFailedStep() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setPrefetch(true);
+        try (Connection prefetchConn = config.createConnection("jdbc:sqlite::memory:");
+                Statement stat = prefetchConn.createStatement()) {
+            stat.executeUpdate("create table t (id integer primary key, x integer)");
+            stat.executeUpdate(
+                    "insert into t values (1, 1), (2, 2), (3, 3), (4, -9223372036854775808)");
+            stat.setFetchSize(10);
+            ResultSet rs = stat.executeQuery("select id, abs(x) from t order by id");
+            for (int i = 1; i <= 3; i++) {
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getInt(1)).isEqualTo(i);
+            }
+            assertThatThrownBy(rs::next)
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("integer overflow");
+            rs.close();
+        }
+    }
+
+    private static List<List<Object>> readAll(Connection conn, String query, int fetchSize)
+            throws SQLException {
+        List<List<Object>> rows = new ArrayList<>();
+        try (Statement stat = conn.createStatement()) {
+            stat.setFetchSize(fetchSize);
+            try (ResultSet rs = stat.executeQuery(query)) {
+                int columns = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    List<Object> row = new ArrayList<>();
+                    for (int i = 1; i <= columns; i++) {
+                        // read the type before any conversion alters it
+                        row.add(rs.getMetaData().getColumnType(i));
+                        Object value = rs.getObject(i);
+                        row.add(value instanceof byte[] ? Arrays.toString((byte[]) value) : value);
+                        row.add(rs.getString(i));
+                        row.add(rs.getInt(i));
+                        row.add(rs.getLong(i));
+                        row.add(rs.getDouble(i));
+                        row.add(rs.wasNull());
+                        row.add(Arrays.toString(rs.getBytes(i)));
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
 }
@@ -1,9 +1,11 @@
 package org.sqlite;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.io.File;
 import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -253,6 +255,219 @@ public class ListenerTest {
         connectionOne.close();
     }
 
+    @Test
+    public void testBufferedUpdatesDeliveredOnCommit() throws Exception {
+        CountingSQLiteUpdateListener updateListener = new CountingSQLiteUpdateListener();
+        connectionOne.setUpdateBufferSize(100);
+        connectionOne.addUpdateListener(updateListener);
+        connectionOne.setAutoCommit(false);
+
+        try (Statement statement = connectionOne.createStatement()) {
+            statement.execute("INSERT INTO sample (description) VALUES ('a'), ('b'), ('c')");
+            statement.execute("UPDATE sample SET description = 'd' WHERE id = 2");
+            statement.execute("DELETE FROM sample WHERE id = 1");
+        }
+        assertThat(updateListener.updates).isEmpty();
+
+        connectionOne.commit();
+        List<UpdateEvent> updates = updateListener.getAllUpdates();
+        assertThat(updates).hasSize(5);
+        assertThat(updates)
+                .extracting(e -> e.type)
+                .containsExactly(
+                        SQLiteUpdateListener.Type.INSERT,
+                        SQLiteUpdateListener.Type.INSERT,
+                        SQLiteUpdateListener.Type.INSERT,
+                        SQLiteUpdateListener.Type.UPDATE,
+                        SQLiteUpdateListener.Type.DELETE);
+        assertThat(updates).extracting(e -> e.rowId).containsExactly(1L, 2L, 3L, 2L, 1L);
+        assertThat(updates.get(0).database).isEqualTo("main");
+        assertThat(updates.get(0).table).isEqualTo("sample");
+        // names are interned
+        assertThat(updates.get(4).table).isSameAs(updates.get(0).table);
+
+        try (Statement statement = connectionOne.createStatement()) {
+            statement.execute("INSERT INTO sample (description) VALUES ('e')");
+        }
+        connectionOne.rollback();
+        assertThat(updateListener.getAllUpdates()).hasSize(1);
+        connectionOne.setAutoCommit(true);
+    }
+
+    @Test
+    public void testBufferedUpdatesDeliveredWhenFull() throws Exception {
+        CountingSQLiteUpdateListener updateListener = new CountingSQLiteUpdateListener();
+        connectionOne.addUpdateListener(updateListener);
+        connectionOne.setUpdateBufferSize(2);
+        assertThat(connectionOne.getUpdateBufferSize()).isEqualTo(2);
+        connectionOne.setAutoCommit(false);
+
+        try (Statement statement = connectionOne.createStatement()) {
+            for (int i = 0; i < 5; i++) {
+                statement.execute("INSERT INTO sample (description) VALUES ('" + i + "')");
+            }
+        }
+        assertThat(updateListener.updates).hasSize(4);
+        connectionOne.flushUpdates();
+        assertThat(updateListener.getAllUpdates())
+                .extracting(e -> e.rowId)
+                .containsExactly(1L, 2L, 3L, 4L, 5L);
+        connectionOne.setAutoCommit(true);
+    }
+
+    @Test
+    public void testBufferedUpdatesOfManyTables() throws Exception {
+        final int tables = 300;
+        try (Statement statement = connectionOne.createStatement()) {
+            for (int i = 0; i < tables; i++) {
+                statement.execute("CREATE TABLE t" + i + " (id INTEGER PRIMARY KEY)");
+            }
+        }
+        CountingSQLiteUpdateListener updateListener = new CountingSQLiteUpdateListener();
+        connectionOne.setUpdateBufferSize(1000);
+        connectionOne.addUpdateListener(updateListener);
+        connectionOne.setAutoCommit(false);
+        try (Statement statement = connectionOne.createStatement()) {
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < tables; i++) {
+                    statement.execute("INSERT INTO t" + i + " VALUES (" + round + ")");
+                }
+            }
+        }
+        connectionOne.setAutoCommit(true);
+
+        List<UpdateEvent> updates = updateListener.getAllUpdates();
+        assertThat(updates).hasSize(2 * tables);
+        for (int i = 0; i < 2 * tables; i++) {
+            assertThat(updates.get(i).table).isEqualTo("t" + (i % tables));
+            assertThat(updates.get(i).rowId).isEqualTo(i / tables);
+        }
+    }
+
+    @Test
+    public void testBufferedUpdatesDeliveredOnRemoval() throws Exception {
+        CountingSQLiteUpdateListener updateListener = new CountingSQLiteUpdateListener();
+        connectionOne.setUpdateBufferSize(10);
+        connectionOne.addUpdateListener(updateListener);
+        connectionOne.setAutoCommit(false);
+        try (Statement statement = connectionOne.createStatement()) {
+            statement.execute("INSERT INTO sample (description) VALUES ('a')");
+        }
+        connectionOne.removeUpdateListener(updateListener);
+        assertThat(updateListener.getAllUpdates()).hasSize(1);
+        assertThat(NativeDBHelper.getUpdateListener(connectionOne.getDatabase())).isEqualTo(0);
+        assertThat(NativeDBHelper.getCommitListener(connectionOne.getDatabase())).isEqualTo(0);
+        connectionOne.setAutoCommit(true);
+    }
+
+    @Test
+    public void testPreUpdateValues() throws Exception {
+        List<String> events = new ArrayList<>();
+        SQLitePreUpdateListener listener =
+                update -> {
+                    try {
+                        assertThat(update.getDatabase()).isEqualTo("main");
+                        assertThat(update.getTable()).isEqualTo("sample");
+                        assertThat(update.getColumnCount()).isEqualTo(2);
+                        assertThat(update.getDepth()).isEqualTo(0);
+                        switch (update.getType()) {
+                            case INSERT:
+                                events.add(
+                                        "insert "
+                                                + update.getNewRowId()
+                                                + " "
+                                                + update.getNewValue(1));
+                                break;
+                            case UPDATE:
+                                events.add(
+                                        "update "
+                                                + update.getOldValue(1)
+                                                + " -> "
+                                                + update.getNewValue(1));
+                                break;
+                            case DELETE:
+                                events.add(
+                                        "delete "
+                                                + update.getOldRowId()
+                                                + " "
+                                                + update.getOldValue(1));
+                                break;
+                        }
+                    } catch (SQLException e) {
+                        throw new AssertionError(e);
+                    }
+                };
+        connectionOne.addPreUpdateListener(listener);
+        assertThat(NativeDBHelper.getPreUpdateListener(connectionOne.getDatabase()))
+                .isNotEqualTo(0);
+        try (Statement statement = connectionOne.createStatement()) {
+            statement.execute("INSERT INTO sample (id, description) VALUES (7, 'seven')");
+            statement.execute("UPDATE sample SET description = 'sept' WHERE id = 7");
+            statement.execute("DELETE FROM sample WHERE id = 7");
+        }
+        assertThat(events)
+                .containsExactly("insert 7 seven", "update seven -> sept", "delete 7 sept");
+
+        connectionOne.removePreUpdateListener(listener);
+        assertThat(NativeDBHelper.getPreUpdateListener(connectionOne.getDatabase())).isEqualTo(0);
+        try (Statement statement = connectionOne.createStatement()) {
+            statement.execute("INSERT INTO sample (description) VALUES ('eight')");
+        }
+        assertThat(events).hasSize(3);
+    }
+
+    @Test
+    public void testPreUpdateValueTypesAndErrors() throws Exception {
+        List<Object> values = new ArrayList<>();
+        List<SQLitePreUpdate> updates = new ArrayList<>();
+        try (Statement statement = connectionOne.createStatement()) {
+            statement.execute("CREATE TABLE typed (i INTEGER, r REAL, t TEXT, b BLOB, n)");
+            statement.execute("CREATE TABLE audit (v)");
+            statement.execute(
+                    "CREATE TRIGGER audited AFTER DELETE ON typed BEGIN INSERT INTO audit VALUES (old.t); END");
+        }
+        connectionOne.addPreUpdateListener(
+                update -> {
+                    updates.add(update);
+                    try {
+                        if (update.getType() == SQLiteUpdateListener.Type.INSERT
+                                && update.getTable().equals("typed")) {
+                            for (int i = 0; i < update.getColumnCount(); i++) {
+                                values.add(update.getNewValue(i));
+                            }
+                            assertThatThrownBy(() -> update.getOldValue(0))
+                                    .isInstanceOf(SQLException.class);
+                            assertThatThrownBy(() -> update.getNewValue(5))
+                                    .isInstanceOf(SQLException.class);
+                        }
+                    } catch (SQLException e) {
+                        throw new AssertionError(e);
+                    }
+                });
+        try (Statement statement = connectionOne.createStatement()) {
+            statement.execute("INSERT INTO typed VALUES (42, 1.5, 'caf\u00e9', x'0102', NULL)");
+            statement.execute("DELETE FROM typed");
+        }
+        assertThat(values.subList(0, 3)).containsExactly(42L, 1.5, "caf\u00e9");
+        assertThat(values.get(3)).isEqualTo(new byte[] {1, 2});
+        assertThat(values.get(4)).isNull();
+
+        // the delete, then the insert of the trigger
+        assertThat(updates).hasSize(3);
+        assertThat(updates.get(2).getTable()).isEqualTo("audit");
+        assertThat(updates.get(2).getDepth()).isEqualTo(1);
+        assertThatThrownBy(() -> updates.get(1).getOldValue(0))
+                .isInstanceOf(SQLException.class)
+                .hasMessage("change is no longer available");
+    }
+
+    @Test
+    public void testPreUpdateListenerClearedOnClose() throws Exception {
+        connectionTwo.addPreUpdateListener(update -> {});
+        connectionTwo.close();
+        assertThat(NativeDBHelper.getPreUpdateListener(connectionTwo.getDatabase())).isEqualTo(0);
+    }
+
     /** A helper class that simply counts the number of commits operations that were done. */
     static class CountingSQLiteCommitListener implements SQLiteCommitListener {
         final AtomicInteger committed = new AtomicInteger(0);
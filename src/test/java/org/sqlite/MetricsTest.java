@@ -0,0 +1,194 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.ObjectName;
+import javax.sql.PooledConnection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.javax.SQLiteConnectionPoolDataSource;
+import org.sqlite.metrics.Histogram;
+import org.sqlite.metrics.SQLiteMetrics;
+import org.sqlite.metrics.SQLiteMetricsBinder;
+
+public class MetricsTest {
+
+    public static class RecordingBinder implements SQLiteMetricsBinder {
+        static final List<String> bound = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void bindTo(SQLiteMetrics metrics) {
+            bound.add(metrics.getName());
+        }
+    }
+
+    private static Connection open(String metricsName) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setMetricsName(metricsName);
+        return config.createConnection("jdbc:sqlite:");
+    }
+
+    @Test
+    public void disabledByDefault() throws SQLException {
+        try (Connection conn = new SQLiteConfig().createConnection("jdbc:sqlite:")) {
+            assertThat(conn.unwrap(SQLiteConnection.class).getDatabase().getMetrics()).isNull();
+        }
+    }
+
+    @Test
+    public void statements() throws SQLException {
+        SQLiteMetrics metrics;
+        try (Connection conn = open("MetricsTest.statements")) {
+            metrics = conn.unwrap(SQLiteConnection.class).getDatabase().getMetrics();
+            assertThat(metrics.getConnectionsOpened()).isEqualTo(1);
+            try (Statement stat = conn.createStatement()) {
+                stat.executeUpdate("create table t (id integer primary key, v text)");
+            }
+            try (PreparedStatement prep = conn.prepareStatement("insert into t values (?, ?)")) {
+                for (int i = 1; i <= 10; i++) {
+                    prep.setInt(1, i);
+                    prep.setString(2, "v" + i);
+                    prep.addBatch();
+                }
+                prep.executeBatch();
+            }
+            long executions = metrics.getExecutions();
+            try (PreparedStatement prep = conn.prepareStatement("select v from t");
+                    ResultSet rs = prep.executeQuery()) {
+                while (rs.next()) {}
+            }
+            assertThat(metrics.getExecutions()).isEqualTo(executions + 1);
+            assertThat(metrics.getRowsRead()).isEqualTo(10);
+            assertThat(metrics.getBatches()).isEqualTo(1);
+            assertThat(metrics.getBatchRows()).isEqualTo(10);
+            assertThat(metrics.getPrepares()).isGreaterThanOrEqualTo(3);
+            assertThat(metrics.getPrepareTimeTotal()).isGreaterThan(0);
+            assertThat(metrics.getExecuteTime().getCount()).isEqualTo(metrics.getExecutions());
+
+            try (Statement stat = conn.createStatement()) {
+                assertThatThrownBy(() -> stat.executeUpdate("insert into t values (1, 'dup')"))
+                        .isInstanceOf(SQLException.class);
+            }
+            assertThat(metrics.getErrors()).isEqualTo(1);
+            assertThat(metrics.getBusyErrors()).isEqualTo(0);
+        }
+        assertThat(metrics.getConnectionsClosed()).isEqualTo(1);
+        assertThat(RecordingBinder.bound).contains("MetricsTest.statements");
+    }
+
+    @Test
+    public void transactions() throws SQLException {
+        try (Connection conn = open("MetricsTest.transactions")) {
+            SQLiteMetrics metrics = conn.unwrap(SQLiteConnection.class).getDatabase().getMetrics();
+            try (Statement stat = conn.createStatement()) {
+                stat.executeUpdate("create table t (id integer)");
+                long commits = metrics.getCommits();
+                conn.setAutoCommit(false);
+                stat.executeUpdate("insert into t values (1)");
+                conn.commit();
+                stat.executeUpdate("insert into t values (2)");
+                conn.rollback();
+                assertThat(metrics.getCommits()).isEqualTo(commits + 1);
+                assertThat(metrics.getRollbacks()).isEqualTo(1);
+            }
+        }
+    }
+
+    @Test
+    public void sharedByName() throws SQLException {
+        try (Connection a = open("MetricsTest.shared");
+                Connection b = open("MetricsTest.shared")) {
+            assertThat(a.unwrap(SQLiteConnection.class).getDatabase().getMetrics())
+                    .isSameAs(b.unwrap(SQLiteConnection.class).getDatabase().getMetrics());
+            assertThat(SQLiteMetrics.get("MetricsTest.shared").getConnectionsOpened()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void busyRetries(@TempDir Path dir) throws Exception {
+        String url = "jdbc:sqlite:" + new File(dir.toFile(), "busy.db").getAbsolutePath();
+        SQLiteConfig config = new SQLiteConfig();
+        config.setMetricsName("MetricsTest.busy");
+        try (Connection holder = config.createConnection(url);
+                Connection waiter = config.createConnection(url);
+                Statement hold = holder.createStatement();
+                Statement wait = waiter.createStatement()) {
+            hold.executeUpdate("create table t (id integer)");
+            wait.executeQuery("select count(*) from t").close();
+            hold.execute("begin exclusive");
+            BusyHandler.setHandler(
+                    waiter,
+                    new BusyHandler() {
+                        @Override
+                        protected int callback(int nbPrevInvok) {
+                            return nbPrevInvok < 2 ? 1 : 0;
+                        }
+                    });
+            assertThatThrownBy(() -> wait.executeUpdate("insert into t values (1)"))
+                    .isInstanceOf(SQLException.class);
+            hold.execute("rollback");
+
+            SQLiteMetrics metrics = SQLiteMetrics.get("MetricsTest.busy");
+            assertThat(metrics.getBusyRetries()).isEqualTo(3);
+            assertThat(metrics.getBusyErrors()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void pool() throws SQLException {
+        SQLiteConnectionPoolDataSource ds = new SQLiteConnectionPoolDataSource();
+        ds.setUrl("jdbc:sqlite:");
+        ds.setMetricsName("MetricsTest.pool");
+        PooledConnection pooled = ds.getPooledConnection();
+        try {
+            pooled.getConnection().close();
+            pooled.getConnection().close();
+        } finally {
+            pooled.close();
+        }
+        SQLiteMetrics metrics = SQLiteMetrics.get("MetricsTest.pool");
+        assertThat(metrics.getPoolBorrows()).isEqualTo(2);
+        assertThat(metrics.getPoolReturns()).isEqualTo(2);
+        assertThat(metrics.getConnectionsClosed()).isEqualTo(1);
+    }
+
+    @Test
+    public void jmx() throws Exception {
+        try (Connection conn = open("MetricsTest.jmx");
+                Statement stat = conn.createStatement()) {
+            stat.execute("select 1");
+            Object executions =
+                    ManagementFactory.getPlatformMBeanServer()
+                            .getAttribute(
+                                    new ObjectName(
+                                            "org.sqlite:type=SQLiteMetrics,name="
+                                                    + ObjectName.quote("MetricsTest.jmx")),
+                                    "Executions");
+            assertThat((Long) executions).isGreaterThan(0);
+        }
+    }
+
+    @Test
+    public void histogram() {
+        Histogram histogram = Histogram.exponential(1, 4);
+        assertThat(histogram.getBucketBounds()).containsExactly(1, 2, 4, 8);
+        for (long value : new long[] {0, 1, 2, 3, 8, 9, 100}) {
+            histogram.record(value);
+        }
+        assertThat(histogram.getBucketCounts()).containsExactly(2, 1, 1, 1, 2);
+        assertThat(histogram.getCount()).isEqualTo(7);
+        assertThat(histogram.getSum()).isEqualTo(123);
+        assertThat(histogram.getMax()).isEqualTo(100);
+    }
+}
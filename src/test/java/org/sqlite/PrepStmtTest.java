@@ -10,6 +10,7 @@ import java.io.ByteArrayInputStream;
 import java.io.StringReader;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
@@ -23,6 +24,7 @@ import java.util.StringTokenizer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.sqlite.core.Codes;
 
 /** These tests are designed to stress PreparedStatements on memory dbs. */
 public class PrepStmtTest {
@@ -483,6 +485,94 @@ public class PrepStmtTest {
         stat.executeUpdate("drop table test;");
     }
 
+    @Test
+    public void batchMixedTypes() throws SQLException {
+        stat.executeUpdate("create table test (c1, c2);");
+        PreparedStatement prep = conn.prepareStatement("insert into test values (?,?);");
+        prep.setInt(1, 1);
+        prep.setLong(2, Long.MAX_VALUE);
+        prep.addBatch();
+        prep.setString(1, "two");
+        prep.addBatch();
+        prep.setBytes(1, b1);
+        prep.setDouble(2, 2.5);
+        prep.addBatch();
+        prep.setNull(1, Types.INTEGER);
+        prep.setFloat(2, 0.5f);
+        prep.addBatch();
+        assertThat(prep.executeBatch()).containsExactly(1, 1, 1, 1);
+        prep.close();
+
+        ResultSet rs = stat.executeQuery("select typeof(c1), c1, typeof(c2), c2 from test;");
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("integer");
+        assertThat(rs.getInt(2)).isEqualTo(1);
+        assertThat(rs.getString(3)).isEqualTo("integer");
+        assertThat(rs.getLong(4)).isEqualTo(Long.MAX_VALUE);
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("text");
+        assertThat(rs.getString(2)).isEqualTo("two");
+        assertThat(rs.getLong(4)).isEqualTo(Long.MAX_VALUE);
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("blob");
+        assertThat(rs.getBytes(2)).isEqualTo(b1);
+        assertThat(rs.getString(3)).isEqualTo("real");
+        assertThat(rs.getDouble(4)).isEqualTo(2.5);
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getString(1)).isEqualTo("null");
+        assertThat(rs.getDouble(4)).isEqualTo(0.5);
+        assertThat(rs.next()).isFalse();
+        rs.close();
+    }
+
+    @Test
+    public void batchLargeValues() throws SQLException {
+        stat.executeUpdate("create table test (c1, c2);");
+        byte[] blob = new byte[100_000];
+        for (int i = 0; i < blob.length; i++) {
+            blob[i] = (byte) i;
+        }
+        PreparedStatement prep = conn.prepareStatement("insert into test values (?,?);");
+        for (int i = 0; i < 20; i++) {
+            prep.setString(1, utf06 + i);
+            prep.setBytes(2, blob);
+            prep.addBatch();
+        }
+        assertThat(prep.executeBatch()).hasSize(20).containsOnly(1);
+        prep.close();
+
+        ResultSet rs = stat.executeQuery("select c1, c2 from test;");
+        for (int i = 0; i < 20; i++) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo(utf06 + i);
+            assertThat(rs.getBytes(2)).isEqualTo(blob);
+        }
+        assertThat(rs.next()).isFalse();
+        rs.close();
+    }
+
+    @Test
+    public void batchFailures() throws SQLException {
+        stat.executeUpdate("create table test (c1 primary key);");
+        PreparedStatement prep = conn.prepareStatement("insert into test values (?);");
+        prep.setInt(1, 1);
+        prep.addBatch();
+        prep.setInt(1, 1);
+        prep.addBatch();
+        assertThatExceptionOfType(SQLException.class)
+                .isThrownBy(prep::executeBatch)
+                .withMessageContaining("UNIQUE");
+        prep.close();
+
+        PreparedStatement query = conn.prepareStatement("select ?;");
+        query.setInt(1, 1);
+        query.addBatch();
+        assertThatExceptionOfType(BatchUpdateException.class)
+                .isThrownBy(query::executeBatch)
+                .withMessage("batch entry 0: query returns results");
+        query.close();
+    }
+
     @Test
     public void testExecuteBatch() throws Exception {
         stat.executeUpdate("create table t (c text);");
@@ -935,4 +1025,30 @@ public class PrepStmtTest {
         ResultSet rs = stat.executeQuery("select nr from gh1002");
         assertThat(rs.getBigDecimal(1)).isEqualTo(pi);
     }
+
+    @Test
+    public void prepareWithFlags() throws SQLException {
+        SQLiteConnection sqlite = conn.unwrap(SQLiteConnection.class);
+        stat.executeUpdate("create table flags (c1);");
+        try (PreparedStatement prep =
+                sqlite.prepareStatementWithFlags(
+                        "insert into flags values (?);", Codes.SQLITE_PREPARE_PERSISTENT)) {
+            for (int i = 0; i < 3; i++) {
+                prep.setInt(1, i);
+                assertThat(prep.executeUpdate()).isEqualTo(1);
+            }
+        }
+        try (ResultSet rs = stat.executeQuery("select count(*) from flags;")) {
+            assertThat(rs.getInt(1)).isEqualTo(3);
+        }
+
+        String vtab = "select name from pragma_table_info('flags');";
+        try (PreparedStatement prep = sqlite.prepareStatementWithFlags(vtab, 0);
+                ResultSet rs = prep.executeQuery()) {
+            assertThat(rs.getString(1)).isEqualTo("c1");
+        }
+        assertThatThrownBy(
+                        () -> sqlite.prepareStatementWithFlags(vtab, Codes.SQLITE_PREPARE_NO_VTAB))
+                .isInstanceOf(SQLException.class);
+    }
 }
@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
@@ -20,6 +22,7 @@ import java.time.LocalTime;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.sqlite.jdbc3.JDBC3ResultSet;
 
 class ResultSetTest {
 
@@ -375,4 +378,93 @@ class ResultSetTest {
             assertThat(meta.getColumnCount()).isEqualTo(1);
         }
     }
+
+    @Test
+    void getStringIntoBuffers() throws SQLException {
+        stat.executeUpdate("create table texts (t)");
+        String[] values = {
+            "plain ascii",
+            "",
+            "accentu\u00e9 \u65e5\u672c\u8a9e",
+            "emoji \ud83d\ude00 after",
+            "embedded \u0000 nul",
+            null
+        };
+        try (PreparedStatement prep = conn.prepareStatement("insert into texts values (?)")) {
+            for (String value : values) {
+                prep.setString(1, value);
+                prep.executeUpdate();
+            }
+        }
+        stat.executeUpdate("insert into texts values (x'41ff42'), (12), (1.5)");
+
+        try (ResultSet rs = stat.executeQuery("select t from texts order by rowid")) {
+            JDBC3ResultSet jrs = rs.unwrap(JDBC3ResultSet.class);
+            StringBuilder builder = new StringBuilder("prefix:");
+            CharBuffer buffer = CharBuffer.allocate(64);
+            int row = 0;
+            while (rs.next()) {
+                String expected = row < values.length ? values[row] : rs.getString(1);
+                assertThat(rs.getString(1)).isEqualTo(expected);
+
+                builder.setLength(7);
+                int appended = jrs.getString(1, builder);
+                assertThat(rs.wasNull()).isEqualTo(expected == null);
+                assertThat(builder.substring(7)).isEqualTo(expected == null ? "" : expected);
+                assertThat(appended).isEqualTo(builder.length() - 7);
+
+                buffer.clear();
+                int written = jrs.getString(1, buffer);
+                buffer.flip();
+                assertThat(buffer.toString()).isEqualTo(expected == null ? "" : expected);
+                assertThat(written).isEqualTo(buffer.length());
+                row++;
+            }
+            assertThat(row).isEqualTo(values.length + 3);
+        }
+        try (ResultSet rs = stat.executeQuery("select t from texts where rowid in (7, 8, 9)")) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("A\ufffdB");
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("12");
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("1.5");
+        }
+    }
+
+    @Test
+    void getStringBufferOverflow() throws SQLException {
+        try (ResultSet rs = stat.executeQuery("select 'abcdef', 'd\u00e9f\u00e9'")) {
+            JDBC3ResultSet jrs = rs.unwrap(JDBC3ResultSet.class);
+            CharBuffer small = CharBuffer.allocate(3);
+            small.put('x');
+            assertThatExceptionOfType(BufferOverflowException.class)
+                    .isThrownBy(() -> jrs.getString(1, small));
+            assertThat(small.position()).isEqualTo(1);
+            assertThatExceptionOfType(BufferOverflowException.class)
+                    .isThrownBy(() -> jrs.getString(2, small));
+            assertThat(small.position()).isEqualTo(1);
+
+            CharBuffer exact = CharBuffer.allocate(4);
+            assertThat(jrs.getString(2, exact)).isEqualTo(4);
+            exact.flip();
+            assertThat(exact.toString()).isEqualTo("d\u00e9f\u00e9");
+        }
+    }
+
+    @Test
+    void getStringLargeText() throws SQLException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            large.append("\u00e9t\u00e9 ").append(i);
+        }
+        try (PreparedStatement prep = conn.prepareStatement("select ?")) {
+            prep.setString(1, large.toString());
+            try (ResultSet rs = prep.executeQuery()) {
+                StringBuilder out = new StringBuilder();
+                rs.unwrap(JDBC3ResultSet.class).getString(1, out);
+                assertThat(out.toString()).isEqualTo(large.toString());
+            }
+        }
+    }
 }
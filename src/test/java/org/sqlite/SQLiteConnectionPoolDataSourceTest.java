@@ -16,7 +16,10 @@ package org.sqlite;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -60,6 +63,46 @@ public class SQLiteConnectionPoolDataSourceTest {
         assertThat(handle.isClosed()).isTrue();
     }
 
+    @Test
+    public void handleDelegatesToPhysicalConnection() throws SQLException {
+        SQLiteConnectionPoolDataSource ds = new SQLiteConnectionPoolDataSource();
+        PooledConnection pooledConn = ds.getPooledConnection();
+        try {
+            Connection handle = pooledConn.getConnection();
+            assertThat(Proxy.isProxyClass(handle.getClass())).isFalse();
+            SQLiteConnection physical = handle.unwrap(SQLiteConnection.class);
+            assertThat(physical).isNotSameAs(handle);
+
+            try (Statement stat = handle.createStatement()) {
+                stat.executeUpdate("create table t (x)");
+            }
+            handle.setAutoCommit(false);
+            try (PreparedStatement insert = handle.prepareStatement("insert into t values (?)")) {
+                insert.setInt(1, 1);
+                insert.executeUpdate();
+            }
+            assertThat(physical.getAutoCommit()).isFalse();
+
+            // closing the handle rolls back and resets the physical connection
+            handle.close();
+            assertThat(handle.isClosed()).isTrue();
+            assertThat(physical.isClosed()).isFalse();
+            assertThat(physical.getAutoCommit()).isTrue();
+            assertThatThrownBy(() -> handle.setAutoCommit(false))
+                    .isInstanceOf(SQLException.class)
+                    .hasMessage("Connection is closed");
+
+            try (Connection handle2 = pooledConn.getConnection();
+                    Statement stat = handle2.createStatement();
+                    ResultSet rs = stat.executeQuery("select count(*) from t")) {
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getInt(1)).isEqualTo(0);
+            }
+        } finally {
+            pooledConn.close();
+        }
+    }
+
     /**
      * When a handle is closed the physical connection must be reset (rollback + auto-commit) before
      * the pool is notified, otherwise a concurrent borrower can reuse the physical connection while
@@ -0,0 +1,295 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.javax.SQLiteConnectionPool;
+import org.sqlite.javax.SQLiteConnectionPoolDataSource;
+
+public class SQLiteConnectionPoolTest {
+
+    @TempDir File tempDir;
+
+    private SQLiteConnectionPoolDataSource dataSource() throws Exception {
+        File file = File.createTempFile("pool-test", ".db", tempDir);
+        SQLiteConnectionPoolDataSource ds = new SQLiteConnectionPoolDataSource();
+        ds.setUrl("jdbc:sqlite:" + file.getAbsolutePath());
+        ds.setJournalMode("WAL");
+        return ds;
+    }
+
+    @Test
+    public void readersAndWriters() throws Exception {
+        try (SQLiteConnectionPool pool = new SQLiteConnectionPool(dataSource(), 1, 2)) {
+            try (Connection writer = pool.getConnection();
+                    Statement stat = writer.createStatement()) {
+                stat.executeUpdate("create table t (x)");
+                stat.executeUpdate("insert into t values (1)");
+            }
+            try (Connection reader = pool.getReadConnection();
+                    Statement stat = reader.createStatement()) {
+                try (ResultSet rs = stat.executeQuery("select count(*) from t")) {
+                    assertThat(rs.next()).isTrue();
+                    assertThat(rs.getInt(1)).isEqualTo(1);
+                }
+                assertThatThrownBy(() -> stat.executeUpdate("insert into t values (2)"))
+                        .isInstanceOf(SQLException.class);
+            }
+            assertThat(pool.getOpenConnections()).isEqualTo(2);
+            assertThat(pool.getIdleConnections()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void connectionsAreReused() throws Exception {
+        SQLiteConnectionPoolDataSource ds = dataSource();
+        SQLiteConnection physical;
+        try (SQLiteConnectionPool pool = new SQLiteConnectionPool(ds)) {
+            try (Connection conn = pool.getConnection()) {
+                physical = conn.unwrap(SQLiteConnection.class);
+                // the connections of the pool cache statements, without changing the data source
+                assertThat(physical.getDatabase().getStatementCache().getMaxSize())
+                        .isEqualTo(SQLiteConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE);
+                assertThat(ds.getConfig().getStatementCacheSize()).isEqualTo(0);
+                conn.setAutoCommit(false);
+                conn.createStatement().executeUpdate("create table t (x)");
+            }
+            try (Connection conn = pool.getConnection()) {
+                assertThat(conn.unwrap(SQLiteConnection.class)).isSameAs(physical);
+                // the transaction left open was rolled back on return
+                assertThat(conn.getAutoCommit()).isTrue();
+                assertThatThrownBy(() -> conn.createStatement().executeQuery("select * from t"))
+                        .isInstanceOf(SQLException.class);
+            }
+            assertThat(pool.getOpenConnections()).isEqualTo(1);
+        }
+        assertThat(physical.isClosed()).isTrue();
+    }
+
+    @Test
+    public void borrowWaitsForAConnection() throws Exception {
+        try (SQLiteConnectionPool pool = new SQLiteConnectionPool(dataSource(), 1, 0)) {
+            pool.setBorrowTimeout(50);
+            Connection conn = pool.getConnection();
+            assertThatThrownBy(pool::getReadConnection).isInstanceOf(SQLTimeoutException.class);
+
+            pool.setBorrowTimeout(10_000);
+            AtomicReference<Connection> borrowed = new AtomicReference<>();
+            Thread waiter =
+                    new Thread(
+                            () -> {
+                                try {
+                                    borrowed.set(pool.getConnection());
+                                } catch (SQLException e) {
+                                    throw new IllegalStateException(e);
+                                }
+                            });
+            waiter.start();
+            Thread.sleep(50);
+            assertThat(borrowed.get()).isNull();
+            conn.close();
+            waiter.join();
+            assertThat(borrowed.get()).isNotNull();
+            borrowed.get().close();
+        }
+    }
+
+    @Test
+    public void warmUpAndIdleEviction() throws Exception {
+        try (SQLiteConnectionPool pool = new SQLiteConnectionPool(dataSource(), 1, 3)) {
+            pool.setMinIdle(1);
+            pool.warmUp();
+            assertThat(pool.getOpenConnections()).isEqualTo(2);
+            assertThat(pool.getIdleConnections()).isEqualTo(2);
+
+            List<Connection> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(pool.getReadConnection());
+            }
+            assertThat(pool.getOpenConnections()).isEqualTo(4);
+            assertThat(pool.getIdleConnections()).isEqualTo(1);
+
+            pool.setIdleTimeout(0);
+            for (Connection reader : readers) {
+                reader.close();
+            }
+            Thread.sleep(5);
+            // returning a connection evicts the idle ones, down to the minimum
+            pool.getReadConnection().close();
+            assertThat(pool.getOpenConnections()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void idleConnectionsOfAQuietPoolAreClosed() throws Exception {
+        try (SQLiteConnectionPool pool = new SQLiteConnectionPool(dataSource(), 1, 2)) {
+            pool.setMinIdle(1);
+            List<Connection> borrowed = new ArrayList<>();
+            borrowed.add(pool.getConnection());
+            borrowed.add(pool.getReadConnection());
+            borrowed.add(pool.getReadConnection());
+            for (Connection conn : borrowed) {
+                conn.close();
+            }
+            assertThat(pool.getIdleConnections()).isEqualTo(3);
+
+            // no connection is borrowed nor returned from now on
+            pool.setIdleTimeout(0);
+            long deadline = System.currentTimeMillis() + 10_000;
+            // the open count drops as an eviction is reserved, the idle one once it is done
+            while ((pool.getOpenConnections() > 2 || pool.getIdleConnections() > 2)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(pool.getOpenConnections()).isEqualTo(2);
+            assertThat(pool.getIdleConnections()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void unwrap() throws Exception {
+        try (SQLiteConnectionPool pool = new SQLiteConnectionPool(dataSource())) {
+            assertThat(pool.unwrap(DataSource.class)).isSameAs(pool);
+            assertThat(pool.isWrapperFor(SQLiteConnection.class)).isFalse();
+            assertThatThrownBy(() -> pool.unwrap(SQLiteConnection.class))
+                    .isInstanceOf(SQLException.class);
+        }
+    }
+
+    @Test
+    public void closedPool() throws Exception {
+        SQLiteConnectionPool pool = new SQLiteConnectionPool(dataSource());
+        Connection conn = pool.getConnection();
+        SQLiteConnection physical = conn.unwrap(SQLiteConnection.class);
+        pool.close();
+        assertThat(physical.isClosed()).isFalse();
+        conn.close();
+        assertThat(physical.isClosed()).isTrue();
+        assertThat(pool.getOpenConnections()).isEqualTo(0);
+        assertThatThrownBy(pool::getConnection)
+                .isInstanceOf(SQLException.class)
+                .hasMessage("connection pool is closed");
+    }
+
+    @Test
+    public void concurrentWarmUpStaysWithinTheMaximum() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            try (SQLiteConnectionPool pool = new SQLiteConnectionPool(dataSource(), 2, 2)) {
+                pool.setMinIdle(2);
+                AtomicReference<Throwable> failure = new AtomicReference<>();
+                List<Thread> threads = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    boolean warm = i % 2 == 0;
+                    Thread t =
+                            new Thread(
+                                    () -> {
+                                        try {
+                                            if (warm) {
+                                                pool.warmUp();
+                                            } else {
+                                                pool.getConnection().close();
+                                            }
+                                        } catch (Throwable e) {
+                                            failure.compareAndSet(null, e);
+                                        }
+                                    });
+                    threads.add(t);
+                    t.start();
+                }
+                for (Thread t : threads) {
+                    t.join();
+                }
+                assertThat(failure.get()).isNull();
+                assertThat(pool.getOpenConnections()).isLessThanOrEqualTo(4);
+            }
+        }
+    }
+
+    @Test
+    public void connectionsReturnedWhileClosingAreClosed() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            SQLiteConnectionPool pool = new SQLiteConnectionPool(dataSource(), 4, 1);
+            List<Connection> borrowed = new ArrayList<>();
+            List<SQLiteConnection> physical = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Connection conn = pool.getConnection();
+                borrowed.add(conn);
+                physical.add(conn.unwrap(SQLiteConnection.class));
+            }
+            Thread returner =
+                    new Thread(
+                            () -> {
+                                for (Connection conn : borrowed) {
+                                    try {
+                                        conn.close();
+                                    } catch (SQLException e) {
+                                        throw new IllegalStateException(e);
+                                    }
+                                }
+                            });
+            returner.start();
+            pool.close();
+            returner.join();
+            for (SQLiteConnection conn : physical) {
+                assertThat(conn.isClosed()).isTrue();
+            }
+            assertThat(pool.getOpenConnections()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void concurrentBorrowers() throws Exception {
+        try (SQLiteConnectionPool pool = new SQLiteConnectionPool(dataSource(), 1, 2)) {
+            try (Connection conn = pool.getConnection()) {
+                conn.createStatement().executeUpdate("create table t (x)");
+            }
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                boolean write = i % 2 == 0;
+                Thread t =
+                        new Thread(
+                                () -> {
+                                    for (int j = 0; j < 200 && failure.get() == null; j++) {
+                                        try (Connection c =
+                                                        write
+                                                                ? pool.getConnection()
+                                                                : pool.getReadConnection();
+                                                Statement stat = c.createStatement()) {
+                                            if (write) {
+                                                stat.executeUpdate("insert into t values (1)");
+                                            } else {
+                                                stat.executeQuery("select count(*) from t").close();
+                                            }
+                                        } catch (Throwable e) {
+                                            failure.compareAndSet(null, e);
+                                        }
+                                    }
+                                });
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertThat(failure.get()).isNull();
+            assertThat(pool.getOpenConnections()).isLessThanOrEqualTo(3);
+            try (Connection conn = pool.getReadConnection();
+                    ResultSet rs = conn.createStatement().executeQuery("select count(*) from t")) {
+                assertThat(rs.getInt(1)).isEqualTo(800);
+            }
+        }
+    }
+}
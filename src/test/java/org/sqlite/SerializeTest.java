@@ -3,12 +3,18 @@ package org.sqlite;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class SerializeTest {
 
@@ -160,6 +166,204 @@ public class SerializeTest {
         assertThat(tmp.delete()).isTrue();
     }
 
+    @Test
+    public void testDirectBuffer() throws SQLException {
+        byte[] bb = serialize();
+        try (SQLiteConnection connection =
+                (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:")) {
+            execute(connection, "ATTACH ? AS ?", ":memory:", "a_schema");
+            ByteBuffer src = ByteBuffer.allocateDirect(bb.length + 10);
+            src.position(10);
+            src.put(bb);
+            src.position(10);
+            connection.deserialize("a_schema", src, false);
+            assertThat(src.position()).isEqualTo(10);
+            execute(connection, "INSERT INTO a_schema.a_table (x) values (?)", 2);
+            assertThat(fetch(connection, "SELECT COUNT(1) FROM a_schema.a_table")).isEqualTo(2);
+
+            long size = connection.getSerializedSize("a_schema");
+            assertThat(size).isEqualTo(connection.serialize("a_schema").length);
+            ByteBuffer dst = ByteBuffer.allocateDirect((int) size);
+            assertThat(connection.serialize("a_schema", dst)).isEqualTo(size);
+            assertThat(dst.hasRemaining()).isFalse();
+
+            ByteBuffer small = ByteBuffer.allocate((int) size - 1);
+            assertThatThrownBy(() -> connection.serialize("a_schema", small))
+                    .isInstanceOf(SQLException.class);
+
+            // a heap buffer is copied
+            dst.flip();
+            ByteBuffer heap = ByteBuffer.allocate((int) size);
+            heap.put(dst).flip();
+            connection.deserialize("a_schema", heap, true);
+            assertThat(fetch(connection, "SELECT COUNT(1) FROM a_schema.a_table")).isEqualTo(2);
+            assertThatThrownBy(
+                            () ->
+                                    execute(
+                                            connection,
+                                            "INSERT INTO a_schema.a_table (x) values (?)",
+                                            3))
+                    .isInstanceOf(SQLiteException.class);
+        }
+    }
+
+    @Test
+    public void testNullSchema() throws SQLException {
+        byte[] bb = serialize();
+        try (SQLiteConnection connection =
+                (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:")) {
+            ByteBuffer src = ByteBuffer.allocateDirect(bb.length);
+            src.put(bb).flip();
+            assertThatThrownBy(() -> connection.deserialize(null, src, true))
+                    .isInstanceOf(SQLException.class)
+                    .hasMessage("schema must not be null");
+            assertThatThrownBy(() -> connection.deserialize(null, src, false))
+                    .isInstanceOf(SQLException.class)
+                    .hasMessage("schema must not be null");
+            // the buffer is left untouched
+            assertThat(src.remaining()).isEqualTo(bb.length);
+            connection.deserialize("main", src, true);
+            assertThat(fetch(connection, "SELECT COUNT(1) FROM a_table")).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testMappedFile(@TempDir File dir) throws SQLException, IOException {
+        File file = new File(dir, "snapshot.db");
+        try (SQLiteConnection connection =
+                        (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:");
+                FileChannel channel =
+                        FileChannel.open(
+                                file.toPath(),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE)) {
+            execute(connection, "CREATE TABLE a_table (x integer)");
+            execute(connection, "INSERT INTO a_table (x) values (?)", 1007);
+            long size = connection.getSerializedSize("main");
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            connection.serialize("main", region);
+            region.force();
+        }
+
+        // the mapped file is shared by the read-only databases, without copies
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                SQLiteConnection one =
+                        (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:");
+                SQLiteConnection two =
+                        (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:")) {
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            one.deserialize("main", region, true);
+            two.deserialize("main", region, true);
+            assertThat(fetch(one, "SELECT * FROM a_table")).isEqualTo(1007);
+            assertThat(fetch(two, "SELECT * FROM a_table")).isEqualTo(1007);
+            assertThatThrownBy(() -> execute(one, "INSERT INTO a_table (x) values (?)", 1))
+                    .isInstanceOf(SQLiteException.class);
+        }
+    }
+
+    @Test
+    public void testChannels(@TempDir File dir) throws SQLException, IOException {
+        File file = new File(dir, "channel.db");
+        long size;
+        try (SQLiteConnection connection =
+                        (SQLiteConnection)
+                                DriverManager.getConnection("jdbc:sqlite:" + serializedFile(dir));
+                FileChannel out =
+                        FileChannel.open(
+                                file.toPath(),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE)) {
+            // a database file is serialized from a copy
+            size = connection.serialize("main", out);
+            assertThat(size).isEqualTo(connection.getSerializedSize("main"));
+        }
+        assertThat(file.length()).isEqualTo(size);
+
+        try (SQLiteConnection connection =
+                        (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:");
+                FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            connection.deserialize("main", in, size, false);
+            assertThat(fetch(connection, "SELECT * FROM main.a_table")).isEqualTo(1007);
+            execute(connection, "INSERT INTO a_table (x) values (?)", 1);
+
+            in.position(0);
+            assertThatThrownBy(() -> connection.deserialize("main", in, size + 1, false))
+                    .isInstanceOf(EOFException.class);
+            assertThat(fetch(connection, "SELECT COUNT(1) FROM a_table")).isEqualTo(2);
+        }
+    }
+
+    private File serializedFile(File dir) throws SQLException, IOException {
+        File file = new File(dir, "source.db");
+        Files.write(file.toPath(), serialize());
+        return file;
+    }
+
+    @Test
+    public void testCloneInMemory() throws SQLException {
+        try (SQLiteConnection connection =
+                (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:")) {
+            execute(connection, "CREATE TABLE a_table (x integer)");
+            execute(connection, "INSERT INTO a_table (x) values (?)", 1007);
+
+            try (SQLiteConnection replica = connection.cloneInMemory(true);
+                    SQLiteConnection copy = connection.cloneInMemory(false)) {
+                assertThat(fetch(replica, "SELECT x FROM a_table")).isEqualTo(1007);
+                assertThatThrownBy(() -> execute(replica, "INSERT INTO a_table (x) values (1)"))
+                        .isInstanceOf(SQLiteException.class)
+                        .satisfies(
+                                ex ->
+                                        assertThat(((SQLiteException) ex).getResultCode())
+                                                .isEqualTo(SQLiteErrorCode.SQLITE_READONLY));
+
+                // the copies are independent of the source and of each other
+                execute(copy, "INSERT INTO a_table (x) values (?)", 1);
+                execute(connection, "DELETE FROM a_table");
+                assertThat(fetch(copy, "SELECT COUNT(1) FROM a_table")).isEqualTo(2);
+                assertThat(fetch(replica, "SELECT COUNT(1) FROM a_table")).isEqualTo(1);
+                assertThat(fetch(connection, "SELECT COUNT(1) FROM a_table")).isEqualTo(0);
+            }
+        }
+    }
+
+    @Test
+    public void testCloneFileInMemory(@TempDir File dir) throws Exception {
+        File file = new File(dir, "clone.db");
+        try (SQLiteConnection connection =
+                (SQLiteConnection)
+                        DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath())) {
+            execute(connection, "ATTACH ? AS ?", ":memory:", "a_schema");
+            execute(connection, "CREATE TABLE a_table (x integer)");
+            execute(connection, "CREATE TABLE a_schema.a_table (x integer)");
+            execute(connection, "INSERT INTO a_table (x) values (?)", 1007);
+            execute(connection, "INSERT INTO a_schema.a_table (x) values (?)", 2);
+
+            try (SQLiteConnection replica =
+                    connection.cloneInMemory("a_schema", new java.util.Properties(), true)) {
+                assertThat(fetch(replica, "SELECT x FROM a_table")).isEqualTo(2);
+            }
+
+            SQLiteConnection[] replicas = new SQLiteConnection[4];
+            try {
+                for (int i = 0; i < replicas.length; i++) {
+                    replicas[i] = connection.cloneInMemory(true);
+                }
+                execute(connection, "INSERT INTO a_table (x) values (?)", 1);
+                for (SQLiteConnection replica : replicas) {
+                    assertThat(replica.getUrl()).isEqualTo("jdbc:sqlite::memory:");
+                    assertThat(fetch(replica, "SELECT SUM(x) FROM a_table")).isEqualTo(1007);
+                }
+            } finally {
+                for (SQLiteConnection replica : replicas) {
+                    if (replica != null) {
+                        replica.close();
+                    }
+                }
+            }
+        }
+    }
+
     @Disabled("This takes around 15 seconds on a fast (2023) machine and consumes 4gb of memory")
     @Test
     public void testVeryLarge() throws SQLException {
@@ -0,0 +1,411 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SessionTest {
+    private SQLiteConnection source;
+    private SQLiteConnection target;
+
+    @BeforeEach
+    public void connect() throws Exception {
+        source = (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:");
+        target = (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:");
+        for (Connection conn : new Connection[] {source, target}) {
+            try (Statement stat = conn.createStatement()) {
+                stat.executeUpdate("create table t (id integer primary key, name text, data blob)");
+                stat.executeUpdate("insert into t values (1, 'one', x'01'), (2, 'two', x'02')");
+            }
+        }
+    }
+
+    @AfterEach
+    public void close() throws Exception {
+        source.close();
+        target.close();
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate(sql);
+        }
+    }
+
+    private static List<String> rows(Connection conn) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement stat = conn.createStatement();
+                ResultSet rs = stat.executeQuery("select id, name from t order by id")) {
+            while (rs.next()) {
+                rows.add(rs.getInt(1) + ":" + rs.getString(2));
+            }
+        }
+        return rows;
+    }
+
+    private void change() throws SQLException {
+        execute(source, "insert into t values (3, 'three', null)");
+        execute(source, "update t set name = 'deux' where id = 2");
+        execute(source, "delete from t where id = 1");
+    }
+
+    @Test
+    public void changesetRoundTrip() throws Exception {
+        try (SQLiteSession session = source.createSession()) {
+            session.attach("t");
+            assertThat(session.isEmpty()).isTrue();
+            change();
+            assertThat(session.isEmpty()).isFalse();
+
+            target.applyChangeset(session.getChangeset(), null);
+            assertThat(rows(target)).containsExactly("2:deux", "3:three");
+            assertThat(rows(target)).isEqualTo(rows(source));
+        }
+    }
+
+    @Test
+    public void patchsetRoundTrip() throws Exception {
+        try (SQLiteSession session = source.createSession()) {
+            session.attach(null);
+            change();
+
+            byte[] changeset = session.getChangeset();
+            byte[] patchset = session.getPatchset();
+            assertThat(patchset.length).isLessThan(changeset.length);
+
+            target.applyChangeset(patchset, null);
+            assertThat(rows(target)).isEqualTo(rows(source));
+        }
+    }
+
+    @Test
+    public void streamedChangeset() throws Exception {
+        try (SQLiteSession session = source.createSession("main")) {
+            session.attach("t");
+            change();
+
+            ByteArrayOutputStream changeset = new ByteArrayOutputStream();
+            session.writeChangeset(changeset);
+            assertThat(changeset.toByteArray()).isEqualTo(session.getChangeset());
+
+            ByteArrayOutputStream patchset = new ByteArrayOutputStream();
+            session.writePatchset(patchset);
+            assertThat(patchset.toByteArray()).isEqualTo(session.getPatchset());
+        }
+    }
+
+    @Test
+    public void disabledAndIndirect() throws Exception {
+        try (SQLiteSession session = source.createSession()) {
+            session.attach("t");
+            assertThat(session.isEnabled()).isTrue();
+            session.setEnabled(false);
+            assertThat(session.isEnabled()).isFalse();
+            execute(source, "delete from t where id = 1");
+            assertThat(session.isEmpty()).isTrue();
+
+            session.setEnabled(true);
+            session.setIndirect(true);
+            assertThat(session.isIndirect()).isTrue();
+            execute(source, "delete from t where id = 2");
+
+            List<Boolean> indirect = new ArrayList<>();
+            execute(target, "delete from t where id = 2");
+            target.applyChangeset(
+                    session.getChangeset(),
+                    (type, change) -> {
+                        indirect.add(change.isIndirect());
+                        return SQLiteConflictHandler.Resolution.OMIT;
+                    });
+            assertThat(indirect).containsExactly(true);
+        }
+    }
+
+    @Test
+    public void invertAndConcat() throws Exception {
+        byte[] first;
+        byte[] second;
+        try (SQLiteSession session = source.createSession()) {
+            session.attach("t");
+            execute(source, "insert into t values (3, 'three', null)");
+            first = session.getChangeset();
+        }
+        try (SQLiteSession session = source.createSession()) {
+            session.attach("t");
+            execute(source, "update t set name = 'trois' where id = 3");
+            second = session.getChangeset();
+        }
+
+        byte[] both = SQLiteSession.concat(first, second);
+        target.applyChangeset(both, null);
+        assertThat(rows(target)).containsExactly("1:one", "2:two", "3:trois");
+
+        target.applyChangeset(SQLiteSession.invert(both), null);
+        assertThat(rows(target)).containsExactly("1:one", "2:two");
+
+        assertThatThrownBy(() -> SQLiteSession.invert(new byte[] {1, 2, 3}))
+                .isInstanceOf(SQLException.class);
+    }
+
+    @Test
+    public void conflicts() throws Exception {
+        execute(target, "insert into t values (3, 'other', x'03')");
+        execute(target, "update t set name = 'zwei' where id = 2");
+        execute(target, "delete from t where id = 1");
+
+        byte[] changeset;
+        try (SQLiteSession session = source.createSession()) {
+            session.attach("t");
+            change();
+            changeset = session.getChangeset();
+        }
+
+        List<String> conflicts = new ArrayList<>();
+        target.applyChangeset(
+                changeset,
+                (type, change) -> {
+                    assertThat(change.getTable()).isEqualTo("t");
+                    assertThat(change.getColumnCount()).isEqualTo(3);
+                    switch (type) {
+                        case CONFLICT:
+                            assertThat(change.getType())
+                                    .isEqualTo(SQLiteUpdateListener.Type.INSERT);
+                            assertThat(change.getNewValue(1)).isEqualTo("three");
+                            assertThat(change.getNewValue(2)).isNull();
+                            assertThat(change.getConflictingValue(1)).isEqualTo("other");
+                            assertThat(change.getConflictingValue(2)).isEqualTo(new byte[] {3});
+                            assertThatThrownBy(() -> change.getOldValue(1))
+                                    .isInstanceOf(SQLException.class);
+                            conflicts.add(type + ":" + change.getConflictingValue(0));
+                            return SQLiteConflictHandler.Resolution.REPLACE;
+                        case DATA:
+                            assertThat(change.getType())
+                                    .isEqualTo(SQLiteUpdateListener.Type.UPDATE);
+                            assertThat(change.getOldValue(1)).isEqualTo("two");
+                            assertThat(change.getNewValue(1)).isEqualTo("deux");
+                            // unchanged
+                            assertThat(change.getNewValue(2)).isNull();
+                            conflicts.add(type + ":" + change.getConflictingValue(1));
+                            return SQLiteConflictHandler.Resolution.OMIT;
+                        default:
+                            assertThat(change.getType())
+                                    .isEqualTo(SQLiteUpdateListener.Type.DELETE);
+                            assertThat(change.getOldValue(0)).isEqualTo(1L);
+                            conflicts.add(type + ":" + change.getOldValue(1));
+                            return SQLiteConflictHandler.Resolution.OMIT;
+                    }
+                });
+        assertThat(conflicts).containsExactlyInAnyOrder("CONFLICT:3", "DATA:zwei", "NOT_FOUND:one");
+        assertThat(rows(target)).containsExactly("2:zwei", "3:three");
+    }
+
+    @Test
+    public void changeNotAvailableAfterHandler() throws Exception {
+        execute(target, "delete from t where id = 1");
+        byte[] changeset;
+        try (SQLiteSession session = source.createSession()) {
+            session.attach("t");
+            execute(source, "delete from t where id = 1");
+            changeset = session.getChangeset();
+        }
+
+        List<SQLiteChange> changes = new ArrayList<>();
+        target.applyChangeset(
+                changeset,
+                (type, change) -> {
+                    changes.add(change);
+                    return SQLiteConflictHandler.Resolution.OMIT;
+                });
+        assertThat(changes).hasSize(1);
+        assertThatThrownBy(() -> changes.get(0).getOldValue(0))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("no longer available");
+    }
+
+    @Test
+    public void abortOnConflict() throws Exception {
+        execute(target, "update t set name = 'zwei' where id = 2");
+        byte[] changeset;
+        try (SQLiteSession session = source.createSession()) {
+            session.attach("t");
+            change();
+            changeset = session.getChangeset();
+        }
+
+        assertThatThrownBy(() -> target.applyChangeset(changeset, null))
+                .isInstanceOf(SQLException.class);
+        assertThatThrownBy(
+                        () ->
+                                target.applyChangeset(
+                                        changeset,
+                                        (type, change) -> {
+                                            throw new SQLException("rejected " + type);
+                                        }))
+                .isInstanceOf(SQLException.class)
+                .hasMessage("rejected DATA");
+        // rolled back
+        assertThat(rows(target)).containsExactly("1:one", "2:zwei");
+    }
+
+    @Test
+    public void tableFilter() throws Exception {
+        execute(source, "create table u (id integer primary key)");
+        execute(target, "create table u (id integer primary key)");
+        byte[] changeset;
+        try (SQLiteSession session = source.createSession()) {
+            session.attach(null);
+            execute(source, "insert into u values (1)");
+            execute(source, "insert into t values (3, 'three', null)");
+            changeset = session.getChangeset();
+        }
+
+        target.applyChangeset(
+                changeset,
+                new SQLiteConflictHandler() {
+                    @Override
+                    public boolean include(String table) {
+                        return !"u".equals(table);
+                    }
+
+                    @Override
+                    public Resolution onConflict(Type type, SQLiteChange change) {
+                        return Resolution.ABORT;
+                    }
+                });
+        assertThat(rows(target)).containsExactly("1:one", "2:two", "3:three");
+        try (Statement stat = target.createStatement();
+                ResultSet rs = stat.executeQuery("select count(*) from u")) {
+            assertThat(rs.getInt(1)).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void failingFilterAbortsTheApply() throws Exception {
+        execute(source, "create table u (id integer primary key)");
+        execute(target, "create table u (id integer primary key)");
+        byte[] changeset;
+        try (SQLiteSession session = source.createSession()) {
+            session.attach(null);
+            execute(source, "insert into t values (3, 'three', null)");
+            execute(source, "insert into u values (1)");
+            changeset = session.getChangeset();
+        }
+
+        assertThatThrownBy(
+                        () ->
+                                target.applyChangeset(
+                                        changeset,
+                                        new SQLiteConflictHandler() {
+                                            @Override
+                                            public boolean include(String table) {
+                                                if ("u".equals(table)) {
+                                                    throw new IllegalStateException("filter");
+                                                }
+                                                return true;
+                                            }
+
+                                            @Override
+                                            public Resolution onConflict(
+                                                    Type type, SQLiteChange change) {
+                                                return Resolution.ABORT;
+                                            }
+                                        }))
+                .isInstanceOf(IllegalStateException.class);
+        // the changes of t, applied before the filter threw, are rolled back
+        assertThat(rows(target)).containsExactly("1:one", "2:two");
+        assertThat(target.getAutoCommit()).isTrue();
+    }
+
+    @Test
+    public void closeWhileInUse() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            SQLiteSession session = source.createSession();
+            session.attach("t");
+            change();
+            Thread reader =
+                    new Thread(
+                            () -> {
+                                try {
+                                    while (true) {
+                                        session.getChangeset();
+                                    }
+                                } catch (SQLException e) {
+                                    // closed
+                                }
+                            });
+            reader.start();
+            Thread.sleep(1);
+            // the session is never deleted in the middle of a call
+            session.close();
+            reader.join();
+            execute(source, "delete from t");
+            execute(source, "insert into t values (1, 'one', x'01'), (2, 'two', x'02')");
+        }
+    }
+
+    @Test
+    public void closedSessionStaysClosed() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            SQLiteSession closed = source.createSession();
+            closed.close();
+            // the new session may get the address of the closed one
+            try (SQLiteSession session = source.createSession()) {
+                session.attach("t");
+                assertThatThrownBy(() -> closed.attach("t"))
+                        .isInstanceOf(SQLException.class)
+                        .hasMessage("session is closed");
+                closed.close();
+                assertThat(session.isEmpty()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void sessionsClosedWithConnection() throws Exception {
+        SQLiteSession session = source.createSession();
+        session.attach("t");
+        source.close();
+        assertThatThrownBy(session::getChangeset)
+                .isInstanceOf(SQLException.class)
+                .hasMessage("session is closed");
+        session.close();
+        assertThatThrownBy(source::createSession).isInstanceOf(SQLException.class);
+    }
+
+    @Test
+    public void sessionsAndPreUpdateListenersExcludeEachOther() throws Exception {
+        SQLitePreUpdateListener listener = update -> {};
+        try (SQLiteSession session = source.createSession()) {
+            session.attach("t");
+            assertThatThrownBy(() -> source.addPreUpdateListener(listener))
+                    .isInstanceOf(SQLException.class)
+                    .hasMessage("preupdate listeners cannot be used while a session is open");
+            // removing a listener that was never added leaves the hook of the session alone
+            source.removePreUpdateListener(listener);
+            change();
+            assertThat(session.isEmpty()).isFalse();
+        }
+
+        source.addPreUpdateListener(listener);
+        assertThatThrownBy(source::createSession)
+                .isInstanceOf(SQLException.class)
+                .hasMessage("sessions cannot be used while preupdate listeners are registered");
+        source.removePreUpdateListener(listener);
+        try (SQLiteSession session = source.createSession()) {
+            session.attach("t");
+            execute(source, "insert into t values (4, 'four', null)");
+            assertThat(session.isEmpty()).isFalse();
+        }
+    }
+}
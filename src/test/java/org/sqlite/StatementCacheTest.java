@@ -0,0 +1,156 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.core.Codes;
+import org.sqlite.core.StatementCache;
+
+public class StatementCacheTest {
+
+    private Connection conn;
+    private StatementCache cache;
+
+    @BeforeEach
+    public void connect() throws Exception {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setStatementCacheSize(2);
+        conn = config.createConnection("jdbc:sqlite:");
+        cache = conn.unwrap(SQLiteConnection.class).getDatabase().getStatementCache();
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate("create table t (id integer primary key, v text)");
+            stat.executeUpdate("insert into t values (1, 'one'), (2, 'two'), (3, 'three')");
+        }
+    }
+
+    @AfterEach
+    public void close() throws SQLException {
+        conn.close();
+    }
+
+    private String select(String sql, int id) throws SQLException {
+        try (PreparedStatement prep = conn.prepareStatement(sql)) {
+            prep.setInt(1, id);
+            try (ResultSet rs = prep.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    @Test
+    public void reusesClosedStatements() throws SQLException {
+        String sql = "select v from t where id = ?";
+        assertThat(select(sql, 1)).isEqualTo("one");
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(0);
+        assertThat(cache.size()).isEqualTo(1);
+
+        assertThat(select(sql, 2)).isEqualTo("two");
+        assertThat(select(sql, 3)).isEqualTo("three");
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void clearsBindings() throws SQLException {
+        String sql = "select ? is null";
+        try (PreparedStatement prep = conn.prepareStatement(sql)) {
+            prep.setInt(1, 1);
+            prep.executeQuery().close();
+        }
+        try (PreparedStatement prep = conn.prepareStatement(sql);
+                ResultSet rs = prep.executeQuery()) {
+            assertThat(rs.getBoolean(1)).isTrue();
+        }
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void reusesUnfinishedStatement() throws SQLException {
+        String sql = "select v from t order by id";
+        try (PreparedStatement prep = conn.prepareStatement(sql)) {
+            ResultSet rs = prep.executeQuery();
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("one");
+        }
+        try (PreparedStatement prep = conn.prepareStatement(sql);
+                ResultSet rs = prep.executeQuery()) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getString(1)).isEqualTo("one");
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws SQLException {
+        String a = "select v from t where id = ?";
+        String b = "select v || 'b' from t where id = ?";
+        String c = "select v || 'c' from t where id = ?";
+        select(a, 1);
+        select(b, 1);
+        select(a, 1);
+        select(c, 1);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+
+        long misses = cache.getMisses();
+        assertThat(select(a, 2)).isEqualTo("two");
+        assertThat(cache.getMisses()).isEqualTo(misses);
+        assertThat(select(b, 2)).isEqualTo("twob");
+        assertThat(cache.getMisses()).isEqualTo(misses + 1);
+    }
+
+    @Test
+    public void concurrentStatementsWithSameSql() throws SQLException {
+        String sql = "select v from t where id = ?";
+        PreparedStatement first = conn.prepareStatement(sql);
+        PreparedStatement second = conn.prepareStatement(sql);
+        first.setInt(1, 1);
+        second.setInt(1, 2);
+        try (ResultSet rs1 = first.executeQuery();
+                ResultSet rs2 = second.executeQuery()) {
+            assertThat(rs1.getString(1)).isEqualTo("one");
+            assertThat(rs2.getString(1)).isEqualTo("two");
+        }
+        first.close();
+        second.close();
+        assertThat(first.isClosed()).isTrue();
+        assertThat(second.isClosed()).isTrue();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void disabledByDefault() throws SQLException {
+        try (Connection other = new SQLiteConfig().createConnection("jdbc:sqlite:")) {
+            StatementCache disabled =
+                    other.unwrap(SQLiteConnection.class).getDatabase().getStatementCache();
+            other.prepareStatement("select 1").close();
+            other.prepareStatement("select 1").close();
+            assertThat(disabled.isEnabled()).isFalse();
+            assertThat(disabled.size()).isEqualTo(0);
+            assertThat(disabled.getHits()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void flagsWhichChangeMeaningBypassCache() throws SQLException {
+        SQLiteConnection sqlite = conn.unwrap(SQLiteConnection.class);
+        String sql = "select v from t where id = 1";
+        sqlite.prepareStatementWithFlags(sql, Codes.SQLITE_PREPARE_NO_VTAB).close();
+        assertThat(cache.size()).isEqualTo(0);
+
+        sqlite.prepareStatementWithFlags(sql, Codes.SQLITE_PREPARE_PERSISTENT).close();
+        assertThat(cache.size()).isEqualTo(1);
+        sqlite.prepareStatementWithFlags(sql, Codes.SQLITE_PREPARE_NO_VTAB).close();
+        assertThat(cache.getHits()).isEqualTo(0);
+        conn.prepareStatement(sql).close();
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,114 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.jdbc3.JDBC3PreparedStatement;
+import org.sqlite.jdbc3.JDBC3Statement;
+
+public class StatementStatusTest {
+
+    private Connection conn;
+
+    @BeforeEach
+    public void connect() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite:");
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate("create table t (id integer primary key, v integer)");
+            stat.executeUpdate(
+                    "with recursive n(x) as (select 1 union all select x + 1 from n where x < 100)"
+                            + " insert into t select x, x % 10 from n");
+        }
+    }
+
+    @AfterEach
+    public void close() throws SQLException {
+        conn.close();
+    }
+
+    private JDBC3PreparedStatement prepare(String sql) throws SQLException {
+        return conn.prepareStatement(sql).unwrap(JDBC3PreparedStatement.class);
+    }
+
+    private static void drain(ResultSet rs) throws SQLException {
+        while (rs.next()) {}
+        rs.close();
+    }
+
+    @Test
+    public void fullScanAndSort() throws SQLException {
+        try (JDBC3PreparedStatement scan = prepare("select id from t where v = ? order by v");
+                JDBC3PreparedStatement point = prepare("select v from t where id = ?")) {
+            scan.setInt(1, 3);
+            drain(scan.executeQuery());
+            assertThat(scan.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_FULLSCAN_STEP))
+                    .isEqualTo(99);
+            assertThat(scan.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_VM_STEP))
+                    .isGreaterThan(0);
+
+            point.setInt(1, 3);
+            drain(point.executeQuery());
+            assertThat(point.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_FULLSCAN_STEP))
+                    .isEqualTo(0);
+            assertThat(point.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_SORT)).isEqualTo(0);
+        }
+        try (JDBC3PreparedStatement sorted = prepare("select id from t order by v")) {
+            drain(sorted.executeQuery());
+            assertThat(sorted.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_SORT))
+                    .isGreaterThan(0);
+        }
+    }
+
+    @Test
+    public void accumulatesUntilReset() throws SQLException {
+        try (JDBC3PreparedStatement scan = prepare("select id from t where v = 1")) {
+            drain(scan.executeQuery());
+            drain(scan.executeQuery());
+            assertThat(scan.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_FULLSCAN_STEP, true))
+                    .isEqualTo(198);
+            assertThat(scan.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_FULLSCAN_STEP))
+                    .isEqualTo(0);
+
+            drain(scan.executeQuery());
+            assertThat(scan.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_RUN))
+                    .isGreaterThan(0);
+            scan.resetStatus();
+            assertThat(scan.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_FULLSCAN_STEP))
+                    .isEqualTo(0);
+            assertThat(scan.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_RUN)).isEqualTo(0);
+            assertThat(scan.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_MEMUSED))
+                    .isGreaterThan(0);
+        }
+    }
+
+    @Test
+    public void statement() throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            JDBC3Statement jdbc = stat.unwrap(JDBC3Statement.class);
+            assertThatThrownBy(
+                            () -> jdbc.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_VM_STEP))
+                    .isInstanceOf(SQLException.class);
+            ResultSet rs = stat.executeQuery("select id from t where v = 2");
+            drain(rs);
+            assertThat(jdbc.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_FULLSCAN_STEP))
+                    .isEqualTo(99);
+        }
+    }
+
+    @Test
+    public void closedStatement() throws SQLException {
+        JDBC3PreparedStatement prep = prepare("select 1");
+        prep.close();
+        assertThatThrownBy(() -> prep.getStatus(SQLiteStatementStatus.SQLITE_STMTSTATUS_RUN))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("not prepared");
+    }
+}
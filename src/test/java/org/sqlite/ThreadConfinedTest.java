@@ -0,0 +1,121 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.core.DB;
+
+public class ThreadConfinedTest {
+
+    private Connection conn;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void connect() throws Exception {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setThreadConfined(true);
+        conn = config.createConnection("jdbc:sqlite:");
+        executor = Executors.newSingleThreadExecutor();
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate("create table t (i integer, l integer, d real, s text, b blob)");
+            stat.executeUpdate(
+                    "insert into t values (1, 10000000000, 1.5, 'one', x'01'), (2, null, null, null, null)");
+        }
+    }
+
+    @AfterEach
+    public void close() throws SQLException {
+        executor.shutdownNow();
+        conn.close();
+    }
+
+    @Test
+    public void configuration() throws SQLException {
+        assertThat(conn.unwrap(SQLiteConnection.class).getDatabase().isThreadConfined()).isTrue();
+        SQLiteConfig config = new SQLiteConfig();
+        config.setThreadConfined(true);
+        assertThat(new SQLiteConfig(config.toProperties()).isThreadConfined()).isTrue();
+        try (Connection other = new SQLiteConfig().createConnection("jdbc:sqlite:")) {
+            assertThat(other.unwrap(SQLiteConnection.class).getDatabase().isThreadConfined())
+                    .isFalse();
+        }
+    }
+
+    @Test
+    public void readsFromOwnerThread() throws SQLException {
+        try (Statement stat = conn.createStatement();
+                ResultSet rs = stat.executeQuery("select * from t order by i")) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getInt(1)).isEqualTo(1);
+            assertThat(rs.getLong(2)).isEqualTo(10000000000L);
+            assertThat(rs.getDouble(3)).isEqualTo(1.5);
+            assertThat(rs.getString(4)).isEqualTo("one");
+            assertThat(rs.getBytes(5)).containsExactly(1);
+            assertThat(rs.getObject(2)).isEqualTo(10000000000L);
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getInt(1)).isEqualTo(2);
+            assertThat(rs.getLong(2)).isEqualTo(0);
+            assertThat(rs.wasNull()).isTrue();
+            assertThat(rs.getString(4)).isNull();
+            assertThat(rs.getBytes(5)).isNull();
+            assertThat(rs.next()).isFalse();
+        }
+    }
+
+    @Test
+    public void rejectsOtherThread() throws Exception {
+        PreparedStatement prep = conn.prepareStatement("select i from t order by i");
+        ResultSet rs = prep.executeQuery();
+        assertThat(rs.next()).isTrue();
+
+        Future<?> next = executor.submit(() -> rs.next());
+        assertThatThrownBy(next::get)
+                .hasCauseInstanceOf(SQLException.class)
+                .hasMessageContaining("confined to thread");
+        Future<?> query = executor.submit(() -> conn.createStatement().execute("select 1"));
+        assertThatThrownBy(query::get).hasCauseInstanceOf(SQLException.class);
+
+        // the owner is unaffected
+        assertThat(rs.getInt(1)).isEqualTo(1);
+        assertThat(rs.next()).isTrue();
+        assertThat(rs.getInt(1)).isEqualTo(2);
+        prep.close();
+    }
+
+    @Test
+    public void handOverToAnotherThread() throws Exception {
+        DB db = conn.unwrap(SQLiteConnection.class).getDatabase();
+        Future<Integer> sum =
+                executor.submit(
+                        () -> {
+                            db.confineTo(Thread.currentThread());
+                            int total = 0;
+                            try (Statement stat = conn.createStatement();
+                                    ResultSet rs = stat.executeQuery("select i from t")) {
+                                while (rs.next()) {
+                                    total += rs.getInt(1);
+                                }
+                            }
+                            return total;
+                        });
+        assertThat(sum.get()).isEqualTo(3);
+        assertThatThrownBy(() -> conn.createStatement().executeQuery("select 1"))
+                .isInstanceOf(SQLException.class);
+        db.confineTo(Thread.currentThread());
+        try (Statement stat = conn.createStatement();
+                ResultSet rs = stat.executeQuery("select count(*) from t")) {
+            assertThat(rs.getInt(1)).isEqualTo(2);
+        }
+    }
+}
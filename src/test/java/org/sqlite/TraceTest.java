@@ -0,0 +1,304 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.core.NativeDBHelper;
+
+public class TraceTest {
+
+    private SQLiteConnection conn;
+    private Statement stat;
+
+    @BeforeEach
+    public void connect() throws Exception {
+        SQLiteConfig config = new SQLiteConfig();
+        // keeps the statements of getGeneratedKeys() out of the traces
+        config.setGetGeneratedKeys(false);
+        conn = (SQLiteConnection) config.createConnection("jdbc:sqlite:");
+        stat = conn.createStatement();
+        stat.executeUpdate("create table t (id integer primary key, name text)");
+    }
+
+    @AfterEach
+    public void close() throws SQLException {
+        stat.close();
+        conn.close();
+    }
+
+    private static class RecordingListener implements SQLiteTraceListener {
+        // also delivered by the background thread of the flush interval
+        final List<List<SQLiteTraceEvent>> batches = new CopyOnWriteArrayList<>();
+        final AtomicInteger dropped = new AtomicInteger();
+
+        @Override
+        public void onTrace(List<SQLiteTraceEvent> events) {
+            batches.add(events);
+        }
+
+        @Override
+        public void onEventsDropped(int count) {
+            dropped.addAndGet(count);
+        }
+
+        List<SQLiteTraceEvent> events() {
+            return batches.stream().flatMap(List::stream).collect(Collectors.toList());
+        }
+
+        List<SQLiteTraceEvent.Type> types() {
+            return events().stream().map(SQLiteTraceEvent::getType).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void statementsAreBuffered() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        conn.setTraceListener(
+                listener, SQLiteTraceListener.TRACE_STMT | SQLiteTraceListener.TRACE_PROFILE);
+
+        stat.executeUpdate("insert into t values (1, 'one')");
+        stat.executeUpdate("insert into t values (2, 'two')");
+        assertThat(listener.batches).isEmpty();
+
+        conn.flushTrace();
+        assertThat(listener.batches).hasSize(1);
+        assertThat(listener.types())
+                .containsExactly(
+                        SQLiteTraceEvent.Type.STMT,
+                        SQLiteTraceEvent.Type.PROFILE,
+                        SQLiteTraceEvent.Type.STMT,
+                        SQLiteTraceEvent.Type.PROFILE);
+
+        List<SQLiteTraceEvent> events = listener.events();
+        assertThat(events.get(0).getSql()).isEqualTo("insert into t values (1, 'one')");
+        assertThat(events.get(1).getStatement()).isEqualTo(events.get(0).getStatement());
+        assertThat(events.get(1).getNanos()).isNotNegative();
+        assertThat(events.get(1).getSql()).isNull();
+    }
+
+    @Test
+    public void deliveredAtThreshold() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        conn.setTraceListener(listener, SQLiteTraceListener.TRACE_STMT, 3, 0);
+
+        for (int i = 0; i < 7; i++) {
+            stat.executeUpdate("insert into t values (" + i + ", null)");
+        }
+        assertThat(listener.batches).hasSize(2);
+        assertThat(listener.batches.get(0)).hasSize(3);
+        assertThat(listener.batches.get(1)).hasSize(3);
+
+        conn.flushTrace();
+        assertThat(listener.batches).hasSize(3);
+        assertThat(listener.batches.get(2)).hasSize(1);
+    }
+
+    @Test
+    public void deliveredAfterInterval() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        conn.setTraceListener(listener, SQLiteTraceListener.TRACE_STMT, 1000, 200);
+
+        stat.executeUpdate("insert into t values (1, null)");
+        assertThat(listener.batches).isEmpty();
+        // delivered while the connection is idle, without waiting for another event
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (listener.batches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(listener.batches).hasSize(1);
+        assertThat(listener.batches.get(0)).hasSize(1);
+
+        conn.setTraceListener(null, 0);
+        stat.executeUpdate("insert into t values (2, null)");
+        Thread.sleep(400);
+        assertThat(listener.batches).hasSize(1);
+    }
+
+    @Test
+    public void confinedConnectionsDeliverOnTheirThread() throws Exception {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setThreadConfined(true);
+        try (SQLiteConnection confined =
+                        (SQLiteConnection) config.createConnection("jdbc:sqlite:");
+                Statement confinedStat = confined.createStatement()) {
+            List<Thread> threads = new CopyOnWriteArrayList<>();
+            RecordingListener listener =
+                    new RecordingListener() {
+                        @Override
+                        public void onTrace(List<SQLiteTraceEvent> events) {
+                            threads.add(Thread.currentThread());
+                            super.onTrace(events);
+                        }
+                    };
+            confined.setTraceListener(listener, SQLiteTraceListener.TRACE_STMT, 1000, 100);
+
+            confinedStat.executeUpdate("create table t (x)");
+            // no background delivery
+            Thread.sleep(400);
+            assertThat(listener.batches).isEmpty();
+
+            // delivered when a statement ends after the interval
+            confinedStat.executeUpdate("insert into t values (1)");
+            assertThat(listener.events()).hasSize(2);
+            assertThat(threads).containsOnly(Thread.currentThread());
+        }
+    }
+
+    @Test
+    public void eventsBeyondTheBufferAreDropped() throws Exception {
+        StringBuilder name = new StringBuilder("trigger_");
+        for (int i = 0; i < 1000; i++) {
+            name.append('x');
+        }
+        stat.executeUpdate("create table log (id)");
+        stat.executeUpdate(
+                "create trigger "
+                        + name
+                        + " after insert on t begin insert into log values (new.id); end");
+        RecordingListener recording = new RecordingListener();
+        SQLiteTraceListener failing =
+                new SQLiteTraceListener() {
+                    boolean failed;
+
+                    @Override
+                    public void onTrace(List<SQLiteTraceEvent> events) {
+                        if (!failed) {
+                            failed = true;
+                            throw new IllegalStateException("listener failed");
+                        }
+                        recording.onTrace(events);
+                    }
+
+                    @Override
+                    public void onEventsDropped(int count) {
+                        recording.onEventsDropped(count);
+                    }
+                };
+        conn.setTraceListener(failing, SQLiteTraceListener.TRACE_STMT, 1, 0);
+
+        // each row reports the trigger, about 1 kB, while no event can be delivered
+        assertThatThrownBy(
+                        () ->
+                                stat.executeUpdate(
+                                        "with recursive n(x) as (select 1 union all select x + 1"
+                                                + " from n where x < 20000)"
+                                                + " insert into t select x, null from n"))
+                .isInstanceOf(IllegalStateException.class);
+        conn.flushTrace();
+        // the buffered events are delivered, and the others counted
+        assertThat(recording.events()).isNotEmpty();
+        assertThat(recording.dropped.get()).isPositive();
+        assertThat(recording.events().size() + recording.dropped.get())
+                .isGreaterThanOrEqualTo(20000);
+    }
+
+    @Test
+    public void rows() throws Exception {
+        stat.executeUpdate("insert into t values (1, 'a'), (2, 'b'), (3, 'c')");
+        RecordingListener listener = new RecordingListener();
+        conn.setTraceListener(listener, SQLiteTraceListener.TRACE_ROW);
+
+        try (ResultSet rs = stat.executeQuery("select * from t")) {
+            while (rs.next()) {}
+        }
+        conn.flushTrace();
+        assertThat(listener.types())
+                .containsExactly(
+                        SQLiteTraceEvent.Type.ROW,
+                        SQLiteTraceEvent.Type.ROW,
+                        SQLiteTraceEvent.Type.ROW);
+    }
+
+    @Test
+    public void expandedSql() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        conn.setTraceListener(
+                listener, SQLiteTraceListener.TRACE_STMT | SQLiteTraceListener.TRACE_EXPANDED_SQL);
+
+        try (PreparedStatement prep = conn.prepareStatement("insert into t values (?, ?)")) {
+            prep.setInt(1, 5);
+            prep.setString(2, "five");
+            prep.executeUpdate();
+        }
+        conn.flushTrace();
+        assertThat(listener.events().get(0).getSql()).isEqualTo("insert into t values (5, 'five')");
+    }
+
+    @Test
+    public void largeStatementText() throws Exception {
+        StringBuilder sql = new StringBuilder("select '");
+        for (int i = 0; i < 100_000; i++) {
+            sql.append((char) ('a' + i % 26));
+        }
+        sql.append('\'');
+        RecordingListener listener = new RecordingListener();
+        conn.setTraceListener(listener, SQLiteTraceListener.TRACE_STMT);
+
+        stat.executeUpdate("insert into t values (1, 'é')");
+        stat.execute(sql.toString());
+        conn.flushTrace();
+        assertThat(listener.events())
+                .extracting(SQLiteTraceEvent::getSql)
+                .containsExactly("insert into t values (1, 'é')", sql.toString());
+    }
+
+    @Test
+    public void replacingDeliversPendingEvents() throws Exception {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        conn.setTraceListener(first, SQLiteTraceListener.TRACE_STMT);
+        stat.executeUpdate("insert into t values (1, null)");
+
+        conn.setTraceListener(second, SQLiteTraceListener.TRACE_STMT);
+        assertThat(first.events()).hasSize(1);
+        stat.executeUpdate("insert into t values (2, null)");
+
+        conn.setTraceListener(null, 0);
+        assertThat(first.events()).hasSize(1);
+        assertThat(second.events()).hasSize(1);
+        assertThat(NativeDBHelper.getTraceListener(conn.getDatabase())).isEqualTo(0);
+
+        stat.executeUpdate("insert into t values (3, null)");
+        conn.flushTrace();
+        assertThat(second.events()).hasSize(1);
+    }
+
+    @Test
+    public void closeEvent() throws Exception {
+        SQLiteConnection other = (SQLiteConnection) DriverManager.getConnection("jdbc:sqlite:");
+        RecordingListener listener = new RecordingListener();
+        other.setTraceListener(
+                listener, SQLiteTraceListener.TRACE_STMT | SQLiteTraceListener.TRACE_CLOSE);
+        try (Statement s = other.createStatement()) {
+            s.execute("select 1");
+        }
+        other.close();
+
+        assertThat(listener.types()).endsWith(SQLiteTraceEvent.Type.CLOSE);
+        assertThat(NativeDBHelper.getTraceListener(other.getDatabase())).isEqualTo(0);
+    }
+
+    @Test
+    public void invalidThreshold() {
+        assertThatThrownBy(
+                        () ->
+                                conn.setTraceListener(
+                                        new RecordingListener(),
+                                        SQLiteTraceListener.TRACE_STMT,
+                                        0,
+                                        0))
+                .isInstanceOf(SQLException.class);
+    }
+}
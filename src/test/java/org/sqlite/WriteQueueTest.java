@@ -0,0 +1,208 @@
+package org.sqlite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WriteQueueTest {
+
+    @TempDir File tempDir;
+
+    private SQLiteDataSource ds;
+    private SQLiteWriteQueue queue;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        File file = File.createTempFile("write-queue-test", ".db", tempDir);
+        ds = new SQLiteDataSource();
+        ds.setUrl("jdbc:sqlite:" + file.getAbsolutePath());
+        ds.setJournalMode("WAL");
+        ds.setWriteQueue(true);
+        queue = ds.getWriteQueue();
+        queue.execute(conn -> conn.createStatement().executeUpdate("create table t (x)"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ds.setWriteQueue(false);
+    }
+
+    private int count() throws SQLException {
+        try (Connection conn = ds.getReadConnection();
+                Statement stat = conn.createStatement();
+                ResultSet rs = stat.executeQuery("select count(*) from t")) {
+            return rs.getInt(1);
+        }
+    }
+
+    private static int insert(SQLiteConnection conn, int x) throws SQLException {
+        try (PreparedStatement insert = conn.prepareStatement("insert into t values (?)")) {
+            insert.setInt(1, x);
+            return insert.executeUpdate();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Test
+    public void concurrentWritesAreGroupCommitted() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        long commits = queue.getCommitCount();
+        CompletableFuture<Integer> first =
+                queue.submit(
+                        conn -> {
+                            started.countDown();
+                            assertThat(await(release)).isTrue();
+                            return insert(conn, 0);
+                        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // queued while the writer is busy, so committed in batches
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            int x = i;
+            futures.add(queue.submit(conn -> insert(conn, x)));
+        }
+        release.countDown();
+        assertThat(first.get()).isEqualTo(1);
+        for (CompletableFuture<Integer> future : futures) {
+            assertThat(future.get()).isEqualTo(1);
+        }
+
+        assertThat(count()).isEqualTo(201);
+        assertThat(queue.getCommitCount() - commits)
+                .isLessThanOrEqualTo(1 + (200 + queue.getMaxBatch() - 1) / queue.getMaxBatch());
+    }
+
+    @Test
+    public void failedWriteIsRolledBackAlone() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        queue.submit(conn -> await(release));
+        CompletableFuture<Integer> before = queue.submit(conn -> insert(conn, 1));
+        CompletableFuture<Integer> failed =
+                queue.submit(
+                        conn -> {
+                            insert(conn, 2);
+                            return conn.createStatement()
+                                    .executeUpdate("insert into missing values (1)");
+                        });
+        CompletableFuture<Integer> after = queue.submit(conn -> insert(conn, 3));
+        release.countDown();
+
+        assertThat(before.get()).isEqualTo(1);
+        assertThat(after.get()).isEqualTo(1);
+        assertThatThrownBy(failed::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(SQLException.class);
+        assertThatThrownBy(() -> queue.execute(conn -> insert(conn, 4) / 0))
+                .isInstanceOf(ArithmeticException.class);
+
+        try (Connection conn = ds.getReadConnection();
+                Statement stat = conn.createStatement();
+                ResultSet rs =
+                        stat.executeQuery(
+                                "select group_concat(x) from (select x from t order by x)")) {
+            assertThat(rs.getString(1)).isEqualTo("1,3");
+        }
+    }
+
+    @Test
+    public void errorInWriteIsRolledBack() throws Exception {
+        assertThatThrownBy(
+                        () ->
+                                queue.execute(
+                                        conn -> {
+                                            insert(conn, 1);
+                                            throw new AssertionError("failed write");
+                                        }))
+                .isInstanceOf(SQLException.class)
+                .hasCauseInstanceOf(AssertionError.class);
+
+        // the writer thread is still running
+        int inserted = queue.execute(conn -> insert(conn, 2));
+        assertThat(inserted).isEqualTo(1);
+        try (Connection conn = ds.getReadConnection();
+                Statement stat = conn.createStatement();
+                ResultSet rs = stat.executeQuery("select group_concat(x) from t")) {
+            assertThat(rs.getString(1)).isEqualTo("2");
+        }
+    }
+
+    @Test
+    public void readersRejectWrites() throws Exception {
+        try (Connection conn = ds.getReadConnection();
+                Statement stat = conn.createStatement()) {
+            assertThatThrownBy(() -> stat.executeUpdate("insert into t values (1)"))
+                    .isInstanceOf(SQLException.class);
+        }
+        int inserted = queue.execute(conn -> insert(conn, 1));
+        assertThat(inserted).isEqualTo(1);
+        assertThat(count()).isEqualTo(1);
+
+        // the write queue leaves the other connections of the data source alone
+        try (Connection conn = ds.getConnection();
+                Statement stat = conn.createStatement()) {
+            assertThat(stat.executeUpdate("insert into t values (2)")).isEqualTo(1);
+        }
+        assertThat(count()).isEqualTo(2);
+    }
+
+    @Test
+    @Timeout(10)
+    public void closedWhileOpeningTheWriter() throws Exception {
+        ds.setBackgroundCheckpoint(true);
+        try {
+            for (int i = 0; i < 20; i++) {
+                ds.setWriteQueue(true);
+                CompletableFuture<Integer> write =
+                        ds.getWriteQueue().submit(conn -> insert(conn, 1));
+                // the writer thread may be opening its connection through the data source
+                ds.setWriteQueue(false);
+                assertThat(write.get()).isEqualTo(1);
+            }
+        } finally {
+            ds.setBackgroundCheckpoint(false);
+        }
+        assertThat(count()).isEqualTo(20);
+    }
+
+    @Test
+    public void closedQueue() throws Exception {
+        ds.setWriteQueue(false);
+        assertThat(ds.getWriteQueue()).isNull();
+        assertThatThrownBy(() -> queue.execute(conn -> insert(conn, 1)))
+                .isInstanceOf(SQLException.class)
+                .hasMessage("write queue is closed");
+
+        // connections of the data source write directly
+        try (Connection conn = ds.getConnection();
+                Statement stat = conn.createStatement()) {
+            assertThat(stat.executeUpdate("insert into t values (1)")).isEqualTo(1);
+        }
+    }
+}
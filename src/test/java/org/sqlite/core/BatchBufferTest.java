@@ -0,0 +1,42 @@
+package org.sqlite.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+public class BatchBufferTest {
+    @Test
+    public void packIsLimitedToThePackedBytes() {
+        BatchBuffer buffer = new BatchBuffer(2);
+        buffer.setLong(0, 1);
+        buffer.setText(1, "abc");
+        buffer.addRow();
+        buffer.setNull(1);
+
+        ByteBuffer packed = buffer.pack(2);
+
+        assertThat(packed.position()).isEqualTo(0);
+        assertThat(packed.limit()).isEqualTo(9 + 5 + 3 + 9 + 1);
+        assertThat(packed.capacity()).isGreaterThan(packed.limit());
+    }
+
+    @Test
+    public void oversizedPackedBufferIsNotRetained() {
+        BatchBuffer buffer = new BatchBuffer(1);
+        buffer.setLong(0, 1);
+        buffer.pack(1);
+        int small = buffer.retainedCapacity();
+        assertThat(small).isPositive();
+
+        buffer.setBlob(0, new byte[BatchBuffer.MAX_RETAINED_CAPACITY * 2]);
+        ByteBuffer large = buffer.pack(1);
+        assertThat(large.limit()).isEqualTo(5 + BatchBuffer.MAX_RETAINED_CAPACITY * 2);
+        assertThat(buffer.retainedCapacity()).isEqualTo(0);
+
+        buffer.setLong(0, 2);
+        ByteBuffer again = buffer.pack(1);
+        assertThat(again.capacity()).isEqualTo(small);
+        assertThat(buffer.retainedCapacity()).isEqualTo(small);
+    }
+}
@@ -41,4 +41,34 @@ public class NativeDBHelper {
     public static long getUpdateListener(DB nativeDB) {
         return ((NativeDB) nativeDB).getUpdateListener();
     }
+
+    /**
+     * Get the native pointer of the trace listener
+     *
+     * @param nativeDB the native db object
+     * @return the pointer of the trace listener
+     */
+    public static long getTraceListener(DB nativeDB) {
+        return ((NativeDB) nativeDB).getTraceListener();
+    }
+
+    /**
+     * Get the native pointer of the WAL listener
+     *
+     * @param nativeDB the native db object
+     * @return the pointer of the WAL listener
+     */
+    public static long getWalListener(DB nativeDB) {
+        return ((NativeDB) nativeDB).getWalListener();
+    }
+
+    /**
+     * Get the native pointer of the preupdate listener
+     *
+     * @param nativeDB the native db object
+     * @return the pointer of the preupdate listener
+     */
+    public static long getPreUpdateListener(DB nativeDB) {
+        return ((NativeDB) nativeDB).getPreUpdateListener();
+    }
 }